@@ -3,6 +3,11 @@ package co.com.bancolombia.config;
 import co.com.bancolombia.model.account.events.AuditListener;
 import co.com.bancolombia.model.account.events.NotificationListener;
 import co.com.bancolombia.usecase.account.AccountEventUseCase;
+import co.com.bancolombia.usecase.account.AccountSearchUseCase;
+import co.com.bancolombia.usecase.account.index.AccountBalanceIndex;
+import co.com.bancolombia.usecase.account.index.AccountIdIndex;
+import co.com.bancolombia.usecase.account.index.AccountIndexListener;
+import co.com.bancolombia.usecase.account.index.AccountOwnerIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -34,6 +39,14 @@ public class EventListenersConfig {
     /** Use Case de eventos (inyectado automáticamente por Spring) */
     private final AccountEventUseCase accountEventUseCase;
 
+    /** Índices en memoria que se mantienen con los eventos */
+    private final AccountIdIndex accountIdIndex;
+    private final AccountOwnerIndex accountOwnerIndex;
+    private final AccountBalanceIndex accountBalanceIndex;
+
+    /** Use Case de búsqueda (carga inicial de los índices) */
+    private final AccountSearchUseCase accountSearchUseCase;
+
     /**
      * REGISTRA LOS LISTENERS AL INICIAR LA APLICACIÓN
      *
@@ -53,6 +66,20 @@ public class EventListenersConfig {
         accountEventUseCase.addListener(new AuditListener());
         log.info("   ✓ AuditListener registrado");
 
+        // LISTENER 3: Índices en memoria
+        // Mantiene los índices de IDs, propietarios y saldos al día cuando se crean,
+        // actualizan o eliminan cuentas
+        accountEventUseCase.addListener(
+            new AccountIndexListener(accountIdIndex, accountOwnerIndex, accountBalanceIndex));
+        log.info("   ✓ AccountIndexListener registrado");
+
         log.info("✅ Total de listeners activos: {}", accountEventUseCase.getListenerCount());
+
+        // Carga inicial de los índices (después de registrar el listener para no perder cambios)
+        accountSearchUseCase.rebuildIndexes()
+            .subscribe(
+                count -> log.info("🗂️ Índices de cuentas cargados: {} cuentas", count),
+                error -> log.error("❌ No se pudieron cargar los índices de cuentas: {}", error.getMessage())
+            );
     }
 }
@@ -0,0 +1,33 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.TransferIdempotency;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MÉTRICAS DE TRANSFERENCIAS IDEMPOTENTES
+ *
+ * transfer.idempotency.executed, transfer.idempotency.replayed y transfer.idempotency.mismatched.
+ * La memoria de claves publica las suyas como cache "idempotency" (hits, misses, evictions).
+ */
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    public MeterBinder transferIdempotencyMetrics(TransferIdempotency transferIdempotency) {
+        return registry -> {
+            FunctionCounter.builder("transfer.idempotency.executed", transferIdempotency, TransferIdempotency::executed)
+                .description("Transfers executed under a new idempotency key")
+                .register(registry);
+            FunctionCounter.builder("transfer.idempotency.replayed", transferIdempotency, TransferIdempotency::replayed)
+                .description("Duplicate transfers answered with the remembered result")
+                .register(registry);
+            FunctionCounter.builder("transfer.idempotency.mismatched", transferIdempotency,
+                    TransferIdempotency::mismatched)
+                .description("Idempotency keys reused with a different transfer")
+                .register(registry);
+        };
+    }
+}
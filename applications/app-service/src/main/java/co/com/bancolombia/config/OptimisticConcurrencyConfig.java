@@ -0,0 +1,104 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.VersionConflictRetry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * MÉTRICAS DEL CONTROL OPTIMISTA DE CONCURRENCIA
+ *
+ * - Totales: account.version.conflicts, account.version.retries, account.version.exhausted
+ *   y account.version.tracked (cuentas con estadística propia)
+ * - Cuentas calientes: cada usecase.optimistic-retry.hot-refresh-interval se publican las
+ *   usecase.optimistic-retry.hot-accounts cuentas con más conflictos como
+ *   account.version.hot.conflicts y account.version.hot.retries con el tag accountId.
+ *   Solo las top N llevan tag, así la cantidad de series no crece con las cuentas.
+ */
+@Configuration
+public class OptimisticConcurrencyConfig {
+
+    private final VersionConflictRetry versionConflictRetry;
+    private final int hotAccounts;
+    private final Duration refreshInterval;
+
+    private volatile MultiGauge hotConflicts;
+    private volatile MultiGauge hotRetries;
+    private Disposable refreshes;
+
+    public OptimisticConcurrencyConfig(
+            VersionConflictRetry versionConflictRetry,
+            @Value("${usecase.optimistic-retry.hot-accounts:10}") int hotAccounts,
+            @Value("${usecase.optimistic-retry.hot-refresh-interval:30s}") Duration refreshInterval) {
+        this.versionConflictRetry = versionConflictRetry;
+        this.hotAccounts = hotAccounts;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Bean
+    public MeterBinder optimisticConcurrencyMetrics() {
+        return this::bind;
+    }
+
+    private void bind(MeterRegistry registry) {
+        FunctionCounter.builder("account.version.conflicts", versionConflictRetry, VersionConflictRetry::conflicts)
+            .description("Account writes rejected because the account changed since it was read")
+            .register(registry);
+        FunctionCounter.builder("account.version.retries", versionConflictRetry, VersionConflictRetry::retries)
+            .description("Account writes retried after a version conflict")
+            .register(registry);
+        FunctionCounter.builder("account.version.exhausted", versionConflictRetry, VersionConflictRetry::exhausted)
+            .description("Account writes that failed after exhausting their retry attempts")
+            .register(registry);
+        Gauge.builder("account.version.tracked", versionConflictRetry, VersionConflictRetry::trackedAccounts)
+            .description("Accounts with their own conflict statistics")
+            .register(registry);
+        hotConflicts = MultiGauge.builder("account.version.hot.conflicts")
+            .description("Version conflicts of the most contended accounts")
+            .register(registry);
+        hotRetries = MultiGauge.builder("account.version.hot.retries")
+            .description("Retries of the most contended accounts")
+            .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleHotAccountRefresh() {
+        refreshes = Flux.interval(Duration.ZERO, refreshInterval, Schedulers.boundedElastic())
+            .subscribe(tick -> refreshHotAccounts());
+    }
+
+    private void refreshHotAccounts() {
+        if (hotConflicts == null) {
+            return;
+        }
+        List<VersionConflictRetry.HotAccount> hottest = versionConflictRetry.hottest(hotAccounts);
+        hotConflicts.register(hottest.stream()
+            .<MultiGauge.Row<?>>map(hot -> MultiGauge.Row.of(Tags.of("accountId", String.valueOf(hot.accountId())), hot.conflicts()))
+            .toList(), true);
+        hotRetries.register(hottest.stream()
+            .<MultiGauge.Row<?>>map(hot -> MultiGauge.Row.of(Tags.of("accountId", String.valueOf(hot.accountId())), hot.retries()))
+            .toList(), true);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopHotAccountRefresh() {
+        if (refreshes != null) {
+            refreshes.dispose();
+        }
+    }
+}
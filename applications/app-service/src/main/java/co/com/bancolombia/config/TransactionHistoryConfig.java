@@ -0,0 +1,94 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.TransactionHistoryUseCase;
+import co.com.bancolombia.usecase.account.TransactionRecorder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * CONFIGURACIÓN DEL HISTORIAL DE TRANSACCIONES EN MEMORIA
+ *
+ * - Cada usecase.transaction-history.sweep-interval llama a evictIdle(): expulsa las
+ *   cuentas inactivas y aplica el presupuesto de memoria
+ * - Publica en Micrometer (visibles en /actuator/prometheus):
+ *   history.resident.accounts, history.resident.bytes, history.evictions y history.reloads,
+ *   y del registro en segundo plano history.recorder.recorded, dropped y failed
+ */
+@Slf4j
+@Configuration
+public class TransactionHistoryConfig {
+
+    private final TransactionHistoryUseCase transactionHistoryUseCase;
+    private final Duration sweepInterval;
+
+    private Disposable sweeps;
+
+    public TransactionHistoryConfig(
+            TransactionHistoryUseCase transactionHistoryUseCase,
+            @Value("${usecase.transaction-history.sweep-interval:1m}") Duration sweepInterval) {
+        this.transactionHistoryUseCase = transactionHistoryUseCase;
+        this.sweepInterval = sweepInterval;
+    }
+
+    @Bean
+    public MeterBinder transactionHistoryMetrics(TransactionRecorder transactionRecorder) {
+        return registry -> {
+            Gauge.builder("history.resident.accounts", transactionHistoryUseCase, TransactionHistoryUseCase::residentAccounts)
+                .description("Accounts whose transaction history is held in memory")
+                .register(registry);
+            Gauge.builder("history.resident.bytes", transactionHistoryUseCase, TransactionHistoryUseCase::residentBytes)
+                .description("Estimated heap used by in-memory transaction histories")
+                .baseUnit("bytes")
+                .register(registry);
+            FunctionCounter.builder("history.evictions", transactionHistoryUseCase, TransactionHistoryUseCase::evictions)
+                .description("Account histories evicted from memory (idle or over budget)")
+                .register(registry);
+            FunctionCounter.builder("history.reloads", transactionHistoryUseCase, TransactionHistoryUseCase::reloads)
+                .description("Account histories loaded into memory from the repository or journal")
+                .register(registry);
+            FunctionCounter.builder("history.recorder.recorded", transactionRecorder, TransactionRecorder::recorded)
+                .description("Transactions added to history by the background recorder")
+                .register(registry);
+            FunctionCounter.builder("history.recorder.dropped", transactionRecorder, TransactionRecorder::dropped)
+                .description("Transactions dropped because the recorder queue was full")
+                .register(registry);
+            FunctionCounter.builder("history.recorder.failed", transactionRecorder, TransactionRecorder::failed)
+                .description("Transactions the history could not store")
+                .register(registry);
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleSweeps() {
+        sweeps = Flux.interval(sweepInterval, Schedulers.boundedElastic())
+            .concatMap(tick -> transactionHistoryUseCase.evictIdle())
+            .subscribe(
+                evicted -> {
+                    if (evicted > 0) {
+                        log.debug("Historiales expulsados de memoria: {}", evicted);
+                    }
+                },
+                error -> log.error("❌ Falló la expulsión de historiales: {}", error.getMessage())
+            );
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopSweeps() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.TransferLanes;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activa los carriles por cuenta de TransferUseCase
+ *
+ * usecase:
+ *   transfer:
+ *     lanes:
+ *       enabled: true
+ *       count: 16        # carriles (las cuentas se reparten por hash)
+ *       capacity: 1024   # tareas en cola por carril antes de rechazar
+ *       task-timeout: 5s # plazo de cada tarea antes de que el carril siga con la próxima
+ *
+ * Métricas: transfer.lane.depth (tag lane), transfer.lane.wait, transfer.lane.rejected
+ * y transfer.lane.overdue
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "usecase.transfer.lanes", name = "enabled", havingValue = "true")
+public class TransferLanesConfig {
+
+    @Bean(destroyMethod = "close")
+    public TransferLanes transferLanes(
+            @Value("${usecase.transfer.lanes.count:" + TransferLanes.DEFAULT_LANES + "}") int count,
+            @Value("${usecase.transfer.lanes.capacity:" + TransferLanes.DEFAULT_CAPACITY + "}") int capacity,
+            @Value("${usecase.transfer.lanes.task-timeout:5s}") Duration taskTimeout) {
+        return new TransferLanes(count, capacity, taskTimeout);
+    }
+
+    @Bean
+    public MeterBinder transferLanesMetrics(TransferLanes transferLanes) {
+        return registry -> {
+            for (int lane = 0; lane < transferLanes.lanes(); lane++) {
+                int index = lane;
+                Gauge.builder("transfer.lane.depth", transferLanes, lanes -> lanes.queueDepth(index))
+                    .description("Transfers waiting for their turn in the lane")
+                    .tag("lane", String.valueOf(index))
+                    .register(registry);
+            }
+            FunctionTimer.builder("transfer.lane.wait", transferLanes,
+                    TransferLanes::started, TransferLanes::totalWaitNanos, TimeUnit.NANOSECONDS)
+                .description("Time transfers waited in a lane queue before running")
+                .register(registry);
+            FunctionCounter.builder("transfer.lane.rejected", transferLanes, TransferLanes::rejected)
+                .description("Transfers rejected because their lane queue was full")
+                .register(registry);
+            FunctionCounter.builder("transfer.lane.overdue", transferLanes, TransferLanes::overdue)
+                .description("Lane tasks that exceeded their timeout; the lane moved on without cancelling them")
+                .register(registry);
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.BatchTransferUseCase;
+import co.com.bancolombia.usecase.account.TransferNettingEngine;
+import co.com.bancolombia.usecase.account.TransferUseCase;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activa la compensación (netting) de transferencias: POST /api/accounts/transfer pasa
+ * por TransferNettingEngine en vez de escribir cada transferencia por separado
+ *
+ * usecase:
+ *   transfer:
+ *     netting:
+ *       enabled: true
+ *       capacity: 8192        # transferencias en cola; si se llena se ejecutan directamente
+ *       max-window-size: 512  # transferencias por ventana
+ *       window: 5ms           # latencia máxima que se agrega a cada transferencia
+ *       settle-timeout: 5s    # plazo de cada ventana; al vencer sus transferencias quedan en conciliación
+ *
+ * Cada ventana se aplica con AccountRepository.applyBalanceChanges: el lote queda
+ * registrado antes del primer bulkWrite y, si se corta a mitad de camino, la recuperación
+ * de MongoAccountRepositoryAdapter lo termina o lo revierte (ver BalanceBatchRecoveryConfig).
+ *
+ * Métricas: transfer.netting.wait, transfer.netting.windows, transfer.netting.transfers,
+ * transfer.netting.account.writes, transfer.netting.bypassed y transfer.netting.timeouts
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "usecase.transfer.netting", name = "enabled", havingValue = "true")
+public class TransferNettingConfig {
+
+    @Bean(destroyMethod = "close")
+    public TransferNettingEngine transferNettingEngine(
+            BatchTransferUseCase batchTransferUseCase,
+            TransferUseCase transferUseCase,
+            @Value("${usecase.transfer.netting.capacity:" + TransferNettingEngine.DEFAULT_CAPACITY + "}") int capacity,
+            @Value("${usecase.transfer.netting.max-window-size:" + TransferNettingEngine.DEFAULT_MAX_WINDOW_SIZE + "}") int maxWindowSize,
+            @Value("${usecase.transfer.netting.window:5ms}") Duration window,
+            @Value("${usecase.transfer.netting.settle-timeout:5s}") Duration settleTimeout) {
+        return new TransferNettingEngine(batchTransferUseCase, transferUseCase, capacity, maxWindowSize, window,
+            settleTimeout);
+    }
+
+    @Bean
+    public MeterBinder transferNettingMetrics(TransferNettingEngine transferNettingEngine) {
+        return registry -> {
+            FunctionTimer.builder("transfer.netting.wait", transferNettingEngine,
+                    TransferNettingEngine::settled, TransferNettingEngine::totalWaitNanos, TimeUnit.NANOSECONDS)
+                .description("Time transfers waited for their netting window to close")
+                .register(registry);
+            FunctionCounter.builder("transfer.netting.windows", transferNettingEngine, TransferNettingEngine::windows)
+                .description("Netting windows settled")
+                .register(registry);
+            FunctionCounter.builder("transfer.netting.transfers", transferNettingEngine, TransferNettingEngine::settled)
+                .description("Transfers settled through a netting window")
+                .register(registry);
+            FunctionCounter.builder("transfer.netting.account.writes", transferNettingEngine,
+                    TransferNettingEngine::accountWrites)
+                .description("Account balance writes issued by netting windows")
+                .register(registry);
+            FunctionCounter.builder("transfer.netting.bypassed", transferNettingEngine, TransferNettingEngine::bypassed)
+                .description("Transfers executed directly because the netting queue was full")
+                .register(registry);
+            FunctionCounter.builder("transfer.netting.timeouts", transferNettingEngine, TransferNettingEngine::timedOut)
+                .description("Netting windows that did not settle in time; their transfers await reconciliation")
+                .register(registry);
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package co.com.bancolombia.config;
+
+import co.com.bancolombia.usecase.account.TransferUseCase;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * CONCILIACIÓN DE TRANSFERENCIAS
+ *
+ * - Cada usecase.transfer.reconciliation.interval llama a reconcileStale(): las
+ *   transferencias del libro que llevan más de stale-after sin terminar (el proceso se
+ *   cayó a mitad de camino) pasan a RECONCILE para revisión manual
+ * - Publica en Micrometer transfer.unconfirmed: transferencias pendientes de conciliación
+ *
+ * Sin libro (adapter.mongo.transfer-ledger.enabled=false) no hay nada que revisar.
+ */
+@Slf4j
+@Configuration
+public class TransferReconciliationConfig {
+
+    private final TransferUseCase transferUseCase;
+    private final Duration interval;
+    private final Duration staleAfter;
+
+    private Disposable sweeps;
+
+    public TransferReconciliationConfig(
+            TransferUseCase transferUseCase,
+            @Value("${usecase.transfer.reconciliation.interval:1m}") Duration interval,
+            @Value("${usecase.transfer.reconciliation.stale-after:5m}") Duration staleAfter) {
+        this.transferUseCase = transferUseCase;
+        this.interval = interval;
+        this.staleAfter = staleAfter;
+    }
+
+    @Bean
+    public MeterBinder transferReconciliationMetrics() {
+        return registry -> FunctionCounter.builder("transfer.unconfirmed", transferUseCase, TransferUseCase::unconfirmed)
+            .description("Transfers whose outcome could not be confirmed and need reconciliation")
+            .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleSweeps() {
+        sweeps = Flux.interval(interval, Schedulers.boundedElastic())
+            .concatMap(tick -> transferUseCase.reconcileStale(staleAfter)
+                .onErrorResume(error -> {
+                    log.error("❌ Falló la revisión de transferencias abandonadas: {}", error.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe(marked -> {
+                if (marked > 0) {
+                    log.warn("Transferencias marcadas para conciliación: {}", marked);
+                }
+            });
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopSweeps() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+    }
+}
@@ -1,14 +1,32 @@
 package co.com.bancolombia.config;
 
+import co.com.bancolombia.cache.account.CachingAccountRepository;
+import co.com.bancolombia.model.account.gateways.AccountCache;
 import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.model.account.gateways.IdempotencyCache;
+import co.com.bancolombia.model.account.gateways.IdempotencyRepository;
+import co.com.bancolombia.model.account.gateways.TransactionJournal;
+import co.com.bancolombia.model.account.gateways.TransactionRepository;
+import co.com.bancolombia.model.account.gateways.TransferLedger;
 import co.com.bancolombia.model.account.validation.ActiveAccountValidation;
 import co.com.bancolombia.model.account.validation.MinimumBalanceValidation;
 import co.com.bancolombia.model.account.validation.OwnerExistsValidation;
 import co.com.bancolombia.model.account.validation.ValidationStrategy;
+import co.com.bancolombia.mongo.account.BatchingAccountRepository;
+import co.com.bancolombia.mongo.account.MongoAccountRepositoryAdapter;
+import co.com.bancolombia.mongo.account.StripedAccountRepository;
 import co.com.bancolombia.usecase.account.*;
+import co.com.bancolombia.usecase.account.index.AccountBalanceIndex;
+import co.com.bancolombia.usecase.account.index.AccountIdIndex;
+import co.com.bancolombia.usecase.account.index.AccountOwnerIndex;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,6 +59,35 @@ import java.util.List;
 @Configuration
 public class UseCaseBeansConfig {
 
+    /**
+     * BEAN: Repositorio de cuentas con cache (PATRÓN DECORATOR)
+     *
+     * Envuelve al adapter de MongoDB con un cache write-through.
+     * Al ser @Primary, TODOS los Use Cases reciben este repositorio:
+     * - Lecturas por ID salen de memoria
+     * - save/update/delete actualizan o invalidan el cache
+     *
+     * Así nadie puede leer un saldo viejo después de una escritura.
+     *
+     * Si el micro-batching está activo (adapter.mongo.account-batching.enabled),
+     * los misses del cache pasan por BatchingAccountRepository antes de llegar a MongoDB:
+     * Cache → Batching → MongoDB
+     *
+     * Con cuentas calientes (adapter.mongo.hot-accounts.enabled), StripedAccountRepository
+     * reparte sus créditos en franjas: Cache → Franjas → Batching → MongoDB
+     */
+    @Bean
+    @Primary
+    public AccountRepository cachingAccountRepository(
+            MongoAccountRepositoryAdapter mongoAccountRepository,
+            ObjectProvider<BatchingAccountRepository> batchingAccountRepository,
+            ObjectProvider<StripedAccountRepository> stripedAccountRepository,
+            AccountCache accountCache) {
+        AccountRepository source = stripedAccountRepository.getIfAvailable(
+            () -> batchingAccountRepository.getIfAvailable(() -> mongoAccountRepository));
+        return new CachingAccountRepository(source, accountCache);
+    }
+
     /**
      * BEAN: Use Case de Gestión de Cuentas
      *
@@ -52,40 +99,186 @@ public class UseCaseBeansConfig {
      */
     @Bean
     public AccountManagementUseCase accountManagementUseCase(
-            AccountRepository accountRepository) {
-        return new AccountManagementUseCase(accountRepository);
+            AccountRepository accountRepository,
+            AccountEventUseCase accountEventUseCase,
+            AccountOwnerIndex accountOwnerIndex,
+            TransactionRecorder transactionRecorder,
+            VersionConflictRetry versionConflictRetry,
+            ObjectProvider<TransferLanes> transferLanes) {
+        return new AccountManagementUseCase(accountRepository, accountEventUseCase, accountOwnerIndex,
+            transactionRecorder, versionConflictRetry, transferLanes.getIfAvailable());
+    }
+
+    /**
+     * BEAN: Reintento ante conflictos de versión (control optimista)
+     *
+     * Compartido por los Use Cases que hacen leer → modificar → update, para que las
+     * estadísticas de cuentas calientes (conflictos y reintentos) salgan de un solo lugar.
+     */
+    @Bean
+    public VersionConflictRetry versionConflictRetry(
+            @Value("${usecase.optimistic-retry.max-attempts:" + VersionConflictRetry.DEFAULT_MAX_ATTEMPTS + "}")
+            int maxAttempts,
+            @Value("${usecase.optimistic-retry.min-backoff:5ms}") Duration minBackoff,
+            @Value("${usecase.optimistic-retry.max-backoff:200ms}") Duration maxBackoff,
+            @Value("${usecase.optimistic-retry.jitter:0.5}") double jitter,
+            @Value("${usecase.optimistic-retry.max-tracked-accounts:"
+                + VersionConflictRetry.DEFAULT_MAX_TRACKED_ACCOUNTS + "}") int maxTrackedAccounts) {
+        return new VersionConflictRetry(maxAttempts, minBackoff, maxBackoff, jitter, maxTrackedAccounts);
     }
 
     /**
      * BEAN: Use Case de Transferencias
      *
      * Implementa la lógica de transferir dinero entre cuentas.
+     *
+     * Si usecase.transfer.lanes.enabled=true (ver TransferLanesConfig), las
+     * transferencias de cada cuenta se ejecutan de a una en su carril.
+     *
+     * Si adapter.mongo.transfer-ledger.enabled=true cada transferencia queda registrada
+     * en el libro antes del débito (ver TransferReconciliationConfig).
      */
     @Bean
     public TransferUseCase transferUseCase(
-            AccountRepository accountRepository) {
-        return new TransferUseCase(accountRepository);
+            AccountRepository accountRepository,
+            AccountEventUseCase accountEventUseCase,
+            TransactionRecorder transactionRecorder,
+            ObjectProvider<TransferLanes> transferLanes,
+            ObjectProvider<TransferLedger> transferLedger) {
+        return new TransferUseCase(accountRepository, accountEventUseCase, transactionRecorder,
+            transferLanes.getIfAvailable(), transferLedger.getIfAvailable());
+    }
+
+    /**
+     * BEAN: Use Case de Lotes de Transferencias
+     *
+     * Aplica miles de transferencias (ej. nómina) con pocas operaciones en bloque.
+     */
+    @Bean
+    public BatchTransferUseCase batchTransferUseCase(
+            AccountRepository accountRepository,
+            AccountEventUseCase accountEventUseCase,
+            TransferUseCase transferUseCase) {
+        return new BatchTransferUseCase(accountRepository, accountEventUseCase, transferUseCase);
+    }
+
+    /**
+     * BEAN: Transferencias idempotentes (header Idempotency-Key)
+     *
+     * La memoria (IdempotencyCache) la provee el driven adapter local-cache. Si
+     * adapter.mongo.idempotency.enabled=true las claves también se guardan en MongoDB
+     * y sobreviven a un reinicio.
+     */
+    @Bean
+    public TransferIdempotency transferIdempotency(
+            IdempotencyCache idempotencyCache,
+            ObjectProvider<IdempotencyRepository> idempotencyRepository) {
+        return new TransferIdempotency(idempotencyCache, idempotencyRepository.getIfAvailable());
     }
 
     /**
      * BEAN: Use Case de Búsqueda
      *
      * Implementa diferentes algoritmos de búsqueda con sus complejidades.
+     * El cache (AccountCache) lo provee el driven adapter local-cache y es
+     * el mismo que usa el repositorio decorado.
      */
     @Bean
     public AccountSearchUseCase accountSearchUseCase(
-            AccountRepository accountRepository) {
-        return new AccountSearchUseCase(accountRepository);
+            AccountRepository accountRepository,
+            AccountCache accountCache,
+            AccountIdIndex accountIdIndex,
+            AccountOwnerIndex accountOwnerIndex,
+            AccountBalanceIndex accountBalanceIndex) {
+        return new AccountSearchUseCase(
+            accountRepository, accountCache, accountIdIndex, accountOwnerIndex, accountBalanceIndex);
+    }
+
+    /**
+     * BEAN: Índice ordenado de IDs (long[] primitivo)
+     *
+     * Lo comparten AccountSearchUseCase (para buscar) y AccountIndexListener
+     * (para mantenerlo al día). Se carga en EventListenersConfig al iniciar.
+     */
+    @Bean
+    public AccountIdIndex accountIdIndex() {
+        return new AccountIdIndex();
+    }
+
+    /**
+     * BEAN: Índice secundario propietario → cuentas
+     *
+     * Lo usa AccountManagementUseCase.getAccountsByOwner y lo mantiene AccountIndexListener.
+     */
+    @Bean
+    public AccountOwnerIndex accountOwnerIndex() {
+        return new AccountOwnerIndex();
+    }
+
+    /**
+     * BEAN: Índice por saldo (skip list concurrente)
+     *
+     * Lo usa AccountSearchUseCase para las búsquedas por banda de saldo.
+     */
+    @Bean
+    public AccountBalanceIndex accountBalanceIndex() {
+        return new AccountBalanceIndex();
     }
 
     /**
      * BEAN: Use Case de Historial de Transacciones
      *
-     * Usa estructura de datos Deque para mantener historial.
+     * Usa un buffer circular de tamaño fijo por cuenta.
+     * El tamaño se configura con usecase.transaction-history.max-size.
+     *
+     * Si la bitácora está activa (adapter.transaction-journal.enabled), cada
+     * transacción también se persiste y el historial se reconstruye aquí mismo,
+     * antes de que la aplicación reciba peticiones.
+     *
+     * Si el historial en MongoDB está activo (adapter.mongo.transaction-persistence.enabled),
+     * el use case queda como capa caliente delante de él: escribe en lotes y lee desde
+     * MongoDB lo que no tiene en memoria.
+     *
+     * La memoria total se limita con usecase.transaction-history.memory-budget y las
+     * cuentas sin uso en idle-timeout se expulsan (ver TransactionHistoryConfig).
+     *
+     * La precisión de las estadísticas por ventana se ajusta con stats.hour-buckets y
+     * stats.day-buckets (más cubetas = ventana más exacta, más memoria por cuenta).
+     */
+    @Bean
+    public TransactionHistoryUseCase transactionHistoryUseCase(
+            @Value("${usecase.transaction-history.max-size:" + TransactionHistoryUseCase.MAX_HISTORY_SIZE + "}")
+            int maxHistorySize,
+            @Value("${usecase.transaction-history.memory-budget:256MB}") DataSize memoryBudget,
+            @Value("${usecase.transaction-history.idle-timeout:30m}") Duration idleTimeout,
+            @Value("${usecase.transaction-history.stats.hour-buckets:" + TransactionHistoryUseCase.HOUR_BUCKETS + "}")
+            int hourBuckets,
+            @Value("${usecase.transaction-history.stats.day-buckets:" + TransactionHistoryUseCase.DAY_BUCKETS + "}")
+            int dayBuckets,
+            ObjectProvider<TransactionJournal> transactionJournal,
+            ObjectProvider<TransactionRepository> transactionRepository) {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(maxHistorySize,
+            transactionJournal.getIfAvailable(), transactionRepository.getIfAvailable(),
+            memoryBudget.toBytes(), idleTimeout, hourBuckets, dayBuckets);
+        useCase.restoreFromJournal().block();
+        return useCase;
+    }
+
+    /**
+     * BEAN: Registro del historial en segundo plano
+     *
+     * Transferencias, depósitos y retiros encolan sus movimientos aquí y siguen de
+     * largo; un hilo propio los agrega al historial en lotes. Con la cola llena los
+     * movimientos se descartan (métrica history.recorder.dropped) en vez de esperar.
+     * Al apagar, Spring llama a close() y se registra lo que quedó en la cola.
      */
     @Bean
-    public TransactionHistoryUseCase transactionHistoryUseCase() {
-        return new TransactionHistoryUseCase();
+    public TransactionRecorder transactionRecorder(
+            TransactionHistoryUseCase transactionHistoryUseCase,
+            @Value("${usecase.transaction-history.recorder.capacity:8192}") int capacity,
+            @Value("${usecase.transaction-history.recorder.max-batch-size:256}") int maxBatchSize,
+            @Value("${usecase.transaction-history.recorder.window:10ms}") Duration window) {
+        return new TransactionRecorder(transactionHistoryUseCase, capacity, maxBatchSize, window);
     }
 
     /**
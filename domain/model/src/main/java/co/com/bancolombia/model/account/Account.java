@@ -15,6 +15,7 @@ import lombok.NoArgsConstructor;
  * - id: Identificador único de la cuenta
  * - ownerId: ID del usuario dueño de la cuenta
  * - balance: Saldo actual de la cuenta
+ * - version: Versión para detectar escrituras concurrentes
  *
  * Usa anotaciones de Lombok para generar automáticamente:
  * - @Getter: Crea los métodos getId(), getOwnerId(), getBalance()
@@ -45,4 +46,11 @@ public class Account {
      * Ejemplo: 1500.50 significa $1,500.50
      */
     private Double balance;
+
+    /**
+     * Versión del documento (CONTROL OPTIMISTA DE CONCURRENCIA)
+     * Sube en 1 con cada escritura. update() solo se aplica si la versión leída sigue
+     * siendo la actual; si otro proceso escribió antes, falla con AccountVersionConflictException
+     */
+    private Long version;
 }
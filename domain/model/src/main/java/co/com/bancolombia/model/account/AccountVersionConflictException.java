@@ -0,0 +1,21 @@
+package co.com.bancolombia.model.account;
+
+import lombok.Getter;
+
+/**
+ * La cuenta cambió entre la lectura y la escritura (otra operación escribió primero).
+ * No es un error definitivo: se resuelve volviendo a leer la cuenta y reintentando.
+ */
+@Getter
+public class AccountVersionConflictException extends RuntimeException {
+
+    private final Long accountId;
+    private final Long expectedVersion;
+
+    public AccountVersionConflictException(Long accountId, Long expectedVersion) {
+        super("La cuenta " + accountId + " fue modificada por otra operación (versión esperada: "
+            + expectedVersion + ")");
+        this.accountId = accountId;
+        this.expectedVersion = expectedVersion;
+    }
+}
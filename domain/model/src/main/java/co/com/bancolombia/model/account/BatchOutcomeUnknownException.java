@@ -0,0 +1,19 @@
+package co.com.bancolombia.model.account;
+
+import lombok.Getter;
+
+/**
+ * No se pudo confirmar el resultado de un lote de cambios de saldo (applyBalanceChanges):
+ * sus débitos pudieron haberse aplicado. El lote queda registrado y la recuperación del
+ * repositorio lo termina o lo revierte; no se debe reportar como fallido ni reintentar.
+ */
+@Getter
+public class BatchOutcomeUnknownException extends RuntimeException {
+
+    private final String batchId;
+
+    public BatchOutcomeUnknownException(String batchId, Throwable cause) {
+        super("No se pudo confirmar el lote " + batchId + ", queda pendiente de conciliación", cause);
+        this.batchId = batchId;
+    }
+}
@@ -0,0 +1,39 @@
+package co.com.bancolombia.model.account;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * REGISTRO DE UNA TRANSFERENCIA EN EL LIBRO
+ *
+ * Se escribe antes de tocar los saldos y acompaña a la transferencia hasta un estado
+ * final; si el proceso se cae a mitad de camino, queda la traza de qué se alcanzó a mover.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class TransferRecord {
+
+    /** ID único de la transferencia */
+    private String transferId;
+
+    /** Cuenta que envía el dinero */
+    private Long fromAccountId;
+
+    /** Cuenta que recibe el dinero */
+    private Long toAccountId;
+
+    /** Monto a transferir */
+    private Double amount;
+
+    /** Estado actual */
+    private TransferState state;
+
+    /** Último cambio de estado */
+    private Instant updatedAt;
+}
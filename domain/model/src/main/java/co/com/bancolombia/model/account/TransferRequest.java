@@ -0,0 +1,28 @@
+package co.com.bancolombia.model.account;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * SOLICITUD DE TRANSFERENCIA
+ *
+ * Una orden dentro de un lote de transferencias (ej. una línea de la nómina).
+ * Cada solicitud recibe su propio TransferResult, en el mismo orden del lote.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransferRequest {
+
+    /** Cuenta que envía el dinero */
+    private Long fromAccountId;
+
+    /** Cuenta que recibe el dinero */
+    private Long toAccountId;
+
+    /** Monto a transferir */
+    private Double amount;
+}
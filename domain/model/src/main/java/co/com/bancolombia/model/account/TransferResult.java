@@ -43,6 +43,13 @@ public class TransferResult {
     /** Mensaje descriptivo (éxito o razón del error) */
     private String message;
 
+    /**
+     * true si falló por una causa transitoria ANTES de mover dinero (ej. la base de datos no
+     * respondió): repetir la misma transferencia puede funcionar, así que no se recuerda
+     * como respuesta definitiva de su Idempotency-Key
+     */
+    private boolean retryable;
+
     /** Fecha y hora de la transferencia */
     private LocalDateTime timestamp;
 
@@ -91,4 +98,54 @@ public class TransferResult {
             .timestamp(LocalDateTime.now())
             .build();
     }
+
+    /**
+     * MÉTODO FACTORY PARA FALLA TRANSITORIA
+     *
+     * No se movió dinero y la causa no es de la transferencia en sí (ej. error del sistema):
+     * el cliente puede reintentar con la misma Idempotency-Key.
+     *
+     * @param fromAccountId Cuenta origen
+     * @param toAccountId Cuenta destino
+     * @param amount Monto que se intentó transferir
+     * @param reason Razón por la que falló
+     * @return TransferResult indicando una falla que se puede reintentar
+     */
+    public static TransferResult retryableFailure(Long fromAccountId, Long toAccountId, Double amount, String reason) {
+        return TransferResult.builder()
+            .fromAccountId(fromAccountId)
+            .toAccountId(toAccountId)
+            .amount(amount)
+            .success(false)
+            .message(reason)
+            .retryable(true)
+            .timestamp(LocalDateTime.now())
+            .build();
+    }
+
+    /**
+     * MÉTODO FACTORY PARA TRANSFERENCIA PENDIENTE DE CONCILIACIÓN
+     *
+     * El débito pudo haberse aplicado pero no se sabe si el crédito (o la devolución)
+     * llegó a la base de datos. No se reporta como éxito, pero tampoco se debe
+     * reintentar: lleva el transferId para que se pueda rastrear en el libro.
+     *
+     * @param transferId ID de la transferencia
+     * @param fromAccountId Cuenta origen
+     * @param toAccountId Cuenta destino
+     * @param amount Monto que se intentó transferir
+     * @return TransferResult indicando que el resultado queda en conciliación
+     */
+    public static TransferResult pendingReconciliation(String transferId, Long fromAccountId,
+                                                       Long toAccountId, Double amount) {
+        return TransferResult.builder()
+            .transferId(transferId)
+            .fromAccountId(fromAccountId)
+            .toAccountId(toAccountId)
+            .amount(amount)
+            .success(false)
+            .message("Transferencia pendiente de conciliación: no se pudo confirmar el resultado, no la reintentes")
+            .timestamp(LocalDateTime.now())
+            .build();
+    }
 }
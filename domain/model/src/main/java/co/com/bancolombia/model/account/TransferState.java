@@ -0,0 +1,32 @@
+package co.com.bancolombia.model.account;
+
+/**
+ * ESTADOS DE UNA TRANSFERENCIA EN EL LIBRO (TransferLedger)
+ *
+ * Cada paso que mueve dinero se habilita cambiando el estado de forma condicional
+ * (ej. PENDING -> CREDITING): solo quien gana ese cambio puede ejecutar el paso, así
+ * un crédito o una devolución nunca se aplican dos veces.
+ */
+public enum TransferState {
+
+    /** Registrada antes del débito: el débito puede o no haberse aplicado */
+    PENDING,
+
+    /** Débito aplicado; el crédito a la cuenta destino está en curso */
+    CREDITING,
+
+    /** Débito y crédito aplicados */
+    COMPLETED,
+
+    /** El crédito falló de forma definitiva; la devolución al origen está en curso */
+    REFUNDING,
+
+    /** El débito se devolvió a la cuenta origen */
+    REFUNDED,
+
+    /** El débito no se aplicó (saldo insuficiente o cuenta inexistente) */
+    REJECTED,
+
+    /** Resultado incierto (ej. timeout después de escribir): requiere conciliación manual */
+    RECONCILE
+}
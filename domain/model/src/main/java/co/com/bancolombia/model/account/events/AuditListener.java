@@ -4,7 +4,9 @@ import co.com.bancolombia.model.account.Account;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -22,15 +24,38 @@ import java.util.List;
  * - Análisis de uso
  *
  * En producción, esto se guardaría en una base de datos especial.
+ *
+ * En memoria solo se conservan los últimos maxEntries eventos (cada transferencia
+ * publica dos): sin ese límite la lista crecería con cada escritura hasta agotar la
+ * memoria. Los eventos llegan desde varios hilos a la vez, por eso se sincroniza.
  */
 @Slf4j
 public class AuditListener implements AccountEventListener {
 
+    /** Eventos que se conservan en memoria por defecto */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
     /**
-     * Lista en memoria de eventos de auditoría
+     * Últimos eventos de auditoría (el más viejo sale al llegar al límite)
      * En producción, esto iría a una base de datos
      */
-    private final List<String> auditLog = new ArrayList<>();
+    private final Deque<String> auditLog;
+    private final int maxEntries;
+
+    public AuditListener() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries Eventos que se conservan en memoria
+     */
+    public AuditListener(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("El log de auditoría debe conservar al menos un evento");
+        }
+        this.maxEntries = maxEntries;
+        this.auditLog = new ArrayDeque<>(Math.min(maxEntries, DEFAULT_MAX_ENTRIES));
+    }
 
     /**
      * Registra la creación de una cuenta
@@ -47,7 +72,7 @@ public class AuditListener implements AccountEventListener {
         );
 
         // Guardar en el log
-        auditLog.add(entry);
+        append(entry);
         log.info("📝 AUDITORÍA: {}", entry);
     }
 
@@ -66,7 +91,7 @@ public class AuditListener implements AccountEventListener {
         );
 
         // Guardar en el log
-        auditLog.add(entry);
+        append(entry);
         log.info("📝 AUDITORÍA: {}", entry);
     }
 
@@ -83,7 +108,7 @@ public class AuditListener implements AccountEventListener {
         );
 
         // Guardar en el log
-        auditLog.add(entry);
+        append(entry);
         log.info("📝 AUDITORÍA: {}", entry);
     }
 
@@ -91,9 +116,16 @@ public class AuditListener implements AccountEventListener {
      * Obtiene todo el log de auditoría
      * Útil para reportes o investigaciones
      *
-     * @return Lista con todos los eventos registrados
+     * @return Lista con los últimos eventos registrados, del más viejo al más nuevo
      */
-    public List<String> getAuditLog() {
+    public synchronized List<String> getAuditLog() {
         return new ArrayList<>(auditLog); // Retornar copia para seguridad
     }
+
+    private synchronized void append(String entry) {
+        if (auditLog.size() == maxEntries) {
+            auditLog.removeFirst();
+        }
+        auditLog.addLast(entry);
+    }
 }
@@ -0,0 +1,49 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.Account;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Cache de cuentas en memoria.
+ *
+ * El dominio solo define el contrato; la implementación (política de expulsión,
+ * TTL, métricas) vive en un driven adapter.
+ */
+public interface AccountCache {
+
+    /**
+     * Retorna la cuenta del cache o la carga con el loader si no está.
+     * Si varias peticiones piden el mismo id mientras se carga, el loader
+     * se ejecuta una sola vez y todas reciben el mismo resultado.
+     *
+     * @param id ID de la cuenta
+     * @param loader Función que consulta la fuente original (ej: base de datos)
+     * @return Mono con la cuenta, vacío si el loader no la encuentra
+     */
+    Mono<Account> get(Long id, Function<Long, Mono<Account>> loader);
+
+    /**
+     * Versión en lote de get: retorna las cuentas que ya están en cache y
+     * carga TODAS las que faltan con una sola llamada al loader.
+     *
+     * @param ids IDs de las cuentas
+     * @param loader Función que recibe solo los IDs que no estaban en cache
+     * @return Flux con las cuentas encontradas (el orden no está garantizado)
+     */
+    Flux<Account> getAll(Collection<Long> ids, Function<Collection<Long>, Flux<Account>> loader);
+
+    /**
+     * Guarda (o reemplaza) la cuenta en el cache, salvo que ya tenga esa cuenta con una
+     * version mayor (escrituras que terminan en desorden no dejan la vieja).
+     * Se usa para mantener el cache coherente después de una escritura.
+     */
+    Mono<Void> put(Account account);
+
+    Mono<Void> invalidate(Long id);
+
+    Mono<Void> invalidateAll();
+}
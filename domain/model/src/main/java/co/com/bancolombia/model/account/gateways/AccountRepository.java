@@ -4,13 +4,50 @@ import co.com.bancolombia.model.account.Account;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface AccountRepository {
 
     Mono<Account> getAccountById(Long id);
+
+    // Lectura directa de la fuente, sin cache: para leer-modificar-escribir (la versión y el
+    // saldo son los actuales). Por defecto es getAccountById; los decoradores con cache la redefinen
+    default Mono<Account> getLatestAccountById(Long id) {
+        return getAccountById(id);
+    }
+
     Mono<Account> getAccountByOwner(Long ownerId);
 
+    // Lectura en lote: una sola consulta para varios IDs (el orden no está garantizado)
+    Flux<Account> getAccountsByIds(Collection<Long> ids);
+
+    // Las N cuentas con mayor saldo, de mayor a menor (ordenadas por la base de datos)
+    Flux<Account> findTopByBalance(int limit);
+
+    // Cuentas con saldo en [minBalance, maxBalance], de menor a mayor saldo
+    Flux<Account> findByBalanceBetween(double minBalance, double maxBalance);
+
+    // Débito condicional atómico: resta amount solo si balance >= amount, en una sola operación
+    // de la base de datos (sin leer antes). Retorna la cuenta con el saldo nuevo; vacío si no
+    // alcanza el saldo o la cuenta no existe
+    Mono<Account> debitIfSufficient(Long id, double amount);
+
+    // Crédito atómico: suma amount al saldo. Retorna la cuenta con el saldo nuevo; vacío si no existe
+    Mono<Account> credit(Long id, double amount);
+
+    // Cambios de saldo en lote: deltas netos por cuenta (negativo = débito), aplicados con pocas
+    // operaciones en bloque. Todo o nada respecto a los débitos: cada débito exige que el saldo no
+    // quede bajo MinimumBalanceValidation.MINIMUM_BALANCE (balance + delta >= piso)
+    // y si alguno no se puede aplicar se revierten los ya aplicados y retorna false (nada cambió).
+    // BatchOutcomeUnknownException: los débitos pudieron haberse aplicado y el repositorio terminará
+    // o revertirá el lote por su cuenta. Cualquier otro error: no se aplicó nada
+    Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas);
+
     // Operaciones CRUD completas
     Mono<Account> save(Account account);
+    // Actualización condicional: solo se aplica si account.version es la versión actual.
+    // Falla con AccountVersionConflictException si otro escribió antes; vacío si no existe
     Mono<Account> update(Account account);
     Mono<Void> delete(Long id);
     Flux<Account> findAll();
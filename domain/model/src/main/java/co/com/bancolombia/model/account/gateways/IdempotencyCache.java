@@ -0,0 +1,27 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.TransferResult;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Memoria acotada de resultados por Idempotency-Key.
+ *
+ * El dominio solo define el contrato; la implementación (tamaño máximo, TTL,
+ * métricas) vive en un driven adapter.
+ */
+public interface IdempotencyCache {
+
+    /**
+     * Retorna el resultado recordado para la clave o lo obtiene con el loader.
+     * Si varias peticiones llegan con la misma clave mientras el loader corre, el
+     * loader se ejecuta UNA sola vez y todas reciben el mismo resultado. Un loader
+     * que falla no se recuerda (la siguiente petición lo vuelve a ejecutar).
+     *
+     * @param key Idempotency-Key
+     * @param loader Busca el resultado en el almacén persistente o ejecuta la transferencia
+     * @return Mono con el resultado de la primera ejecución
+     */
+    Mono<TransferResult> get(String key, Supplier<Mono<TransferResult>> loader);
+}
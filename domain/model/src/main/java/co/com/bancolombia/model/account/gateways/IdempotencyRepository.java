@@ -0,0 +1,51 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.TransferResult;
+import reactor.core.publisher.Mono;
+
+/**
+ * Almacén durable de resultados por Idempotency-Key: la deduplicación sobrevive
+ * a un reinicio y se comparte entre instancias. Las claves expiran solas (TTL).
+ *
+ * Una clave pasa por dos estados: reservada (la transferencia está en curso en alguna
+ * instancia) y terminada (tiene su resultado definitivo).
+ */
+public interface IdempotencyRepository {
+
+    /**
+     * Reserva la clave ANTES de ejecutar la transferencia. Solo una instancia puede
+     * reservarla: las demás deben esperar el resultado con find.
+     *
+     * @param key Idempotency-Key
+     * @param fromAccountId Cuenta origen
+     * @param toAccountId Cuenta destino
+     * @param amount Monto
+     * @return true si la clave quedó reservada aquí, false si ya existía (en curso o terminada)
+     */
+    Mono<Boolean> reserve(String key, Long fromAccountId, Long toAccountId, Double amount);
+
+    /**
+     * @param key Idempotency-Key
+     * @return El resultado definitivo, vacío si la clave no existe, expiró o sigue en curso
+     */
+    Mono<TransferResult> find(String key);
+
+    /**
+     * Guarda el resultado definitivo de una clave reservada. Si la clave ya tiene un
+     * resultado se conserva el que estaba.
+     *
+     * @param key Idempotency-Key
+     * @param result Resultado a recordar
+     * @return Mono que completa cuando el resultado quedó guardado
+     */
+    Mono<Void> save(String key, TransferResult result);
+
+    /**
+     * Libera una reserva sin resultado (la transferencia no movió dinero y se puede
+     * reintentar). No toca una clave que ya tiene resultado.
+     *
+     * @param key Idempotency-Key
+     * @return Mono que completa cuando la reserva se borró
+     */
+    Mono<Void> release(String key);
+}
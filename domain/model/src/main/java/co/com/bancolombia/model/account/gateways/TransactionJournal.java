@@ -0,0 +1,49 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.Transaction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bitácora (journal) persistente del historial de transacciones.
+ *
+ * El dominio solo define el contrato; el formato en disco, la rotación de
+ * archivos y la retención viven en un driven adapter.
+ */
+public interface TransactionJournal {
+
+    /**
+     * Agrega la transacción al final de la bitácora.
+     *
+     * @param transaction Transacción a guardar (debe tener accountId)
+     * @return Mono que completa cuando la transacción quedó escrita
+     */
+    Mono<Void> append(Transaction transaction);
+
+    /**
+     * Las últimas transacciones guardadas de cada cuenta, para reconstruir el
+     * historial en memoria al arrancar.
+     *
+     * @param perAccount Máximo de transacciones por cuenta
+     * @return Flux agrupado por cuenta; dentro de cada cuenta, de la más antigua a la más reciente
+     */
+    Flux<Transaction> recent(int perAccount);
+
+    /**
+     * Las últimas transacciones guardadas de una cuenta, para volver a cargar su
+     * historial en memoria cuando se pide después de haberlo expulsado.
+     *
+     * @param accountId ID de la cuenta
+     * @param limit Máximo de transacciones
+     * @return Flux de la más antigua a la más reciente (vacío si la cuenta no tiene)
+     */
+    Flux<Transaction> recent(Long accountId, int limit);
+
+    /**
+     * Olvida el historial de una cuenta: recent() deja de devolverlo.
+     *
+     * @param accountId ID de la cuenta
+     * @return Mono que completa al terminar
+     */
+    Mono<Void> forget(Long accountId);
+}
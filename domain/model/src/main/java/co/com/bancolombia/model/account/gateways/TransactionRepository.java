@@ -0,0 +1,54 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.Transaction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Almacén durable y compartido entre instancias del historial de transacciones.
+ *
+ * El dominio solo define el contrato; cómo se agrupan las escrituras (lotes,
+ * ventana de tiempo, backpressure) lo decide el driven adapter.
+ */
+public interface TransactionRepository {
+
+    /**
+     * Guarda la transacción. El adapter puede acumularla con otras y escribirlas juntas.
+     *
+     * @param transaction Transacción a guardar (debe tener accountId)
+     * @return Mono que completa cuando la transacción quedó guardada
+     */
+    Mono<Void> save(Transaction transaction);
+
+    /**
+     * Las últimas transacciones de una cuenta.
+     *
+     * @param accountId ID de la cuenta
+     * @param limit Máximo de transacciones
+     * @return Flux de la más reciente a la más antigua
+     */
+    Flux<Transaction> findLatestByAccountId(Long accountId, int limit);
+
+    /**
+     * Las transacciones de una cuenta con fecha en [from, to).
+     *
+     * El adapter puede acotar la cantidad devuelta: sin from, se quedan las más
+     * recientes del rango.
+     *
+     * @param accountId ID de la cuenta
+     * @param from Desde (inclusive); null = sin límite
+     * @param to Hasta (exclusivo); null = sin límite
+     * @return Flux de la más antigua a la más reciente
+     */
+    Flux<Transaction> findByAccountIdBetween(Long accountId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Borra todas las transacciones de una cuenta.
+     *
+     * @param accountId ID de la cuenta
+     * @return Mono que completa cuando quedaron borradas
+     */
+    Mono<Void> deleteByAccountId(Long accountId);
+}
@@ -0,0 +1,40 @@
+package co.com.bancolombia.model.account.gateways;
+
+import co.com.bancolombia.model.account.TransferRecord;
+import co.com.bancolombia.model.account.TransferState;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Libro de transferencias: un registro por transferId con su estado.
+ * Los cambios de estado son condicionales (compare-and-set), así cada paso que mueve
+ * dinero lo ejecuta a lo sumo un actor.
+ */
+public interface TransferLedger {
+
+    /**
+     * Registra la transferencia (normalmente en PENDING) antes de mover dinero
+     *
+     * @param record Transferencia a registrar
+     * @return Mono que completa cuando el registro quedó guardado
+     */
+    Mono<Void> open(TransferRecord record);
+
+    /**
+     * Cambia el estado solo si sigue siendo el esperado
+     *
+     * @param transferId ID de la transferencia
+     * @param expected Estado en el que debe estar
+     * @param next Estado nuevo
+     * @return true si el cambio se aplicó, false si el registro ya estaba en otro estado
+     */
+    Mono<Boolean> advance(String transferId, TransferState expected, TransferState next);
+
+    /**
+     * @param olderThan Límite: registros sin cambios desde antes de este instante
+     * @return Transferencias que siguen en PENDING, CREDITING o REFUNDING
+     */
+    Flux<TransferRecord> findUnfinished(Instant olderThan);
+}
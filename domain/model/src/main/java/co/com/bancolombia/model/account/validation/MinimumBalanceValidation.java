@@ -21,8 +21,11 @@ import reactor.core.publisher.Mono;
  */
 public class MinimumBalanceValidation implements ValidationStrategy {
 
-    /** Saldo mínimo permitido en una cuenta */
-    private static final double MINIMUM_BALANCE = 0.0;
+    /**
+     * Saldo mínimo permitido en una cuenta. Público para que las escrituras que no pasan por
+     * validate (débitos en lote, compensación neta) apliquen el mismo piso
+     */
+    public static final double MINIMUM_BALANCE = 0.0;
 
     /**
      * Valida que la cuenta tenga saldo >= 0
@@ -0,0 +1,254 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.model.account.validation.MinimumBalanceValidation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transferencias concurrentes sobre pocas cuentas "calientes": leer ambas cuentas y
+ * guardar los saldos nuevos (read-modify-write, 4 viajes) contra el débito condicional
+ * + crédito atómico de TransferUseCase (2 viajes).
+ *
+ * Cada viaje a la base de datos se simula con una pausa de roundTripMicros. Al terminar
+ * cada trial imprime la corrección: cuánto dinero apareció o desapareció (actualizaciones
+ * perdidas) y cuántas cuentas quedaron en negativo. Con el débito condicional ambos deben
+ * ser 0; con read-modify-write no lo son en cuanto hay contención.
+ *
+ * ./gradlew :usecase:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class TransferContentionBenchmark {
+
+    private static final double INITIAL_BALANCE = 1_000.0;
+    private static final double AMOUNT = 10.0;
+
+    @Param({"4", "64"})
+    private int accounts;
+
+    @Param({"0", "50"})
+    private long roundTripMicros;
+
+    private InMemoryAccountRepository repository;
+    private TransferUseCase transferUseCase;
+    private TransactionRecorder recorder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new InMemoryAccountRepository(roundTripMicros * 1_000);
+        for (long id = 1; id <= accounts; id++) {
+            repository.balances.put(id, INITIAL_BALANCE);
+        }
+        recorder = new TransactionRecorder(new TransactionHistoryUseCase(100), 8192, 256, Duration.ofMillis(10));
+        transferUseCase = new TransferUseCase(repository, new AccountEventUseCase(), recorder);
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        recorder.close();
+        double total = repository.balances.values().stream().mapToDouble(Double::doubleValue).sum();
+        long negative = repository.balances.values().stream().filter(balance -> balance < 0).count();
+        System.out.printf("%n[accounts=%d, roundTripMicros=%d] descuadre total: %.2f, cuentas en negativo: %d%n",
+            accounts, roundTripMicros, total - accounts * INITIAL_BALANCE, negative);
+    }
+
+    @Benchmark
+    public boolean readModifyWrite() {
+        long[] pair = randomPair();
+        Account from = repository.getAccountById(pair[0]).block();
+        Account to = repository.getAccountById(pair[1]).block();
+        if (from.getBalance() < AMOUNT) {
+            return false;
+        }
+        repository.update(from.toBuilder().balance(from.getBalance() - AMOUNT).build()).block();
+        repository.update(to.toBuilder().balance(to.getBalance() + AMOUNT).build()).block();
+        return true;
+    }
+
+    @Benchmark
+    public boolean conditionalUpdate() {
+        long[] pair = randomPair();
+        TransferResult result = transferUseCase.transfer(pair[0], pair[1], AMOUNT).block();
+        return result.isSuccess();
+    }
+
+    private long[] randomPair() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(1, accounts + 1);
+        long to = (from - 1 + random.nextLong(1, accounts)) % accounts + 1;
+        return new long[]{from, to};
+    }
+
+    /**
+     * Saldos en un ConcurrentHashMap. get/update son operaciones separadas (como un
+     * findById y un save); debit/credit son atómicas por cuenta (como un findAndModify).
+     * writes cuenta las escrituras de documentos de cuenta (un lote suma una por cuenta).
+     */
+    static final class InMemoryAccountRepository implements AccountRepository {
+
+        final Map<Long, Double> balances = new ConcurrentHashMap<>();
+        final LongAdder writes = new LongAdder();
+        private final long roundTripNanos;
+
+        InMemoryAccountRepository(long roundTripNanos) {
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        private void roundTrip() {
+            if (roundTripNanos > 0) {
+                LockSupport.parkNanos(roundTripNanos);
+            }
+        }
+
+        private static Account account(Long id, Double balance) {
+            return balance == null ? null : Account.builder().id(id).ownerId(id).balance(balance).build();
+        }
+
+        @Override
+        public Mono<Account> getAccountById(Long id) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                return account(id, balances.get(id));
+            });
+        }
+
+        @Override
+        public Mono<Account> update(Account account) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                writes.increment();
+                balances.put(account.getId(), account.getBalance());
+                return account;
+            });
+        }
+
+        @Override
+        public Mono<Account> debitIfSufficient(Long id, double amount) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                writes.increment();
+                boolean[] debited = new boolean[1];
+                Double balance = balances.computeIfPresent(id, (key, current) -> {
+                    debited[0] = current >= amount;
+                    return debited[0] ? current - amount : current;
+                });
+                return debited[0] ? account(id, balance) : null;
+            });
+        }
+
+        @Override
+        public Mono<Account> credit(Long id, double amount) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                writes.increment();
+                return account(id, balances.computeIfPresent(id, (key, current) -> current + amount));
+            });
+        }
+
+        @Override
+        public Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                // Todo o nada, como el bulkWrite con reversión del adaptador de Mongo
+                synchronized (this) {
+                    boolean fits = deltas.entrySet().stream().allMatch(delta -> {
+                        Double balance = balances.get(delta.getKey());
+                        return balance != null && balance + delta.getValue() >= MinimumBalanceValidation.MINIMUM_BALANCE;
+                    });
+                    if (fits) {
+                        deltas.forEach((id, delta) -> balances.merge(id, delta, Double::sum));
+                        writes.add(deltas.size());
+                    }
+                    return fits;
+                }
+            });
+        }
+
+        // Cada cuenta es de un dueño con su mismo id (ver account)
+        @Override
+        public Mono<Account> getAccountByOwner(Long ownerId) {
+            return getAccountById(ownerId);
+        }
+
+        @Override
+        public Flux<Account> getAccountsByIds(Collection<Long> ids) {
+            return Mono.fromRunnable(this::roundTrip)
+                .thenMany(Flux.fromIterable(ids))
+                .mapNotNull(id -> account(id, balances.get(id)));
+        }
+
+        @Override
+        public Flux<Account> findTopByBalance(int limit) {
+            return findAll()
+                .sort(Comparator.comparing(Account::getBalance).reversed())
+                .take(limit);
+        }
+
+        @Override
+        public Flux<Account> findByBalanceBetween(double minBalance, double maxBalance) {
+            return findAll()
+                .filter(account -> account.getBalance() >= minBalance && account.getBalance() <= maxBalance)
+                .sort(Comparator.comparing(Account::getBalance));
+        }
+
+        @Override
+        public Mono<Account> save(Account account) {
+            return update(account);
+        }
+
+        @Override
+        public Mono<Void> delete(Long id) {
+            return Mono.fromRunnable(() -> {
+                roundTrip();
+                writes.increment();
+                balances.remove(id);
+            });
+        }
+
+        @Override
+        public Flux<Account> findAll() {
+            return Mono.fromRunnable(this::roundTrip)
+                .thenMany(Flux.fromIterable(balances.entrySet()))
+                .map(entry -> account(entry.getKey(), entry.getValue()));
+        }
+
+        @Override
+        public Flux<Account> findByOwnerId(Long ownerId) {
+            return getAccountByOwner(ownerId).flux();
+        }
+
+        @Override
+        public Mono<Boolean> exists(Long id) {
+            return Mono.fromCallable(() -> {
+                roundTrip();
+                return balances.containsKey(id);
+            });
+        }
+    }
+}
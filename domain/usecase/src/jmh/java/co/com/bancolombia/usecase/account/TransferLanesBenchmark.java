@@ -0,0 +1,95 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.TransferResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransferUseCase sin carriles (todas las transferencias a la vez) contra TransferUseCase
+ * con TransferLanes, sobre pocas cuentas "calientes" (un comercio recibe la mitad de las
+ * transferencias) y sobre muchas cuentas.
+ *
+ * Usa el repositorio en memoria de TransferContentionBenchmark: cada viaje a la base de
+ * datos se simula con una pausa de roundTripMicros. Al terminar cada trial imprime la
+ * espera promedio en los carriles.
+ *
+ * ./gradlew :usecase:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class TransferLanesBenchmark {
+
+    private static final double INITIAL_BALANCE = 1_000_000.0;
+    private static final double AMOUNT = 1.0;
+    private static final long MERCHANT = 1L;
+
+    @Param({"8", "1024"})
+    private int accounts;
+
+    @Param({"0", "50"})
+    private long roundTripMicros;
+
+    private TransferContentionBenchmark.InMemoryAccountRepository repository;
+    private TransactionRecorder recorder;
+    private TransferLanes lanes;
+    private TransferUseCase freeForAll;
+    private TransferUseCase laned;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new TransferContentionBenchmark.InMemoryAccountRepository(roundTripMicros * 1_000);
+        for (long id = 1; id <= accounts; id++) {
+            repository.balances.put(id, INITIAL_BALANCE);
+        }
+        recorder = new TransactionRecorder(new TransactionHistoryUseCase(100), 8192, 256, Duration.ofMillis(10));
+        lanes = new TransferLanes(TransferLanes.DEFAULT_LANES, TransferLanes.DEFAULT_CAPACITY);
+        AccountEventUseCase events = new AccountEventUseCase();
+        freeForAll = new TransferUseCase(repository, events, recorder);
+        laned = new TransferUseCase(repository, events, recorder, lanes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long started = lanes.started();
+        if (started > 0) {
+            System.out.printf("%n[accounts=%d, roundTripMicros=%d] espera promedio en carril: %.1f µs, rechazadas: %d%n",
+                accounts, roundTripMicros, lanes.totalWaitNanos() / 1_000.0 / started, lanes.rejected());
+        }
+        lanes.close();
+        recorder.close();
+    }
+
+    @Benchmark
+    public boolean freeForAll() {
+        return transfer(freeForAll);
+    }
+
+    @Benchmark
+    public boolean lanes() {
+        return transfer(laned);
+    }
+
+    /** La mitad de las transferencias van al comercio; el resto entre cuentas al azar */
+    private boolean transfer(TransferUseCase useCase) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(2, accounts + 1);
+        long to = random.nextBoolean() ? MERCHANT : (from - 1 + random.nextLong(1, accounts)) % accounts + 1;
+        TransferResult result = useCase.transfer(from, to, AMOUNT).block();
+        return result.isSuccess();
+    }
+}
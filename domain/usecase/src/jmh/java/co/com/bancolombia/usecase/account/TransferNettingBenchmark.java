@@ -0,0 +1,111 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.TransferResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micro-transferencias entre pocas cuentas: cada una escrita por separado con
+ * TransferUseCase (débito + crédito) contra TransferNettingEngine, que las junta en
+ * ventanas y escribe una vez cada cuenta con saldo neto distinto de 0.
+ *
+ * Mode.SampleTime: el resultado es la LATENCIA de cada transferencia (percentiles), que
+ * con compensación incluye la espera de la ventana. Al terminar cada trial imprime las
+ * escrituras de cuenta por transferencia: 2 sin compensar; menos cuanto más transferencias
+ * caen en la misma ventana sobre las mismas cuentas (64 hilos, accounts cuentas).
+ *
+ * Usa el repositorio en memoria de TransferContentionBenchmark: cada viaje a la base de
+ * datos se simula con una pausa de roundTripMicros.
+ *
+ * ./gradlew :usecase:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+public class TransferNettingBenchmark {
+
+    private static final double INITIAL_BALANCE = 1_000_000.0;
+    private static final double AMOUNT = 1.0;
+
+    @Param({"16", "256"})
+    private int accounts;
+
+    @Param({"50"})
+    private long roundTripMicros;
+
+    @Param({"1", "5"})
+    private long windowMillis;
+
+    private TransferContentionBenchmark.InMemoryAccountRepository repository;
+    private TransactionRecorder recorder;
+    private TransferUseCase transferUseCase;
+    private TransferNettingEngine engine;
+    private final LongAdder transfers = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new TransferContentionBenchmark.InMemoryAccountRepository(roundTripMicros * 1_000);
+        for (long id = 1; id <= accounts; id++) {
+            repository.balances.put(id, INITIAL_BALANCE);
+        }
+        recorder = new TransactionRecorder(new TransactionHistoryUseCase(100), 8192, 256, Duration.ofMillis(10));
+        AccountEventUseCase events = new AccountEventUseCase();
+        transferUseCase = new TransferUseCase(repository, events, recorder);
+        engine = new TransferNettingEngine(new BatchTransferUseCase(repository, events, transferUseCase),
+            transferUseCase, TransferNettingEngine.DEFAULT_CAPACITY, TransferNettingEngine.DEFAULT_MAX_WINDOW_SIZE,
+            Duration.ofMillis(windowMillis));
+        transfers.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        recorder.close();
+        long done = transfers.sum();
+        if (done > 0) {
+            System.out.printf("%n[accounts=%d, windowMillis=%d] escrituras por transferencia: %.3f"
+                    + " (ventanas: %d, transferencias por ventana: %.1f)%n",
+                accounts, windowMillis, (double) repository.writes.sum() / done,
+                engine.windows(), engine.windows() == 0 ? 0.0 : (double) engine.settled() / engine.windows());
+        }
+    }
+
+    @Benchmark
+    public boolean direct() {
+        long[] pair = randomPair();
+        return record(transferUseCase.transfer(pair[0], pair[1], AMOUNT).block());
+    }
+
+    @Benchmark
+    public boolean netted() {
+        long[] pair = randomPair();
+        return record(engine.submit(pair[0], pair[1], AMOUNT).block());
+    }
+
+    private boolean record(TransferResult result) {
+        transfers.increment();
+        return result.isSuccess();
+    }
+
+    private long[] randomPair() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(1, accounts + 1);
+        long to = (from - 1 + random.nextLong(1, accounts)) % accounts + 1;
+        return new long[]{from, to};
+    }
+}
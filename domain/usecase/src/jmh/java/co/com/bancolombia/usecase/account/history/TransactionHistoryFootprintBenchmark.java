@@ -0,0 +1,148 @@
+package co.com.bancolombia.usecase.account.history;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el historial anterior (LinkedList<Transaction> por cuenta) contra el
+ * TransactionRingBuffer en columnas.
+ *
+ * Al preparar cada trial imprime el heap retenido por transacción de ambos
+ * formatos; los benchmarks miden agregar y leer las últimas 10. Con -prof gc se
+ * ve además cuánto asigna cada operación (gc.alloc.rate.norm).
+ *
+ * ./gradlew :usecase:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionHistoryFootprintBenchmark {
+
+    private static final int HISTORY_SIZE = 100;
+    private static final String[] DESCRIPTIONS = {
+        "Transferencia recibida", "Transferencia enviada", "Retiro en cajero", "Depósito en sucursal"
+    };
+
+    @Param({"10000"})
+    private int accounts;
+
+    private Map<Long, LinkedList<Transaction>> legacy;
+    private Map<Long, TransactionRingBuffer> columnar;
+    private Transaction[] samples;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        samples = new Transaction[1024];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = transaction(i % accounts, i);
+        }
+
+        long base = usedHeap();
+        legacy = new HashMap<>();
+        for (long account = 0; account < accounts; account++) {
+            LinkedList<Transaction> history = new LinkedList<>();
+            for (int n = 0; n < HISTORY_SIZE; n++) {
+                history.addLast(transaction(account, n));
+            }
+            legacy.put(account, history);
+        }
+        long legacyBytes = usedHeap() - base;
+
+        base = usedHeap();
+        DescriptionDictionary dictionary = new DescriptionDictionary(65_536);
+        columnar = new HashMap<>();
+        for (long account = 0; account < accounts; account++) {
+            TransactionRingBuffer buffer = new TransactionRingBuffer(account, HISTORY_SIZE, dictionary);
+            for (int n = 0; n < HISTORY_SIZE; n++) {
+                buffer.append(transaction(account, n));
+            }
+            columnar.put(account, buffer);
+        }
+        long columnarBytes = usedHeap() - base;
+
+        double total = (double) accounts * HISTORY_SIZE;
+        System.out.printf("%n[footprint] LinkedList<Transaction>: %.1f bytes/tx, columnas: %.1f bytes/tx%n",
+            legacyBytes / total, columnarBytes / total);
+    }
+
+    private static Transaction transaction(long accountId, int n) {
+        return Transaction.builder()
+            .id(UUID.randomUUID().toString())
+            .accountId(accountId)
+            .amount(n * 1.25)
+            .type(TransactionType.values()[n % TransactionType.values().length])
+            .timestamp(LocalDateTime.now())
+            .description(DESCRIPTIONS[n % DESCRIPTIONS.length])
+            .build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Transaction nextSample() {
+        cursor = (cursor + 1) & (samples.length - 1);
+        return samples[cursor];
+    }
+
+    @Benchmark
+    public void legacyAppend() {
+        Transaction transaction = nextSample();
+        LinkedList<Transaction> history = legacy.get(transaction.getAccountId());
+        synchronized (history) {
+            history.addLast(transaction);
+            if (history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+        }
+    }
+
+    @Benchmark
+    public void columnarAppend() {
+        Transaction transaction = nextSample();
+        columnar.get(transaction.getAccountId()).append(transaction);
+    }
+
+    @Benchmark
+    public void legacyLatest(Blackhole blackhole) {
+        LinkedList<Transaction> history = legacy.get(nextSample().getAccountId());
+        List<Transaction> latest = new ArrayList<>(10);
+        synchronized (history) {
+            Iterator<Transaction> it = history.descendingIterator();
+            for (int i = 0; i < 10 && it.hasNext(); i++) {
+                latest.add(it.next());
+            }
+        }
+        blackhole.consume(latest);
+    }
+
+    @Benchmark
+    public void columnarLatest(Blackhole blackhole) {
+        columnar.get(nextSample().getAccountId()).latest(10).subscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,94 @@
+package co.com.bancolombia.usecase.account.index;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.usecase.account.AccountSearchUseCase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la búsqueda binaria sobre List<Account> (binarySearchById) contra el
+ * índice primitivo AccountIdIndex.
+ *
+ * ./gradlew :usecase:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@SuppressWarnings("deprecation")
+public class AccountIdIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private List<Account> sortedAccounts;
+    private AccountIdIndex index;
+    private AccountSearchUseCase searchUseCase;
+    private long[] probes;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sortedAccounts = new ArrayList<>(size);
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            long id = i * 2L + 1; // solo impares: la mitad de las búsquedas no encuentra nada
+            ids[i] = id;
+            sortedAccounts.add(Account.builder().id(id).ownerId(1L).balance(0.0).build());
+        }
+        index = new AccountIdIndex();
+        index.rebuild(ids);
+        searchUseCase = new AccountSearchUseCase(null, null, index, new AccountOwnerIndex(), new AccountBalanceIndex());
+
+        SplittableRandom random = new SplittableRandom(42);
+        probes = new long[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextLong(size * 2L);
+        }
+    }
+
+    private long nextProbe() {
+        cursor = (cursor + 1) & (probes.length - 1);
+        return probes[cursor];
+    }
+
+    @Benchmark
+    public Account listBinarySearch() {
+        return searchUseCase.binarySearchById(sortedAccounts, nextProbe()).block();
+    }
+
+    @Benchmark
+    public boolean indexContains() {
+        return index.contains(nextProbe());
+    }
+
+    @Benchmark
+    public int listRangeScan() {
+        long from = nextProbe();
+        long to = from + 1000;
+        int count = 0;
+        for (Account account : sortedAccounts) {
+            if (account.getId() >= from && account.getId() <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long[] indexRange() {
+        long from = nextProbe();
+        return index.range(from, from + 1000);
+    }
+}
@@ -4,8 +4,8 @@ import co.com.bancolombia.model.account.Account;
 import co.com.bancolombia.model.account.events.AccountEventListener;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * USE CASE: GESTIÓN DE EVENTOS DE CUENTA
@@ -34,8 +34,11 @@ public class AccountEventUseCase {
     /**
      * Lista de observadores (listeners) registrados
      * Todos ellos serán notificados cuando ocurra un evento
+     *
+     * CopyOnWriteArrayList: los eventos se publican desde muchos hilos a la vez
+     * y los listeners casi nunca cambian, así que leer sin bloqueos es lo ideal
      */
-    private final List<AccountEventListener> listeners = new ArrayList<>();
+    private final List<AccountEventListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * REGISTRAR UN NUEVO LISTENER
@@ -1,12 +1,19 @@
 package co.com.bancolombia.usecase.account;
 
 import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
 import co.com.bancolombia.model.account.gateways.AccountRepository;
-import lombok.RequiredArgsConstructor;
+import co.com.bancolombia.usecase.account.index.AccountOwnerIndex;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * USE CASE: GESTIÓN DE CUENTAS (CRUD)
  *
@@ -23,14 +30,59 @@ import reactor.core.publisher.Mono;
  * Este caso de uso NO sabe cómo se guardan las cuentas (MongoDB, SQL, etc.)
  * Solo usa la interfaz AccountRepository.
  * Eso es INVERSIÓN DE DEPENDENCIAS (la D de SOLID).
+ *
+ * PATRÓN OBSERVER:
+ * Después de crear, actualizar o eliminar, publica el evento en AccountEventUseCase.
+ * Así los listeners (notificaciones, auditoría, índices en memoria) se enteran
+ * sin que este Use Case los conozca.
+ *
+ * MODO CARRILES (opcional): con TransferLanes, updateBalance se ejecuta en el carril de
+ * su cuenta, en orden con las transferencias que tocan esa misma cuenta.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class AccountManagementUseCase {
 
     // Dependencia: Repositorio de cuentas (abstracción)
     private final AccountRepository accountRepository;
 
+    // Dependencia: Publicador de eventos de cuenta (PATRÓN OBSERVER)
+    private final AccountEventUseCase accountEventUseCase;
+
+    // Dependencia: Índice en memoria propietario → cuentas
+    private final AccountOwnerIndex ownerIndex;
+
+    // Dependencia: Registro del historial en segundo plano
+    private final TransactionRecorder transactionRecorder;
+
+    // Dependencia: Reintento ante conflictos de versión (control optimista)
+    private final VersionConflictRetry versionConflictRetry;
+
+    // Carriles por cuenta (null = las actualizaciones corren a la vez)
+    private final TransferLanes transferLanes;
+
+    /** Máximo de IDs que se aceptan en una consulta en lote */
+    private static final int MAX_BATCH_IDS = 100;
+
+    public AccountManagementUseCase(AccountRepository accountRepository, AccountEventUseCase accountEventUseCase,
+                                    AccountOwnerIndex ownerIndex, TransactionRecorder transactionRecorder,
+                                    VersionConflictRetry versionConflictRetry) {
+        this(accountRepository, accountEventUseCase, ownerIndex, transactionRecorder, versionConflictRetry, null);
+    }
+
+    /**
+     * @param transferLanes Carriles por cuenta; null para actualizar saldos sin serializar
+     */
+    public AccountManagementUseCase(AccountRepository accountRepository, AccountEventUseCase accountEventUseCase,
+                                    AccountOwnerIndex ownerIndex, TransactionRecorder transactionRecorder,
+                                    VersionConflictRetry versionConflictRetry, TransferLanes transferLanes) {
+        this.accountRepository = accountRepository;
+        this.accountEventUseCase = accountEventUseCase;
+        this.ownerIndex = ownerIndex;
+        this.transactionRecorder = transactionRecorder;
+        this.versionConflictRetry = versionConflictRetry;
+        this.transferLanes = transferLanes;
+    }
+
     /**
      * CREAR UNA NUEVA CUENTA
      *
@@ -58,8 +110,9 @@ public class AccountManagementUseCase {
             ));
         }
 
-        // Guardar la cuenta en el repositorio
+        // Guardar la cuenta en el repositorio y avisar a los listeners
         return accountRepository.save(account)
+            .flatMap(saved -> accountEventUseCase.notifyAccountCreated(saved).thenReturn(saved))
             .doOnSuccess(saved ->
                 log.info("✅ Cuenta creada exitosamente con ID: {}", saved.getId())
             )
@@ -89,19 +142,68 @@ public class AccountManagementUseCase {
             );
     }
 
+    /**
+     * OBTENER VARIAS CUENTAS POR ID (LECTURA EN LOTE)
+     *
+     * En vez de hacer N consultas (una por cuenta), hace UNA sola consulta
+     * con todos los IDs. Las cuentas que ya están en cache no van a la BD.
+     *
+     * Ejemplo: un dashboard con 50 cuentas
+     * - Antes: 50 round trips a MongoDB
+     * - Ahora: 1 round trip (solo con los IDs que no estaban en cache)
+     *
+     * Los IDs repetidos se ignoran y los que no existen simplemente no aparecen.
+     *
+     * @param ids IDs de las cuentas (máximo 100)
+     * @return Flux con las cuentas encontradas
+     */
+    public Flux<Account> getAccountsByIds(List<Long> ids) {
+        log.info("🔍 Buscando {} cuentas en lote", ids.size());
+
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+
+        if (ids.size() > MAX_BATCH_IDS) {
+            return Flux.error(new IllegalArgumentException(
+                "No se pueden consultar más de " + MAX_BATCH_IDS + " cuentas a la vez"
+            ));
+        }
+
+        return accountRepository.getAccountsByIds(new LinkedHashSet<>(ids));
+    }
+
     /**
      * OBTENER TODAS LAS CUENTAS DE UN USUARIO
      *
      * Lista todas las cuentas que pertenecen a un propietario.
      * Un usuario puede tener múltiples cuentas.
      *
+     * ¿Cómo se resuelve?
+     * 1. El índice de propietarios (AccountOwnerIndex) da los IDs en O(1), sin ir a MongoDB
+     * 2. Las cuentas se traen por ID en lote (salen del cache; solo los misses van a la BD)
+     * 3. Si el usuario no tiene cuentas, responde vacío sin ninguna consulta
+     *
+     * Mientras el índice no se ha cargado (arranque en frío), consulta MongoDB directamente.
+     *
      * @param ownerId ID del propietario
      * @return Flux con todas las cuentas del usuario
      */
     public Flux<Account> getAccountsByOwner(Long ownerId) {
         log.info("🔍 Buscando cuentas del usuario {}", ownerId);
 
-        return accountRepository.findByOwnerId(ownerId)
+        Flux<Account> accounts;
+        if (ownerIndex.isLoaded()) {
+            long[] ids = ownerIndex.accountsOf(ownerId);
+            accounts = Flux.range(0, ids.length)
+                .map(i -> ids[i])
+                .buffer(MAX_BATCH_IDS)
+                .concatMap(accountRepository::getAccountsByIds);
+        } else {
+            accounts = accountRepository.findByOwnerId(ownerId);
+        }
+
+        return accounts
             .doOnComplete(() ->
                 log.info("✅ Búsqueda completada para usuario {}", ownerId)
             );
@@ -126,6 +228,15 @@ public class AccountManagementUseCase {
      * Cambia el saldo de una cuenta existente.
      * Útil para depósitos, retiros, ajustes, etc.
      *
+     * La diferencia queda en el historial como DEPOSIT (sube) o WITHDRAWAL (baja),
+     * registrada en segundo plano por TransactionRecorder.
+     *
+     * CONCURRENCIA: la cuenta se lee de la fuente (getLatestAccountById, sin cache) y
+     * update() solo se aplica si sigue en la versión leída.
+     * Si otra operación la modificó en el medio, VersionConflictRetry repite la lectura
+     * y la escritura con backoff aleatorio, hasta un número acotado de intentos.
+     * Con carriles, todo esto corre en el carril de la cuenta.
+     *
      * @param accountId ID de la cuenta
      * @param newBalance Nuevo saldo
      * @return Mono con la cuenta actualizada
@@ -140,25 +251,30 @@ public class AccountManagementUseCase {
             ));
         }
 
-        // Buscar la cuenta, actualizar y guardar
-        return accountRepository.getAccountById(accountId)
+        // Buscar la cuenta, actualizar y guardar (todo se repite si hay conflicto de versión)
+        Mono<Account> update = versionConflictRetry.execute(accountId, accountRepository.getLatestAccountById(accountId)
             .flatMap(account -> {
                 Double oldBalance = account.getBalance();
 
-                // Crear cuenta actualizada
-                Account updatedAccount = Account.builder()
-                    .id(account.getId())
-                    .ownerId(account.getOwnerId())
+                // Crear cuenta actualizada (conserva la versión leída)
+                Account updatedAccount = account.toBuilder()
                     .balance(newBalance)
                     .build();
 
-                // Guardar cambios
+                // Guardar cambios y avisar a los listeners
                 return accountRepository.update(updatedAccount)
-                    .doOnSuccess(updated ->
+                    .flatMap(updated -> accountEventUseCase
+                        .notifyBalanceChanged(updated, oldBalance, newBalance)
+                        .thenReturn(updated))
+                    .doOnSuccess(updated -> {
+                        if (updated != null) {
+                            recordHistory(accountId, oldBalance, newBalance);
+                        }
                         log.info("✅ Saldo actualizado: ${} → ${}",
-                            oldBalance, newBalance)
-                    );
-            });
+                            oldBalance, newBalance);
+                    });
+            }));
+        return transferLanes == null ? update : transferLanes.execute(accountId, update);
     }
 
     /**
@@ -176,7 +292,8 @@ public class AccountManagementUseCase {
     public Mono<Void> deleteAccount(Long accountId) {
         log.info("🗑️ Intentando eliminar cuenta {}", accountId);
 
-        return accountRepository.getAccountById(accountId)
+        // Sin cache: una copia vieja con saldo 0 permitiría borrar una cuenta con dinero
+        return accountRepository.getLatestAccountById(accountId)
             .flatMap(account -> {
                 // Validar que el saldo sea 0
                 if (account.getBalance() > 0) {
@@ -186,8 +303,9 @@ public class AccountManagementUseCase {
                     ));
                 }
 
-                // Si el saldo es 0, eliminar
+                // Si el saldo es 0, eliminar y avisar a los listeners
                 return accountRepository.delete(accountId)
+                    .then(accountEventUseCase.notifyAccountDeleted(accountId))
                     .doOnSuccess(v ->
                         log.info("✅ Cuenta {} eliminada exitosamente", accountId)
                     );
@@ -208,5 +326,20 @@ public class AccountManagementUseCase {
 
         return accountRepository.exists(accountId);
     }
-}
 
+    /** Encola el depósito o retiro que explica el cambio de saldo (nada si no cambió) */
+    private void recordHistory(Long accountId, Double oldBalance, Double newBalance) {
+        double delta = newBalance - (oldBalance == null ? 0.0 : oldBalance);
+        if (delta == 0) {
+            return;
+        }
+        transactionRecorder.record(Transaction.builder()
+            .id(UUID.randomUUID().toString())
+            .accountId(accountId)
+            .amount(delta)
+            .type(delta > 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL)
+            .timestamp(LocalDateTime.now())
+            .description(delta > 0 ? "Depósito" : "Retiro")
+            .build());
+    }
+}
@@ -1,13 +1,17 @@
 package co.com.bancolombia.usecase.account;
 
 import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountCache;
 import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.usecase.account.index.AccountBalanceIndex;
+import co.com.bancolombia.usecase.account.index.AccountIdIndex;
+import co.com.bancolombia.usecase.account.index.AccountOwnerIndex;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * USE CASE: BÚSQUEDA DE CUENTAS CON DIFERENTES COMPLEJIDADES
@@ -29,54 +33,91 @@ import java.util.concurrent.ConcurrentHashMap;
  * - O(n): 1,000,000 operaciones
  * - O(n log n): ~20,000,000 operaciones
  */
+@Slf4j
 @RequiredArgsConstructor
 public class AccountSearchUseCase {
 
     private final AccountRepository accountRepository;
 
     /**
-     * ESTRUCTURA DE DATOS: HashMap para cache
+     * ESTRUCTURA DE DATOS: Cache acotado (W-TinyLFU + TTL)
      *
-     * HashMap es como un diccionario:
-     * - Clave: ID de cuenta
-     * - Valor: Objeto Account
+     * Antes era un HashMap que nunca expulsaba entradas y terminaba
+     * guardando TODAS las cuentas en memoria.
      *
-     * Ventaja: Búsqueda INSTANTÁNEA O(1)
+     * Ahora el cache:
+     * - Tiene un tamaño máximo configurable
+     * - Admite entradas según su FRECUENCIA de uso (TinyLFU)
+     * - Expira cada entrada un tiempo después de escrita (TTL)
+     *
+     * El mismo cache lo usa el AccountRepository (decorador write-through),
+     * así que las escrituras de cualquier Use Case lo mantienen actualizado.
+     * Aquí solo se usa para limpiarlo o invalidar entradas.
      */
-    private final Map<Long, Account> accountCache = new ConcurrentHashMap<>();
+    private final AccountCache accountCache;
+
+    /**
+     * ESTRUCTURA DE DATOS: Índice ordenado de IDs en un long[] primitivo
+     *
+     * Reemplaza a la List<Account> ordenada que había que pasarle a binarySearchById.
+     * Se mantiene solo: se carga al iniciar (rebuildIndexes) y se actualiza con los
+     * eventos de creación/eliminación (ver AccountIndexListener).
+     */
+    private final AccountIdIndex idIndex;
+
+    /**
+     * ESTRUCTURA DE DATOS: Índice secundario propietario → IDs de cuenta
+     *
+     * Lo consulta AccountManagementUseCase.getAccountsByOwner. Aquí solo se carga
+     * (rebuildIndexes), en la misma lectura que el índice de IDs.
+     */
+    private final AccountOwnerIndex ownerIndex;
+
+    /**
+     * ESTRUCTURA DE DATOS: Skip list concurrente ordenada por (saldo, id)
+     *
+     * Responde "cuentas con saldo entre X y Y" en O(log n + k) sin ir a la BD.
+     * Se mantiene con los eventos de cambio de saldo (ver AccountIndexListener).
+     */
+    private final AccountBalanceIndex balanceIndex;
+
+    /** Tamaño de lote al traer cuentas de un rango de IDs (ver getAccountsByIds) */
+    private static final int ID_RANGE_BATCH_SIZE = 100;
+
+    /** Máximo de cuentas en un top N por saldo */
+    private static final int MAX_TOP_N = 100;
+
+    /** Orden ascendente por saldo (la raíz del min-heap es la cuenta con menos saldo) */
+    private static final Comparator<Account> BY_BALANCE =
+        Comparator.comparing(Account::getBalance, Comparator.nullsFirst(Comparator.naturalOrder()));
 
     /**
      * BÚSQUEDA CON CACHE - COMPLEJIDAD: O(1) después de la primera vez
      *
      * ¿Cómo funciona?
-     * 1. Primera vez: Busca en BD (lento - O(n))
+     * 1. Primera vez: Busca en BD (lento)
      * 2. Guarda en cache (memoria RAM)
      * 3. Siguientes veces: Lee del cache (súper rápido - O(1))
      *
      * Es como recordar algo en vez de buscarlo en un libro cada vez.
+     * Las cuentas poco usadas o viejas salen del cache automáticamente.
+     *
+     * Si 100 peticiones piden la misma cuenta justo cuando no está en cache,
+     * solo UNA va a la BD y las otras 99 esperan ese mismo resultado
+     * (single-flight). Así se evita la "estampida" de consultas iguales.
+     *
+     * El cache vive en el AccountRepository inyectado (ver UseCaseBeansConfig),
+     * por eso cualquier lectura por ID del sistema también lo aprovecha.
      *
      * COMPLEJIDAD:
-     * - Primera búsqueda: O(n) - busca en base de datos
+     * - Primera búsqueda: consulta a base de datos
      * - Búsquedas siguientes: O(1) - lee de memoria
      *
      * @param id ID de la cuenta a buscar
      * @return Mono con la cuenta encontrada
      */
     public Mono<Account> findByIdWithCache(Long id) {
-        // Paso 1: Buscar en el cache (memoria)
-        Account cached = accountCache.get(id); // O(1) - instantáneo
-
-        if (cached != null) {
-            // ¡Encontrado en cache! Retornar inmediatamente
-            return Mono.just(cached);
-        }
-
-        // Paso 2: No está en cache, buscar en base de datos
-        return accountRepository.getAccountById(id)
-            .doOnNext(account -> {
-                // Paso 3: Guardar en cache para la próxima vez
-                accountCache.put(id, account); // O(1)
-            });
+        return accountRepository.getAccountById(id);
     }
 
     /**
@@ -106,7 +147,10 @@ public class AccountSearchUseCase {
      * @param sortedAccounts Lista ORDENADA de cuentas por ID
      * @param id ID a buscar
      * @return Mono con la cuenta encontrada o null
+     * @deprecated Requiere que el llamador arme y ordene la lista y desempaqueta un Long
+     * en cada comparación. Usar {@link #findByIdIndexed(Long)} o {@link #findIdsInRange(Long, Long)}.
      */
+    @Deprecated
     public Mono<Account> binarySearchById(List<Account> sortedAccounts, Long id) {
         return Mono.fromCallable(() -> {
             int left = 0;                          // Inicio de la búsqueda
@@ -136,6 +180,174 @@ public class AccountSearchUseCase {
         });
     }
 
+    /**
+     * BÚSQUEDA CON ÍNDICE DE IDS - COMPLEJIDAD: O(log n) sin boxing
+     *
+     * ¿Cómo funciona?
+     * 1. Búsqueda binaria en el long[] del índice (~20 comparaciones con 1,000,000 de IDs)
+     * 2. Si existe, trae la cuenta del repositorio (que tiene cache)
+     * 3. Si NO está, se confirma con el repositorio: el índice es de ESTA réplica y la
+     *    cuenta pudo crearse en otra. Si el repositorio la tiene, se agrega al índice
+     *
+     * Así el índice nunca responde "no existe" por sí solo (sin falsos negativos).
+     *
+     * @param id ID a buscar
+     * @return Mono con la cuenta, vacío si no existe
+     */
+    public Mono<Account> findByIdIndexed(Long id) {
+        if (!idIndex.isLoaded() || idIndex.contains(id)) {
+            return accountRepository.getAccountById(id);
+        }
+        return accountRepository.getAccountById(id)
+            .doOnNext(found -> idIndex.add(found.getId()));
+    }
+
+    /**
+     * IDS EN UN RANGO [desde, hasta] - COMPLEJIDAD: O(log n + k)
+     *
+     * Dos búsquedas binarias encuentran los extremos; luego se recorre solo el tramo.
+     *
+     * Ejemplo con índice [1, 3, 5, 7, 9, 11], rango [4, 9]:
+     * - Primer ID >= 4 → posición 2 (valor 5)
+     * - Último ID <= 9 → posición 4 (valor 9)
+     * - Resultado: [5, 7, 9]
+     *
+     * Es la vista de ESTA réplica: las cuentas cargadas al iniciar, las creadas aquí y las
+     * que findByIdIndexed encontró después. Una cuenta recién creada en otra réplica
+     * aparece cuando se vuelvan a cargar los índices (rebuildIndexes).
+     *
+     * @param fromId Inicio del rango (incluido)
+     * @param toId Fin del rango (incluido)
+     * @return Flux con los IDs en orden ascendente
+     */
+    public Flux<Long> findIdsInRange(Long fromId, Long toId) {
+        return Flux.defer(() -> {
+            long[] ids = idIndex.range(fromId, toId);
+            return Flux.range(0, ids.length).map(i -> ids[i]);
+        });
+    }
+
+    /**
+     * CUENTAS EN UN RANGO DE IDS
+     *
+     * Toma los IDs del índice y trae las cuentas en lotes de 100
+     * (una consulta $in por lote en vez de una por cuenta).
+     * Mismo alcance que findIdsInRange (los IDs que conoce esta réplica).
+     *
+     * @param fromId Inicio del rango (incluido)
+     * @param toId Fin del rango (incluido)
+     * @return Flux con las cuentas del rango
+     */
+    public Flux<Account> findAccountsInIdRange(Long fromId, Long toId) {
+        return findIdsInRange(fromId, toId)
+            .buffer(ID_RANGE_BATCH_SIZE)
+            .concatMap(accountRepository::getAccountsByIds);
+    }
+
+    /**
+     * CUENTAS EN UNA BANDA DE SALDO - COMPLEJIDAD: O(log n + k)
+     *
+     * ¿Cómo funciona?
+     * 1. La skip list ubica la primera entrada con saldo >= min en O(log n)
+     * 2. Recorre en orden hasta pasar max (k entradas), sin copiar el rango
+     * 3. Las cuentas se traen por ID en lotes de 100 (cache + una consulta $in),
+     *    conservando el orden por saldo
+     *
+     * Los resultados salen a medida que se recorren (streaming): no se arma
+     * la lista completa en memoria.
+     *
+     * Mientras el índice no se ha cargado, consulta la BD por rango de saldo.
+     *
+     * @param minBalance Saldo mínimo (incluido)
+     * @param maxBalance Saldo máximo (incluido)
+     * @return Flux con las cuentas de menor a mayor saldo
+     */
+    public Flux<Account> findByBalanceRange(double minBalance, double maxBalance) {
+        if (minBalance > maxBalance) {
+            return Flux.error(new IllegalArgumentException(
+                "minBalance no puede ser mayor que maxBalance"
+            ));
+        }
+        if (!balanceIndex.isLoaded()) {
+            return accountRepository.findByBalanceBetween(minBalance, maxBalance);
+        }
+        return Flux.fromIterable(balanceIndex.range(minBalance, maxBalance))
+            .map(AccountBalanceIndex.Entry::accountId)
+            .buffer(ID_RANGE_BATCH_SIZE)
+            .concatMap(ids -> accountRepository.getAccountsByIds(ids)
+                .collectMap(Account::getId)
+                .flatMapIterable(found -> ids.stream()
+                    .map(found::get)
+                    .filter(Objects::nonNull)
+                    .toList()));
+    }
+
+    /**
+     * CANTIDAD DE CUENTAS EN UNA BANDA DE SALDO - COMPLEJIDAD: O(log n + k)
+     *
+     * No trae ninguna cuenta: solo cuenta entradas del índice.
+     *
+     * @param minBalance Saldo mínimo (incluido)
+     * @param maxBalance Saldo máximo (incluido)
+     * @return Mono con la cantidad de cuentas
+     */
+    public Mono<Long> countByBalanceRange(double minBalance, double maxBalance) {
+        if (minBalance > maxBalance) {
+            return Mono.error(new IllegalArgumentException(
+                "minBalance no puede ser mayor que maxBalance"
+            ));
+        }
+        if (!balanceIndex.isLoaded()) {
+            return accountRepository.findByBalanceBetween(minBalance, maxBalance).count();
+        }
+        return Mono.fromCallable(() -> (long) balanceIndex.countInRange(minBalance, maxBalance));
+    }
+
+    /**
+     * CARGA COMPLETA DE LOS ÍNDICES EN MEMORIA (IDs, propietarios y saldos)
+     *
+     * Lee todas las cuentas UNA vez (al iniciar la aplicación) y carga ambos índices
+     * con esa misma lectura. Después se mantienen con los eventos de cuenta,
+     * sin volver a leer todo.
+     *
+     * Una cuenta sin ID no se indexa; una sin propietario o sin saldo queda fuera solo
+     * de ese índice. Se registran en el log en vez de abortar la carga completa.
+     *
+     * COMPLEJIDAD: O(n log n)
+     *
+     * @return Mono con la cantidad de IDs indexados
+     */
+    public Mono<Integer> rebuildIndexes() {
+        // Los add/remove que lleguen mientras se lee todo se vuelven a aplicar en rebuild
+        return Mono.defer(() -> {
+                idIndex.beginRebuild();
+                return accountRepository.findAll().collectList();
+            })
+            .map(accounts -> {
+                List<Account> withId = accounts.stream()
+                    .filter(account -> account.getId() != null)
+                    .toList();
+                List<Account> withOwner = withId.stream()
+                    .filter(account -> account.getOwnerId() != null)
+                    .toList();
+                List<Account> withBalance = withId.stream()
+                    .filter(account -> account.getBalance() != null)
+                    .toList();
+                if (withOwner.size() < accounts.size() || withBalance.size() < accounts.size()) {
+                    log.warn("⚠️ Índices: {} cuentas sin ID, {} sin propietario y {} sin saldo quedaron fuera",
+                        accounts.size() - withId.size(),
+                        withId.size() - withOwner.size(),
+                        withId.size() - withBalance.size());
+                }
+                idIndex.rebuild(withId.stream().mapToLong(Account::getId).toArray());
+                ownerIndex.load(withOwner.stream().mapToLong(Account::getId).toArray(),
+                    withOwner.stream().mapToLong(Account::getOwnerId).toArray());
+                balanceIndex.load(withBalance.stream().mapToLong(Account::getId).toArray(),
+                    withBalance.stream().mapToDouble(Account::getBalance).toArray());
+                return idIndex.size();
+            });
+    }
+
     /**
      * ORDENAMIENTO POR SALDO - COMPLEJIDAD: O(n log n)
      *
@@ -161,6 +373,66 @@ public class AccountSearchUseCase {
             });
     }
 
+    /**
+     * TOP N CUENTAS CON MAYOR SALDO
+     *
+     * Lo resuelve la base de datos con un sort + limit sobre el índice de balance:
+     * solo viajan N cuentas, ya ordenadas de mayor a menor.
+     *
+     * @param n Cantidad de cuentas (entre 1 y 100)
+     * @return Flux con las N cuentas de mayor saldo, de mayor a menor
+     */
+    public Flux<Account> findTopNAccountsByBalance(int n) {
+        if (n < 1 || n > MAX_TOP_N) {
+            return Flux.error(new IllegalArgumentException(
+                "n debe estar entre 1 y " + MAX_TOP_N
+            ));
+        }
+        return accountRepository.findTopByBalance(n);
+    }
+
+    /**
+     * TOP N CON MIN-HEAP - COMPLEJIDAD: O(n log k), memoria O(k)
+     *
+     * ¿Qué hace?
+     * Recorre el Flux UNA sola vez y guarda solo las k mejores cuentas vistas
+     * hasta ahora en un montículo de mínimos (PriorityQueue) de tamaño k.
+     *
+     * ¿Cómo funciona?
+     * 1. Mientras el heap tiene menos de k cuentas, se agrega
+     * 2. Si ya está lleno, la raíz es la MENOR de las k mejores
+     * 3. Si llega una cuenta con más saldo que la raíz, sale la raíz y entra la nueva
+     * 4. Al final se vacía el heap y se invierte el orden
+     *
+     * A diferencia de sortAccountsByBalance, NO guarda toda la colección en memoria:
+     * con 1,000,000 de cuentas y k = 10, el heap nunca pasa de 10 elementos.
+     *
+     * @param accounts Cuentas a evaluar (se consumen en streaming)
+     * @param k Cantidad de cuentas a retornar
+     * @return Flux con las k cuentas de mayor saldo, de mayor a menor
+     */
+    public Flux<Account> topNByBalance(Flux<Account> accounts, int k) {
+        if (k < 1) {
+            return Flux.empty();
+        }
+        return accounts
+            .collect(() -> new PriorityQueue<Account>(k + 1, BY_BALANCE), (heap, account) -> {
+                if (heap.size() < k) {
+                    heap.offer(account);
+                } else if (BY_BALANCE.compare(account, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.offer(account);
+                }
+            })
+            .flatMapIterable(heap -> {
+                Account[] top = new Account[heap.size()];
+                for (int i = top.length - 1; i >= 0; i--) {
+                    top[i] = heap.poll();
+                }
+                return Arrays.asList(top);
+            });
+    }
+
     /**
      * BÚSQUEDA LINEAL - COMPLEJIDAD: O(n)
      *
@@ -195,12 +467,12 @@ public class AccountSearchUseCase {
      * Elimina todas las cuentas guardadas en memoria.
      * Útil para liberar memoria o forzar recarga desde BD.
      *
-     * COMPLEJIDAD: O(1)
+     * COMPLEJIDAD: O(n) sobre las entradas del cache
      *
      * @return Mono<Void>
      */
     public Mono<Void> clearCache() {
-        return Mono.fromRunnable(accountCache::clear);
+        return accountCache.invalidateAll();
     }
 
     /**
@@ -215,6 +487,6 @@ public class AccountSearchUseCase {
      * @return Mono<Void>
      */
     public Mono<Void> invalidateCache(Long id) {
-        return Mono.fromRunnable(() -> accountCache.remove(id));
+        return accountCache.invalidate(id);
     }
 }
@@ -0,0 +1,376 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.BatchOutcomeUnknownException;
+import co.com.bancolombia.model.account.TransferRequest;
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.model.account.validation.MinimumBalanceValidation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * USE CASE: LOTE DE TRANSFERENCIAS (ej. pago de nómina)
+ *
+ * ¿Por qué no llamar a TransferUseCase.transfer mil veces?
+ * Cada transferencia son 2 viajes a la base de datos: 1.000 transferencias = 2.000 viajes.
+ * Aquí el lote completo se resuelve en 9 viajes, sin importar su tamaño:
+ *
+ * 1. Validar TODAS las solicitudes antes de tocar la base de datos (cuentas diferentes,
+ *    monto válido). Las inválidas fallan solas; el resto sigue
+ * 2. Leer de una vez los saldos de todas las cuentas involucradas ($in)
+ * 3. SIMULAR el lote en orden sobre esos saldos: una transferencia sin saldo suficiente
+ *    (contando las anteriores del mismo lote) se rechaza, las demás se aceptan
+ * 4. AGRUPAR por cuenta: 300 pagos desde la cuenta de la empresa son UN débito de la suma
+ * 5. Aplicar los cambios netos con operaciones en bloque (bulkWrite). El repositorio
+ *    deja registro del lote para poder terminarlo o revertirlo si se corta en el medio:
+ *    insertar el registro, bulkWrite de débitos, marcarlo DEBITED, bulkWrite de créditos,
+ *    marcarlo COMPLETED, quitar la marca del lote de las cuentas ($pull) y borrar el registro
+ * 6. Releer las cuentas tocadas para avisar a los listeners con los saldos reales
+ *
+ * Viajes: la lectura ($in), los 7 del paso 5 y la relectura.
+ *
+ * FALLOS PARCIALES:
+ * Cada solicitud recibe su propio TransferResult, en el mismo orden del lote. Que una
+ * falle (inválida, sin saldo, cuenta inexistente) no afecta a las demás.
+ *
+ * ¿Y si no se sabe si el lote se aplicó (ej. se cortó la conexión entre los bulkWrite)?
+ * El repositorio falla con BatchOutcomeUnknownException y termina o revierte el lote por
+ * su cuenta. Sus transferencias se responden como pendientes de conciliación: nunca como
+ * fallidas, porque sus débitos pudieron haberse aplicado.
+ *
+ * ¿Y si otra operación cambia un saldo entre la lectura y el bulkWrite?
+ * Cada débito exige balance >= monto en la base de datos. Si alguno no alcanza, el
+ * repositorio revierte los débitos del lote (todo o nada) y el lote se vuelve a planear
+ * con saldos frescos. Tras PLAN_ATTEMPTS intentos, las pendientes se ejecutan una por
+ * una con TransferUseCase.
+ *
+ * ¿EN ORDEN O POR POSICIÓN NETA?
+ * - transferBatch (pago de nómina): se simula en orden; cada transferencia debe tener saldo
+ *   con lo que llegó ANTES que ella, como si se ejecutaran una tras otra
+ * - transferNetted (ventanas de TransferNettingEngine): el lote se aplica de una vez, así
+ *   que basta con que la posición NETA de cada cuenta no quede bajo el saldo mínimo. Una
+ *   cuenta que envía $50 y recibe $50 en la misma ventana puede hacerlo aunque empiece en $0
+ *
+ * COMPLEJIDAD: O(n) en memoria para n solicitudes; 9 viajes a la base de datos
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BatchTransferUseCase {
+
+    /** Máximo de transferencias por lote */
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    /** Veces que se vuelve a planear el lote si un saldo cambió en el medio */
+    private static final int PLAN_ATTEMPTS = 3;
+
+    private final AccountRepository accountRepository;
+    private final AccountEventUseCase accountEventUseCase;
+
+    // Validaciones, historial y ejecución una por una cuando el lote no se puede aplicar junto
+    private final TransferUseCase transferUseCase;
+
+    /**
+     * EJECUTA UN LOTE QUE LLEGA COMO STREAM (ej. NDJSON)
+     *
+     * @param requests Solicitudes (máximo MAX_BATCH_SIZE)
+     * @return Un resultado por solicitud, en el mismo orden
+     */
+    public Flux<TransferResult> transferBatch(Flux<TransferRequest> requests) {
+        return requests
+            .take(MAX_BATCH_SIZE + 1L)
+            .collectList()
+            .flatMapMany(this::transferBatch);
+    }
+
+    /**
+     * EJECUTA UN LOTE DE TRANSFERENCIAS
+     *
+     * @param requests Solicitudes (máximo MAX_BATCH_SIZE)
+     * @return Un resultado por solicitud, en el mismo orden
+     */
+    public Flux<TransferResult> transferBatch(List<TransferRequest> requests) {
+        return execute(requests, this::planInOrder);
+    }
+
+    /**
+     * EJECUTA UN LOTE VALIDANDO SOLO LA POSICIÓN NETA DE CADA CUENTA
+     *
+     * Si una cuenta queda bajo el saldo mínimo, se rechazan sus envíos empezando por el
+     * último en llegar hasta que su posición alcance; el resto del lote sigue.
+     *
+     * @param requests Solicitudes (máximo MAX_BATCH_SIZE)
+     * @return Un resultado por solicitud, en el mismo orden
+     */
+    public Flux<TransferResult> transferNetted(List<TransferRequest> requests) {
+        return execute(requests, this::planNetted);
+    }
+
+    private Flux<TransferResult> execute(List<TransferRequest> requests, Planner planner) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return Flux.error(new IllegalArgumentException(
+                "No se pueden enviar más de " + MAX_BATCH_SIZE + " transferencias en un lote"
+            ));
+        }
+        log.info("📦 Procesando lote de {} transferencias", requests.size());
+
+        // PASO 1: Validar todo antes de ir a la base de datos
+        TransferResult[] results = new TransferResult[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String invalid = TransferUseCase.validationError(
+                request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            if (invalid != null) {
+                results[i] = TransferResult.failure(
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(), invalid);
+            }
+        }
+
+        return apply(requests, results, planner, 1)
+            // Aquí solo llegan errores con los que no se aplicó nada (ver AccountRepository.applyBalanceChanges)
+            .onErrorResume(error -> {
+                log.error("❌ Error inesperado durante el lote: {}", error.getMessage());
+                fillPending(requests, results, "Error del sistema: " + error.getMessage());
+                return Mono.empty();
+            })
+            .thenMany(Flux.defer(() -> Flux.fromArray(results)));
+    }
+
+    /** PASOS 2 a 6 sobre las solicitudes que aún no tienen resultado */
+    private Mono<Void> apply(List<TransferRequest> requests, TransferResult[] results, Planner planner,
+                             int attempt) {
+        List<Integer> pending = new ArrayList<>();
+        Set<Long> accountIds = new LinkedHashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                pending.add(i);
+                accountIds.add(requests.get(i).getFromAccountId());
+                accountIds.add(requests.get(i).getToAccountId());
+            }
+        }
+        if (pending.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // PASO 2: Un solo viaje para los saldos de todas las cuentas
+        return accountRepository.getAccountsByIds(accountIds)
+            .collectMap(Account::getId, Account::getBalance)
+            .flatMap(balances -> {
+                // PASOS 3 y 4: Planear (en orden o por posición neta) y agrupar por cuenta
+                BatchPlan plan = planner.plan(requests, pending, balances);
+                if (plan.deltas().isEmpty()) {
+                    plan.commit(results);
+                    return Mono.<Void>empty();
+                }
+
+                // PASO 5: Aplicar los cambios netos en bloque (todo o nada respecto a los débitos)
+                String batchId = UUID.randomUUID().toString();
+                return accountRepository.applyBalanceChanges(batchId, plan.deltas())
+                    // Los débitos pudieron haberse aplicado: el repositorio termina o revierte el
+                    // lote, aquí ni se reporta como fallido ni se vuelve a planear
+                    .onErrorResume(BatchOutcomeUnknownException.class, unknown -> {
+                        log.error("🚨 Lote {} sin confirmar, queda pendiente de conciliación", batchId);
+                        plan.pendingReconciliation(results);
+                        return Mono.empty();
+                    })
+                    .flatMap(applied -> {
+                        if (Boolean.TRUE.equals(applied)) {
+                            plan.commit(results);
+                            log.info("✅ Lote {} aplicado: {} transferencias en {} cuentas",
+                                batchId, plan.accepted().size(), plan.deltas().size());
+                            return notifyAndRecord(plan);
+                        }
+                        if (attempt < PLAN_ATTEMPTS) {
+                            log.warn("⚠️ Un saldo cambió durante el lote {}, se vuelve a planear ({}/{})",
+                                batchId, attempt, PLAN_ATTEMPTS);
+                            return apply(requests, results, planner, attempt + 1);
+                        }
+                        return oneByOne(requests, results);
+                    });
+            });
+    }
+
+    /**
+     * Recorre las pendientes en orden sobre una copia de los saldos leídos.
+     * Resultado: transferencias aceptadas, rechazos y el cambio neto de cada cuenta.
+     */
+    private BatchPlan planInOrder(List<TransferRequest> requests, List<Integer> pending, Map<Long, Double> balances) {
+        Map<Long, Double> simulated = new HashMap<>(balances);
+        Map<Long, Double> deltas = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>();
+        Map<Integer, String> rejected = new HashMap<>();
+
+        for (int i : pending) {
+            TransferRequest request = requests.get(i);
+            Long from = request.getFromAccountId();
+            Long to = request.getToAccountId();
+            double amount = request.getAmount();
+            Double available = simulated.get(from);
+            if (available == null) {
+                rejected.put(i, "Cuenta origen no encontrada");
+            } else if (!simulated.containsKey(to)) {
+                rejected.put(i, "Cuenta destino no encontrada");
+            } else if (available - amount < MinimumBalanceValidation.MINIMUM_BALANCE) {
+                rejected.put(i, "Saldo insuficiente. Disponible: $" + available);
+            } else {
+                simulated.put(from, available - amount);
+                simulated.merge(to, amount, Double::sum);
+                deltas.merge(from, -amount, Double::sum);
+                deltas.merge(to, amount, Double::sum);
+                accepted.add(i);
+            }
+        }
+        // Una cuenta que envía y recibe lo mismo no necesita escribirse
+        deltas.values().removeIf(delta -> delta == 0);
+        return new BatchPlan(requests, accepted, rejected, deltas);
+    }
+
+    /**
+     * Acepta todo lo que tenga cuentas existentes y suma la posición neta de cada cuenta.
+     * Mientras alguna cuenta quede bajo el piso, se rechaza su envío más reciente y se
+     * recalcula: rechazar un envío también quita un crédito a otra cuenta.
+     */
+    private BatchPlan planNetted(List<TransferRequest> requests, List<Integer> pending, Map<Long, Double> balances) {
+        List<Integer> accepted = new ArrayList<>();
+        Map<Integer, String> rejected = new HashMap<>();
+        for (int i : pending) {
+            TransferRequest request = requests.get(i);
+            if (!balances.containsKey(request.getFromAccountId())) {
+                rejected.put(i, "Cuenta origen no encontrada");
+            } else if (!balances.containsKey(request.getToAccountId())) {
+                rejected.put(i, "Cuenta destino no encontrada");
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        Map<Long, Double> deltas = netDeltas(requests, accepted);
+        Long shortAccount;
+        while ((shortAccount = belowMinimum(balances, deltas)) != null) {
+            // Cada vuelta rechaza una solicitud: termina en a lo sumo accepted.size() vueltas
+            for (int k = accepted.size() - 1; k >= 0; k--) {
+                int i = accepted.get(k);
+                if (shortAccount.equals(requests.get(i).getFromAccountId())) {
+                    accepted.remove(k);
+                    rejected.put(i, "Saldo insuficiente. Disponible: $" + balances.get(shortAccount));
+                    break;
+                }
+            }
+            deltas = netDeltas(requests, accepted);
+        }
+        // Una cuenta que envía y recibe lo mismo no necesita escribirse
+        deltas.values().removeIf(delta -> delta == 0);
+        return new BatchPlan(requests, accepted, rejected, deltas);
+    }
+
+    private static Map<Long, Double> netDeltas(List<TransferRequest> requests, List<Integer> accepted) {
+        Map<Long, Double> deltas = new HashMap<>();
+        for (int i : accepted) {
+            TransferRequest request = requests.get(i);
+            deltas.merge(request.getFromAccountId(), -request.getAmount(), Double::sum);
+            deltas.merge(request.getToAccountId(), request.getAmount(), Double::sum);
+        }
+        return deltas;
+    }
+
+    /** Una cuenta cuyo saldo final quedaría bajo el mínimo, o null si ninguna */
+    private static Long belowMinimum(Map<Long, Double> balances, Map<Long, Double> deltas) {
+        for (Map.Entry<Long, Double> delta : deltas.entrySet()) {
+            if (delta.getValue() < 0
+                    && balances.get(delta.getKey()) + delta.getValue() < MinimumBalanceValidation.MINIMUM_BALANCE) {
+                return delta.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * PASO 6: Avisar a los listeners con los saldos releídos y encolar el historial.
+     * El lote ya se aplicó: un error al avisar se registra y no cambia los resultados
+     */
+    private Mono<Void> notifyAndRecord(BatchPlan plan) {
+        return accountRepository.getAccountsByIds(plan.deltas().keySet())
+            .filter(account -> plan.deltas().containsKey(account.getId()))
+            .concatMap(account -> accountEventUseCase.notifyBalanceChanged(
+                account, account.getBalance() - plan.deltas().get(account.getId()), account.getBalance()))
+            .then()
+            .onErrorResume(error -> {
+                log.error("⚠️ Lote aplicado pero no se pudo notificar: {}", error.getMessage());
+                return Mono.empty();
+            })
+            .then(Mono.fromRunnable(() -> plan.accepted().forEach(i -> {
+                TransferRequest request = plan.requests().get(i);
+                transferUseCase.recordHistory(
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            })));
+    }
+
+    /** Último recurso: las pendientes se ejecutan en orden, cada una con su débito condicional */
+    private Mono<Void> oneByOne(List<TransferRequest> requests, TransferResult[] results) {
+        log.warn("⚠️ El lote no se pudo aplicar en bloque tras {} intentos, se ejecuta una por una", PLAN_ATTEMPTS);
+        return Flux.range(0, results.length)
+            .filter(i -> results[i] == null)
+            .concatMap(i -> transferUseCase.transfer(
+                    requests.get(i).getFromAccountId(), requests.get(i).getToAccountId(), requests.get(i).getAmount())
+                .doOnNext(result -> results[i] = result))
+            .then();
+    }
+
+    private static void fillPending(List<TransferRequest> requests, TransferResult[] results, String message) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                TransferRequest request = requests.get(i);
+                results[i] = TransferResult.retryableFailure(
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(), message);
+            }
+        }
+    }
+
+    /** Cómo se decide qué solicitudes del lote se aceptan con los saldos leídos */
+    @FunctionalInterface
+    private interface Planner {
+        BatchPlan plan(List<TransferRequest> requests, List<Integer> pending, Map<Long, Double> balances);
+    }
+
+    /** Lo que el lote haría con los saldos leídos; solo se vuelve definitivo con commit */
+    private record BatchPlan(List<TransferRequest> requests, List<Integer> accepted,
+                             Map<Integer, String> rejected, Map<Long, Double> deltas) {
+
+        void commit(TransferResult[] results) {
+            for (int i : accepted) {
+                TransferRequest request = requests.get(i);
+                results[i] = TransferResult.success(UUID.randomUUID().toString(),
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            }
+            rejectAll(results);
+        }
+
+        /** El lote quedó sin confirmar: las aceptadas no son ni éxito ni fallo */
+        void pendingReconciliation(TransferResult[] results) {
+            for (int i : accepted) {
+                TransferRequest request = requests.get(i);
+                results[i] = TransferResult.pendingReconciliation(UUID.randomUUID().toString(),
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            }
+            rejectAll(results);
+        }
+
+        private void rejectAll(TransferResult[] results) {
+            rejected.forEach((i, message) -> {
+                TransferRequest request = requests.get(i);
+                results[i] = TransferResult.failure(
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(), message);
+            });
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * REGISTRO DE TRANSACCIONES FUERA DEL CAMINO DE LA PETICIÓN
+ *
+ * ¿Por qué no llamar a addTransaction directamente desde la transferencia?
+ * Guardar el historial puede tardar (bitácora, bulk insert en MongoDB). Si la
+ * transferencia lo esperara, cada respuesta tardaría eso de más, y si se hiciera en
+ * el hilo de Netty (event loop) frenaría a todas las peticiones de ese hilo.
+ *
+ * ¿Cómo funciona?
+ * 1. record() deja la transacción en una cola acotada y retorna de inmediato
+ * 2. Un hilo propio saca las transacciones en lotes (max-batch-size o window, lo que
+ *    pase primero) y las entrega a TransactionHistoryUseCase.addTransactions
+ * 3. Los lotes se procesan uno tras otro: el historial de cada cuenta queda en orden
+ *
+ * ¿Y si la cola se llena?
+ * record() NUNCA espera: la transacción se descarta y se cuenta en dropped(). Es el
+ * precio de no agregar latencia; la cola se dimensiona para que no pase.
+ *
+ * COMPLEJIDAD: record() es O(1) - un offer en una cola de arreglo
+ */
+@Slf4j
+public class TransactionRecorder {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Sinks.Many<Transaction> queue;
+    private final Scheduler scheduler = Schedulers.newSingle("transaction-recorder");
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param history Historial donde se agregan las transacciones
+     * @param capacity Transacciones que caben en la cola
+     * @param maxBatchSize Máximo de transacciones por lote
+     * @param window Espera máxima para completar un lote
+     */
+    public TransactionRecorder(TransactionHistoryUseCase history, int capacity, int maxBatchSize, Duration window) {
+        if (capacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("La capacidad y el tamaño de lote deben ser al menos 1");
+        }
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<Transaction>get(capacity).get());
+        queue.asFlux()
+            // A partir de aquí todo corre en el hilo del recorder, no en el de quien llamó a record()
+            .publishOn(scheduler, maxBatchSize)
+            .bufferTimeout(maxBatchSize, window, true)
+            .concatMap(batch -> addAll(history, batch))
+            .doFinally(signal -> {
+                drained.countDown();
+                scheduler.dispose();
+            })
+            .subscribe();
+    }
+
+    /**
+     * ENCOLA UNA TRANSACCIÓN PARA EL HISTORIAL (sin esperar)
+     *
+     * @param transaction Transacción a registrar
+     * @return false si la cola estaba llena (o cerrada) y la transacción se descartó
+     */
+    public boolean record(Transaction transaction) {
+        Sinks.EmitResult result;
+        // El sink no admite dos emisores a la vez: se encola con el monitor de la cola en
+        // vez de reintentar en un bucle (encolar es O(1), el monitor dura nanosegundos)
+        synchronized (queue) {
+            result = queue.tryEmitNext(transaction);
+        }
+        if (result.isSuccess()) {
+            return true;
+        }
+        if (dropped.incrementAndGet() == 1) {
+            log.warn("⚠️ Cola del historial llena: se descartan transacciones ({})", result);
+        }
+        return false;
+    }
+
+    /** Transacciones agregadas al historial */
+    public long recorded() {
+        return recorded.get();
+    }
+
+    /** Transacciones descartadas porque la cola estaba llena */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Transacciones que el historial no pudo guardar */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Deja de aceptar transacciones y espera a que se registren las que quedaron en la cola.
+     */
+    public void close() {
+        synchronized (queue) {
+            queue.tryEmitComplete();
+        }
+        try {
+            if (!drained.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("⚠️ El historial no terminó de registrar la cola al apagar");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Mono<Void> addAll(TransactionHistoryUseCase history, List<Transaction> batch) {
+        return history.addTransactions(batch)
+            .doOnSuccess(done -> recorded.addAndGet(batch.size()))
+            .onErrorResume(error -> {
+                failed.addAndGet(batch.size());
+                log.error("❌ No se pudieron registrar {} transacciones en el historial: {}",
+                    batch.size(), error.getMessage());
+                return Mono.empty();
+            });
+    }
+}
@@ -0,0 +1,235 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.IdempotencyCache;
+import co.com.bancolombia.model.account.gateways.IdempotencyRepository;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TRANSFERENCIAS IDEMPOTENTES (header Idempotency-Key)
+ *
+ * ¿Qué problema resuelve?
+ * Un cliente envía una transferencia, la respuesta tarda y se vence su timeout. No sabe
+ * si el dinero se movió, así que REINTENTA. Sin idempotencia cada reintento es una
+ * transferencia nueva: el dinero se mueve dos veces.
+ *
+ * ¿Cómo funciona?
+ * El cliente manda la misma Idempotency-Key en el original y en todos sus reintentos:
+ * 1. Memoria (IdempotencyCache): si la clave ya se ejecutó, se responde el MISMO
+ *    TransferResult (mismo transferId) sin tocar la base de datos
+ * 2. Si el original todavía está en curso, el duplicado espera ese mismo resultado
+ *    en vez de ejecutar otro
+ * 3. Almacén persistente opcional (IdempotencyRepository): si la clave no está en
+ *    memoria (reinicio, otra instancia) se RESERVA ahí antes de ejecutar. La reserva es
+ *    atómica: si otra instancia ya la tiene, no se ejecuta nada y se espera (consultando
+ *    el almacén cada POLL_INTERVAL) el resultado que esa instancia guarde
+ * 4. Solo quien reservó la clave ejecuta la transferencia y guarda su resultado
+ *    (en memoria y, si existe, en el almacén persistente)
+ *
+ * Se recuerdan solo resultados DEFINITIVOS: éxitos, rechazos (ej. saldo insuficiente) y
+ * transferencias pendientes de conciliación (el dinero pudo moverse, repetirla podría
+ * debitar dos veces). Una falla transitoria antes de mover dinero (TransferResult.isRetryable,
+ * ej. "Error del sistema" o carril lleno) se responde pero NO se recuerda: la reserva se
+ * libera y un reintento con la misma clave vuelve a ejecutar.
+ *
+ * ¿Y si la misma clave llega con OTRA transferencia (otras cuentas u otro monto)?
+ * Es un error del cliente: se responde un fallo y no se ejecuta nada.
+ *
+ * LÍMITES:
+ * - Sin almacén persistente, dos instancias no comparten sus claves en memoria
+ * - Un duplicado espera como máximo inFlightWait a otra instancia; si no llega el resultado
+ *   responde una falla que se puede reintentar (sin ejecutar)
+ * - Si el proceso cae entre la reserva y el guardado del resultado, la clave queda reservada
+ *   hasta que vence su TTL: los reintentos responden "en curso" en vez de arriesgar un
+ *   segundo débito (el libro de transferencias la deja en conciliación)
+ *
+ * COMPLEJIDAD: O(1) por petición; un duplicado no hace viajes a la base de datos
+ */
+@Slf4j
+public class TransferIdempotency {
+
+    /** Largo máximo de una Idempotency-Key */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    /** Cada cuánto se consulta el almacén mientras otra instancia ejecuta la clave */
+    static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+    /** Espera máxima por defecto al resultado de otra instancia */
+    public static final Duration DEFAULT_IN_FLIGHT_WAIT = Duration.ofSeconds(10);
+
+    private final IdempotencyCache cache;
+    // null = solo memoria
+    private final IdempotencyRepository repository;
+    private final Duration inFlightWait;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    public TransferIdempotency(IdempotencyCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * @param cache Memoria acotada de resultados (con espera sobre el original en curso)
+     * @param repository Almacén persistente; null para deduplicar solo en memoria
+     */
+    public TransferIdempotency(IdempotencyCache cache, IdempotencyRepository repository) {
+        this(cache, repository, DEFAULT_IN_FLIGHT_WAIT);
+    }
+
+    /**
+     * @param cache Memoria acotada de resultados (con espera sobre el original en curso)
+     * @param repository Almacén persistente; null para deduplicar solo en memoria
+     * @param inFlightWait Espera máxima al resultado de una clave reservada por otra instancia
+     */
+    public TransferIdempotency(IdempotencyCache cache, IdempotencyRepository repository, Duration inFlightWait) {
+        this.cache = cache;
+        this.repository = repository;
+        this.inFlightWait = inFlightWait;
+    }
+
+    /**
+     * EJECUTA UNA TRANSFERENCIA UNA SOLA VEZ POR CLAVE
+     *
+     * @param key Idempotency-Key enviada por el cliente
+     * @param fromAccountId Cuenta origen (para detectar una clave reutilizada)
+     * @param toAccountId Cuenta destino
+     * @param amount Monto
+     * @param transfer La transferencia; solo se suscribe si la clave es nueva
+     * @return El resultado definitivo de la primera ejecución con esta clave, o una falla
+     *         transitoria (no recordada) que se puede reintentar con la misma clave
+     */
+    public Mono<TransferResult> execute(String key, Long fromAccountId, Long toAccountId, Double amount,
+                                        Mono<TransferResult> transfer) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.just(TransferResult.failure(fromAccountId, toAccountId, amount,
+                "La Idempotency-Key debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres"));
+        }
+        return Mono.defer(() -> {
+            boolean[] ranHere = new boolean[1];
+            return cache.get(key, () -> {
+                    ranHere[0] = true;
+                    return load(key, fromAccountId, toAccountId, amount, transfer);
+                })
+                // La falla transitoria viaja como error para que la memoria no la recuerde
+                .onErrorResume(TransientResultException.class, failure -> Mono.just(failure.result))
+                .map(result -> {
+                    if (!ranHere[0]) {
+                        replayed.increment();
+                    }
+                    if (!sameTransfer(result, fromAccountId, toAccountId, amount)) {
+                        mismatched.increment();
+                        log.warn("⚠️ Idempotency-Key {} reutilizada con otra transferencia", key);
+                        return TransferResult.failure(fromAccountId, toAccountId, amount,
+                            "La Idempotency-Key ya se usó con otra transferencia");
+                    }
+                    return result;
+                });
+        });
+    }
+
+    /** Reserva la clave en el almacén persistente; si otra instancia la tiene, espera su resultado */
+    private Mono<TransferResult> load(String key, Long fromAccountId, Long toAccountId, Double amount,
+                                      Mono<TransferResult> transfer) {
+        if (repository == null) {
+            return run(key, transfer);
+        }
+        return repository.reserve(key, fromAccountId, toAccountId, amount)
+            .flatMap(reserved -> reserved
+                ? run(key, transfer)
+                : awaitStored(key, fromAccountId, toAccountId, amount));
+    }
+
+    private Mono<TransferResult> run(String key, Mono<TransferResult> transfer) {
+        return transfer
+            .doOnNext(result -> executed.increment())
+            .onErrorResume(error -> release(key).then(Mono.error(error)))
+            .flatMap(result -> result.isRetryable()
+                ? release(key).then(Mono.error(new TransientResultException(result)))
+                : remember(key, result));
+    }
+
+    /**
+     * Otra instancia ejecuta la clave: se consulta el almacén hasta que guarde el resultado.
+     * Nunca se ejecuta aquí: si el resultado no llega a tiempo se responde "en curso".
+     */
+    private Mono<TransferResult> awaitStored(String key, Long fromAccountId, Long toAccountId, Double amount) {
+        long polls = Math.max(1, inFlightWait.toMillis() / POLL_INTERVAL.toMillis());
+        return repository.find(key)
+            .repeatWhenEmpty(attempts -> attempts.take(polls).concatMap(attempt -> Mono.delay(POLL_INTERVAL)))
+            .doOnNext(result -> replayed.increment())
+            .switchIfEmpty(Mono.defer(() -> {
+                log.warn("⏳ Idempotency-Key {} sigue en curso en otra instancia", key);
+                return Mono.error(new TransientResultException(TransferResult.retryableFailure(
+                    fromAccountId, toAccountId, amount,
+                    "La transferencia con esta Idempotency-Key todavía está en curso, reintenta más tarde")));
+            }));
+    }
+
+    /** Si no se puede liberar, la clave queda reservada: los reintentos esperan en vez de ejecutar */
+    private Mono<Void> release(String key) {
+        if (repository == null) {
+            return Mono.empty();
+        }
+        return repository.release(key)
+            .onErrorResume(error -> {
+                log.error("❌ No se pudo liberar la Idempotency-Key {}: {}", key, error.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * El resultado es definitivo: si el almacén falla se responde igual. La clave queda
+     * reservada, así que tras un reinicio un reintento espera y responde "en curso" en vez
+     * de repetir la transferencia.
+     */
+    private Mono<TransferResult> remember(String key, TransferResult result) {
+        if (repository == null) {
+            return Mono.just(result);
+        }
+        return repository.save(key, result)
+            .onErrorResume(error -> {
+                log.error("❌ No se pudo guardar la Idempotency-Key {}: {}", key, error.getMessage());
+                return Mono.empty();
+            })
+            .thenReturn(result);
+    }
+
+    private static boolean sameTransfer(TransferResult result, Long fromAccountId, Long toAccountId, Double amount) {
+        return Objects.equals(result.getFromAccountId(), fromAccountId)
+            && Objects.equals(result.getToAccountId(), toAccountId)
+            && Objects.equals(result.getAmount(), amount);
+    }
+
+    /** Transferencias ejecutadas con una clave nueva */
+    public long executed() {
+        return executed.sum();
+    }
+
+    /** Duplicados respondidos con el resultado recordado (memoria, espera o almacén) */
+    public long replayed() {
+        return replayed.sum();
+    }
+
+    /** Claves reutilizadas con otra transferencia */
+    public long mismatched() {
+        return mismatched.sum();
+    }
+
+    /** Falla transitoria: se responde pero la memoria no la recuerda (un loader fallido se olvida) */
+    private static final class TransientResultException extends RuntimeException {
+
+        private final transient TransferResult result;
+
+        TransientResultException(TransferResult result) {
+            super(result.getMessage(), null, false, false);
+            this.result = result;
+        }
+    }
+}
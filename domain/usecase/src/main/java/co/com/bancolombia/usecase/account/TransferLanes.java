@@ -0,0 +1,259 @@
+package co.com.bancolombia.usecase.account;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CARRILES DE EJECUCIÓN POR CUENTA (modelo de actores en el mismo proceso)
+ *
+ * ¿Qué problema resuelve?
+ * Muchas transferencias tocan las mismas cuentas (comercios). Si todas corren a la vez,
+ * compiten por el mismo documento en la base de datos. Aquí cada cuenta se asigna por
+ * hash a uno de N carriles, y cada carril ejecuta sus tareas DE A UNA, en orden de
+ * llegada: dos operaciones sobre la misma cuenta nunca se pisan, sin usar locks.
+ *
+ * ¿Y una transferencia, que toca DOS cuentas (dos carriles)?
+ * Ocupa ambos carriles, siempre en el mismo orden: primero el de índice menor y,
+ * desde él, el de índice mayor. Un carril solo espera a carriles de índice mayor,
+ * así que nunca se forma un ciclo de esperas (sin deadlocks).
+ *
+ *   cuenta A → carril 2, cuenta B → carril 5
+ *   carril 2: [ ... | T(A→B): espera al carril 5 | ... ]
+ *   carril 5: [ ... | T(A→B): débito + crédito  | ... ]
+ *
+ * El orden por cuenta es el orden en que las operaciones llegan a SU carril, y vale
+ * solo entre las operaciones que pasan por los carriles: TransferUseCase.transfer y
+ * AccountManagementUseCase.updateBalance. Los lotes (BatchTransferUseCase) y la
+ * compensación (TransferNettingEngine) tocan cientos de cuentas en una sola escritura en
+ * bloque y NO pasan por aquí: su corrección no depende del orden, porque cada cambio es
+ * un $inc condicional que la base de datos valida contra el saldo del momento.
+ *
+ * Cada carril arranca sus tareas en un hilo propio (transfer-lane-N): quien encola
+ * nunca ejecuta tareas ajenas, solo deja la suya en la cola y retorna.
+ *
+ * ¿Y si un carril se llena?
+ * La cola de cada carril es acotada: la operación se rechaza (IllegalStateException)
+ * en vez de acumular memoria sin límite. Se cuenta en rejected().
+ *
+ * ¿Y si una operación se cuelga (ej. una llamada a MongoDB que nunca responde)?
+ * Cada tarea tiene un plazo (taskTimeout). Al vencer, el carril deja de esperarla y
+ * sigue con la próxima, así una llamada colgada no congela el carril ni los carriles
+ * que esperan por él. La tarea NO se cancela: cortar una transferencia entre el débito y
+ * el crédito dejaría el dinero a mitad de camino, así que sigue corriendo y quien la
+ * encoló recibe su resultado real. Mientras tanto esa cuenta pierde el orden garantizado;
+ * se cuenta en overdue().
+ *
+ * COMPLEJIDAD: encolar es O(1); cada carril procesa sus tareas en serie
+ */
+@Slf4j
+public class TransferLanes {
+
+    /** Carriles por defecto */
+    public static final int DEFAULT_LANES = 16;
+
+    /** Tareas por defecto que caben en la cola de cada carril */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Plazo por defecto de cada tarea antes de que el carril siga con la próxima */
+    public static final Duration DEFAULT_TASK_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Lane[] lanes;
+    private final Scheduler scheduler;
+    private final AtomicInteger openLanes;
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overdue = new LongAdder();
+    private final Duration taskTimeout;
+
+    public TransferLanes() {
+        this(DEFAULT_LANES, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param lanes Cantidad de carriles
+     * @param capacity Tareas que caben en la cola de cada carril
+     */
+    public TransferLanes(int lanes, int capacity) {
+        this(lanes, capacity, DEFAULT_TASK_TIMEOUT);
+    }
+
+    /**
+     * @param lanes Cantidad de carriles
+     * @param capacity Tareas que caben en la cola de cada carril
+     * @param taskTimeout Plazo de cada tarea antes de que el carril siga con la próxima
+     */
+    public TransferLanes(int lanes, int capacity, Duration taskTimeout) {
+        if (lanes < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Los carriles y su capacidad deben ser al menos 1");
+        }
+        if (taskTimeout == null || taskTimeout.isNegative() || taskTimeout.isZero()) {
+            throw new IllegalArgumentException("El plazo de cada tarea debe ser positivo");
+        }
+        this.taskTimeout = taskTimeout;
+        this.scheduler = Schedulers.newParallel("transfer-lane", lanes);
+        this.openLanes = new AtomicInteger(lanes);
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i, capacity);
+        }
+        log.info("Carriles de transferencias: {} carriles de {} tareas", lanes, capacity);
+    }
+
+    /**
+     * EJECUTA UNA OPERACIÓN SOBRE DOS CUENTAS CON AMBOS CARRILES OCUPADOS
+     *
+     * @param firstAccountId Una de las cuentas (el orden de los parámetros no importa)
+     * @param secondAccountId La otra cuenta
+     * @param work Operación a ejecutar; se suscribe cuando le llega el turno
+     * @return El resultado de work, o IllegalStateException si un carril estaba lleno
+     */
+    public <T> Mono<T> execute(Long firstAccountId, Long secondAccountId, Mono<T> work) {
+        int first = laneOf(firstAccountId);
+        int second = laneOf(secondAccountId);
+        if (first == second) {
+            return lanes[first].submit(work);
+        }
+        // Orden fijo: el carril menor espera al mayor, nunca al revés
+        Lane lower = lanes[Math.min(first, second)];
+        Lane upper = lanes[Math.max(first, second)];
+        return lower.submit(upper.submit(work));
+    }
+
+    /**
+     * EJECUTA UNA OPERACIÓN SOBRE UNA CUENTA EN SU CARRIL
+     *
+     * @param accountId Cuenta
+     * @param work Operación a ejecutar
+     */
+    public <T> Mono<T> execute(Long accountId, Mono<T> work) {
+        return lanes[laneOf(accountId)].submit(work);
+    }
+
+    /** Carril de una cuenta: hash del id mezclado, para repartir también ids consecutivos */
+    int laneOf(Long accountId) {
+        return Math.floorMod(Long.hashCode(accountId * 0x9E3779B97F4A7C15L), lanes.length);
+    }
+
+    /** Cantidad de carriles */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /** Tareas esperando turno en un carril */
+    public int queueDepth(int lane) {
+        return lanes[lane].depth.get();
+    }
+
+    /** Tareas que ya empezaron a ejecutarse (en todos los carriles) */
+    public long started() {
+        return started.sum();
+    }
+
+    /** Suma del tiempo que esperaron en cola las tareas que ya empezaron */
+    public long totalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /** Tareas rechazadas porque su carril estaba lleno */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /** Tareas que pasaron su plazo: el carril siguió sin esperarlas */
+    public long overdue() {
+        return overdue.sum();
+    }
+
+    /** Deja de aceptar tareas; las que ya estaban en cola terminan y se liberan los hilos */
+    public void close() {
+        for (Lane lane : lanes) {
+            lane.close();
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final Sinks.Many<Task<?>> queue;
+        private final AtomicInteger depth = new AtomicInteger();
+
+        private Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<Task<?>>get(capacity).get());
+            // publishOn: cada carril arranca sus tareas en un solo hilo del scheduler.
+            // concatMap: la siguiente tarea no empieza hasta que la anterior termina (un solo consumidor).
+            // Prefetch 1: las tareas esperan en la cola acotada, no en buffers internos
+            queue.asFlux()
+                .publishOn(scheduler, 1)
+                .concatMap(this::run, 1)
+                .doFinally(signal -> {
+                    if (openLanes.decrementAndGet() == 0) {
+                        scheduler.dispose();
+                    }
+                })
+                .subscribe();
+        }
+
+        private <T> Mono<T> submit(Mono<T> work) {
+            return Mono.defer(() -> {
+                Sinks.One<T> result = Sinks.one();
+                depth.incrementAndGet();
+                Sinks.EmitResult emitted;
+                // El sink no admite dos emisores a la vez: se encola con el monitor del
+                // carril en vez de reintentar en un bucle (encolar es O(1) y no ejecuta
+                // tareas, así que el monitor se retiene unos nanosegundos)
+                synchronized (this) {
+                    emitted = queue.tryEmitNext(new Task<>(work, result, System.nanoTime()));
+                }
+                if (emitted.isFailure()) {
+                    depth.decrementAndGet();
+                    rejected.increment();
+                    return Mono.error(new IllegalStateException("El carril " + index + " está lleno"));
+                }
+                return result.asMono();
+            });
+        }
+
+        private Mono<Void> run(Task<?> task) {
+            depth.decrementAndGet();
+            started.increment();
+            totalWaitNanos.add(System.nanoTime() - task.enqueuedAt());
+            return task.run()
+                .timeout(taskTimeout, Mono.fromRunnable(() -> {
+                    overdue.increment();
+                    log.warn("El carril {} sigue sin esperar una tarea que pasó su plazo de {}", index, taskTimeout);
+                }));
+        }
+
+        private synchronized void close() {
+            queue.tryEmitComplete();
+        }
+    }
+
+    private record Task<T>(Mono<T> work, Sinks.One<T> result, long enqueuedAt) {
+
+        /**
+         * Arranca work y pasa su resultado a quien espera; un error no detiene el carril.
+         * El Mono retornado termina cuando termina work: si el carril deja de esperarlo
+         * (timeout), work no se cancela
+         */
+        private Mono<Void> run() {
+            Mono.defer(() -> work).subscribe(
+                result::tryEmitValue,
+                result::tryEmitError,
+                result::tryEmitEmpty);
+            return result.asMono()
+                .onErrorResume(error -> Mono.empty())
+                .then();
+        }
+    }
+}
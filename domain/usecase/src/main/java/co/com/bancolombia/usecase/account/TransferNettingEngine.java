@@ -0,0 +1,271 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.TransferRequest;
+import co.com.bancolombia.model.account.TransferResult;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * COMPENSACIÓN (NETTING) DE MICRO-TRANSFERENCIAS EN VENTANAS CORTAS
+ *
+ * ¿Qué problema resuelve?
+ * Muchas transferencias pequeñas entre las mismas pocas cuentas, en pocos segundos. Con
+ * TransferUseCase cada una son 2 escrituras en la base de datos: 1.000 transferencias
+ * entre 100 cuentas = 2.000 escrituras, muchas sobre el mismo documento.
+ *
+ * ¿Cómo funciona?
+ * 1. submit() deja la transferencia en una cola acotada y retorna un Mono con SU resultado
+ * 2. Un hilo propio junta las transferencias en ventanas (max-window-size o window, lo
+ *    que pase primero)
+ * 3. Cada ventana se resuelve con BatchTransferUseCase.transferNetted: se suma la posición
+ *    NETA de cada cuenta, se verifica que ninguna quede bajo el saldo mínimo
+ *    (MinimumBalanceValidation) y se escribe UNA vez cada cuenta
+ * 4. Cada solicitud recibe su propio TransferResult, como si hubiera ido sola
+ *
+ *   ventana: A→B $10, B→C $10, C→A $10, A→B $5
+ *   sin compensar: 8 escrituras      compensado: A -5, B +5 → 2 escrituras (C queda igual)
+ *
+ * ¿Cuál es el costo?
+ * Latencia: cada transferencia espera a que cierre su ventana (hasta window) más el lote.
+ * Por eso es opcional y la ventana se mide en milisegundos.
+ *
+ * ¿Y si la cola se llena?
+ * La transferencia se ejecuta directamente con TransferUseCase (sin compensar) en vez de
+ * rechazarla. Se cuenta en bypassed().
+ *
+ * ¿Y si una ventana no termina (ej. MongoDB no responde)?
+ * Cada ventana tiene un plazo (settleTimeout): al vencer, el motor sigue con la próxima y
+ * las transferencias de la ventana se responden como pendientes de conciliación, nunca
+ * como fallidas: su lote pudo haberse aplicado en parte, y el repositorio lo termina o lo
+ * revierte por su cuenta (ver AccountRepository.applyBalanceChanges). Se cuenta en timedOut().
+ *
+ * COMPLEJIDAD: submit() es O(1); cada ventana escribe una vez por cuenta con saldo neto distinto de 0
+ */
+@Slf4j
+public class TransferNettingEngine {
+
+    /** Transferencias por ventana por defecto */
+    public static final int DEFAULT_MAX_WINDOW_SIZE = 512;
+
+    /** Duración máxima de una ventana por defecto */
+    public static final Duration DEFAULT_WINDOW = Duration.ofMillis(5);
+
+    /** Transferencias por defecto que caben en la cola */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Plazo por defecto para resolver una ventana */
+    public static final Duration DEFAULT_SETTLE_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final BatchTransferUseCase batchTransferUseCase;
+    private final TransferUseCase transferUseCase;
+    private final Sinks.Many<Pending> queue;
+    private final Scheduler scheduler = Schedulers.newSingle("transfer-netting");
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder windows = new LongAdder();
+    private final LongAdder accountWrites = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final Duration settleTimeout;
+
+    public TransferNettingEngine(BatchTransferUseCase batchTransferUseCase, TransferUseCase transferUseCase) {
+        this(batchTransferUseCase, transferUseCase, DEFAULT_CAPACITY, DEFAULT_MAX_WINDOW_SIZE, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param batchTransferUseCase Resuelve cada ventana
+     * @param transferUseCase Ejecuta directamente las transferencias que no caben en la cola
+     * @param capacity Transferencias que caben en la cola
+     * @param maxWindowSize Máximo de transferencias por ventana (hasta BatchTransferUseCase.MAX_BATCH_SIZE)
+     * @param window Espera máxima para cerrar una ventana
+     */
+    public TransferNettingEngine(BatchTransferUseCase batchTransferUseCase, TransferUseCase transferUseCase,
+                                 int capacity, int maxWindowSize, Duration window) {
+        this(batchTransferUseCase, transferUseCase, capacity, maxWindowSize, window, DEFAULT_SETTLE_TIMEOUT);
+    }
+
+    /**
+     * @param batchTransferUseCase Resuelve cada ventana
+     * @param transferUseCase Ejecuta directamente las transferencias que no caben en la cola
+     * @param capacity Transferencias que caben en la cola
+     * @param maxWindowSize Máximo de transferencias por ventana (hasta BatchTransferUseCase.MAX_BATCH_SIZE)
+     * @param window Espera máxima para cerrar una ventana
+     * @param settleTimeout Plazo para resolver una ventana antes de seguir con la próxima
+     */
+    public TransferNettingEngine(BatchTransferUseCase batchTransferUseCase, TransferUseCase transferUseCase,
+                                 int capacity, int maxWindowSize, Duration window, Duration settleTimeout) {
+        if (capacity < 1 || maxWindowSize < 1 || maxWindowSize > BatchTransferUseCase.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("La capacidad debe ser al menos 1 y la ventana entre 1 y "
+                + BatchTransferUseCase.MAX_BATCH_SIZE);
+        }
+        if (settleTimeout == null || settleTimeout.isNegative() || settleTimeout.isZero()) {
+            throw new IllegalArgumentException("El plazo de cada ventana debe ser positivo");
+        }
+        this.settleTimeout = settleTimeout;
+        this.batchTransferUseCase = batchTransferUseCase;
+        this.transferUseCase = transferUseCase;
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<Pending>get(capacity).get());
+        queue.asFlux()
+            // A partir de aquí todo corre en el hilo del motor, no en el de quien llamó a submit()
+            .publishOn(scheduler, maxWindowSize)
+            .bufferTimeout(maxWindowSize, window, true)
+            // Una ventana a la vez: la siguiente se planea con los saldos que dejó la anterior
+            .concatMap(this::settle, 1)
+            .doFinally(signal -> {
+                drained.countDown();
+                scheduler.dispose();
+            })
+            .subscribe();
+        log.info("Compensación de transferencias: ventanas de hasta {} transferencias o {}", maxWindowSize, window);
+    }
+
+    /**
+     * ENCOLA UNA TRANSFERENCIA PARA LA PRÓXIMA VENTANA
+     *
+     * @param fromAccountId Cuenta origen
+     * @param toAccountId Cuenta destino
+     * @param amount Monto
+     * @return El resultado de ESTA transferencia cuando se aplica su ventana
+     */
+    public Mono<TransferResult> submit(Long fromAccountId, Long toAccountId, Double amount) {
+        return Mono.defer(() -> {
+            TransferRequest request = TransferRequest.builder()
+                .fromAccountId(fromAccountId).toAccountId(toAccountId).amount(amount).build();
+            Sinks.One<TransferResult> result = Sinks.one();
+            Sinks.EmitResult emitted;
+            // El sink no admite dos emisores a la vez: se encola con el monitor de la cola en
+            // vez de reintentar en un bucle (encolar es O(1), el monitor dura nanosegundos)
+            synchronized (queue) {
+                emitted = queue.tryEmitNext(new Pending(request, result, System.nanoTime()));
+            }
+            if (emitted.isFailure()) {
+                if (bypassed.sum() == 0) {
+                    log.warn("⚠️ Cola de compensación llena: las transferencias se ejecutan directamente ({})", emitted);
+                }
+                bypassed.increment();
+                return transferUseCase.transfer(fromAccountId, toAccountId, amount);
+            }
+            submitted.increment();
+            return result.asMono();
+        });
+    }
+
+    /** Resuelve una ventana y entrega a cada solicitud su resultado */
+    private Mono<Void> settle(List<Pending> window) {
+        long now = System.nanoTime();
+        window.forEach(pending -> totalWaitNanos.add(now - pending.enqueuedAt()));
+        settled.add(window.size());
+        windows.increment();
+
+        return batchTransferUseCase.transferNetted(window.stream().map(Pending::request).toList())
+            .collectList()
+            .timeout(settleTimeout)
+            .doOnNext(results -> {
+                accountWrites.add(writesOf(results));
+                for (int i = 0; i < window.size(); i++) {
+                    window.get(i).result().tryEmitValue(results.get(i));
+                }
+            })
+            .onErrorResume(TimeoutException.class, timeout -> {
+                timedOut.increment();
+                log.error("🚨 Una ventana de {} transferencias no terminó en {}, quedan pendientes de conciliación",
+                    window.size(), settleTimeout);
+                window.forEach(pending -> pending.result().tryEmitValue(TransferResult.pendingReconciliation(
+                    UUID.randomUUID().toString(), pending.request().getFromAccountId(),
+                    pending.request().getToAccountId(), pending.request().getAmount())));
+                return Mono.empty();
+            })
+            // transferNetted convierte sus errores en resultados; esto solo protege al motor
+            .onErrorResume(error -> {
+                log.error("❌ Error inesperado en una ventana de compensación: {}", error.getMessage());
+                window.forEach(pending -> pending.result().tryEmitError(error));
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /** Cuentas con saldo neto distinto de 0 entre las transferencias exitosas de la ventana */
+    private static long writesOf(List<TransferResult> results) {
+        Map<Long, Double> net = new HashMap<>();
+        for (TransferResult result : results) {
+            if (result.isSuccess()) {
+                net.merge(result.getFromAccountId(), -result.getAmount(), Double::sum);
+                net.merge(result.getToAccountId(), result.getAmount(), Double::sum);
+            }
+        }
+        return net.values().stream().filter(delta -> delta != 0).count();
+    }
+
+    /** Transferencias encoladas para compensar */
+    public long submitted() {
+        return submitted.sum();
+    }
+
+    /** Transferencias cuya ventana ya cerró */
+    public long settled() {
+        return settled.sum();
+    }
+
+    /** Ventanas resueltas */
+    public long windows() {
+        return windows.sum();
+    }
+
+    /** Escrituras de cuenta hechas por las ventanas (sin compensar serían 2 por transferencia exitosa) */
+    public long accountWrites() {
+        return accountWrites.sum();
+    }
+
+    /** Suma del tiempo que esperaron las transferencias hasta que cerró su ventana */
+    public long totalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /** Transferencias ejecutadas directamente porque la cola estaba llena */
+    public long bypassed() {
+        return bypassed.sum();
+    }
+
+    /** Ventanas que no terminaron en su plazo */
+    public long timedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Deja de aceptar transferencias y espera a que se resuelvan las que quedaron en la cola.
+     */
+    public void close() {
+        synchronized (queue) {
+            queue.tryEmitComplete();
+        }
+        try {
+            if (!drained.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("⚠️ La compensación no terminó de resolver la cola al apagar");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending(TransferRequest request, Sinks.One<TransferResult> result, long enqueuedAt) {
+    }
+}
@@ -1,13 +1,21 @@
 package co.com.bancolombia.usecase.account;
 
 import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import co.com.bancolombia.model.account.TransferRecord;
 import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.TransferState;
 import co.com.bancolombia.model.account.gateways.AccountRepository;
-import lombok.RequiredArgsConstructor;
+import co.com.bancolombia.model.account.gateways.TransferLedger;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * USE CASE: TRANSFERENCIA ENTRE CUENTAS
@@ -35,27 +43,106 @@ import java.util.UUID;
  * 3. No debe exceder el límite máximo ($10,000)
  * 4. La cuenta origen debe tener saldo suficiente
  * 5. Ambas cuentas deben existir
+ *
+ * CONCURRENCIA: el saldo nunca se lee para luego sobrescribirlo. El débito y el crédito
+ * son incrementos atómicos en la base de datos (ver AccountRepository.debitIfSufficient),
+ * así que transferencias simultáneas sobre la misma cuenta no se pisan entre sí.
+ *
+ * Después de guardar, publica un evento de cambio de saldo por cada cuenta
+ * (PATRÓN OBSERVER) para que los índices en memoria no queden desactualizados.
+ *
+ * Cada transferencia exitosa deja dos movimientos en el historial: TRANSFER_OUT en la
+ * cuenta origen y TRANSFER_IN en la destino. Se encolan en TransactionRecorder, que
+ * los guarda en segundo plano: la respuesta no espera al historial.
+ *
+ * LIBRO DE TRANSFERENCIAS (opcional): con TransferLedger cada transferencia se registra
+ * antes del débito y avanza por estados (PENDING -> CREDITING -> COMPLETED). Si un paso
+ * termina en un error ambiguo la transferencia queda en RECONCILE en vez de compensarse
+ * a ciegas; reconcileStale() marca las que quedaron abandonadas a mitad de camino.
+ *
+ * MODO CARRILES (opcional): con TransferLanes, el débito y el crédito de cada
+ * transferencia se ejecutan con los carriles de ambas cuentas ocupados, así las
+ * transferencias sobre una misma cuenta se aplican de a una y en orden, en vez de
+ * competir todas a la vez por el mismo documento.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class TransferUseCase {
 
     // DEPENDENCIAS (inyectadas por el framework)
     private final AccountRepository accountRepository;
 
+    // Publicador de eventos: los listeners (índices en memoria, auditoría) se enteran
+    // de los nuevos saldos de ambas cuentas
+    private final AccountEventUseCase accountEventUseCase;
+
+    // Registro del historial en segundo plano (no agrega latencia a la transferencia)
+    private final TransactionRecorder transactionRecorder;
+
+    // Carriles por cuenta (null = todas las transferencias corren a la vez)
+    private final TransferLanes transferLanes;
+
     /** Límite máximo por transferencia */
     private static final Double MAX_TRANSFER_AMOUNT = 10000.0;
 
+    // Libro de transferencias (null = sin traza durable: tras una caída a mitad de
+    // transferencia no queda registro de qué se alcanzó a mover)
+    private final TransferLedger transferLedger;
+
+    // Transferencias que quedaron pendientes de conciliación
+    private final LongAdder unconfirmed = new LongAdder();
+
+    public TransferUseCase(AccountRepository accountRepository, AccountEventUseCase accountEventUseCase,
+                           TransactionRecorder transactionRecorder) {
+        this(accountRepository, accountEventUseCase, transactionRecorder, null);
+    }
+
+    /**
+     * @param transferLanes Carriles por cuenta; null para ejecutar sin serializar
+     */
+    public TransferUseCase(AccountRepository accountRepository, AccountEventUseCase accountEventUseCase,
+                           TransactionRecorder transactionRecorder, TransferLanes transferLanes) {
+        this(accountRepository, accountEventUseCase, transactionRecorder, transferLanes, null);
+    }
+
+    /**
+     * @param transferLanes Carriles por cuenta; null para ejecutar sin serializar
+     * @param transferLedger Libro de transferencias; null para no dejar traza durable
+     */
+    public TransferUseCase(AccountRepository accountRepository, AccountEventUseCase accountEventUseCase,
+                           TransactionRecorder transactionRecorder, TransferLanes transferLanes,
+                           TransferLedger transferLedger) {
+        this.accountRepository = accountRepository;
+        this.accountEventUseCase = accountEventUseCase;
+        this.transactionRecorder = transactionRecorder;
+        this.transferLanes = transferLanes;
+        this.transferLedger = transferLedger;
+    }
+
     /**
      * EJECUTA UNA TRANSFERENCIA ENTRE DOS CUENTAS
      *
      * Flujo del algoritmo:
      * 1. Validar datos básicos (cuentas diferentes, monto válido)
-     * 2. Buscar ambas cuentas en la base de datos
-     * 3. Validar que tengan saldo suficiente
-     * 4. Actualizar saldos de ambas cuentas
-     * 5. Guardar cambios en la base de datos
-     * 6. Retornar resultado (éxito o error)
+     * 2. Registrar la transferencia en el libro (PENDING) ANTES de mover dinero
+     * 3. Debitar la cuenta origen SOLO si tiene saldo suficiente (operación atómica)
+     * 4. Ganar PENDING -> CREDITING y acreditar la cuenta destino (un solo intento)
+     * 5. Si la cuenta destino no existe, ganar CREDITING -> REFUNDING y devolver el débito
+     * 6. Retornar resultado (éxito, error o pendiente de conciliación)
+     *
+     * ¿Por qué no "leer ambas cuentas y guardar los saldos nuevos"?
+     * Eso son 4 viajes a la base de datos y pierde actualizaciones: si dos transferencias
+     * leen el mismo saldo $100 y cada una guarda "$100 - monto", una de las dos se pierde.
+     * Con el débito condicional (balance >= monto, $inc: -monto) la base de datos valida y
+     * descuenta en el mismo paso: 2 viajes y ninguna actualización perdida.
+     *
+     * ¿Por qué el crédito y la devolución no se reintentan?
+     * Un $inc NO es idempotente: si la escritura se aplicó pero la respuesta se perdió
+     * (timeout), reintentarlo acredita dos veces. Por eso:
+     * - Vacío (la cuenta no existe) es un resultado DEFINITIVO: se devuelve el débito
+     * - Un error es AMBIGUO (pudo haberse aplicado): no se devuelve nada, la transferencia
+     *   queda en RECONCILE y el cliente recibe "pendiente de conciliación"
+     * Cada paso se habilita con un cambio de estado condicional en el libro: si el job de
+     * conciliación ya tomó la transferencia, el paso no se ejecuta.
      *
      * PROGRAMACIÓN REACTIVA:
      * Retorna Mono<TransferResult> en vez de TransferResult directo.
@@ -70,93 +157,286 @@ public class TransferUseCase {
         log.info("🔄 Iniciando transferencia: ${} desde cuenta {} hacia cuenta {}",
             amount, fromAccountId, toAccountId);
 
+        // VALIDACIONES 1 a 3: cuentas diferentes, monto positivo y dentro del límite
+        String invalid = validationError(fromAccountId, toAccountId, amount);
+        if (invalid != null) {
+            log.warn("❌ Error: {}", invalid);
+            return Mono.just(TransferResult.failure(fromAccountId, toAccountId, amount, invalid));
+        }
+
+        // PASO 1: Registro en el libro y débito condicional atómico. Si el registro falla
+        // no se movió dinero: el error termina en "Error del sistema"
+        String transferId = UUID.randomUUID().toString();
+        Mono<TransferResult> transfer = open(transferId, fromAccountId, toAccountId, amount)
+            .then(Mono.defer(() -> debit(transferId, fromAccountId, toAccountId, amount)));
+
+        return (transferLanes == null ? transfer : transferLanes.execute(fromAccountId, toAccountId, transfer))
+            .onErrorResume(error -> {
+                // Solo llegan aquí errores ANTES del débito (libro, carriles, lectura del
+                // motivo del rechazo): después del débito cada camino resuelve su resultado
+                log.error("❌ Error inesperado durante la transferencia: {}", error.getMessage());
+                return Mono.just(TransferResult.retryableFailure(
+                    fromAccountId, toAccountId, amount,
+                    "Error del sistema: " + error.getMessage()
+                ));
+            });
+    }
+
+    /**
+     * Validaciones que no necesitan la base de datos (también las usa BatchTransferUseCase)
+     *
+     * @return El motivo del rechazo, o null si la transferencia es válida
+     */
+    static String validationError(Long fromAccountId, Long toAccountId, Double amount) {
+        if (fromAccountId == null || toAccountId == null || amount == null) {
+            return "La transferencia debe indicar cuenta origen, cuenta destino y monto";
+        }
         // VALIDACIÓN 1: Las cuentas deben ser diferentes
         if (fromAccountId.equals(toAccountId)) {
-            log.warn("❌ Error: Intentando transferir a la misma cuenta");
-            return Mono.just(TransferResult.failure(
-                fromAccountId, toAccountId, amount,
-                "No puedes transferir dinero a la misma cuenta"
-            ));
+            return "No puedes transferir dinero a la misma cuenta";
         }
-
         // VALIDACIÓN 2: El monto debe ser positivo
         if (amount <= 0) {
-            log.warn("❌ Error: Monto inválido: ${}", amount);
-            return Mono.just(TransferResult.failure(
-                fromAccountId, toAccountId, amount,
-                "El monto debe ser mayor a $0"
-            ));
+            return "El monto debe ser mayor a $0";
         }
-
         // VALIDACIÓN 3: No exceder el límite máximo
         if (amount > MAX_TRANSFER_AMOUNT) {
-            log.warn("❌ Error: Monto excede el límite máximo de ${}", MAX_TRANSFER_AMOUNT);
-            return Mono.just(TransferResult.failure(
-                fromAccountId, toAccountId, amount,
-                "El monto excede el límite máximo de $" + MAX_TRANSFER_AMOUNT
-            ));
+            return "El monto excede el límite máximo de $" + MAX_TRANSFER_AMOUNT;
         }
+        return null;
+    }
 
-        // PASO 1: Buscar ambas cuentas en paralelo (más eficiente)
-        Mono<Account> fromAccountMono = accountRepository.getAccountById(fromAccountId);
-        Mono<Account> toAccountMono = accountRepository.getAccountById(toAccountId);
-
-        // PASO 2: Cuando ambas se obtienen, ejecutar la transferencia
-        return fromAccountMono.zipWith(toAccountMono)
-            .flatMap(tuple -> {
-                Account fromAccount = tuple.getT1();
-                Account toAccount = tuple.getT2();
-
-                // VALIDACIÓN 4: Verificar saldo suficiente
-                if (fromAccount.getBalance() < amount) {
-                    log.warn("❌ Error: Saldo insuficiente. Disponible: ${}, Requerido: ${}",
-                        fromAccount.getBalance(), amount);
-                    return Mono.just(TransferResult.failure(
-                        fromAccountId, toAccountId, amount,
-                        "Saldo insuficiente. Disponible: $" + fromAccount.getBalance()
-                    ));
+    /**
+     * Débito condicional: valor = aplicado, vacío = rechazado (nada se movió),
+     * error = no se sabe si se aplicó.
+     */
+    private Mono<TransferResult> debit(String transferId, Long fromAccountId, Long toAccountId, Double amount) {
+        return accountRepository.debitIfSufficient(fromAccountId, amount)
+            .materialize()
+            .flatMap(signal -> {
+                if (signal.isOnNext()) {
+                    return credit(transferId, signal.get(), toAccountId, amount);
+                }
+                if (signal.isOnError()) {
+                    return unconfirmed(transferId, TransferState.PENDING, fromAccountId, toAccountId, amount,
+                        "débito", signal.getThrowable());
                 }
+                // Débito vacío: no alcanzó el saldo o la cuenta no existe. Solo en este camino
+                // (ya fallido) se lee la cuenta, para explicar el motivo
+                return settle(transferId, TransferState.PENDING, TransferState.REJECTED)
+                    .then(rejectDebit(fromAccountId, toAccountId, amount));
+            });
+    }
 
-                // PASO 3: Ejecutar la transferencia (actualizar saldos)
-                log.info("✓ Validaciones pasadas. Ejecutando transferencia...");
-
-                // Crear cuentas actualizadas con nuevos saldos
-                Account updatedFromAccount = Account.builder()
-                    .id(fromAccount.getId())
-                    .ownerId(fromAccount.getOwnerId())
-                    .balance(fromAccount.getBalance() - amount)  // Restar
-                    .build();
-
-                Account updatedToAccount = Account.builder()
-                    .id(toAccount.getId())
-                    .ownerId(toAccount.getOwnerId())
-                    .balance(toAccount.getBalance() + amount)    // Sumar
-                    .build();
-
-                // PASO 4: Guardar ambas cuentas actualizadas
-                return accountRepository.update(updatedFromAccount)
-                    .then(accountRepository.update(updatedToAccount))
-                    .then(Mono.fromCallable(() -> {
-                        // PASO 5: Generar resultado exitoso
-                        String transferId = UUID.randomUUID().toString();
-                        log.info("✅ Transferencia completada exitosamente. ID: {}", transferId);
-
-                        return TransferResult.success(
-                            transferId,
-                            fromAccountId,
-                            toAccountId,
-                            amount
-                        );
+    /**
+     * PASO 2: Crédito atómico a la cuenta destino (segundo round trip), UN solo intento
+     * y solo si esta transferencia gana PENDING -> CREDITING en el libro.
+     */
+    private Mono<TransferResult> credit(String transferId, Account debited, Long toAccountId, Double amount) {
+        Long fromAccountId = debited.getId();
+        return advance(transferId, TransferState.PENDING, TransferState.CREDITING)
+            .onErrorResume(error -> {
+                log.error("🚨 No se pudo habilitar el crédito de la transferencia {}: {}",
+                    transferId, error.getMessage());
+                return Mono.just(false);
+            })
+            .flatMap(won -> !won
+                // La tomó el job de conciliación (o el libro no respondió): el débito ya está
+                // aplicado y el crédito no se intentó, lo resuelve la conciliación
+                ? unconfirmed(transferId, TransferState.PENDING, fromAccountId, toAccountId, amount,
+                    "débito (crédito no habilitado)", null)
+                : accountRepository.credit(toAccountId, amount)
+                    .materialize()
+                    .flatMap(signal -> {
+                        if (signal.isOnNext()) {
+                            return complete(transferId, debited, signal.get(), amount);
+                        }
+                        if (signal.isOnError()) {
+                            // Ambiguo: el $inc pudo haberse aplicado. Devolver el débito
+                            // podría crear dinero
+                            return unconfirmed(transferId, TransferState.CREDITING, fromAccountId, toAccountId,
+                                amount, "crédito", signal.getThrowable());
+                        }
+                        return refund(transferId, fromAccountId, toAccountId, amount);
                     }));
+    }
+
+    /**
+     * PASO 3: El dinero ya se movió. Lo que sigue (libro, eventos, historial) no puede
+     * convertir la transferencia en un fallo: sus errores se registran y se responde éxito.
+     */
+    private Mono<TransferResult> complete(String transferId, Account debited, Account credited, Double amount) {
+        Long fromAccountId = debited.getId();
+        Long toAccountId = credited.getId();
+        log.info("✅ Transferencia completada exitosamente. ID: {}", transferId);
+        // Avisar a los listeners. El saldo anterior se deduce del nuevo: el $inc es exacto,
+        // no hace falta haberlo leído
+        return settle(transferId, TransferState.CREDITING, TransferState.COMPLETED)
+            .then(accountEventUseCase.notifyBalanceChanged(
+                debited, debited.getBalance() + amount, debited.getBalance()))
+            .then(accountEventUseCase.notifyBalanceChanged(
+                credited, credited.getBalance() - amount, credited.getBalance()))
+            .onErrorResume(error -> {
+                log.error("⚠️ Transferencia {} aplicada pero no se pudo notificar: {}",
+                    transferId, error.getMessage());
+                return Mono.empty();
             })
+            .then(Mono.fromCallable(() -> {
+                recordHistory(fromAccountId, toAccountId, amount);
+                return TransferResult.success(transferId, fromAccountId, toAccountId, amount);
+            }))
+            .onErrorReturn(TransferResult.success(transferId, fromAccountId, toAccountId, amount));
+    }
+
+    /**
+     * COMPENSACIÓN: la cuenta destino no existe (resultado definitivo), se devuelve el
+     * débito a la cuenta origen. Un solo intento y solo si se gana CREDITING -> REFUNDING:
+     * reintentar un $inc cuya respuesta se perdió devolvería el monto dos veces.
+     */
+    private Mono<TransferResult> refund(String transferId, Long fromAccountId, Long toAccountId, Double amount) {
+        log.warn("↩️ Revirtiendo débito de ${} en cuenta {}", amount, fromAccountId);
+        return advance(transferId, TransferState.CREDITING, TransferState.REFUNDING)
             .onErrorResume(error -> {
-                // Manejar cualquier error inesperado
-                log.error("❌ Error inesperado durante la transferencia: {}", error.getMessage());
-                return Mono.just(TransferResult.failure(
-                    fromAccountId, toAccountId, amount,
-                    "Error del sistema: " + error.getMessage()
-                ));
-            });
+                log.error("🚨 No se pudo habilitar la devolución de la transferencia {}: {}",
+                    transferId, error.getMessage());
+                return Mono.just(false);
+            })
+            .flatMap(won -> !won
+                ? unconfirmed(transferId, TransferState.CREDITING, fromAccountId, toAccountId, amount,
+                    "débito (devolución no habilitada)", null)
+                : accountRepository.credit(fromAccountId, amount)
+                    .flatMap(refunded -> settle(transferId, TransferState.REFUNDING, TransferState.REFUNDED)
+                        .thenReturn(TransferResult.failure(fromAccountId, toAccountId, amount,
+                            "Cuenta destino no encontrada")))
+                    .switchIfEmpty(Mono.defer(() -> unconfirmed(transferId, TransferState.REFUNDING,
+                        fromAccountId, toAccountId, amount, "débito (cuenta origen no encontrada al devolver)", null)))
+                    .onErrorResume(error -> unconfirmed(transferId, TransferState.REFUNDING,
+                        fromAccountId, toAccountId, amount, "devolución", error)));
+    }
+
+    /**
+     * No se sabe si el último paso se aplicó: la transferencia pasa a RECONCILE (si aún
+     * está en el estado esperado) y el cliente recibe "pendiente de conciliación".
+     * Nunca se compensa a ciegas.
+     */
+    private Mono<TransferResult> unconfirmed(String transferId, TransferState expected, Long fromAccountId,
+                                             Long toAccountId, Double amount, String step, Throwable error) {
+        unconfirmed.increment();
+        log.error("🚨 Transferencia {} pendiente de conciliación tras el {} (${} de {} a {}): {}",
+            transferId, step, amount, fromAccountId, toAccountId, error == null ? "-" : error.getMessage());
+        return settle(transferId, expected, TransferState.RECONCILE)
+            .thenReturn(TransferResult.pendingReconciliation(transferId, fromAccountId, toAccountId, amount));
     }
-}
 
+    /**
+     * CONCILIACIÓN: marca RECONCILE las transferencias que llevan más de staleAfter sin
+     * terminar (el proceso se cayó o un paso nunca respondió). No mueve dinero: con el
+     * libro no se puede saber si el débito o el crédito en curso se aplicaron.
+     *
+     * @param staleAfter Tiempo sin cambios a partir del cual una transferencia se da por abandonada
+     * @return Cantidad de transferencias marcadas
+     */
+    public Mono<Long> reconcileStale(Duration staleAfter) {
+        if (transferLedger == null) {
+            return Mono.just(0L);
+        }
+        return transferLedger.findUnfinished(Instant.now().minus(staleAfter))
+            .concatMap(record -> transferLedger.advance(record.getTransferId(), record.getState(), TransferState.RECONCILE)
+                .filter(Boolean::booleanValue)
+                .doOnNext(marked -> {
+                    unconfirmed.increment();
+                    log.error("🚨 Transferencia {} abandonada en {} (${} de {} a {}): pendiente de conciliación",
+                        record.getTransferId(), record.getState(), record.getAmount(),
+                        record.getFromAccountId(), record.getToAccountId());
+                }))
+            .count();
+    }
+
+    /** Transferencias que quedaron pendientes de conciliación desde el arranque */
+    public long unconfirmed() {
+        return unconfirmed.sum();
+    }
+
+    private Mono<Void> open(String transferId, Long fromAccountId, Long toAccountId, Double amount) {
+        if (transferLedger == null) {
+            return Mono.empty();
+        }
+        return transferLedger.open(TransferRecord.builder()
+            .transferId(transferId)
+            .fromAccountId(fromAccountId)
+            .toAccountId(toAccountId)
+            .amount(amount)
+            .state(TransferState.PENDING)
+            .updatedAt(Instant.now())
+            .build());
+    }
+
+    /** Cambio de estado que habilita un paso: sin libro, siempre se gana */
+    private Mono<Boolean> advance(String transferId, TransferState expected, TransferState next) {
+        return transferLedger == null
+            ? Mono.just(true)
+            : transferLedger.advance(transferId, expected, next);
+    }
+
+    /** Cambio de estado final: si el libro falla la transferencia queda abierta y la marca la conciliación */
+    private Mono<Void> settle(String transferId, TransferState expected, TransferState next) {
+        return advance(transferId, expected, next)
+            .doOnNext(applied -> {
+                if (!applied) {
+                    log.warn("Transferencia {} ya no estaba en {}: no se marcó {}", transferId, expected, next);
+                }
+            })
+            .onErrorResume(error -> {
+                log.error("No se pudo marcar la transferencia {} como {}: {}", transferId, next, error.getMessage());
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /**
+     * El débito no se aplicó: distingue saldo insuficiente de cuenta inexistente. Si la
+     * lectura ya muestra saldo suficiente, el rechazo vino de una carrera (ej. una cuenta con
+     * créditos en franjas que no se alcanzó a consolidar): no es saldo insuficiente y se
+     * puede reintentar. Se lee sin cache: un saldo viejo confundiría los dos casos.
+     */
+    private Mono<TransferResult> rejectDebit(Long fromAccountId, Long toAccountId, Double amount) {
+        return accountRepository.getLatestAccountById(fromAccountId)
+            .map(fromAccount -> {
+                if (fromAccount.getBalance() >= amount) {
+                    log.warn("⚠️ Débito rechazado con saldo suficiente en cuenta {} (concurrencia)", fromAccountId);
+                    return TransferResult.retryableFailure(fromAccountId, toAccountId, amount,
+                        "El saldo de la cuenta origen cambió durante la transferencia, reintenta");
+                }
+                log.warn("❌ Error: Saldo insuficiente. Disponible: ${}, Requerido: ${}",
+                    fromAccount.getBalance(), amount);
+                return TransferResult.failure(fromAccountId, toAccountId, amount,
+                    "Saldo insuficiente. Disponible: $" + fromAccount.getBalance());
+            })
+            .defaultIfEmpty(TransferResult.failure(fromAccountId, toAccountId, amount,
+                "Cuenta origen no encontrada"));
+    }
+
+    /**
+     * Encola los dos movimientos de la transferencia para el historial.
+     * Cada uno lleva su propio id: son transacciones distintas, una por cuenta.
+     */
+    void recordHistory(Long fromAccountId, Long toAccountId, Double amount) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionRecorder.record(Transaction.builder()
+            .id(UUID.randomUUID().toString())
+            .accountId(fromAccountId)
+            .amount(-amount)
+            .type(TransactionType.TRANSFER_OUT)
+            .timestamp(now)
+            .description("Transferencia enviada")
+            .build());
+        transactionRecorder.record(Transaction.builder()
+            .id(UUID.randomUUID().toString())
+            .accountId(toAccountId)
+            .amount(amount)
+            .type(TransactionType.TRANSFER_IN)
+            .timestamp(now)
+            .description("Transferencia recibida")
+            .build());
+    }
+}
@@ -0,0 +1,173 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.AccountVersionConflictException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * REINTENTO ANTE CONFLICTOS DE VERSIÓN (CONTROL OPTIMISTA DE CONCURRENCIA)
+ *
+ * ¿Qué es el control optimista?
+ * En vez de bloquear la cuenta mientras se modifica (pesimista: todos esperan en fila),
+ * cada escritura dice "guarda esto SOLO si la cuenta sigue en la versión que leí".
+ * Si otro escribió primero, la escritura falla (AccountVersionConflictException) y se
+ * vuelve a intentar con una lectura fresca. Como los conflictos son raros, casi nunca
+ * se paga nada; y cuando los hay, solo reintenta quien chocó.
+ *
+ * ¿Por qué esperar un tiempo ALEATORIO entre intentos (jitter)?
+ * Si dos operaciones chocan y ambas reintentan a los 10 ms exactos, vuelven a chocar.
+ * Con backoff exponencial + jitter cada una espera un tiempo distinto y se separan.
+ *
+ * CUENTAS CALIENTES:
+ * Lleva la cuenta de conflictos y reintentos por cuenta (hasta maxTrackedAccounts
+ * cuentas distintas; las demás solo suman al total). hottest(n) dice cuáles cuentas
+ * concentran los conflictos, para tratarlas aparte en vez de serializar todas las escrituras.
+ *
+ * COMPLEJIDAD: O(1) por conflicto; hottest(n) es O(k log k) con k cuentas registradas
+ */
+@Slf4j
+public class VersionConflictRetry {
+
+    /** Intentos totales por defecto (el primero + 4 reintentos) */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** Cuentas distintas cuyo detalle se conserva por defecto */
+    public static final int DEFAULT_MAX_TRACKED_ACCOUNTS = 1024;
+
+    private final int maxAttempts;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final double jitter;
+    private final int maxTrackedAccounts;
+
+    private final Map<Long, AccountContention> byAccount = new ConcurrentHashMap<>();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public VersionConflictRetry() {
+        this(DEFAULT_MAX_ATTEMPTS, Duration.ofMillis(5), Duration.ofMillis(200), 0.5, DEFAULT_MAX_TRACKED_ACCOUNTS);
+    }
+
+    /**
+     * @param maxAttempts Intentos totales (incluye el primero)
+     * @param minBackoff Espera antes del primer reintento (se duplica en cada uno)
+     * @param maxBackoff Espera máxima entre intentos
+     * @param jitter Fracción aleatoria de la espera, entre 0 y 1
+     * @param maxTrackedAccounts Cuentas distintas con estadística propia
+     */
+    public VersionConflictRetry(int maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter,
+                                int maxTrackedAccounts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts debe ser al menos 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+        this.maxTrackedAccounts = maxTrackedAccounts;
+    }
+
+    /**
+     * EJECUTA UNA ESCRITURA CON REINTENTOS ANTE CONFLICTO
+     *
+     * attempt se vuelve a suscribir en cada intento, así que debe incluir la LECTURA
+     * de la cuenta (leer → modificar → update), no solo el update: reintentar con la
+     * versión vieja volvería a chocar. Otros errores no se reintentan.
+     *
+     * @param accountId Cuenta que se modifica (para las estadísticas)
+     * @param attempt Lectura + escritura completa
+     * @return El resultado del primer intento que no choca; si se agotan los intentos,
+     *         el último AccountVersionConflictException
+     */
+    public <T> Mono<T> execute(Long accountId, Mono<T> attempt) {
+        return attempt
+            .doOnError(AccountVersionConflictException.class, conflict -> onConflict(accountId))
+            .retryWhen(Retry.backoff(maxAttempts - 1L, minBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(jitter)
+                .filter(AccountVersionConflictException.class::isInstance)
+                .doBeforeRetry(signal -> onRetry(accountId))
+                .onRetryExhaustedThrow((spec, signal) -> {
+                    exhausted.increment();
+                    log.warn("⚠️ Cuenta {}: conflicto de versión tras {} intentos", accountId, maxAttempts);
+                    return signal.failure();
+                }));
+    }
+
+    private void onConflict(Long accountId) {
+        conflicts.increment();
+        AccountContention contention = contentionOf(accountId);
+        if (contention != null) {
+            contention.conflicts.increment();
+        }
+    }
+
+    private void onRetry(Long accountId) {
+        retries.increment();
+        AccountContention contention = contentionOf(accountId);
+        if (contention != null) {
+            contention.retries.increment();
+        }
+    }
+
+    private AccountContention contentionOf(Long accountId) {
+        AccountContention contention = byAccount.get(accountId);
+        if (contention == null && byAccount.size() < maxTrackedAccounts) {
+            contention = byAccount.computeIfAbsent(accountId, id -> new AccountContention());
+        }
+        return contention;
+    }
+
+    /**
+     * LAS N CUENTAS CON MÁS CONFLICTOS
+     *
+     * @param limit Cuántas retornar
+     * @return De más a menos conflictos
+     */
+    public List<HotAccount> hottest(int limit) {
+        return byAccount.entrySet().stream()
+            .map(entry -> new HotAccount(entry.getKey(),
+                entry.getValue().conflicts.sum(), entry.getValue().retries.sum()))
+            .sorted(Comparator.comparingLong(HotAccount::conflicts).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    /** Conflictos de versión detectados (cada intento que chocó) */
+    public long conflicts() {
+        return conflicts.sum();
+    }
+
+    /** Reintentos lanzados */
+    public long retries() {
+        return retries.sum();
+    }
+
+    /** Escrituras que agotaron los intentos y fallaron */
+    public long exhausted() {
+        return exhausted.sum();
+    }
+
+    /** Cuentas con estadística propia */
+    public int trackedAccounts() {
+        return byAccount.size();
+    }
+
+    /** Conflictos y reintentos acumulados de una cuenta */
+    public record HotAccount(Long accountId, long conflicts, long retries) {
+    }
+
+    private static final class AccountContention {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+}
@@ -0,0 +1,11 @@
+package co.com.bancolombia.usecase.account.history;
+
+/**
+ * Estadísticas de una cuenta en la última hora y el último día
+ *
+ * @param accountId ID de la cuenta
+ * @param lastHour  Agregados de la última hora
+ * @param lastDay   Agregados del último día
+ */
+public record AccountStats(Long accountId, WindowStats lastHour, WindowStats lastDay) {
+}
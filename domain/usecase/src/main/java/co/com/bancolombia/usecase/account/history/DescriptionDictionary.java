@@ -0,0 +1,76 @@
+package co.com.bancolombia.usecase.account.history;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DICCIONARIO DE DESCRIPCIONES (dictionary encoding)
+ *
+ * Las descripciones de transacciones se repiten muchísimo ("Transferencia recibida",
+ * "Retiro en cajero"...). En vez de guardar el String en cada transacción, se guarda
+ * una sola vez aquí y cada transacción guarda solo su código (un int de 4 bytes).
+ *
+ * Es compartido por todas las cuentas. Tiene un tamaño máximo para no crecer sin
+ * límite si las descripciones resultan ser únicas: al llenarse, encode() responde
+ * OVERFLOW y quien lo usa guarda el String tal cual.
+ *
+ * COMPLEJIDAD:
+ * - encode: O(1) (un get en un ConcurrentHashMap; solo las descripciones nuevas bloquean)
+ * - decode: O(1) (acceso a un arreglo)
+ */
+public class DescriptionDictionary {
+
+    /** Código de "sin descripción" */
+    static final int NONE = -1;
+
+    /** Código de "no cupo en el diccionario, se guardó aparte" */
+    static final int OVERFLOW = -2;
+
+    private final int maxEntries;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /** Descripción de cada código; se reemplaza (nunca se modifica una celda ya publicada) al crecer */
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public DescriptionDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    int encode(String description) {
+        if (description == null) {
+            return NONE;
+        }
+        Integer code = codes.get(description);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(description);
+            if (code != null) {
+                return code;
+            }
+            if (size >= maxEntries) {
+                return OVERFLOW;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, Math.min(current.length * 2, maxEntries));
+            }
+            current[size] = description;
+            values = current;
+            codes.put(description, size);
+            return size++;
+        }
+    }
+
+    String decode(int code) {
+        return code >= 0 ? values[code] : null;
+    }
+
+    /** Cantidad de descripciones distintas guardadas */
+    public int size() {
+        return codes.size();
+    }
+}
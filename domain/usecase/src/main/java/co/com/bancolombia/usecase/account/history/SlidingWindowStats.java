@@ -0,0 +1,121 @@
+package co.com.bancolombia.usecase.account.history;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * ESTADÍSTICAS EN UNA VENTANA DESLIZANTE DE TIEMPO (por cubetas)
+ *
+ * ¿Qué problema resuelve?
+ * "¿Cuánto movió esta cuenta en la última hora?" recorriendo el historial cuesta
+ * O(historial) en cada consulta. Aquí la ventana se parte en B cubetas de igual
+ * duración (ej. 1 hora = 12 cubetas de 5 minutos) y cada cubeta guarda ya sumados
+ * la cantidad, la suma, el mínimo y el máximo de sus transacciones.
+ *
+ * ¿Cómo funciona?
+ * - Cada cubeta es un "reloj" circular: la cubeta del minuto 65 es la misma celda que la
+ *   del minuto 5. Cada celda recuerda a qué período pertenece (epochs); si llega una
+ *   transacción de un período más nuevo, la celda se vacía y se reutiliza
+ * - Leer la ventana = combinar las B cubetas que siguen dentro de ella
+ *
+ * PRECISIÓN: la ventana avanza de a una cubeta. "Última hora" con cubetas de 5
+ * minutos incluye entre 55 y 60 minutos hacia atrás (más precisión = más cubetas).
+ *
+ * COMPLEJIDAD:
+ * - add: O(1)
+ * - snapshot: O(B), B fijo (no depende de cuántas transacciones haya)
+ * - Memoria: B x (3 long + 2 double) = 40 bytes por cubeta
+ */
+public class SlidingWindowStats {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final Duration window;
+    private final long bucketMicros;
+    private final int buckets;
+
+    // Protegidos por this
+    private final long[] epochs;
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxs;
+    private long newestEpoch = EMPTY;
+
+    /**
+     * @param window Duración total de la ventana
+     * @param buckets Cubetas en que se parte (debe dividir la ventana en partes iguales de al menos 1 µs)
+     */
+    public SlidingWindowStats(Duration window, int buckets) {
+        long windowMicros = window.toNanos() / 1_000;
+        if (buckets < 1 || windowMicros % buckets != 0) {
+            throw new IllegalArgumentException("La ventana " + window + " no se puede partir en " + buckets + " cubetas");
+        }
+        this.window = window;
+        this.bucketMicros = windowMicros / buckets;
+        this.buckets = buckets;
+        this.epochs = new long[buckets];
+        this.counts = new long[buckets];
+        this.sums = new double[buckets];
+        this.mins = new double[buckets];
+        this.maxs = new double[buckets];
+        Arrays.fill(epochs, EMPTY);
+    }
+
+    /**
+     * SUMA UNA TRANSACCIÓN A SU CUBETA
+     *
+     * @param timestamp Fecha de la transacción
+     * @param amount Monto
+     */
+    public synchronized void add(LocalDateTime timestamp, double amount) {
+        long epoch = Math.floorDiv(TransactionRingBuffer.toEpochMicros(timestamp), bucketMicros);
+        int slot = (int) Math.floorMod(epoch, (long) buckets);
+        if (epochs[slot] != epoch) {
+            if (epochs[slot] != EMPTY && epochs[slot] > epoch) {
+                // La celda ya es de un período más nuevo: esta transacción quedó fuera de la ventana
+                return;
+            }
+            epochs[slot] = epoch;
+            counts[slot] = 0;
+            sums[slot] = 0;
+            mins[slot] = Double.POSITIVE_INFINITY;
+            maxs[slot] = Double.NEGATIVE_INFINITY;
+        }
+        counts[slot]++;
+        sums[slot] += amount;
+        mins[slot] = Math.min(mins[slot], amount);
+        maxs[slot] = Math.max(maxs[slot], amount);
+        newestEpoch = Math.max(newestEpoch, epoch);
+    }
+
+    /**
+     * COMBINA LAS CUBETAS QUE SIGUEN DENTRO DE LA VENTANA
+     *
+     * @param now Instante actual
+     */
+    public synchronized WindowStats snapshot(LocalDateTime now) {
+        long current = Math.floorDiv(TransactionRingBuffer.toEpochMicros(now), bucketMicros);
+        long oldest = current - buckets + 1;
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int slot = 0; slot < buckets; slot++) {
+            if (epochs[slot] != EMPTY && epochs[slot] >= oldest && epochs[slot] <= current) {
+                count += counts[slot];
+                sum += sums[slot];
+                min = Math.min(min, mins[slot]);
+                max = Math.max(max, maxs[slot]);
+            }
+        }
+        return count == 0 ? WindowStats.empty(window) : new WindowStats(window, count, sum, min, max);
+    }
+
+    /** ¿Ya salieron de la ventana todas sus transacciones? (se puede descartar) */
+    public synchronized boolean isExpired(LocalDateTime now) {
+        long current = Math.floorDiv(TransactionRingBuffer.toEpochMicros(now), bucketMicros);
+        return newestEpoch == EMPTY || newestEpoch < current - buckets + 1;
+    }
+}
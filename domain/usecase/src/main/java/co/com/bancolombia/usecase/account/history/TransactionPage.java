@@ -0,0 +1,18 @@
+package co.com.bancolombia.usecase.account.history;
+
+import co.com.bancolombia.model.account.Transaction;
+import reactor.core.publisher.Flux;
+
+/**
+ * Una página del historial de una cuenta
+ *
+ * @param transactions Transacciones de la página, de la más antigua a la más reciente
+ *                     (se leen a medida que el suscriptor las pide)
+ * @param nextCursor   Cursor para pedir la página siguiente; null si no hay más
+ */
+public record TransactionPage(Flux<Transaction> transactions, Long nextCursor) {
+
+    public static TransactionPage empty() {
+        return new TransactionPage(Flux.empty(), null);
+    }
+}
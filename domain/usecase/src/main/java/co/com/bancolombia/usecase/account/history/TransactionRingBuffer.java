@@ -0,0 +1,532 @@
+package co.com.bancolombia.usecase.account.history;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * BUFFER CIRCULAR (RING BUFFER) DE TRANSACCIONES EN COLUMNAS
+ *
+ * ¿Qué es un buffer circular?
+ * Un arreglo de tamaño fijo donde, al llegar al final, se vuelve a escribir desde
+ * el principio encima de lo más viejo. Es como un reloj: después de las 12 sigue la 1.
+ *
+ * ¿Por qué "en columnas" (struct-of-arrays)?
+ * Un objeto Transaction con sus Long, Double, LocalDateTime y Strings (más el nodo
+ * de la lista que lo guardaba) ocupa ~265 bytes en el heap. Aquí cada campo vive en su propio arreglo primitivo:
+ * - timestamps: long (microsegundos desde 1970, UTC)
+ * - amounts:    long (los bits exactos del double, sin perder precisión)
+ * - types:      byte (ordinal de TransactionType y la marca "sin fecha")
+ * - descriptions: int (código en el DescriptionDictionary compartido)
+ * - ids:        dos long si el id es un UUID (lo normal); si no, el String original
+ * Son ~40 bytes por transacción. Los objetos Transaction se crean SOLO al leer.
+ *
+ * ¿Cómo se ubica cada transacción?
+ * Cada una recibe un número de secuencia (0, 1, 2, ...) y vive en la celda
+ * secuencia % capacidad. Con capacidad 100, la transacción 250 está en la celda 50.
+ * Un buffer puede empezar a numerar desde otra secuencia (firstSequence): así los
+ * buffers sucesivos de una misma cuenta no repiten números y un cursor de un buffer
+ * anterior se reconoce.
+ * Los arreglos empiezan pequeños y crecen hasta la capacidad: una cuenta con
+ * 2 transacciones no reserva espacio para 100.
+ *
+ * CONCURRENCIA (StampedLock):
+ * - Los escritores se turnan con el write lock: agregar es muy corto
+ * - Los lectores hacen una lectura OPTIMISTA (sin bloquear) y la validan; solo si
+ *   un escritor se cruzó repiten esa celda con el read lock
+ * - Si la celda ya fue sobrescrita, esa transacción y las anteriores ya salieron
+ *   del historial y la lectura se detiene ahí
+ *
+ * ORDEN POR FECHA:
+ * La columna de timestamps se mantiene ordenada de la más vieja a la más nueva:
+ * append guarda max(fecha anterior, fecha de la transacción). Una transacción que llega
+ * con fecha anterior a la última (escritores concurrentes, relojes distintos) queda con
+ * la fecha de la última; una sin fecha ocupa el lugar de su llegada y se lee sin fecha.
+ * sequencesBetween() aprovecha el orden para ubicar un rango de fechas con búsqueda
+ * binaria en vez de recorrer el historial.
+ *
+ * MEMORIA:
+ * El buffer suma (y al cerrarse resta) su tamaño estimado en un contador compartido,
+ * así TransactionHistoryUseCase conoce el total sin recorrer todas las cuentas.
+ * Un buffer cerrado (expulsado de memoria) ya no acepta transacciones.
+ *
+ * COMPLEJIDAD:
+ * - append: O(1) sin asignaciones (salvo al crecer, O(capacidad) amortizado)
+ * - latest(n): O(n) sin copias intermedias
+ * - sequencesBetween: O(log capacidad)
+ */
+public class TransactionRingBuffer {
+
+    private static final int INITIAL_LENGTH = 8;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    /** Un NaN con una carga que la aritmética nunca produce: marca un monto null */
+    private static final long NO_AMOUNT = 0x7ff8dead00000000L;
+    /** La columna de tipos guarda el ordinal en los bits bajos y la marca "sin fecha" aparte */
+    private static final byte TYPE_MASK = 0x3f;
+    private static final byte NO_TYPE = TYPE_MASK;
+    private static final byte WITHOUT_TIMESTAMP = 0x40;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    /**
+     * Bytes fijos de un buffer: encabezados de objetos y arreglos, el StampedLock y la
+     * entrada del mapa que lo guarda (medido: ~4050 bytes con 100 transacciones)
+     */
+    private static final long BASE_BYTES = 352;
+    /** Bytes por celda: 4 long (id alto/bajo, fecha, monto) + byte (tipo) + int (descripción) */
+    private static final long SLOT_BYTES = Long.BYTES * 4 + Byte.BYTES + Integer.BYTES;
+    /** Una referencia comprimida por celda en las columnas opcionales de String */
+    private static final long REFERENCE_BYTES = 4;
+
+    private final Long accountId;
+    private final int capacity;
+    private final long firstSequence;
+    private final DescriptionDictionary descriptions;
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder residentBytes;
+
+    // Protegidos por lock
+    private Columns columns;
+    private long published;
+    private long newestTimestamp = NO_TIMESTAMP;
+    private long accountedBytes;
+    private boolean closed;
+
+    /** Último append o lectura (System.nanoTime) */
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    public TransactionRingBuffer(Long accountId, int capacity, DescriptionDictionary descriptions) {
+        this(accountId, capacity, descriptions, new LongAdder());
+    }
+
+    /**
+     * @param residentBytes Contador compartido donde el buffer lleva su tamaño estimado
+     */
+    public TransactionRingBuffer(Long accountId, int capacity, DescriptionDictionary descriptions,
+                                 LongAdder residentBytes) {
+        this(accountId, capacity, descriptions, residentBytes, 0);
+    }
+
+    /**
+     * @param residentBytes Contador compartido donde el buffer lleva su tamaño estimado
+     * @param firstSequence Secuencia de la primera transacción (no negativa)
+     */
+    public TransactionRingBuffer(Long accountId, int capacity, DescriptionDictionary descriptions,
+                                 LongAdder residentBytes, long firstSequence) {
+        if (capacity < 1 || firstSequence < 0) {
+            throw new IllegalArgumentException("La capacidad debe ser al menos 1 y la primera secuencia no negativa");
+        }
+        this.accountId = accountId;
+        this.capacity = capacity;
+        this.firstSequence = firstSequence;
+        this.published = firstSequence;
+        this.descriptions = descriptions;
+        this.residentBytes = residentBytes;
+        this.columns = new Columns(Math.min(INITIAL_LENGTH, capacity));
+        this.accountedBytes = columns.estimatedBytes();
+        residentBytes.add(accountedBytes);
+    }
+
+    /**
+     * AGREGA UNA TRANSACCIÓN, sobrescribiendo la más vieja si está lleno
+     *
+     * La transacción se descompone en sus columnas; el objeto no se guarda.
+     *
+     * @return false si el buffer ya se cerró y la transacción no se guardó
+     */
+    public boolean append(Transaction transaction) {
+        String id = transaction.getId();
+        UUID uuid = asCanonicalUuid(id);
+        long timestamp = toEpochMicros(transaction.getTimestamp());
+        long amount = transaction.getAmount() == null ? NO_AMOUNT : Double.doubleToRawLongBits(transaction.getAmount());
+        byte type = (byte) ((transaction.getType() == null ? NO_TYPE : transaction.getType().ordinal())
+            | (transaction.getTimestamp() == null ? WITHOUT_TIMESTAMP : 0));
+        int description = descriptions.encode(transaction.getDescription());
+
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return false;
+            }
+            Columns c = columns;
+            if (published - firstSequence == c.length && c.length < capacity) {
+                c = c.grow(Math.min(c.length * 2, capacity));
+                columns = c;
+            }
+            int slot = slotOf(c, published);
+            c.idHigh[slot] = uuid == null ? 0 : uuid.getMostSignificantBits();
+            c.idLow[slot] = uuid == null ? 0 : uuid.getLeastSignificantBits();
+            if (uuid == null && id != null) {
+                c.otherIds()[slot] = id;
+            } else if (c.otherIds != null) {
+                c.otherIds[slot] = null;
+            }
+            // Nunca menor que la anterior: la columna sigue ordenada para la búsqueda binaria
+            newestTimestamp = Math.max(newestTimestamp, timestamp);
+            c.timestamps[slot] = newestTimestamp;
+            c.amounts[slot] = amount;
+            c.types[slot] = type;
+            c.descriptions[slot] = description;
+            if (description == DescriptionDictionary.OVERFLOW) {
+                c.overflow()[slot] = transaction.getDescription();
+            } else if (c.overflow != null) {
+                c.overflow[slot] = null;
+            }
+            published++;
+            long bytes = c.estimatedBytes();
+            if (bytes != accountedBytes) {
+                residentBytes.add(bytes - accountedBytes);
+                accountedBytes = bytes;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        lastAccessNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * CIERRA EL BUFFER: descuenta su tamaño del contador compartido y desde ahora
+     * rechaza los append. Lo que ya tiene se puede seguir leyendo.
+     */
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            if (!closed) {
+                closed = true;
+                residentBytes.add(-accountedBytes);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Marca el buffer como usado ahora (cuenta para decidir si está inactivo) */
+    public void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    public long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /**
+     * LAS ÚLTIMAS N TRANSACCIONES, de la más reciente a la más antigua
+     *
+     * Se reconstruye cada Transaction a medida que el suscriptor la pide:
+     * no se arma ninguna lista intermedia.
+     */
+    public Flux<Transaction> latest(int limit) {
+        return Flux.defer(() -> {
+            long newest = publishedCount() - 1;
+            long oldest = newest + 1 - Math.max(limit, 0);
+            return Flux.generate(() -> newest, (sequence, sink) -> {
+                Transaction transaction = sequence >= oldest && sequence >= firstSequence ? read(sequence) : null;
+                if (transaction == null) {
+                    sink.complete();
+                } else {
+                    sink.next(transaction);
+                }
+                return sequence - 1;
+            });
+        });
+    }
+
+    /**
+     * TODAS LAS TRANSACCIONES GUARDADAS, de la más antigua a la más reciente
+     */
+    public Flux<Transaction> all() {
+        return Flux.defer(() -> {
+            long end = publishedCount();
+            return range(Math.max(firstSequence, end - capacity), end);
+        });
+    }
+
+    /**
+     * SECUENCIAS DE LAS TRANSACCIONES CON FECHA EN [from, to)
+     *
+     * Dos búsquedas binarias sobre la columna de timestamps (bajo el read lock:
+     * son pocas comparaciones). from/to null = sin límite por ese lado.
+     * Las transacciones sin fecha cuentan con la fecha de la anterior (o como las más
+     * antiguas si no hay anterior).
+     */
+    public Range sequencesBetween(LocalDateTime from, LocalDateTime to) {
+        long stamp = lock.readLock();
+        try {
+            Columns c = columns;
+            long end = published;
+            long oldest = end - Math.min(end - firstSequence, c.length);
+            long first = from == null ? oldest : lowerBound(c, oldest, end, toEpochMicros(from));
+            long last = to == null ? end : lowerBound(c, first, end, toEpochMicros(to));
+            return new Range(first, Math.max(first, last));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * ¿Están en el buffer todas sus transacciones con fecha >= from?
+     *
+     * Sí cuando la más antigua guardada es anterior a from: lo que ya se sobrescribió
+     * (o no se cargó) era todavía más viejo. Con from null (sin límite) nunca se sabe.
+     */
+    public boolean covers(LocalDateTime from) {
+        if (from == null) {
+            return false;
+        }
+        long stamp = lock.readLock();
+        try {
+            Columns c = columns;
+            long end = published;
+            if (end == firstSequence) {
+                return false;
+            }
+            long oldest = end - Math.min(end - firstSequence, c.length);
+            return c.timestamps[slotOf(c, oldest)] < toEpochMicros(from);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * LAS TRANSACCIONES CON SECUENCIA EN [first, end), de la más antigua a la más reciente
+     *
+     * Las secuencias no cambian al agregar transacciones nuevas, por eso sirven de
+     * cursor estable. Las que ya se sobrescribieron se saltan.
+     */
+    public Flux<Transaction> range(long first, long end) {
+        return Flux.defer(() -> {
+            long stop = Math.min(end, publishedCount());
+            // Lo anterior a stop - capacity ya se sobrescribió seguro: no se recorre
+            long start = Math.max(first, Math.max(firstSequence, stop - capacity));
+            return Flux.generate(() -> start, (sequence, sink) -> {
+                // Si un escritor ya sobrescribió esta celda, se pasa a la siguiente
+                for (long next = sequence; next < stop; next++) {
+                    Transaction transaction = read(next);
+                    if (transaction != null) {
+                        sink.next(transaction);
+                        return next + 1;
+                    }
+                }
+                sink.complete();
+                return stop;
+            });
+        });
+    }
+
+    /** Cantidad de transacciones guardadas (como máximo la capacidad) */
+    public int size() {
+        return (int) Math.min(publishedCount() - firstSequence, capacity);
+    }
+
+    /** Secuencia de la primera transacción que recibió este buffer */
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    /** Secuencia que recibirá la próxima transacción */
+    public long nextSequence() {
+        return publishedCount();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Long accountId() {
+        return accountId;
+    }
+
+    /** Primera secuencia con timestamp >= micros entre [from, to); los timestamps están ordenados */
+    private long lowerBound(Columns c, long from, long to, long micros) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (c.timestamps[slotOf(c, mid)] < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Celda de la secuencia: se cuenta desde firstSequence para que grow() no mueva nada */
+    private int slotOf(Columns c, long sequence) {
+        return (int) ((sequence - firstSequence) % c.length);
+    }
+
+    private long publishedCount() {
+        long stamp = lock.tryOptimisticRead();
+        long count = published;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = published;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reconstruye la transacción de la secuencia; null si ya no está en el buffer.
+     * Primero intenta sin bloquear; si un escritor se cruzó, repite con el read lock.
+     */
+    private Transaction read(long sequence) {
+        long stamp = lock.tryOptimisticRead();
+        boolean locked = false;
+        try {
+            while (true) {
+                Columns c = columns;
+                long total = published;
+                boolean live = sequence >= firstSequence && sequence < total && total - sequence <= c.length;
+                int slot = live ? slotOf(c, sequence) : 0;
+                long idHigh = c.idHigh[slot];
+                long idLow = c.idLow[slot];
+                String otherId = c.otherIds == null ? null : c.otherIds[slot];
+                long timestamp = c.timestamps[slot];
+                long amount = c.amounts[slot];
+                byte type = c.types[slot];
+                int description = c.descriptions[slot];
+                String overflow = c.overflow == null ? null : c.overflow[slot];
+                if (locked || lock.validate(stamp)) {
+                    if (!live) {
+                        return null;
+                    }
+                    String id = idHigh == 0 && idLow == 0 ? otherId : new UUID(idHigh, idLow).toString();
+                    return materialize(id, timestamp, amount, type, description, overflow);
+                }
+                stamp = lock.readLock();
+                locked = true;
+            }
+        } finally {
+            if (locked) {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private Transaction materialize(String id, long timestamp, long amount, byte type,
+                                    int description, String overflow) {
+        return Transaction.builder()
+            .id(id)
+            .accountId(accountId)
+            .amount(amount == NO_AMOUNT ? null : Double.longBitsToDouble(amount))
+            .type((type & TYPE_MASK) == NO_TYPE ? null : TYPES[type & TYPE_MASK])
+            .timestamp((type & WITHOUT_TIMESTAMP) != 0 ? null : fromEpochMicros(timestamp))
+            .description(description == DescriptionDictionary.OVERFLOW ? overflow : descriptions.decode(description))
+            .build();
+    }
+
+    /**
+     * El UUID del id si está en su forma canónica (así toString() lo devuelve idéntico).
+     * El UUID nulo (todo ceros) queda como String: 0/0 marca "id que no es UUID".
+     */
+    static UUID asCanonicalUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            boolean nil = uuid.getMostSignificantBits() == 0 && uuid.getLeastSignificantBits() == 0;
+            return !nil && uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static long toEpochMicros(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), timestamp);
+    }
+
+    static LocalDateTime fromEpochMicros(long micros) {
+        if (micros == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(
+            Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    /** Rango de secuencias [first, end) */
+    public record Range(long first, long end) {
+
+        public long size() {
+            return end - first;
+        }
+    }
+
+    /** Las columnas van juntas para que un lector siempre vea arreglos del mismo tamaño */
+    private static final class Columns {
+        final int length;
+        final long[] idHigh;
+        final long[] idLow;
+        final long[] timestamps;
+        final long[] amounts;
+        final byte[] types;
+        final int[] descriptions;
+        /** Solo existe si algún id no es un UUID */
+        String[] otherIds;
+        /** Solo existe si alguna descripción no cupo en el diccionario */
+        String[] overflow;
+
+        Columns(int length) {
+            this.length = length;
+            this.idHigh = new long[length];
+            this.idLow = new long[length];
+            this.timestamps = new long[length];
+            this.amounts = new long[length];
+            this.types = new byte[length];
+            this.descriptions = new int[length];
+        }
+
+        private Columns(int length, Columns from) {
+            this.length = length;
+            this.idHigh = Arrays.copyOf(from.idHigh, length);
+            this.idLow = Arrays.copyOf(from.idLow, length);
+            this.otherIds = from.otherIds == null ? null : Arrays.copyOf(from.otherIds, length);
+            this.timestamps = Arrays.copyOf(from.timestamps, length);
+            this.amounts = Arrays.copyOf(from.amounts, length);
+            this.types = Arrays.copyOf(from.types, length);
+            this.descriptions = Arrays.copyOf(from.descriptions, length);
+            this.overflow = from.overflow == null ? null : Arrays.copyOf(from.overflow, length);
+        }
+
+        long estimatedBytes() {
+            long references = (otherIds == null ? 0 : REFERENCE_BYTES) + (overflow == null ? 0 : REFERENCE_BYTES);
+            return BASE_BYTES + length * (SLOT_BYTES + references);
+        }
+
+        /** Solo se llama antes de dar la vuelta, así las posiciones no cambian al copiar */
+        Columns grow(int newLength) {
+            return new Columns(newLength, this);
+        }
+
+        String[] otherIds() {
+            if (otherIds == null) {
+                otherIds = new String[length];
+            }
+            return otherIds;
+        }
+
+        String[] overflow() {
+            if (overflow == null) {
+                overflow = new String[length];
+            }
+            return overflow;
+        }
+    }
+}
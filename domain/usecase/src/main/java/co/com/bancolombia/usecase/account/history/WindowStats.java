@@ -0,0 +1,21 @@
+package co.com.bancolombia.usecase.account.history;
+
+import java.time.Duration;
+
+/**
+ * Agregados de las transacciones de una cuenta en una ventana de tiempo
+ *
+ * Los retiros y transferencias enviadas tienen monto negativo, así que sum es el neto.
+ *
+ * @param window Duración de la ventana (ej. 1 hora)
+ * @param count  Cantidad de transacciones
+ * @param sum    Suma de los montos
+ * @param min    Monto mínimo; null si no hubo transacciones
+ * @param max    Monto máximo; null si no hubo transacciones
+ */
+public record WindowStats(Duration window, long count, double sum, Double min, Double max) {
+
+    public static WindowStats empty(Duration window) {
+        return new WindowStats(window, 0, 0, null, null);
+    }
+}
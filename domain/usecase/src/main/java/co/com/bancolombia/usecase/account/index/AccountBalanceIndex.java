@@ -0,0 +1,141 @@
+package co.com.bancolombia.usecase.account.index;
+
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * ÍNDICE ORDENADO POR SALDO - ESTRUCTURA DE DATOS: Skip List concurrente
+ *
+ * ¿Qué es una Skip List?
+ * Una lista ordenada con "carriles rápidos": además de la lista completa tiene
+ * listas con cada vez menos elementos por encima, que permiten saltar grandes
+ * tramos. Buscar cuesta O(log n), como en un árbol balanceado, pero varios hilos
+ * pueden insertar y borrar al mismo tiempo sin bloquear toda la estructura.
+ *
+ * ¿Cómo se ordena?
+ * Por (saldo, id): dos cuentas con el mismo saldo no chocan y el orden es estable.
+ *
+ * ¿Cómo se mantiene?
+ * Cada cuenta guarda su entrada vigente en un mapa. Al cambiar el saldo se quita
+ * la entrada vieja y se pone la nueva, de forma atómica POR CUENTA (compute),
+ * así dos cambios de saldo de la misma cuenta no dejan entradas huérfanas.
+ *
+ * COMPLEJIDAD:
+ * - put / remove: O(log n)
+ * - range(min, max): O(log n + k), k = cuentas en el rango
+ * - countInRange(min, max): O(log n + k)
+ */
+public class AccountBalanceIndex {
+
+    /** Entrada del índice: saldo + id de cuenta */
+    public record Entry(double balance, long accountId) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparingDouble(Entry::balance)
+        .thenComparingLong(Entry::accountId);
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    /** Entrada vigente de cada cuenta */
+    private final ConcurrentHashMap<Long, Entry> current = new ConcurrentHashMap<>();
+
+    /** Cuentas eliminadas antes de la carga completa (para no revivirlas con el snapshot) */
+    private final Set<Long> deletedBeforeLoad = ConcurrentHashMap.newKeySet();
+
+    /** true después de la primera carga completa */
+    private volatile boolean loaded;
+
+    /**
+     * CARGA COMPLETA DEL ÍNDICE
+     *
+     * Igual que AccountOwnerIndex: lo que llegó por eventos mientras se leían
+     * las cuentas es más reciente y no se pisa.
+     *
+     * @param accountIds IDs de cuenta
+     * @param balances Saldo de cada cuenta (misma posición)
+     */
+    public void load(long[] accountIds, double[] balances) {
+        if (accountIds.length != balances.length) {
+            throw new IllegalArgumentException("accountIds y balances deben tener el mismo tamaño");
+        }
+        for (int i = 0; i < accountIds.length; i++) {
+            long accountId = accountIds[i];
+            if (deletedBeforeLoad.contains(accountId)) {
+                continue;
+            }
+            Entry entry = new Entry(balances[i], accountId);
+            current.computeIfAbsent(accountId, id -> {
+                entries.add(entry);
+                return entry;
+            });
+        }
+        deletedBeforeLoad.clear();
+        loaded = true;
+    }
+
+    /**
+     * REGISTRA O ACTUALIZA EL SALDO DE UNA CUENTA
+     */
+    public void put(long accountId, double balance) {
+        current.compute(accountId, (id, previous) -> {
+            if (previous != null) {
+                if (previous.balance() == balance) {
+                    return previous;
+                }
+                entries.remove(previous);
+            }
+            Entry entry = new Entry(balance, accountId);
+            entries.add(entry);
+            return entry;
+        });
+    }
+
+    /**
+     * QUITA UNA CUENTA (cuenta eliminada)
+     */
+    public void remove(long accountId) {
+        current.computeIfPresent(accountId, (id, previous) -> {
+            entries.remove(previous);
+            return null;
+        });
+        if (!loaded) {
+            deletedBeforeLoad.add(accountId);
+        }
+    }
+
+    /**
+     * CUENTAS CON SALDO EN [min, max] (ambos incluidos), de menor a mayor saldo
+     *
+     * Devuelve una VISTA de la skip list: se recorre a medida que se consume,
+     * sin copiar el rango completo.
+     *
+     * COMPLEJIDAD: O(log n) para ubicar el inicio + O(k) al recorrerla
+     */
+    public NavigableSet<Entry> range(double minBalance, double maxBalance) {
+        return entries.subSet(
+            new Entry(minBalance, Long.MIN_VALUE), true,
+            new Entry(maxBalance, Long.MAX_VALUE), true);
+    }
+
+    /**
+     * CANTIDAD DE CUENTAS CON SALDO EN [min, max]
+     *
+     * COMPLEJIDAD: O(log n + k) - la skip list no guarda tamaños por tramo
+     */
+    public int countInRange(double minBalance, double maxBalance) {
+        return range(minBalance, maxBalance).size();
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    /** false hasta la primera carga completa */
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
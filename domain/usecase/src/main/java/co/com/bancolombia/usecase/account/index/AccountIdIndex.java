@@ -0,0 +1,298 @@
+package co.com.bancolombia.usecase.account.index;
+
+import java.util.Arrays;
+
+/**
+ * ÍNDICE ORDENADO DE IDS DE CUENTA - ESTRUCTURA DE DATOS: long[] ordenado
+ *
+ * ¿Por qué un long[] y no una List<Account>?
+ * - List<Account> guarda objetos: cada comparación desempaqueta un Long
+ * - long[] guarda números primitivos contiguos en memoria: 8 bytes por ID,
+ *   sin objetos, sin boxing y amigable con la caché del procesador
+ *
+ * SNAPSHOT INMUTABLE:
+ * Los lectores siempre leen un arreglo que NUNCA se modifica.
+ * Los escritores (crear/eliminar cuenta) no tocan ese arreglo: anotan el cambio
+ * en un pequeño buffer pendiente. En la siguiente lectura, los cambios pendientes
+ * se fusionan en un arreglo nuevo (reconstrucción incremental) y se publica.
+ *
+ * COMPLEJIDAD:
+ * - contains / indexOf: O(log n)
+ * - range(desde, hasta): O(log n + k), k = IDs en el rango
+ * - add / remove: O(1) amortizado (se anotan como pendientes)
+ * - Fusión de k pendientes: O(n + k log k), una vez por ráfaga de escrituras
+ */
+public class AccountIdIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    /** Si se acumulan más cambios pendientes que esto, se fusionan sin esperar una lectura */
+    private static final int MAX_PENDING = 4096;
+
+    private final Object writeLock = new Object();
+
+    /** Snapshot publicado: ordenado, sin repetidos y nunca se modifica */
+    private volatile long[] snapshot = EMPTY;
+
+    /** true cuando hay cambios pendientes por fusionar */
+    private volatile boolean dirty;
+
+    /** true después de la primera carga completa */
+    private volatile boolean loaded;
+
+    // Cambios pendientes (protegidos por writeLock)
+    private long[] pendingAdds = new long[16];
+    private int pendingAddCount;
+    private long[] pendingRemoves = new long[16];
+    private int pendingRemoveCount;
+
+    // Cambios recibidos desde beginRebuild (protegidos por writeLock); la lectura completa
+    // puede no verlos, así que rebuild los vuelve a aplicar encima
+    private boolean rebuilding;
+    private long[] loadAdds = new long[16];
+    private int loadAddCount;
+    private long[] loadRemoves = new long[16];
+    private int loadRemoveCount;
+
+    /**
+     * EMPIEZA UNA CARGA COMPLETA: desde aquí se anotan los add/remove para rebuild
+     *
+     * Se llama ANTES de empezar a leer todos los IDs de la fuente.
+     */
+    public void beginRebuild() {
+        synchronized (writeLock) {
+            rebuilding = true;
+            loadAddCount = 0;
+            loadRemoveCount = 0;
+        }
+    }
+
+    /**
+     * CARGA COMPLETA DEL ÍNDICE
+     *
+     * Reemplaza el snapshot con los IDs recibidos (en cualquier orden).
+     * Los cambios recibidos desde beginRebuild son más recientes que (o iguales a) la
+     * lectura, así que se vuelven a aplicar encima: una cuenta creada mientras se leían
+     * todos los IDs no se pierde y una eliminada no vuelve. Los cambios pendientes sin
+     * fusionar también se conservan.
+     *
+     * COMPLEJIDAD: O(n log n)
+     *
+     * @param ids Todos los IDs de cuenta
+     */
+    public void rebuild(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        long[] unique = distinct(sorted);
+        synchronized (writeLock) {
+            snapshot = unique;
+            for (int i = 0; i < loadAddCount; i++) {
+                pendingRemoveCount = discard(pendingRemoves, pendingRemoveCount, loadAdds[i]);
+                pendingAdds = append(pendingAdds, pendingAddCount++, loadAdds[i]);
+            }
+            for (int i = 0; i < loadRemoveCount; i++) {
+                pendingAddCount = discard(pendingAdds, pendingAddCount, loadRemoves[i]);
+                pendingRemoves = append(pendingRemoves, pendingRemoveCount++, loadRemoves[i]);
+            }
+            if (pendingAddCount + pendingRemoveCount > 0) {
+                markDirty();
+            }
+            rebuilding = false;
+            loadAddCount = 0;
+            loadRemoveCount = 0;
+            loaded = true;
+        }
+    }
+
+    /**
+     * AGREGA UN ID (cuenta creada)
+     *
+     * @param id ID de la cuenta
+     */
+    public void add(long id) {
+        synchronized (writeLock) {
+            pendingRemoveCount = discard(pendingRemoves, pendingRemoveCount, id);
+            pendingAdds = append(pendingAdds, pendingAddCount++, id);
+            if (rebuilding) {
+                loadRemoveCount = discard(loadRemoves, loadRemoveCount, id);
+                loadAdds = append(loadAdds, loadAddCount++, id);
+            }
+            markDirty();
+        }
+    }
+
+    /**
+     * ELIMINA UN ID (cuenta eliminada)
+     *
+     * @param id ID de la cuenta
+     */
+    public void remove(long id) {
+        synchronized (writeLock) {
+            pendingAddCount = discard(pendingAdds, pendingAddCount, id);
+            pendingRemoves = append(pendingRemoves, pendingRemoveCount++, id);
+            if (rebuilding) {
+                loadAddCount = discard(loadAdds, loadAddCount, id);
+                loadRemoves = append(loadRemoves, loadRemoveCount++, id);
+            }
+            markDirty();
+        }
+    }
+
+    /**
+     * ¿EXISTE ESTE ID? - Búsqueda binaria sobre long[]
+     *
+     * COMPLEJIDAD: O(log n) - con 1,000,000 de cuentas, ~20 comparaciones sin boxing
+     */
+    public boolean contains(long id) {
+        return Arrays.binarySearch(current(), id) >= 0;
+    }
+
+    /**
+     * POSICIÓN DEL ID EN EL ORDEN (rango)
+     *
+     * @return posición (0 = el menor) o -1 si no existe
+     */
+    public int indexOf(long id) {
+        int index = Arrays.binarySearch(current(), id);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * IDS DENTRO DE UN RANGO [desde, hasta] (ambos incluidos), en orden
+     *
+     * Dos búsquedas binarias encuentran los extremos y se copia solo el tramo.
+     *
+     * COMPLEJIDAD: O(log n + k)
+     */
+    public long[] range(long fromInclusive, long toInclusive) {
+        if (fromInclusive > toInclusive) {
+            return EMPTY;
+        }
+        long[] ids = current();
+        return Arrays.copyOfRange(ids, lowerBound(ids, fromInclusive), upperBound(ids, toInclusive));
+    }
+
+    /**
+     * CANTIDAD DE IDS EN UN RANGO sin copiar nada
+     *
+     * COMPLEJIDAD: O(log n)
+     */
+    public int countInRange(long fromInclusive, long toInclusive) {
+        if (fromInclusive > toInclusive) {
+            return 0;
+        }
+        long[] ids = current();
+        return upperBound(ids, toInclusive) - lowerBound(ids, fromInclusive);
+    }
+
+    public int size() {
+        return current().length;
+    }
+
+    /** false hasta la primera carga completa: sin ella el índice no sabe qué existe */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Snapshot vigente, fusionando primero los cambios pendientes si los hay.
+     */
+    private long[] current() {
+        if (dirty) {
+            synchronized (writeLock) {
+                if (dirty) {
+                    mergePending();
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private void markDirty() {
+        dirty = true;
+        if (pendingAddCount + pendingRemoveCount >= MAX_PENDING) {
+            mergePending();
+        }
+    }
+
+    /**
+     * Fusiona snapshot + agregados - eliminados en un arreglo nuevo (merge de listas ordenadas).
+     * Debe llamarse con writeLock tomado.
+     */
+    private void mergePending() {
+        long[] adds = Arrays.copyOf(pendingAdds, pendingAddCount);
+        long[] removes = Arrays.copyOf(pendingRemoves, pendingRemoveCount);
+        Arrays.sort(adds);
+        Arrays.sort(removes);
+
+        long[] base = snapshot;
+        long[] merged = new long[base.length + adds.length];
+        int i = 0;
+        int j = 0;
+        int r = 0;
+        int size = 0;
+        while (i < base.length || j < adds.length) {
+            long next;
+            if (j >= adds.length || (i < base.length && base[i] <= adds[j])) {
+                next = base[i++];
+            } else {
+                next = adds[j++];
+            }
+            while (r < removes.length && removes[r] < next) {
+                r++;
+            }
+            boolean removed = r < removes.length && removes[r] == next;
+            boolean duplicate = size > 0 && merged[size - 1] == next;
+            if (!removed && !duplicate) {
+                merged[size++] = next;
+            }
+        }
+
+        snapshot = size == merged.length ? merged : Arrays.copyOf(merged, size);
+        pendingAddCount = 0;
+        pendingRemoveCount = 0;
+        dirty = false;
+    }
+
+    /** Primera posición con valor >= key */
+    private static int lowerBound(long[] ids, long key) {
+        int index = Arrays.binarySearch(ids, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /** Primera posición con valor > key */
+    private static int upperBound(long[] ids, long key) {
+        int index = Arrays.binarySearch(ids, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static long[] distinct(long[] sorted) {
+        if (sorted.length == 0) {
+            return EMPTY;
+        }
+        int size = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private static long[] append(long[] buffer, int position, long value) {
+        long[] target = position < buffer.length ? buffer : Arrays.copyOf(buffer, buffer.length * 2);
+        target[position] = value;
+        return target;
+    }
+
+    /** Quita value del buffer (si está) moviendo el último a su lugar; retorna el nuevo tamaño */
+    private static int discard(long[] buffer, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == value) {
+                buffer[i] = buffer[count - 1];
+                return count - 1;
+            }
+        }
+        return count;
+    }
+}
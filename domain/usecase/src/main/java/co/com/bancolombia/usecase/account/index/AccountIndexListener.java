@@ -0,0 +1,60 @@
+package co.com.bancolombia.usecase.account.index;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.events.AccountEventListener;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * OBSERVER CONCRETO: Mantiene actualizados los índices en memoria
+ *
+ * Se registra en AccountEventUseCase igual que NotificationListener y AuditListener.
+ * Cada vez que se crea, cambia de saldo o elimina una cuenta, actualiza los índices
+ * sin que los Use Cases de escritura sepan que existen.
+ *
+ * Un propietario o saldo nulo no se indexa (el índice guarda primitivos).
+ */
+@RequiredArgsConstructor
+public class AccountIndexListener implements AccountEventListener {
+
+    private final AccountIdIndex idIndex;
+    private final AccountOwnerIndex ownerIndex;
+    private final AccountBalanceIndex balanceIndex;
+
+    @Override
+    public void onAccountCreated(Account account) {
+        if (account.getId() == null) {
+            return;
+        }
+        idIndex.add(account.getId());
+        putOwner(account);
+        if (account.getBalance() != null) {
+            balanceIndex.put(account.getId(), account.getBalance());
+        }
+    }
+
+    @Override
+    public void onBalanceChanged(Account account, Double oldBalance, Double newBalance) {
+        // El índice de IDs no depende del saldo; el de propietarios se reafirma
+        // por si la actualización movió la cuenta (si no cambió, no hace nada)
+        if (account.getId() == null) {
+            return;
+        }
+        putOwner(account);
+        if (newBalance != null) {
+            balanceIndex.put(account.getId(), newBalance);
+        }
+    }
+
+    @Override
+    public void onAccountDeleted(Long accountId) {
+        idIndex.remove(accountId);
+        ownerIndex.remove(accountId);
+        balanceIndex.remove(accountId);
+    }
+
+    private void putOwner(Account account) {
+        if (account.getOwnerId() != null) {
+            ownerIndex.put(account.getId(), account.getOwnerId());
+        }
+    }
+}
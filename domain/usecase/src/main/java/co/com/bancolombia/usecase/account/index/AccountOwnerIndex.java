@@ -0,0 +1,193 @@
+package co.com.bancolombia.usecase.account.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ÍNDICE SECUNDARIO POR PROPIETARIO - ESTRUCTURA DE DATOS: ownerId → long[] ordenado
+ *
+ * ¿Para qué sirve?
+ * "Dame las cuentas del usuario 42" ya no recorre una lista ni va a MongoDB:
+ * es UNA búsqueda en un mapa que devuelve los IDs de sus cuentas.
+ *
+ * ¿Cómo guarda los datos?
+ * - Por propietario: un long[] ordenado con los IDs de sus cuentas (primitivos, sin boxing)
+ * - Por cuenta: su propietario en un LongLongHashMap (para saber de dónde quitarla
+ *   al eliminarla o moverla de propietario)
+ *
+ * CONCURRENCIA:
+ * Cada long[] publicado NUNCA se modifica: al agregar o quitar una cuenta se crea
+ * uno nuevo (copy-on-write). Los lectores leen sin bloqueos; los escritores
+ * se turnan con writeLock.
+ *
+ * COMPLEJIDAD:
+ * - accountsOf(ownerId): O(1)
+ * - put / remove: O(m), m = cuentas del propietario (normalmente muy pocas)
+ * - load: O(n log n)
+ */
+public class AccountOwnerIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    /** Valor de "no tiene propietario" en ownerByAccount */
+    private static final long NO_OWNER = Long.MIN_VALUE;
+
+    private final Object writeLock = new Object();
+
+    /** Propietario → IDs de sus cuentas (ordenados, inmutables) */
+    private final Map<Long, long[]> accountsByOwner = new ConcurrentHashMap<>();
+
+    /** Cuenta → propietario (protegido por writeLock) */
+    private final LongLongHashMap ownerByAccount = new LongLongHashMap();
+
+    /** Cuentas eliminadas antes de la carga completa (protegido por writeLock) */
+    private final LongLongHashMap deletedBeforeLoad = new LongLongHashMap();
+
+    /** true después de la primera carga completa */
+    private volatile boolean loaded;
+
+    /**
+     * CARGA COMPLETA DEL ÍNDICE
+     *
+     * Recibe pares (cuenta, propietario) en dos arreglos paralelos.
+     * Los cambios que llegaron por eventos mientras se leían las cuentas son más
+     * recientes que esta lectura, así que se respetan: una cuenta ya indexada o
+     * eliminada en ese lapso no se toca.
+     *
+     * @param accountIds IDs de cuenta
+     * @param ownerIds Propietario de cada cuenta (misma posición)
+     */
+    public void load(long[] accountIds, long[] ownerIds) {
+        if (accountIds.length != ownerIds.length) {
+            throw new IllegalArgumentException("accountIds y ownerIds deben tener el mismo tamaño");
+        }
+        synchronized (writeLock) {
+            Map<Long, LongBuffer> staged = new HashMap<>();
+            for (int i = 0; i < accountIds.length; i++) {
+                long accountId = accountIds[i];
+                if (ownerByAccount.containsKey(accountId) || deletedBeforeLoad.containsKey(accountId)) {
+                    continue;
+                }
+                ownerByAccount.put(accountId, ownerIds[i], NO_OWNER);
+                staged.computeIfAbsent(ownerIds[i], owner -> new LongBuffer()).add(accountId);
+            }
+            staged.forEach((ownerId, ids) ->
+                accountsByOwner.merge(ownerId, ids.toSortedArray(), AccountOwnerIndex::union));
+            deletedBeforeLoad.clear();
+            loaded = true;
+        }
+    }
+
+    /**
+     * REGISTRA O MUEVE UNA CUENTA (cuenta creada o actualizada)
+     *
+     * Si la cuenta ya estaba con otro propietario, se quita de ese y se agrega al nuevo.
+     */
+    public void put(long accountId, long ownerId) {
+        synchronized (writeLock) {
+            long previousOwner = ownerByAccount.put(accountId, ownerId, NO_OWNER);
+            if (previousOwner == ownerId) {
+                return;
+            }
+            if (previousOwner != NO_OWNER) {
+                detach(previousOwner, accountId);
+            }
+            accountsByOwner.merge(ownerId, new long[]{accountId}, AccountOwnerIndex::union);
+        }
+    }
+
+    /**
+     * QUITA UNA CUENTA (cuenta eliminada)
+     */
+    public void remove(long accountId) {
+        synchronized (writeLock) {
+            long owner = ownerByAccount.remove(accountId, NO_OWNER);
+            if (owner != NO_OWNER) {
+                detach(owner, accountId);
+            }
+            if (!loaded) {
+                deletedBeforeLoad.put(accountId, accountId, NO_OWNER);
+            }
+        }
+    }
+
+    /**
+     * IDS DE LAS CUENTAS DE UN PROPIETARIO, en orden ascendente
+     *
+     * COMPLEJIDAD: O(1) - el arreglo devuelto no se modifica nunca, no hay que copiarlo
+     * (el llamador tampoco debe modificarlo)
+     */
+    public long[] accountsOf(long ownerId) {
+        return accountsByOwner.getOrDefault(ownerId, EMPTY);
+    }
+
+    /** Cantidad de cuentas indexadas */
+    public int size() {
+        synchronized (writeLock) {
+            return ownerByAccount.size();
+        }
+    }
+
+    /** false hasta la primera carga completa: sin ella un propietario sin cuentas no es confiable */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Quita accountId del arreglo del propietario. Debe llamarse con writeLock tomado. */
+    private void detach(long ownerId, long accountId) {
+        accountsByOwner.computeIfPresent(ownerId, (owner, ids) -> {
+            int index = Arrays.binarySearch(ids, accountId);
+            if (index < 0) {
+                return ids;
+            }
+            if (ids.length == 1) {
+                return null; // Sin cuentas: se elimina la entrada del propietario
+            }
+            long[] remaining = new long[ids.length - 1];
+            System.arraycopy(ids, 0, remaining, 0, index);
+            System.arraycopy(ids, index + 1, remaining, index, ids.length - index - 1);
+            return remaining;
+        });
+    }
+
+    /** Unión de dos arreglos ordenados sin repetidos */
+    private static long[] union(long[] left, long[] right) {
+        long[] merged = new long[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < left.length || j < right.length) {
+            long next;
+            if (j >= right.length || (i < left.length && left[i] <= right[j])) {
+                next = left[i++];
+            } else {
+                next = right[j++];
+            }
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /** long[] que crece, para armar la carga completa sin boxing */
+    private static final class LongBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
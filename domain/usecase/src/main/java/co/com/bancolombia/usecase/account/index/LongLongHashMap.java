@@ -0,0 +1,136 @@
+package co.com.bancolombia.usecase.account.index;
+
+import java.util.Arrays;
+
+/**
+ * Mapa long → long de direccionamiento abierto (sondeo lineal)
+ *
+ * Guarda llaves y valores en dos long[] paralelos: 16 bytes por entrada,
+ * sin objetos Long ni nodos como un HashMap<Long, Long> (~80 bytes por entrada).
+ *
+ * NO es thread-safe: quien lo use debe sincronizar los accesos.
+ * La llave Long.MIN_VALUE está reservada como marca de celda vacía.
+ */
+class LongLongHashMap {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    LongLongHashMap() {
+        allocate(16);
+    }
+
+    /**
+     * @return el valor anterior o missingValue si la llave no existía
+     */
+    long put(long key, long value, long missingValue) {
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            long previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    long get(long key, long missingValue) {
+        int slot = slotOf(key);
+        return keys[slot] == key ? values[slot] : missingValue;
+    }
+
+    boolean containsKey(long key) {
+        return keys[slotOf(key)] == key;
+    }
+
+    /**
+     * Elimina la llave corriendo hacia atrás las entradas siguientes del mismo grupo
+     * (backward shift), así no quedan "lápidas" que alarguen las búsquedas.
+     *
+     * @return el valor eliminado o missingValue si la llave no existía
+     */
+    long remove(long key, long missingValue) {
+        int slot = slotOf(key);
+        if (keys[slot] != key) {
+            return missingValue;
+        }
+        long removed = values[slot];
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = hash(keys[next]) & mask;
+            // La entrada en next puede ocupar el hueco si su posición ideal no está entre gap y next
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY_KEY;
+        size--;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    /** Celda donde está la llave o, si no está, la celda vacía donde iría */
+    private int slotOf(long key) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("Llave reservada: " + key);
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /** Mezcla los bits (Murmur3 fmix64) para que IDs consecutivos no caigan en celdas seguidas */
+    private static int hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
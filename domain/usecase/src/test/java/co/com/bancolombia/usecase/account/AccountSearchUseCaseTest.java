@@ -0,0 +1,85 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.usecase.account.index.AccountBalanceIndex;
+import co.com.bancolombia.usecase.account.index.AccountIdIndex;
+import co.com.bancolombia.usecase.account.index.AccountOwnerIndex;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AccountSearchUseCaseTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final AccountIdIndex idIndex = new AccountIdIndex();
+    private final AccountOwnerIndex ownerIndex = new AccountOwnerIndex();
+    private final AccountSearchUseCase useCase =
+        new AccountSearchUseCase(accountRepository, null,
+            idIndex, ownerIndex, new AccountBalanceIndex());
+
+    private static Account account(long id, double balance) {
+        return Account.builder().id(id).ownerId(1L).balance(balance).build();
+    }
+
+    @Test
+    void topNByBalanceKeepsTheHighestBalancesInDescendingOrder() {
+        Flux<Account> accounts = Flux.just(
+            account(1, 50.0), account(2, 900.0), account(3, 10.0),
+            account(4, 300.0), account(5, 700.0), account(6, 20.0));
+
+        StepVerifier.create(useCase.topNByBalance(accounts, 3).map(Account::getId))
+            .expectNext(2L, 5L, 4L)
+            .verifyComplete();
+    }
+
+    @Test
+    void topNByBalanceWithFewerAccountsThanNReturnsThemAll() {
+        StepVerifier.create(useCase.topNByBalance(Flux.just(account(1, 5.0), account(2, 8.0)), 10)
+                .map(Account::getId))
+            .expectNext(2L, 1L)
+            .verifyComplete();
+    }
+
+    @Test
+    void findByIdIndexedConfirmsIdsMissingFromTheLocalIndex() {
+        idIndex.rebuild(new long[]{1L});
+        when(accountRepository.getAccountById(2L)).thenReturn(Mono.just(account(2, 10.0)));
+
+        StepVerifier.create(useCase.findByIdIndexed(2L).map(Account::getId))
+            .expectNext(2L)
+            .verifyComplete();
+        assertTrue(idIndex.contains(2L));
+    }
+
+    @Test
+    void rebuildSkipsAccountsWithMissingFields() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(
+            account(1, 10.0),
+            Account.builder().id(null).ownerId(1L).balance(5.0).build(),
+            Account.builder().id(3L).ownerId(null).balance(5.0).build()));
+
+        StepVerifier.create(useCase.rebuildIndexes())
+            .expectNext(2)
+            .verifyComplete();
+        assertArrayEquals(new long[]{1L}, ownerIndex.accountsOf(1L));
+    }
+
+    @Test
+    void findTopNRejectsOutOfRangeN() {
+        StepVerifier.create(useCase.findTopNAccountsByBalance(0))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        StepVerifier.create(useCase.findTopNAccountsByBalance(101))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        verifyNoInteractions(accountRepository);
+    }
+}
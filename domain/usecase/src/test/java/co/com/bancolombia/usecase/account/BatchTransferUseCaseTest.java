@@ -0,0 +1,128 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.BatchOutcomeUnknownException;
+import co.com.bancolombia.model.account.TransferRequest;
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchTransferUseCaseTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final TransactionRecorder recorder =
+        new TransactionRecorder(new TransactionHistoryUseCase(10), 64, 16, Duration.ofMillis(5));
+    private final AccountEventUseCase events = new AccountEventUseCase();
+    private final BatchTransferUseCase useCase = new BatchTransferUseCase(accountRepository, events,
+        new TransferUseCase(accountRepository, events, recorder));
+
+    @AfterEach
+    void tearDown() {
+        recorder.close();
+    }
+
+    private static Account account(long id, double balance) {
+        return Account.builder().id(id).ownerId(1L).balance(balance).build();
+    }
+
+    private static TransferRequest request(long from, long to, double amount) {
+        return TransferRequest.builder().fromAccountId(from).toAccountId(to).amount(amount).build();
+    }
+
+    @Test
+    void validTransfersAreNettedPerAccountAndFailuresStayIndividual() {
+        when(accountRepository.getAccountsByIds(any()))
+            .thenReturn(Flux.just(account(1, 100.0), account(2, 0.0), account(3, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap())).thenReturn(Mono.just(true));
+
+        List<TransferRequest> batch = List.of(
+            request(1, 2, 60.0),   // ok
+            request(1, 1, 10.0),   // misma cuenta
+            request(1, 3, 60.0),   // solo quedan $40
+            request(2, 3, 60.0),   // la cuenta 2 ya recibió $60 en este lote
+            request(1, 9, 10.0));  // cuenta destino inexistente
+
+        StepVerifier.create(useCase.transferBatch(batch).map(TransferResult::isSuccess))
+            .expectNext(true, false, false, true, false)
+            .verifyComplete();
+        verify(accountRepository).applyBalanceChanges(anyString(), eq(Map.of(1L, -60.0, 3L, 60.0)));
+    }
+
+    @Test
+    void aBalanceThatChangedMidBatchRePlansTheBatch() {
+        when(accountRepository.getAccountsByIds(any())).thenReturn(Flux.just(account(1, 100.0), account(2, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap()))
+            .thenReturn(Mono.just(false), Mono.just(true));
+
+        StepVerifier.create(useCase.transferBatch(List.of(request(1, 2, 50.0))))
+            .expectNextMatches(TransferResult::isSuccess)
+            .verifyComplete();
+        verify(accountRepository, times(2)).applyBalanceChanges(anyString(), anyMap());
+    }
+
+    @Test
+    void anUnconfirmedBatchIsReportedAsPendingReconciliationAndNotRetried() {
+        when(accountRepository.getAccountsByIds(any())).thenReturn(Flux.just(account(1, 100.0), account(2, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap()))
+            .thenReturn(Mono.error(new BatchOutcomeUnknownException("batch-1", new IllegalStateException("timeout"))));
+
+        StepVerifier.create(useCase.transferBatch(List.of(request(1, 2, 50.0), request(1, 2, 80.0))))
+            .expectNextMatches(result -> !result.isSuccess() && result.getMessage().contains("conciliación"))
+            .expectNextMatches(result -> !result.isSuccess() && result.getMessage().startsWith("Saldo insuficiente"))
+            .verifyComplete();
+        verify(accountRepository, times(1)).applyBalanceChanges(anyString(), anyMap());
+        verify(accountRepository, never()).debitIfSufficient(anyLong(), anyDouble());
+    }
+
+    @Test
+    void nettedBatchOnlyChecksTheNetPositionOfEachAccount() {
+        when(accountRepository.getAccountsByIds(any()))
+            .thenReturn(Flux.just(account(1, 0.0), account(2, 0.0), account(3, 10.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap())).thenReturn(Mono.just(true));
+
+        List<TransferRequest> batch = List.of(
+            request(1, 2, 50.0),   // la cuenta 1 empieza en $0, pero recibe $50 más adelante
+            request(2, 1, 50.0),
+            request(3, 1, 5.0),
+            request(3, 2, 20.0));  // la cuenta 3 quedaría en -$15: se rechaza su último envío
+
+        StepVerifier.create(useCase.transferNetted(batch).map(TransferResult::isSuccess))
+            .expectNext(true, true, true, false)
+            .verifyComplete();
+        verify(accountRepository).applyBalanceChanges(anyString(), eq(Map.of(1L, 5.0, 3L, -5.0)));
+    }
+
+    @Test
+    void oversizedBatchIsRejectedAsAWhole() {
+        List<TransferRequest> batch = Collections.nCopies(BatchTransferUseCase.MAX_BATCH_SIZE + 1, request(1, 2, 1.0));
+
+        StepVerifier.create(useCase.transferBatch(Flux.fromIterable(batch)))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        StepVerifier.create(useCase.transferBatch(Flux.fromStream(IntStream.range(0, 3).mapToObj(n -> request(1, 1, 1.0)))))
+            .expectNextCount(3)
+            .verifyComplete();
+    }
+}
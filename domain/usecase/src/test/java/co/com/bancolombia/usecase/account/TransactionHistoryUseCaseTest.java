@@ -0,0 +1,331 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.gateways.TransactionJournal;
+import co.com.bancolombia.model.account.gateways.TransactionRepository;
+import co.com.bancolombia.usecase.account.history.TransactionPage;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionHistoryUseCaseTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 10, 10, 0);
+
+    private static Transaction tx(long accountId, String id) {
+        return Transaction.builder().id(id).accountId(accountId).amount(1.0).build();
+    }
+
+    /** Bitácora en memoria para las pruebas */
+    private static final class InMemoryJournal implements TransactionJournal {
+        private final Map<Long, List<Transaction>> byAccount = new ConcurrentHashMap<>();
+
+        @Override
+        public Mono<Void> append(Transaction transaction) {
+            return Mono.fromRunnable(() ->
+                byAccount.computeIfAbsent(transaction.getAccountId(), id -> new ArrayList<>()).add(transaction));
+        }
+
+        @Override
+        public Flux<Transaction> recent(int perAccount) {
+            return Flux.fromIterable(byAccount.keySet()).concatMap(id -> recent(id, perAccount));
+        }
+
+        @Override
+        public Flux<Transaction> recent(Long accountId, int limit) {
+            List<Transaction> all = byAccount.getOrDefault(accountId, List.of());
+            return Flux.fromIterable(all.subList(Math.max(0, all.size() - limit), all.size()));
+        }
+
+        @Override
+        public Mono<Void> forget(Long accountId) {
+            return Mono.fromRunnable(() -> byAccount.remove(accountId));
+        }
+    }
+
+    /** Repositorio en memoria para las pruebas; cuenta las consultas por rango */
+    private static final class InMemoryRepository implements TransactionRepository {
+        private final List<Transaction> saved = new ArrayList<>();
+        private final AtomicInteger rangeQueries = new AtomicInteger();
+
+        @Override
+        public Mono<Void> save(Transaction transaction) {
+            return Mono.fromRunnable(() -> {
+                synchronized (this) {
+                    saved.add(transaction);
+                }
+            });
+        }
+
+        @Override
+        public synchronized Flux<Transaction> findLatestByAccountId(Long accountId, int limit) {
+            return Flux.fromIterable(saved.stream()
+                .filter(t -> t.getAccountId().equals(accountId))
+                .sorted(Comparator.comparing(Transaction::getTimestamp).reversed())
+                .limit(limit)
+                .toList());
+        }
+
+        @Override
+        public synchronized Flux<Transaction> findByAccountIdBetween(Long accountId, LocalDateTime from, LocalDateTime to) {
+            rangeQueries.incrementAndGet();
+            return Flux.fromIterable(saved.stream()
+                .filter(t -> t.getAccountId().equals(accountId))
+                .filter(t -> (from == null || !t.getTimestamp().isBefore(from))
+                    && (to == null || t.getTimestamp().isBefore(to)))
+                .sorted(Comparator.comparing(Transaction::getTimestamp))
+                .toList());
+        }
+
+        @Override
+        public Mono<Void> deleteByAccountId(Long accountId) {
+            return Mono.fromRunnable(() -> {
+                synchronized (this) {
+                    saved.removeIf(t -> t.getAccountId().equals(accountId));
+                }
+            });
+        }
+    }
+
+    private static Transaction timed(long accountId, int minute) {
+        return Transaction.builder()
+            .id("t" + minute).accountId(accountId).amount(1.0).timestamp(START.plusMinutes(minute)).build();
+    }
+
+    /** La expulsión por presupuesto corre en otro hilo */
+    private static void awaitResidentBytesAtMost(TransactionHistoryUseCase useCase, long bytes) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (useCase.residentBytes() > bytes && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(Duration.ofMillis(1).toNanos());
+        }
+    }
+
+    private static TransactionHistoryUseCase historyWith(int count) {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(100);
+        Flux.range(0, count)
+            .concatMap(n -> useCase.addTransaction(Transaction.builder()
+                .id("t" + n).accountId(1L).amount(1.0).timestamp(START.plusMinutes(n)).build()))
+            .blockLast();
+        return useCase;
+    }
+
+    @Test
+    void transactionsBetweenReturnsTheHalfOpenRange() {
+        StepVerifier.create(historyWith(10)
+                .getTransactionsBetween(1L, START.plusMinutes(3), START.plusMinutes(6))
+                .map(Transaction::getId))
+            .expectNext("t3", "t4", "t5")
+            .verifyComplete();
+    }
+
+    @Test
+    void cursorPagesAreStableWhenNewTransactionsArrive() {
+        TransactionHistoryUseCase useCase = historyWith(5);
+
+        TransactionPage first = useCase.getTransactionsPage(1L, null, null, null, 2).block();
+        StepVerifier.create(first.transactions().map(Transaction::getId)).expectNext("t0", "t1").verifyComplete();
+        assertEquals(2L, first.nextCursor());
+
+        useCase.addTransaction(Transaction.builder().id("t5").accountId(1L).timestamp(START.plusMinutes(5)).build()).block();
+
+        TransactionPage second = useCase.getTransactionsPage(1L, null, null, first.nextCursor(), 2).block();
+        StepVerifier.create(second.transactions().map(Transaction::getId)).expectNext("t2", "t3").verifyComplete();
+        TransactionPage last = useCase.getTransactionsPage(1L, null, null, second.nextCursor(), 2).block();
+        StepVerifier.create(last.transactions().map(Transaction::getId)).expectNext("t4", "t5").verifyComplete();
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void unknownAccountGivesAnEmptyPage() {
+        TransactionPage page = new TransactionHistoryUseCase().getTransactionsPage(9L, null, null, null, 10).block();
+
+        StepVerifier.create(page.transactions()).verifyComplete();
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void pageSizeIsValidated() {
+        StepVerifier.create(new TransactionHistoryUseCase().getTransactionsPage(1L, null, null, null, 0))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+    }
+
+    @Test
+    void idleAccountsAreEvictedAndTheirBytesReleased() {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(10, null, Long.MAX_VALUE, Duration.ZERO);
+        useCase.addTransaction(tx(1, "a")).then(useCase.addTransaction(tx(2, "b"))).block();
+        assertTrue(useCase.residentBytes() > 0);
+
+        StepVerifier.create(useCase.evictIdle()).expectNext(2L).verifyComplete();
+
+        assertEquals(0, useCase.residentAccounts());
+        assertEquals(0, useCase.residentBytes());
+        assertEquals(2, useCase.evictions());
+        StepVerifier.create(useCase.getAllTransactions(1L)).verifyComplete();
+    }
+
+    @Test
+    void overBudgetEvictsTheLeastRecentlyUsedAccounts() {
+        TransactionHistoryUseCase probe = new TransactionHistoryUseCase(10);
+        probe.addTransaction(tx(1, "a")).block();
+        long perAccount = probe.residentBytes();
+
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(10, null, perAccount * 3, null);
+        for (long accountId = 1; accountId <= 3; accountId++) {
+            useCase.addTransaction(tx(accountId, "t" + accountId)).block();
+        }
+        useCase.getAllTransactions(1L).blockLast();
+        useCase.addTransaction(tx(4, "t4")).block();
+        awaitResidentBytesAtMost(useCase, perAccount * 3);
+
+        assertTrue(useCase.residentBytes() <= perAccount * 3);
+        StepVerifier.create(useCase.getAllTransactions(2L)).verifyComplete();
+        StepVerifier.create(useCase.getAllTransactions(1L).map(Transaction::getId)).expectNext("t1").verifyComplete();
+    }
+
+    @Test
+    void evictedAccountsAreReloadedFromTheJournalOnAccess() {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(10, new InMemoryJournal(), Long.MAX_VALUE, Duration.ZERO);
+        useCase.addTransaction(tx(1, "a")).then(useCase.addTransaction(tx(1, "b"))).block();
+        useCase.evictIdle().block();
+        assertEquals(0, useCase.residentAccounts());
+
+        useCase.addTransaction(tx(1, "c")).block();
+
+        StepVerifier.create(useCase.getAllTransactions(1L).map(Transaction::getId))
+            .expectNext("a", "b", "c")
+            .verifyComplete();
+        assertEquals(1, useCase.reloads());
+    }
+
+    @Test
+    void transactionPersistedWhileItsAccountIsEvictedAndReloadedStaysInMemory() {
+        InMemoryJournal journal = new InMemoryJournal();
+        AtomicReference<TransactionHistoryUseCase> useCase = new AtomicReference<>();
+        TransactionJournal racing = new TransactionJournal() {
+            @Override
+            public Mono<Void> append(Transaction transaction) {
+                if ("c".equals(transaction.getId())) {
+                    // Mientras se persiste "c": la cuenta se expulsa y otra petición la recarga sin "c"
+                    useCase.get().evictIdle().block();
+                    useCase.get().getAllTransactions(1L).blockLast();
+                }
+                return journal.append(transaction);
+            }
+
+            @Override
+            public Flux<Transaction> recent(int perAccount) {
+                return journal.recent(perAccount);
+            }
+
+            @Override
+            public Flux<Transaction> recent(Long accountId, int limit) {
+                return journal.recent(accountId, limit);
+            }
+
+            @Override
+            public Mono<Void> forget(Long accountId) {
+                return journal.forget(accountId);
+            }
+        };
+        useCase.set(new TransactionHistoryUseCase(10, racing, Long.MAX_VALUE, Duration.ZERO));
+        useCase.get().addTransaction(tx(1, "a")).block();
+
+        useCase.get().addTransaction(tx(1, "c")).block();
+
+        StepVerifier.create(useCase.get().getAllTransactions(1L).map(Transaction::getId))
+            .expectNext("a", "c")
+            .verifyComplete();
+    }
+
+    @Test
+    void cursorFromBeforeAReloadIsRejected() {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(10, new InMemoryJournal(), Long.MAX_VALUE, Duration.ZERO);
+        useCase.addTransaction(tx(1, "a")).then(useCase.addTransaction(tx(1, "b"))).block();
+        Long cursor = useCase.getTransactionsPage(1L, null, null, null, 1).block().nextCursor();
+        useCase.evictIdle().block();
+
+        StepVerifier.create(useCase.getTransactionsPage(1L, null, null, cursor, 1))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+    }
+
+    @Test
+    void accountsNotInMemoryAreReadThroughTheRepository() {
+        InMemoryRepository repository = new InMemoryRepository();
+        // Escritas por otra instancia: esta nunca las tuvo en memoria
+        Flux.range(0, 5).concatMap(n -> repository.save(timed(1, n))).blockLast();
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(3, null, repository, Long.MAX_VALUE, null);
+
+        StepVerifier.create(useCase.getAllTransactions(1L).map(Transaction::getId))
+            .expectNext("t2", "t3", "t4")
+            .verifyComplete();
+        assertEquals(1, useCase.reloads());
+    }
+
+    @Test
+    void rangesOlderThanMemoryAreReadFromTheRepository() {
+        InMemoryRepository repository = new InMemoryRepository();
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(3, null, repository, Long.MAX_VALUE, null);
+        Flux.range(0, 6).concatMap(n -> useCase.addTransaction(timed(1, n))).blockLast();
+
+        StepVerifier.create(useCase.getTransactionsBetween(1L, START.plusMinutes(4), null).map(Transaction::getId))
+            .expectNext("t4", "t5")
+            .verifyComplete();
+        assertEquals(0, repository.rangeQueries.get());
+
+        StepVerifier.create(useCase.getTransactionsBetween(1L, START.plusMinutes(1), START.plusMinutes(4))
+                .map(Transaction::getId))
+            .expectNext("t1", "t2", "t3")
+            .verifyComplete();
+        assertEquals(1, repository.rangeQueries.get());
+    }
+
+    @Test
+    void clearedAccountsAreNotReloadedFromTheRepository() {
+        InMemoryRepository repository = new InMemoryRepository();
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(3, null, repository, Long.MAX_VALUE, null);
+        Flux.range(0, 3).concatMap(n -> useCase.addTransaction(timed(1, n))).blockLast();
+
+        useCase.clearHistory(1L).block();
+
+        StepVerifier.create(useCase.getAllTransactions(1L)).verifyComplete();
+        StepVerifier.create(repository.findLatestByAccountId(1L, 10)).verifyComplete();
+    }
+
+    @Test
+    void statsCoverTheLastHourAndDay() {
+        TransactionHistoryUseCase useCase = new TransactionHistoryUseCase(10);
+        LocalDateTime now = LocalDateTime.now();
+        Flux.just(
+                Transaction.builder().id("a").accountId(1L).amount(100.0).timestamp(now.minusMinutes(1)).build(),
+                Transaction.builder().id("b").accountId(1L).amount(-30.0).timestamp(now.minusMinutes(2)).build(),
+                Transaction.builder().id("c").accountId(1L).amount(500.0).timestamp(now.minusHours(3)).build())
+            .concatMap(useCase::addTransaction)
+            .blockLast();
+
+        StepVerifier.create(useCase.getStats(1L))
+            .expectNextMatches(stats -> stats.lastHour().count() == 2 && stats.lastHour().sum() == 70.0
+                && stats.lastDay().count() == 3 && stats.lastDay().max() == 500.0)
+            .verifyComplete();
+        StepVerifier.create(useCase.getStats(2L))
+            .expectNextMatches(stats -> stats.lastDay().count() == 0 && stats.lastDay().min() == null)
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,75 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.gateways.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRecorderTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 10, 10, 0);
+
+    private static Transaction tx(long accountId, int n) {
+        return Transaction.builder()
+            .id("t" + n).accountId(accountId).amount(1.0).timestamp(START.plusSeconds(n)).build();
+    }
+
+    @Test
+    void recordedTransactionsReachTheHistoryInOrder() {
+        TransactionHistoryUseCase history = new TransactionHistoryUseCase(10);
+        TransactionRecorder recorder = new TransactionRecorder(history, 64, 2, Duration.ofMillis(5));
+
+        IntStream.range(0, 5).forEach(n -> assertTrue(recorder.record(tx(n % 2 + 1, n))));
+        recorder.close();
+
+        StepVerifier.create(history.getAllTransactions(1L).map(Transaction::getId))
+            .expectNext("t0", "t2", "t4")
+            .verifyComplete();
+        StepVerifier.create(history.getAllTransactions(2L).map(Transaction::getId))
+            .expectNext("t1", "t3")
+            .verifyComplete();
+        assertEquals(5, recorder.recorded());
+    }
+
+    @Test
+    void fullQueueDropsInsteadOfWaiting() {
+        // El repositorio nunca confirma: el primer lote queda pendiente y la cola no se vacía
+        TransactionRepository stuck = new TransactionRepository() {
+            @Override
+            public Mono<Void> save(Transaction transaction) {
+                return Mono.never();
+            }
+
+            @Override
+            public Flux<Transaction> findLatestByAccountId(Long accountId, int limit) {
+                return Flux.empty();
+            }
+
+            @Override
+            public Flux<Transaction> findByAccountIdBetween(Long accountId, LocalDateTime from, LocalDateTime to) {
+                return Flux.empty();
+            }
+
+            @Override
+            public Mono<Void> deleteByAccountId(Long accountId) {
+                return Mono.empty();
+            }
+        };
+        TransactionHistoryUseCase history = new TransactionHistoryUseCase(10, null, stuck, Long.MAX_VALUE, null);
+        TransactionRecorder recorder = new TransactionRecorder(history, 8, 1, Duration.ofMillis(1));
+
+        long accepted = IntStream.range(0, 1_000).filter(n -> recorder.record(tx(1, n))).count();
+
+        assertTrue(accepted < 1_000);
+        assertEquals(1_000 - accepted, recorder.dropped());
+    }
+}
@@ -0,0 +1,112 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.IdempotencyCache;
+import co.com.bancolombia.model.account.gateways.IdempotencyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferIdempotencyTest {
+
+    private final IdempotencyCache cache = mock(IdempotencyCache.class);
+    private final IdempotencyRepository repository = mock(IdempotencyRepository.class);
+    private final TransferIdempotency idempotency =
+        new TransferIdempotency(cache, repository, Duration.ofMillis(300));
+
+    @BeforeEach
+    void setUp() {
+        // Memoria vacía: siempre corre el loader
+        when(cache.get(anyString(), any())).thenAnswer(invocation ->
+            invocation.<Supplier<Mono<TransferResult>>>getArgument(1).get());
+    }
+
+    @Test
+    void aKeyStoredBeforeARestartIsAnsweredWithoutTransferring() {
+        when(repository.reserve("key-1", 1L, 2L, 10.0)).thenReturn(Mono.just(false));
+        when(repository.find("key-1")).thenReturn(Mono.just(TransferResult.success("transfer-1", 1L, 2L, 10.0)));
+        Mono<TransferResult> transfer = Mono.error(new AssertionError("no debe ejecutarse"));
+
+        StepVerifier.create(idempotency.execute("key-1", 1L, 2L, 10.0, transfer))
+            .expectNextMatches(result -> result.getTransferId().equals("transfer-1"))
+            .verifyComplete();
+        assertEquals(1, idempotency.replayed());
+        verify(repository, never()).save(anyString(), any());
+    }
+
+    @Test
+    void aNewKeyTransfersAndStoresTheResult() {
+        TransferResult done = TransferResult.success("transfer-1", 1L, 2L, 10.0);
+        when(repository.reserve("key-1", 1L, 2L, 10.0)).thenReturn(Mono.just(true));
+        when(repository.save("key-1", done)).thenReturn(Mono.error(new IllegalStateException("mongo caído")));
+
+        StepVerifier.create(idempotency.execute("key-1", 1L, 2L, 10.0, Mono.just(done)))
+            .expectNext(done)
+            .verifyComplete();
+        assertEquals(1, idempotency.executed());
+        verify(repository).save(eq("key-1"), eq(done));
+    }
+
+    @Test
+    void aKeyReusedWithAnotherTransferFails() {
+        when(repository.reserve("key-1", 1L, 2L, 99.0)).thenReturn(Mono.just(false));
+        when(repository.find("key-1")).thenReturn(Mono.just(TransferResult.success("transfer-1", 1L, 2L, 10.0)));
+
+        StepVerifier.create(idempotency.execute("key-1", 1L, 2L, 99.0, Mono.never()))
+            .expectNextMatches(result -> !result.isSuccess())
+            .verifyComplete();
+        StepVerifier.create(idempotency.execute(" ", 1L, 2L, 10.0, Mono.never()))
+            .expectNextMatches(result -> !result.isSuccess())
+            .verifyComplete();
+        assertEquals(1, idempotency.mismatched());
+    }
+
+    @Test
+    void aKeyInFlightOnAnotherInstanceWaitsForItsResultInsteadOfTransferring() {
+        when(repository.reserve("key-1", 1L, 2L, 10.0)).thenReturn(Mono.just(false));
+        AtomicInteger polls = new AtomicInteger();
+        // La otra instancia guarda el resultado en la tercera consulta
+        when(repository.find("key-1")).thenReturn(Mono.defer(() -> polls.incrementAndGet() < 3
+            ? Mono.empty()
+            : Mono.just(TransferResult.success("transfer-1", 1L, 2L, 10.0))));
+        Mono<TransferResult> transfer = Mono.error(new AssertionError("no debe ejecutarse"));
+
+        StepVerifier.create(idempotency.execute("key-1", 1L, 2L, 10.0, transfer))
+            .expectNextMatches(result -> result.getTransferId().equals("transfer-1"))
+            .verifyComplete();
+        assertEquals(0, idempotency.executed());
+
+        when(repository.find("key-2")).thenReturn(Mono.empty());
+        when(repository.reserve("key-2", 1L, 2L, 10.0)).thenReturn(Mono.just(false));
+        StepVerifier.create(idempotency.execute("key-2", 1L, 2L, 10.0, transfer))
+            .expectNextMatches(result -> !result.isSuccess() && result.isRetryable())
+            .verifyComplete();
+    }
+
+    @Test
+    void aTransientFailureIsNotRememberedAndReleasesTheKey() {
+        TransferResult failure = TransferResult.retryableFailure(1L, 2L, 10.0, "Error del sistema: timeout");
+        when(repository.reserve("key-1", 1L, 2L, 10.0)).thenReturn(Mono.just(true));
+        when(repository.release("key-1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(idempotency.execute("key-1", 1L, 2L, 10.0, Mono.just(failure)))
+            .expectNext(failure)
+            .verifyComplete();
+        verify(repository).release("key-1");
+        verify(repository, never()).save(anyString(), any());
+    }
+}
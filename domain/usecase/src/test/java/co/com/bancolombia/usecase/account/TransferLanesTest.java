@@ -0,0 +1,89 @@
+package co.com.bancolombia.usecase.account;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferLanesTest {
+
+    @Test
+    void operationsOnTheSameAccountRunOneAtATime() {
+        TransferLanes lanes = new TransferLanes(4, 256);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Mono<Integer> work = Mono.fromCallable(() -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                return now;
+            })
+            .delayElement(Duration.ofMillis(1))
+            .doOnNext(now -> running.decrementAndGet());
+
+        StepVerifier.create(Flux.range(0, 50)
+                .flatMap(n -> lanes.execute(1L, 100L + n, work))
+                .count())
+            .expectNext(50L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(10));
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, lanes.queueDepth(lanes.laneOf(1L)));
+    }
+
+    @Test
+    void opposingTransfersDoNotDeadlock() {
+        TransferLanes lanes = new TransferLanes(8, 1024);
+        long a = 1L;
+        long b = 2L;
+        while (lanes.laneOf(a) == lanes.laneOf(b)) {
+            b++;
+        }
+        long other = b;
+        Mono<String> transfer = Mono.just("ok").delayElement(Duration.ofMillis(1));
+
+        StepVerifier.create(Flux.range(0, 200)
+                .flatMap(n -> n % 2 == 0 ? lanes.execute(a, other, transfer) : lanes.execute(other, a, transfer))
+                .count())
+            .expectNext(200L)
+            .expectComplete()
+            .verify(Duration.ofSeconds(10));
+        assertTrue(lanes.started() >= 400);
+    }
+
+    @Test
+    void fullLaneRejectsInsteadOfQueueingForever() {
+        TransferLanes lanes = new TransferLanes(1, 8);
+
+        StepVerifier.create(Flux.range(0, 64)
+                .flatMap(n -> lanes.execute(1L, Mono.never())
+                    .onErrorReturn(IllegalStateException.class, "rejected"))
+                .take(1))
+            .expectNext("rejected")
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        assertTrue(lanes.rejected() >= 1);
+    }
+
+    @Test
+    void hungTaskFreesItsLaneWithoutBeingCancelled() {
+        TransferLanes lanes = new TransferLanes(1, 8, Duration.ofMillis(50));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        lanes.execute(1L, Mono.never().doOnCancel(() -> cancelled.set(true))).subscribe();
+
+        StepVerifier.create(lanes.execute(1L, Mono.just("next")))
+            .expectNext("next")
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        assertEquals(1, lanes.overdue());
+        assertFalse(cancelled.get());
+    }
+}
@@ -0,0 +1,98 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferNettingEngineTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final TransactionRecorder recorder =
+        new TransactionRecorder(new TransactionHistoryUseCase(10), 64, 16, Duration.ofMillis(5));
+    private final AccountEventUseCase events = new AccountEventUseCase();
+    private final TransferUseCase transferUseCase = new TransferUseCase(accountRepository, events, recorder);
+    private final TransferNettingEngine engine = new TransferNettingEngine(
+        new BatchTransferUseCase(accountRepository, events, transferUseCase), transferUseCase,
+        64, 4, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+        recorder.close();
+    }
+
+    private static Account account(long id, double balance) {
+        return Account.builder().id(id).ownerId(1L).balance(balance).build();
+    }
+
+    @Test
+    void aFullWindowIsWrittenOncePerAccountAndEachTransferGetsItsOwnResult() {
+        when(accountRepository.getAccountsByIds(any()))
+            .thenReturn(Flux.just(account(1, 10.0), account(2, 0.0), account(3, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap())).thenReturn(Mono.just(true));
+
+        Flux<TransferResult> window = Flux.merge(
+            engine.submit(1L, 2L, 10.0),
+            engine.submit(2L, 3L, 10.0),
+            engine.submit(3L, 1L, 10.0),
+            engine.submit(1L, 2L, 5.0));
+
+        StepVerifier.create(window.filter(TransferResult::isSuccess))
+            .expectNextCount(4)
+            .verifyComplete();
+        verify(accountRepository).applyBalanceChanges(anyString(), eq(Map.of(1L, -5.0, 2L, 5.0)));
+        assertEquals(1, engine.windows());
+        assertEquals(2, engine.accountWrites());
+    }
+
+    @Test
+    void aTransferThatWouldLeaveTheSenderBelowTheMinimumFailsAlone() {
+        when(accountRepository.getAccountsByIds(any()))
+            .thenReturn(Flux.just(account(1, 10.0), account(2, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap())).thenReturn(Mono.just(true));
+
+        Flux<TransferResult> window = Flux.mergeSequential(
+            engine.submit(1L, 2L, 8.0),
+            engine.submit(1L, 2L, 8.0),
+            engine.submit(1L, 1L, 1.0),
+            engine.submit(2L, 1L, 1.0));
+
+        StepVerifier.create(window.map(TransferResult::isSuccess))
+            .expectNext(true, false, false, true)
+            .verifyComplete();
+    }
+
+    @Test
+    void aWindowThatDoesNotSettleInTimeIsLeftForReconciliation() {
+        TransferNettingEngine slow = new TransferNettingEngine(
+            new BatchTransferUseCase(accountRepository, events, transferUseCase), transferUseCase,
+            64, 1, Duration.ofMillis(5), Duration.ofMillis(100));
+        when(accountRepository.getAccountsByIds(any()))
+            .thenReturn(Flux.just(account(1, 10.0), account(2, 0.0)));
+        when(accountRepository.applyBalanceChanges(anyString(), anyMap())).thenReturn(Mono.never());
+
+        StepVerifier.create(slow.submit(1L, 2L, 5.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.getMessage().contains("conciliación"))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        assertEquals(1, slow.timedOut());
+        slow.close();
+    }
+}
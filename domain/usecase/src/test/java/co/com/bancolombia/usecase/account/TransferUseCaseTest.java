@@ -0,0 +1,128 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.TransferState;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.model.account.gateways.TransferLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferUseCaseTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final TransactionRecorder recorder =
+        new TransactionRecorder(new TransactionHistoryUseCase(10), 64, 16, Duration.ofMillis(5));
+    private final TransferUseCase useCase =
+        new TransferUseCase(accountRepository, new AccountEventUseCase(), recorder);
+
+    @AfterEach
+    void tearDown() {
+        recorder.close();
+    }
+
+    private static Account account(long id, double balance) {
+        return Account.builder().id(id).ownerId(1L).balance(balance).build();
+    }
+
+    @Test
+    void transferIsOneConditionalDebitAndOneCredit() {
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.just(account(1, 400.0)));
+        when(accountRepository.credit(2L, 100.0)).thenReturn(Mono.just(account(2, 150.0)));
+
+        StepVerifier.create(useCase.transfer(1L, 2L, 100.0))
+            .expectNextMatches(TransferResult::isSuccess)
+            .verifyComplete();
+        verify(accountRepository, never()).update(any());
+    }
+
+    @Test
+    void insufficientBalanceLeavesBothAccountsUntouched() {
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.empty());
+        when(accountRepository.getLatestAccountById(1L)).thenReturn(Mono.just(account(1, 30.0)));
+
+        StepVerifier.create(useCase.transfer(1L, 2L, 100.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.getMessage().contains("30.0"))
+            .verifyComplete();
+        verify(accountRepository, never()).credit(anyLong(), anyDouble());
+    }
+
+    @Test
+    void missingDestinationGivesTheDebitBackExactlyOnce() {
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.just(account(1, 400.0)));
+        when(accountRepository.credit(2L, 100.0)).thenReturn(Mono.empty());
+        when(accountRepository.credit(1L, 100.0)).thenReturn(Mono.error(new IllegalStateException("timeout")));
+
+        StepVerifier.create(useCase.transfer(1L, 2L, 100.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.getTransferId() != null)
+            .verifyComplete();
+        // La devolución falló de forma ambigua: no se reintenta
+        verify(accountRepository, times(1)).credit(1L, 100.0);
+    }
+
+    @Test
+    void ambiguousCreditErrorIsLeftForReconciliationInsteadOfRefunded() {
+        TransferLedger ledger = mock(TransferLedger.class);
+        when(ledger.open(any())).thenReturn(Mono.empty());
+        when(ledger.advance(anyString(), any(), any())).thenReturn(Mono.just(true));
+        TransferUseCase withLedger = new TransferUseCase(
+            accountRepository, new AccountEventUseCase(), recorder, null, ledger);
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.just(account(1, 400.0)));
+        when(accountRepository.credit(2L, 100.0)).thenReturn(Mono.error(new IllegalStateException("timeout")));
+
+        StepVerifier.create(withLedger.transfer(1L, 2L, 100.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.getMessage().contains("conciliación"))
+            .verifyComplete();
+        verify(accountRepository, never()).credit(1L, 100.0);
+        verify(ledger).advance(anyString(), eq(TransferState.CREDITING), eq(TransferState.RECONCILE));
+        assertEquals(1, withLedger.unconfirmed());
+    }
+
+    @Test
+    void transferTakenByTheReconcilerIsNotCredited() {
+        TransferLedger ledger = mock(TransferLedger.class);
+        when(ledger.open(any())).thenReturn(Mono.empty());
+        when(ledger.advance(anyString(), eq(TransferState.PENDING), eq(TransferState.CREDITING)))
+            .thenReturn(Mono.just(false));
+        when(ledger.advance(anyString(), eq(TransferState.PENDING), eq(TransferState.RECONCILE)))
+            .thenReturn(Mono.just(false));
+        TransferUseCase withLedger = new TransferUseCase(
+            accountRepository, new AccountEventUseCase(), recorder, null, ledger);
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.just(account(1, 400.0)));
+
+        StepVerifier.create(withLedger.transfer(1L, 2L, 100.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.getTransferId() != null)
+            .verifyComplete();
+        verify(accountRepository, never()).credit(anyLong(), anyDouble());
+    }
+
+    @Test
+    void failedNotificationAfterTheCreditStillReportsSuccess() {
+        AccountEventUseCase events = mock(AccountEventUseCase.class);
+        when(events.notifyBalanceChanged(any(), anyDouble(), anyDouble()))
+            .thenReturn(Mono.error(new IllegalStateException("listener")));
+        TransferUseCase withFailingEvents = new TransferUseCase(accountRepository, events, recorder);
+        when(accountRepository.debitIfSufficient(1L, 100.0)).thenReturn(Mono.just(account(1, 400.0)));
+        when(accountRepository.credit(2L, 100.0)).thenReturn(Mono.just(account(2, 150.0)));
+
+        StepVerifier.create(withFailingEvents.transfer(1L, 2L, 100.0))
+            .expectNextMatches(TransferResult::isSuccess)
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,58 @@
+package co.com.bancolombia.usecase.account;
+
+import co.com.bancolombia.model.account.AccountVersionConflictException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VersionConflictRetryTest {
+
+    private final VersionConflictRetry retry =
+        new VersionConflictRetry(3, Duration.ofMillis(1), Duration.ofMillis(5), 0.5, 16);
+
+    /** Falla con conflicto las primeras `conflicts` veces y después retorna "ok" */
+    private static Mono<String> conflictingWrite(long accountId, int conflicts, AtomicInteger attempts) {
+        return Mono.defer(() -> attempts.incrementAndGet() <= conflicts
+            ? Mono.error(new AccountVersionConflictException(accountId, 1L))
+            : Mono.just("ok"));
+    }
+
+    @Test
+    void conflictsAreRetriedUntilTheWriteGoesThrough() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier.create(retry.execute(7L, conflictingWrite(7L, 2, attempts)))
+            .expectNext("ok")
+            .verifyComplete();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, retry.conflicts());
+        assertEquals(2, retry.retries());
+        assertEquals(List.of(new VersionConflictRetry.HotAccount(7L, 2, 2)), retry.hottest(10));
+    }
+
+    @Test
+    void attemptsAreBoundedAndOtherErrorsAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        StepVerifier.create(retry.execute(1L, conflictingWrite(1L, 10, attempts)))
+            .expectError(AccountVersionConflictException.class)
+            .verify(Duration.ofSeconds(5));
+        assertEquals(3, attempts.get());
+        assertEquals(1, retry.exhausted());
+
+        AtomicInteger failures = new AtomicInteger();
+        StepVerifier.create(retry.execute(2L, Mono.defer(() -> {
+                failures.incrementAndGet();
+                return Mono.error(new IllegalStateException("boom"));
+            })))
+            .expectError(IllegalStateException.class)
+            .verify();
+        assertEquals(1, failures.get());
+    }
+}
@@ -0,0 +1,56 @@
+package co.com.bancolombia.usecase.account.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowStatsTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2025, 11, 10, 12, 0);
+
+    @Test
+    void aggregatesTheTransactionsInsideTheWindow() {
+        SlidingWindowStats stats = new SlidingWindowStats(Duration.ofHours(1), 12);
+        stats.add(NOON.minusMinutes(50), 100.0);
+        stats.add(NOON.minusMinutes(10), -30.0);
+        stats.add(NOON, 50.0);
+
+        assertEquals(new WindowStats(Duration.ofHours(1), 3, 120.0, -30.0, 100.0), stats.snapshot(NOON));
+    }
+
+    @Test
+    void bucketsLeaveTheWindowAsTimeMoves() {
+        SlidingWindowStats stats = new SlidingWindowStats(Duration.ofHours(1), 12);
+        stats.add(NOON, 10.0);
+        stats.add(NOON.plusMinutes(30), 20.0);
+
+        assertEquals(2, stats.snapshot(NOON.plusMinutes(59)).count());
+        assertEquals(new WindowStats(Duration.ofHours(1), 1, 20.0, 20.0, 20.0), stats.snapshot(NOON.plusMinutes(65)));
+        assertFalse(stats.isExpired(NOON.plusMinutes(65)));
+        assertEquals(WindowStats.empty(Duration.ofHours(1)), stats.snapshot(NOON.plusHours(2)));
+        assertTrue(stats.isExpired(NOON.plusHours(2)));
+    }
+
+    @Test
+    void aReusedBucketForgetsItsOldPeriod() {
+        SlidingWindowStats stats = new SlidingWindowStats(Duration.ofHours(1), 12);
+        stats.add(NOON, 10.0);
+        // Misma celda una hora después: la de mediodía ya salió de la ventana
+        stats.add(NOON.plusHours(1), 5.0);
+        // Y una transacción atrasada de ese período viejo no la contamina
+        stats.add(NOON.plusMinutes(1), 99.0);
+
+        assertEquals(new WindowStats(Duration.ofHours(1), 1, 5.0, 5.0, 5.0), stats.snapshot(NOON.plusHours(1)));
+    }
+
+    @Test
+    void bucketsMustSplitTheWindowEvenly() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowStats(Duration.ofHours(1), 7));
+    }
+}
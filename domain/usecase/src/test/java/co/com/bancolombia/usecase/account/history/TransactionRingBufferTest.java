@@ -0,0 +1,135 @@
+package co.com.bancolombia.usecase.account.history;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRingBufferTest {
+
+    private static Transaction tx(long n) {
+        return Transaction.builder().id("t" + n).accountId(1L).amount((double) n).build();
+    }
+
+    @Test
+    void keepsOnlyTheLastCapacityTransactions() {
+        TransactionRingBuffer buffer = new TransactionRingBuffer(1L, 3, new DescriptionDictionary(16));
+        for (long n = 1; n <= 5; n++) {
+            buffer.append(tx(n));
+        }
+
+        assertEquals(3, buffer.size());
+        StepVerifier.create(buffer.latest(2).map(Transaction::getId))
+            .expectNext("t5", "t4")
+            .verifyComplete();
+        StepVerifier.create(buffer.latest(10).map(Transaction::getId))
+            .expectNext("t5", "t4", "t3")
+            .verifyComplete();
+        StepVerifier.create(buffer.all().map(Transaction::getId))
+            .expectNext("t3", "t4", "t5")
+            .verifyComplete();
+    }
+
+    @Test
+    void transactionsAreRebuiltFieldByFieldOnRead() {
+        DescriptionDictionary dictionary = new DescriptionDictionary(1);
+        TransactionRingBuffer buffer = new TransactionRingBuffer(7L, 4, dictionary);
+        LocalDateTime when = LocalDateTime.of(2025, 11, 10, 14, 30, 15, 123_456_000);
+        String uuid = "3f2b8c1e-9a4d-4e6f-8b7a-0c1d2e3f4a5b";
+        buffer.append(Transaction.builder().id(uuid).accountId(7L).amount(0.1 + 0.2)
+            .type(TransactionType.DEPOSIT).timestamp(when).description("Depósito").build());
+        buffer.append(Transaction.builder().id("b").accountId(7L).amount(-5.0)
+            .type(TransactionType.WITHDRAWAL).description("no cabe en el diccionario").build());
+        buffer.append(Transaction.builder().accountId(7L).build());
+
+        List<Transaction> all = buffer.all().collectList().block();
+
+        Transaction first = all.get(0);
+        assertEquals(uuid, first.getId());
+        assertEquals(7L, first.getAccountId());
+        assertEquals(0.1 + 0.2, first.getAmount());
+        assertEquals(TransactionType.DEPOSIT, first.getType());
+        assertEquals(when, first.getTimestamp());
+        assertEquals("Depósito", first.getDescription());
+        assertEquals("b", all.get(1).getId());
+        assertEquals("no cabe en el diccionario", all.get(1).getDescription());
+        assertNull(all.get(2).getId());
+        assertNull(all.get(2).getAmount());
+        assertNull(all.get(2).getType());
+        assertNull(all.get(2).getTimestamp());
+        assertNull(all.get(2).getDescription());
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    void timeRangeIsLocatedOverTheLiveWindow() {
+        TransactionRingBuffer buffer = new TransactionRingBuffer(1L, 4, new DescriptionDictionary(16));
+        LocalDateTime start = LocalDateTime.of(2025, 11, 10, 10, 0);
+        for (int n = 0; n < 6; n++) {
+            buffer.append(Transaction.builder().id("t" + n).accountId(1L).timestamp(start.plusMinutes(5L * n)).build());
+        }
+
+        // Quedan t2..t5 (secuencias 2..5): t0 y t1 ya se sobrescribieron
+        assertEquals(new TransactionRingBuffer.Range(3, 5), buffer.sequencesBetween(start.plusMinutes(12), start.plusMinutes(25)));
+        assertEquals(new TransactionRingBuffer.Range(2, 6), buffer.sequencesBetween(null, null));
+        assertEquals(new TransactionRingBuffer.Range(2, 2), buffer.sequencesBetween(null, start));
+        StepVerifier.create(buffer.range(0, 4).map(Transaction::getId))
+            .expectNext("t2", "t3")
+            .verifyComplete();
+    }
+
+    @Test
+    void lateOrMissingTimestampsDoNotBreakTheRangeSearch() {
+        TransactionRingBuffer buffer = new TransactionRingBuffer(1L, 8, new DescriptionDictionary(16));
+        LocalDateTime start = LocalDateTime.of(2025, 11, 10, 10, 0);
+        buffer.append(Transaction.builder().id("t0").accountId(1L).timestamp(start).build());
+        buffer.append(Transaction.builder().id("t1").accountId(1L).timestamp(start.plusMinutes(10)).build());
+        // Llega después con una fecha anterior: queda con la fecha de t1
+        buffer.append(Transaction.builder().id("t2").accountId(1L).timestamp(start.plusMinutes(5)).build());
+        buffer.append(Transaction.builder().id("t3").accountId(1L).build());
+        buffer.append(Transaction.builder().id("t4").accountId(1L).timestamp(start.plusMinutes(20)).build());
+
+        assertEquals(new TransactionRingBuffer.Range(1, 4), buffer.sequencesBetween(start.plusMinutes(1), start.plusMinutes(15)));
+        assertEquals(start.plusMinutes(10), buffer.all().collectList().block().get(2).getTimestamp());
+        assertNull(buffer.all().collectList().block().get(3).getTimestamp());
+    }
+
+    @Test
+    void emptyBufferEmitsNothing() {
+        TransactionRingBuffer buffer = new TransactionRingBuffer(1L, 3, new DescriptionDictionary(16));
+
+        StepVerifier.create(buffer.latest(5)).verifyComplete();
+        StepVerifier.create(buffer.all()).verifyComplete();
+    }
+
+    @Test
+    void concurrentWritersDoNotLoseOrCorruptEntries() throws InterruptedException {
+        TransactionRingBuffer buffer = new TransactionRingBuffer(1L, 100, new DescriptionDictionary(16));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    buffer.append(tx(n));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        List<Transaction> all = buffer.all().collectList().block();
+        assertEquals(100, all.size());
+    }
+}
@@ -0,0 +1,52 @@
+package co.com.bancolombia.usecase.account.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountBalanceIndexTest {
+
+    private static List<Long> ids(Iterable<AccountBalanceIndex.Entry> entries) {
+        List<Long> ids = new ArrayList<>();
+        entries.forEach(entry -> ids.add(entry.accountId()));
+        return ids;
+    }
+
+    @Test
+    void rangeIsInclusiveAndOrderedByBalanceThenId() {
+        AccountBalanceIndex index = new AccountBalanceIndex();
+        index.load(new long[]{1, 2, 3, 4, 5}, new double[]{100, 50, 100, 500, 20});
+
+        assertEquals(List.of(2L, 1L, 3L), ids(index.range(50, 100)));
+        assertEquals(3, index.countInRange(50, 100));
+        assertEquals(0, index.countInRange(101, 499));
+    }
+
+    @Test
+    void balanceChangesMoveTheEntry() {
+        AccountBalanceIndex index = new AccountBalanceIndex();
+        index.load(new long[]{1, 2}, new double[]{10, 20});
+
+        index.put(1, 30);
+        index.remove(2);
+
+        assertEquals(List.of(), ids(index.range(0, 25)));
+        assertEquals(List.of(1L), ids(index.range(25, 35)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void eventsReceivedWhileLoadingWinOverTheSnapshot() {
+        AccountBalanceIndex index = new AccountBalanceIndex();
+        index.put(1, 999);
+        index.remove(2);
+
+        index.load(new long[]{1, 2, 3}, new double[]{10, 10, 10});
+
+        assertEquals(List.of(3L), ids(index.range(0, 100)));
+        assertEquals(List.of(1L), ids(index.range(900, 1000)));
+    }
+}
@@ -0,0 +1,68 @@
+package co.com.bancolombia.usecase.account.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountIdIndexTest {
+
+    @Test
+    void rebuildSortsAndRemovesDuplicates() {
+        AccountIdIndex index = new AccountIdIndex();
+        index.rebuild(new long[]{9, 3, 7, 3, 1});
+
+        assertTrue(index.isLoaded());
+        assertEquals(4, index.size());
+        assertArrayEquals(new long[]{1, 3, 7, 9}, index.range(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(2, index.indexOf(7));
+        assertEquals(-1, index.indexOf(4));
+    }
+
+    @Test
+    void pendingChangesAreVisibleOnNextRead() {
+        AccountIdIndex index = new AccountIdIndex();
+        index.rebuild(new long[]{1, 3, 5});
+
+        index.add(4);
+        index.remove(3);
+        index.add(3);
+        index.remove(5);
+        index.add(8);
+        index.remove(8);
+
+        assertArrayEquals(new long[]{1, 3, 4}, index.range(0, 10));
+        assertFalse(index.contains(5));
+        assertFalse(index.contains(8));
+    }
+
+    @Test
+    void changesReceivedDuringALoadSurviveTheRebuild() {
+        AccountIdIndex index = new AccountIdIndex();
+        index.rebuild(new long[]{1, 3});
+
+        index.beginRebuild();
+        // Mientras se leen todos los IDs: se crea la 5 y se elimina la 3, y una lectura fusiona
+        index.add(5);
+        index.remove(3);
+        assertArrayEquals(new long[]{1, 5}, index.range(0, 10));
+        // La lectura empezó antes de ambos cambios
+        index.rebuild(new long[]{1, 3});
+
+        assertArrayEquals(new long[]{1, 5}, index.range(0, 10));
+        assertFalse(index.contains(3));
+    }
+
+    @Test
+    void rangeAndCountUseInclusiveBounds() {
+        AccountIdIndex index = new AccountIdIndex();
+        index.rebuild(new long[]{1, 3, 5, 7, 9, 11});
+
+        assertArrayEquals(new long[]{5, 7, 9}, index.range(4, 9));
+        assertEquals(3, index.countInRange(4, 9));
+        assertEquals(0, index.countInRange(9, 4));
+        assertArrayEquals(new long[0], index.range(12, 20));
+    }
+}
@@ -0,0 +1,67 @@
+package co.com.bancolombia.usecase.account.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountOwnerIndexTest {
+
+    @Test
+    void loadGroupsAccountsByOwner() {
+        AccountOwnerIndex index = new AccountOwnerIndex();
+        assertFalse(index.isLoaded());
+
+        index.load(new long[]{5, 1, 3, 2}, new long[]{10, 10, 20, 10});
+
+        assertTrue(index.isLoaded());
+        assertArrayEquals(new long[]{1, 2, 5}, index.accountsOf(10));
+        assertArrayEquals(new long[]{3}, index.accountsOf(20));
+        assertArrayEquals(new long[0], index.accountsOf(30));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void putMovesAccountBetweenOwnersAndRemoveDetachesIt() {
+        AccountOwnerIndex index = new AccountOwnerIndex();
+        index.load(new long[]{1, 2}, new long[]{10, 10});
+
+        index.put(2, 20);
+        assertArrayEquals(new long[]{1}, index.accountsOf(10));
+        assertArrayEquals(new long[]{2}, index.accountsOf(20));
+
+        index.remove(2);
+        assertArrayEquals(new long[0], index.accountsOf(20));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void eventsReceivedWhileLoadingWinOverTheSnapshot() {
+        AccountOwnerIndex index = new AccountOwnerIndex();
+        index.put(1, 30);   // movida después de leer el snapshot
+        index.remove(2);    // eliminada después de leer el snapshot
+
+        index.load(new long[]{1, 2, 3}, new long[]{10, 10, 10});
+
+        assertArrayEquals(new long[]{3}, index.accountsOf(10));
+        assertArrayEquals(new long[]{1}, index.accountsOf(30));
+    }
+
+    @Test
+    void primitiveMapSurvivesGrowthAndRemovals() {
+        LongLongHashMap map = new LongLongHashMap();
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, key * 10, -1);
+        }
+        for (long key = 1; key <= 1000; key += 2) {
+            assertEquals(key * 10, map.remove(key, -1));
+        }
+
+        assertEquals(500, map.size());
+        for (long key = 1; key <= 1000; key++) {
+            assertEquals(key % 2 == 0 ? key * 10 : -1, map.get(key, -1));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot en disco del cache de cuentas para arrancar "caliente"
+ *
+ * - Cada cierto intervalo (y al apagar) escribe las entradas más calientes del cache
+ *   en un archivo binario compacto a través de un FileChannel mapeado en memoria
+ * - Al recibir ApplicationReadyEvent (el mismo momento en que MongoIndexConfig crea los
+ *   índices) lo lee y devuelve esas entradas al cache sin consultar MongoDB
+ * - Cada entrada restaurada conserva su edad: expira cuando le tocaba, no un TTL completo
+ *   después del arranque
+ * - Las entradas que ya habrían expirado por TTL no se restauran: sus IDs se vuelven a
+ *   pedir en lotes $in, varios lotes en paralelo
+ * - Hasta que termina la restauración no se escribe ningún snapshot (ni al apagar): un
+ *   cache todavía vacío no reemplaza al snapshot bueno
+ *
+ * Formato (big-endian):
+ *   header: int magic, int versión, long escrito-en (epoch ms), int cantidad
+ *   registro (40 bytes): long id, long ownerId, double balance, long versión de la cuenta
+ *   (-1 si no tiene), long escrito-en (epoch ms)
+ *
+ * Métricas: cache.snapshot.restored, cache.snapshot.refetched, cache.snapshot.restore.duration,
+ * cache.snapshot.written y cache.snapshot.write.duration (cache "accounts")
+ *
+ * Opcional: solo se crea con adapter.account-cache.snapshot.enabled=true
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "adapter.account-cache.snapshot", name = "enabled", havingValue = "true")
+public class AccountCacheSnapshot {
+
+    static final int MAGIC = 0x41434353; // "ACCS"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+    static final int RECORD_BYTES = Long.BYTES * 5;
+
+    private static final long NO_VERSION = -1;
+
+    private static final int REFETCH_BATCH_SIZE = 100;
+    private static final int REFETCH_CONCURRENCY = 4;
+
+    private final CaffeineAccountCacheAdapter cache;
+    private final AccountRepository accountRepository;
+    private final Path file;
+    private final Duration interval;
+    private final int maxEntries;
+
+    private final Counter restored;
+    private final Counter refetched;
+    private final Timer restoreDuration;
+    private final Counter written;
+    private final Timer writeDuration;
+
+    private Disposable periodicWrites;
+    private volatile boolean restoreFinished;
+
+    public AccountCacheSnapshot(
+            CaffeineAccountCacheAdapter cache,
+            AccountRepository accountRepository,
+            MeterRegistry meterRegistry,
+            @Value("${adapter.account-cache.snapshot.path:data/account-cache.snapshot}") Path file,
+            @Value("${adapter.account-cache.snapshot.interval:1m}") Duration interval,
+            @Value("${adapter.account-cache.snapshot.max-entries:10000}") int maxEntries) {
+        this.cache = cache;
+        this.accountRepository = accountRepository;
+        this.file = file;
+        this.interval = interval;
+        this.maxEntries = maxEntries;
+        String name = CaffeineAccountCacheAdapter.CACHE_NAME;
+        this.restored = Counter.builder("cache.snapshot.restored").tag("cache", name)
+            .description("Entries restored from the on-disk snapshot at startup").register(meterRegistry);
+        this.refetched = Counter.builder("cache.snapshot.refetched").tag("cache", name)
+            .description("Snapshot entries re-fetched from the source because they had expired").register(meterRegistry);
+        this.restoreDuration = Timer.builder("cache.snapshot.restore.duration").tag("cache", name)
+            .description("Time spent warming the cache from the snapshot").register(meterRegistry);
+        this.written = Counter.builder("cache.snapshot.written").tag("cache", name)
+            .description("Entries written to the on-disk snapshot").register(meterRegistry);
+        this.writeDuration = Timer.builder("cache.snapshot.write.duration").tag("cache", name)
+            .description("Time spent writing the snapshot").register(meterRegistry);
+    }
+
+    /**
+     * Restaura el snapshot y después programa las escrituras periódicas.
+     * No bloquea el arranque: todo corre en boundedElastic.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        restore()
+            .subscribeOn(Schedulers.boundedElastic())
+            .doFinally(signal -> {
+                restoreFinished = true;
+                schedulePeriodicWrites();
+            })
+            .subscribe(
+                result -> log.info("♨️ Cache de cuentas restaurado desde {}: {} entradas del snapshot, "
+                        + "{} recargadas de la BD en {} ms",
+                    file, result.restored(), result.refetched(), result.elapsedMillis()),
+                error -> log.warn("⚠️ No se pudo restaurar el snapshot del cache {}: {}", file, error.getMessage())
+            );
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onShutdown() {
+        if (periodicWrites != null) {
+            periodicWrites.dispose();
+        }
+        if (!restoreFinished) {
+            log.info("El snapshot del cache no se escribe: la restauración no había terminado");
+            return;
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo escribir el snapshot del cache al apagar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lee el snapshot: las entradas aún vigentes van directo al cache y las expiradas
+     * se recargan en lotes en paralelo (pasando por el repositorio, que las cachea).
+     */
+    Mono<RestoreResult> restore() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            List<RestoredEntry> fresh = new ArrayList<>();
+            List<Long> expired = new ArrayList<>();
+            try {
+                read(fresh, expired);
+            } catch (NoSuchFileException e) {
+                log.info("No hay snapshot del cache en {}, se arranca vacío", file);
+                return Mono.just(new RestoreResult(0, 0, 0));
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+            long restoredCount = fresh.stream()
+                .filter(entry -> cache.restore(entry.account(), entry.age()))
+                .count();
+            restored.increment(restoredCount);
+
+            return Flux.fromIterable(expired)
+                .buffer(REFETCH_BATCH_SIZE)
+                .flatMap(accountRepository::getAccountsByIds, REFETCH_CONCURRENCY)
+                .count()
+                .map(count -> {
+                    long elapsed = System.nanoTime() - start;
+                    refetched.increment(count);
+                    restoreDuration.record(elapsed, TimeUnit.NANOSECONDS);
+                    return new RestoreResult(restoredCount, count, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                });
+        });
+    }
+
+    /**
+     * Escribe las entradas más calientes en un archivo temporal mapeado en memoria
+     * y lo mueve sobre el anterior (un lector nunca ve un snapshot a medio escribir).
+     *
+     * @return cantidad de entradas escritas
+     */
+    int write() throws IOException {
+        long start = System.nanoTime();
+        List<Account> hottest = cache.hottest(maxEntries).values().stream()
+            .filter(account -> account.getId() != null && account.getOwnerId() != null
+                && account.getBalance() != null)
+            .toList();
+        long now = System.currentTimeMillis();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long size = HEADER_BYTES + (long) RECORD_BYTES * hottest.size();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(now)
+                .putInt(hottest.size());
+            for (Account account : hottest) {
+                long age = cache.ageOf(account.getId()).map(Duration::toMillis).orElse(0L);
+                buffer.putLong(account.getId())
+                    .putLong(account.getOwnerId())
+                    .putDouble(account.getBalance())
+                    .putLong(account.getVersion() == null ? NO_VERSION : account.getVersion())
+                    .putLong(now - age);
+            }
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        written.increment(hottest.size());
+        writeDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return hottest.size();
+    }
+
+    private void read(List<RestoredEntry> fresh, List<Long> expired) throws IOException {
+        long ttl = cache.expireAfterWrite().toMillis();
+        long now = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Snapshot incompleto: " + size + " bytes");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Formato de snapshot desconocido");
+            }
+            buffer.getLong(); // escrito-en: informativo, cada registro trae su propia edad
+            int count = buffer.getInt();
+            if (size < HEADER_BYTES + (long) RECORD_BYTES * count) {
+                throw new IOException("Snapshot truncado: se esperaban " + count + " registros");
+            }
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long ownerId = buffer.getLong();
+                double balance = buffer.getDouble();
+                long version = buffer.getLong();
+                long writtenAt = buffer.getLong();
+                long age = Math.max(0, now - writtenAt);
+                if (age < ttl) {
+                    fresh.add(new RestoredEntry(Account.builder().id(id).ownerId(ownerId).balance(balance)
+                        .version(version == NO_VERSION ? null : version).build(), Duration.ofMillis(age)));
+                } else {
+                    expired.add(id);
+                }
+            }
+        }
+    }
+
+    private void schedulePeriodicWrites() {
+        periodicWrites = Flux.interval(interval, Schedulers.boundedElastic())
+            .subscribe(tick -> {
+                try {
+                    int count = write();
+                    log.debug("Snapshot del cache escrito: {} entradas en {}", count, file);
+                } catch (IOException e) {
+                    log.warn("⚠️ No se pudo escribir el snapshot del cache {}: {}", file, e.getMessage());
+                }
+            });
+    }
+
+    record RestoreResult(long restored, long refetched, long elapsedMillis) {
+    }
+
+    /** Una cuenta del snapshot y el tiempo que lleva desde que se escribió en el cache */
+    private record RestoredEntry(Account account, Duration age) {
+    }
+}
@@ -0,0 +1,140 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountCache;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Decorador de AccountRepository con cache write-through
+ *
+ * - Lecturas por id (una o en lote): se sirven del cache y solo los misses van al repositorio real
+ * - getLatestAccountById: siempre va al repositorio real (leer-modificar-escribir) y no
+ *   llena el cache, para no competir con una escritura concurrente
+ * - getAccountByOwner/findByOwnerId: van al repositorio real y NO llenan el cache (un
+ *   resultado leído antes de una escritura concurrente dejaría la cuenta vieja)
+ * - save/update/debitIfSufficient/credit: escriben en el repositorio real y luego
+ *   reemplazan la entrada del cache con la cuenta que devolvió (si no hay una más nueva)
+ * - delete: borra en el repositorio real y luego invalida la entrada
+ * - applyBalanceChanges: aplica el lote y luego invalida todas las cuentas que tocó
+ *   (el lote no devuelve las cuentas, y aunque falle pudo haber escrito y revertido)
+ * - Si una escritura falla, la entrada se invalida porque no sabemos qué quedó guardado
+ *
+ * La coherencia es por instancia: otra réplica de la aplicación solo ve el cambio
+ * cuando expira su propia entrada (ver adapter.account-cache.expire-after-write).
+ *
+ * No es un @Component: se registra en UseCaseBeansConfig envolviendo al adapter de Mongo.
+ */
+@RequiredArgsConstructor
+public class CachingAccountRepository implements AccountRepository {
+
+    private final AccountRepository delegate;
+    private final AccountCache cache;
+
+    @Override
+    public Mono<Account> getAccountById(Long id) {
+        return cache.get(id, delegate::getAccountById);
+    }
+
+    @Override
+    public Mono<Account> getLatestAccountById(Long id) {
+        return delegate.getLatestAccountById(id);
+    }
+
+    @Override
+    public Mono<Account> getAccountByOwner(Long ownerId) {
+        return delegate.getAccountByOwner(ownerId);
+    }
+
+    @Override
+    public Flux<Account> getAccountsByIds(Collection<Long> ids) {
+        return cache.getAll(ids, delegate::getAccountsByIds);
+    }
+
+    @Override
+    public Flux<Account> findTopByBalance(int limit) {
+        // El orden por saldo lo resuelve la fuente; el cache solo sirve lecturas por id
+        return delegate.findTopByBalance(limit);
+    }
+
+    @Override
+    public Flux<Account> findByBalanceBetween(double minBalance, double maxBalance) {
+        return delegate.findByBalanceBetween(minBalance, maxBalance);
+    }
+
+    @Override
+    public Mono<Account> save(Account account) {
+        return writeThrough(account.getId(), delegate.save(account));
+    }
+
+    @Override
+    public Mono<Account> update(Account account) {
+        return writeThrough(account.getId(), delegate.update(account));
+    }
+
+    @Override
+    public Mono<Account> debitIfSufficient(Long id, double amount) {
+        return writeThrough(id, delegate.debitIfSufficient(id, amount));
+    }
+
+    @Override
+    public Mono<Account> credit(Long id, double amount) {
+        return writeThrough(id, delegate.credit(id, amount));
+    }
+
+    @Override
+    public Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas) {
+        return delegate.applyBalanceChanges(batchId, deltas)
+            .flatMap(applied -> invalidate(deltas.keySet()).thenReturn(applied))
+            .onErrorResume(error -> invalidate(deltas.keySet()).then(Mono.error(error)));
+    }
+
+    @Override
+    public Mono<Void> delete(Long id) {
+        return delegate.delete(id)
+            .then(cache.invalidate(id))
+            .onErrorResume(error -> cache.invalidate(id).then(Mono.error(error)));
+    }
+
+    @Override
+    public Flux<Account> findAll() {
+        // No se llena el cache con recorridos completos: desplazaría las cuentas frecuentes
+        return delegate.findAll();
+    }
+
+    @Override
+    public Flux<Account> findByOwnerId(Long ownerId) {
+        return delegate.findByOwnerId(ownerId);
+    }
+
+    @Override
+    public Mono<Boolean> exists(Long id) {
+        return getAccountById(id).hasElement();
+    }
+
+    private Mono<Void> invalidate(Collection<Long> ids) {
+        return Flux.fromIterable(ids)
+            .concatMap(cache::invalidate)
+            .then();
+    }
+
+    private Mono<Account> writeThrough(Long id, Mono<Account> write) {
+        return write
+            .flatMap(this::populate)
+            .onErrorResume(error -> id == null
+                ? Mono.error(error)
+                : cache.invalidate(id).then(Mono.error(error)));
+    }
+
+    private Mono<Account> populate(Account account) {
+        if (account.getId() == null) {
+            return Mono.just(account);
+        }
+        return cache.put(account).thenReturn(account);
+    }
+}
@@ -0,0 +1,298 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Cache de cuentas en memoria implementado con Caffeine
+ *
+ * - Tamaño máximo: al llenarse, Caffeine decide qué entrada sale usando W-TinyLFU
+ *   (una ventana LRU pequeña + admisión por frecuencia estimada con un Count-Min Sketch)
+ * - TTL: cada entrada expira un tiempo después de escrita (una entrada restaurada del
+ *   snapshot conserva la edad que ya tenía)
+ * - Single-flight: si varias peticiones fallan el cache para el mismo id al mismo tiempo,
+ *   solo la primera consulta la fuente y las demás se suscriben a ese mismo Mono
+ * - Cargas cercadas: una carga solo guarda su resultado si nadie escribió ni invalidó
+ *   esa cuenta mientras consultaba la fuente (si no, devolvería una cuenta vieja al
+ *   cache después de la escritura)
+ * - Versiones: ni un put ni una carga reemplazan una entrada con version mayor (dos
+ *   escrituras que terminan en desorden dejan la más nueva)
+ * - Métricas: hits, misses, evictions y latencia de carga se publican en Micrometer
+ *   con el nombre de cache "accounts" (visibles en /actuator/prometheus), junto con
+ *   cache.loads.coalesced (cargas que se ahorraron por el single-flight)
+ */
+@Slf4j
+@Component
+public class CaffeineAccountCacheAdapter implements AccountCache, MeterBinder {
+
+    static final String CACHE_NAME = "accounts";
+
+    /** Franjas de generación (potencia de 2); dos ids en la misma franja solo se cercan de más */
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final StatsCounter statsCounter = new ConcurrentStatsCounter();
+    private final Cache<Long, Account> cache;
+    private final Duration expireAfterWrite;
+
+    /** Cargas en curso por id; vive solo mientras la consulta a la fuente no termina */
+    private final Map<Long, Mono<Account>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+
+    /**
+     * Generación por franja de ids: cada put/invalidate la incrementa. Una carga anota la
+     * generación al empezar y solo escribe en el cache si sigue igual al terminar.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CaffeineAccountCacheAdapter(
+            @Value("${adapter.account-cache.maximum-size:10000}") long maximumSize,
+            @Value("${adapter.account-cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new ExpireAfterWrite(expireAfterWrite.toNanos()))
+            .recordStats(() -> statsCounter)
+            .build();
+        log.info("Account cache configured: maximumSize={}, expireAfterWrite={}", maximumSize, expireAfterWrite);
+    }
+
+    @Override
+    public Mono<Account> get(Long id, Function<Long, Mono<Account>> loader) {
+        return Mono.defer(() -> {
+            Account cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return joinOrLoad(id, loader);
+        });
+    }
+
+    @Override
+    public Flux<Account> getAll(Collection<Long> ids, Function<Collection<Long>, Flux<Account>> loader) {
+        return Flux.defer(() -> {
+            Map<Long, Account> present = cache.getAllPresent(ids);
+            Set<Long> missing = new LinkedHashSet<>(ids);
+            missing.removeAll(present.keySet());
+            if (missing.isEmpty()) {
+                return Flux.fromIterable(present.values());
+            }
+            return Flux.concat(Flux.fromIterable(present.values()), loadAll(missing, loader));
+        });
+    }
+
+    @Override
+    public Mono<Void> put(Account account) {
+        return Mono.fromRunnable(() -> cache.asMap().compute(account.getId(), (id, current) -> {
+            fence(id);
+            return newer(current, account);
+        }));
+    }
+
+    @Override
+    public Mono<Void> invalidate(Long id) {
+        return Mono.fromRunnable(() -> cache.asMap().compute(id, (key, current) -> {
+            fence(key);
+            return null;
+        }));
+    }
+
+    @Override
+    public Mono<Void> invalidateAll() {
+        return Mono.fromRunnable(() -> {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            cache.invalidateAll();
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        FunctionCounter.builder("cache.loads.coalesced", coalescedLoads, AtomicLong::get)
+            .tag("cache", CACHE_NAME)
+            .description("Cache misses that joined an in-flight load instead of querying the source")
+            .register(registry);
+    }
+
+    long getCoalescedLoadCount() {
+        return coalescedLoads.get();
+    }
+
+    /** Las entradas con más probabilidad de seguir siendo leídas, según la frecuencia de W-TinyLFU */
+    Map<Long, Account> hottest(int limit) {
+        return cache.policy().eviction()
+            .map(eviction -> eviction.hottest(limit))
+            .orElseGet(Map::of);
+    }
+
+    /** Tiempo desde que se escribió la entrada (vacío si ya no está) */
+    Optional<Duration> ageOf(Long id) {
+        return cache.policy().expireVariably()
+            .flatMap(expiration -> expiration.getExpiresAfter(id))
+            .map(remaining -> expireAfterWrite.minus(remaining));
+    }
+
+    Duration expireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    /**
+     * Restaura una entrada del snapshot sin pasar por las estadísticas de carga.
+     * Expira cuando le toca según la edad que ya tenía (no recibe un TTL completo nuevo),
+     * y solo entra si desde el arranque nadie escribió ni invalidó esa cuenta.
+     *
+     * @return true si la entrada quedó en el cache
+     */
+    boolean restore(Account account, Duration age) {
+        Duration remaining = expireAfterWrite.minus(age);
+        if (remaining.isNegative() || remaining.isZero()) {
+            return false;
+        }
+        Long id = account.getId();
+        if (generation(id) != 0) {
+            return false;
+        }
+        Account previous = cache.policy().expireVariably()
+            .map(expiration -> expiration.putIfAbsent(id, account, remaining))
+            .orElse(account);
+        if (previous != null) {
+            return false;
+        }
+        // Una invalidación entre la verificación y el putIfAbsent: la entrada restaurada sobra
+        if (generation(id) != 0) {
+            cache.asMap().remove(id, account);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Single-flight: la primera petición registra su carga en inFlight y las que
+     * llegan mientras tanto reciben el mismo Mono (cache() comparte el resultado).
+     * Al terminar, la entrada se retira (solo si sigue siendo esta carga).
+     */
+    private Mono<Account> joinOrLoad(Long id, Function<Long, Mono<Account>> loader) {
+        AtomicReference<Mono<Account>> self = new AtomicReference<>();
+        Mono<Account> load = Mono.defer(() -> load(id, loader))
+            .doFinally(signal -> inFlight.remove(id, self.get()))
+            .cache();
+        self.set(load);
+        Mono<Account> existing = inFlight.putIfAbsent(id, load);
+        if (existing != null) {
+            coalescedLoads.incrementAndGet();
+            return existing;
+        }
+        return load;
+    }
+
+    /**
+     * Carga en lote: una sola llamada al loader para todos los misses.
+     * Se registra como una única carga en las estadísticas del cache.
+     */
+    private Flux<Account> loadAll(Collection<Long> missing, Function<Collection<Long>, Flux<Account>> loader) {
+        long start = System.nanoTime();
+        Map<Long, Long> startedAt = new ConcurrentHashMap<>();
+        missing.forEach(id -> startedAt.put(id, generation(id)));
+        return loader.apply(missing)
+            .doOnNext(account -> putIfUnchanged(account, startedAt.getOrDefault(account.getId(), -1L)))
+            .doOnComplete(() -> statsCounter.recordLoadSuccess(System.nanoTime() - start))
+            .doOnError(error -> statsCounter.recordLoadFailure(System.nanoTime() - start));
+    }
+
+    /**
+     * Carga la cuenta desde la fuente original y registra la latencia en las
+     * estadísticas del cache (Caffeine no lo hace solo porque la carga es reactiva).
+     * Igual que en Caffeine, una carga sin resultado cuenta como fallida.
+     */
+    private Mono<Account> load(Long id, Function<Long, Mono<Account>> loader) {
+        long start = System.nanoTime();
+        long startedAt = generation(id);
+        return loader.apply(id)
+            .doOnSuccess(account -> {
+                long elapsed = System.nanoTime() - start;
+                if (account == null) {
+                    statsCounter.recordLoadFailure(elapsed);
+                    return;
+                }
+                putIfUnchanged(account, startedAt);
+                statsCounter.recordLoadSuccess(elapsed);
+            })
+            .doOnError(error -> statsCounter.recordLoadFailure(System.nanoTime() - start));
+    }
+
+    /**
+     * Guarda una cuenta cargada solo si su franja no cambió desde que empezó la carga.
+     * compute() serializa esta verificación con put/invalidate del mismo id, así que una
+     * escritura no puede colarse entre la verificación y el guardado.
+     */
+    private void putIfUnchanged(Account account, long startedAt) {
+        cache.asMap().compute(account.getId(), (id, current) ->
+            generation(id) == startedAt ? newer(current, account) : current);
+    }
+
+    /** La cuenta con version mayor; sin versión en alguna de las dos gana la que llega */
+    private static Account newer(Account current, Account candidate) {
+        if (current == null || current.getVersion() == null || candidate.getVersion() == null) {
+            return candidate;
+        }
+        return current.getVersion() > candidate.getVersion() ? current : candidate;
+    }
+
+    private long generation(Long id) {
+        return generations.get(stripeOf(id));
+    }
+
+    private void fence(Long id) {
+        generations.incrementAndGet(stripeOf(id));
+    }
+
+    private static int stripeOf(Long id) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (GENERATION_STRIPES - 1);
+    }
+
+    /** TTL fijo desde la última escritura; restore() lo acorta entrada por entrada */
+    private record ExpireAfterWrite(long ttlNanos) implements Expiry<Long, Account> {
+
+        @Override
+        public long expireAfterCreate(Long id, Account account, long currentTime) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Account account, long currentTime, long currentDuration) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Account account, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
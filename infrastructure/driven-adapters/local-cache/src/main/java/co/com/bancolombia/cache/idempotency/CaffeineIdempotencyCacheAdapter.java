@@ -0,0 +1,99 @@
+package co.com.bancolombia.cache.idempotency;
+
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.IdempotencyCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Resultados por Idempotency-Key en memoria, implementado con Caffeine
+ *
+ * - Tamaño máximo y TTL: la memoria no crece con el tráfico; una clave se recuerda
+ *   expire-after-write (el tiempo durante el que un cliente puede reintentar)
+ * - Espera sobre el original: mientras el loader de una clave corre, los duplicados
+ *   reciben ese mismo Mono (cache() comparte el resultado) en vez de ejecutar otro
+ * - Métricas: hits, misses y evictions con el nombre de cache "idempotency", junto con
+ *   cache.loads.coalesced (duplicados que esperaron al original en curso)
+ */
+@Slf4j
+@Component
+public class CaffeineIdempotencyCacheAdapter implements IdempotencyCache, MeterBinder {
+
+    static final String CACHE_NAME = "idempotency";
+
+    private final Cache<String, TransferResult> cache;
+
+    /** Ejecuciones en curso por clave; vive solo mientras el loader no termina */
+    private final Map<String, Mono<TransferResult>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+
+    public CaffeineIdempotencyCacheAdapter(
+            @Value("${adapter.idempotency-cache.maximum-size:100000}") long maximumSize,
+            @Value("${adapter.idempotency-cache.expire-after-write:24h}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        log.info("Idempotency cache configured: maximumSize={}, expireAfterWrite={}", maximumSize, expireAfterWrite);
+    }
+
+    @Override
+    public Mono<TransferResult> get(String key, Supplier<Mono<TransferResult>> loader) {
+        return Mono.defer(() -> {
+            TransferResult cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return joinOrLoad(key, loader);
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        FunctionCounter.builder("cache.loads.coalesced", coalescedLoads, AtomicLong::get)
+            .tag("cache", CACHE_NAME)
+            .description("Duplicate requests that waited for the in-flight original instead of executing again")
+            .register(registry);
+    }
+
+    long getCoalescedLoadCount() {
+        return coalescedLoads.get();
+    }
+
+    /**
+     * La primera petición registra su carga en inFlight y las que llegan mientras tanto
+     * reciben el mismo Mono. El resultado entra al cache ANTES de retirar la carga, y
+     * quien gana el registro vuelve a mirar el cache: una petición que llega justo cuando
+     * el original termina encuentra el resultado y no ejecuta la transferencia otra vez.
+     */
+    private Mono<TransferResult> joinOrLoad(String key, Supplier<Mono<TransferResult>> loader) {
+        Mono<TransferResult> load = Mono.defer(() -> {
+                TransferResult cached = cache.getIfPresent(key);
+                return cached != null ? Mono.just(cached) : loader.get().doOnNext(result -> cache.put(key, result));
+            })
+            .doFinally(signal -> inFlight.remove(key))
+            .cache();
+        Mono<TransferResult> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            coalescedLoads.incrementAndGet();
+            return existing;
+        }
+        return load;
+    }
+}
@@ -0,0 +1,114 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AccountCacheSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final AccountRepository repository = mock(AccountRepository.class);
+
+    private AccountCacheSnapshot snapshot(CaffeineAccountCacheAdapter cache) {
+        return new AccountCacheSnapshot(cache, repository, new SimpleMeterRegistry(),
+            dir.resolve("accounts.snapshot"), Duration.ofMinutes(1), 100);
+    }
+
+    private static Account account(long id) {
+        return Account.builder().id(id).ownerId(7L).balance(id * 10.0).build();
+    }
+
+    private static Mono<Account> failingLoader(Long id) {
+        return Mono.error(new AssertionError("la cuenta " + id + " debía salir del snapshot"));
+    }
+
+    @Test
+    void freshEntriesAreRestoredWithoutQueryingTheSource() throws Exception {
+        CaffeineAccountCacheAdapter before = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        before.put(account(1)).then(before.put(account(2))).block();
+        assertEquals(2, snapshot(before).write());
+
+        CaffeineAccountCacheAdapter after = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        StepVerifier.create(snapshot(after).restore())
+            .expectNextMatches(result -> result.restored() == 2 && result.refetched() == 0)
+            .verifyComplete();
+
+        StepVerifier.create(after.get(2L, AccountCacheSnapshotTest::failingLoader))
+            .expectNext(account(2))
+            .verifyComplete();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void expiredEntriesAreRefetchedInBulk() throws Exception {
+        CaffeineAccountCacheAdapter before = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        before.put(account(1)).then(before.put(account(2))).block();
+        snapshot(before).write();
+        when(repository.getAccountsByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return Flux.fromIterable(ids).map(AccountCacheSnapshotTest::account);
+        });
+
+        CaffeineAccountCacheAdapter after = new CaffeineAccountCacheAdapter(100, Duration.ZERO);
+        StepVerifier.create(snapshot(after).restore())
+            .expectNextMatches(result -> result.restored() == 0 && result.refetched() == 2)
+            .verifyComplete();
+    }
+
+    @Test
+    void restoredEntryKeepsItsAge() {
+        CaffeineAccountCacheAdapter cache = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+
+        assertTrue(cache.restore(account(1), Duration.ofMinutes(4)));
+
+        Duration age = cache.ageOf(1L).orElseThrow();
+        assertTrue(age.compareTo(Duration.ofMinutes(4)) >= 0, "edad restaurada: " + age);
+    }
+
+    @Test
+    void restoreDoesNotResurrectAnInvalidatedAccount() {
+        CaffeineAccountCacheAdapter cache = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        cache.invalidate(1L).block();
+
+        assertFalse(cache.restore(account(1), Duration.ZERO));
+    }
+
+    @Test
+    void shutdownBeforeRestoreKeepsThePreviousSnapshot() throws Exception {
+        CaffeineAccountCacheAdapter before = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        before.put(account(1)).then(before.put(account(2))).block();
+        snapshot(before).write();
+
+        snapshot(new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5))).onShutdown();
+
+        StepVerifier.create(snapshot(new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5))).restore())
+            .expectNextMatches(result -> result.restored() == 2)
+            .verifyComplete();
+    }
+
+    @Test
+    void missingSnapshotStartsEmpty() {
+        StepVerifier.create(snapshot(new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5))).restore())
+            .expectNextMatches(result -> result.restored() == 0 && result.refetched() == 0)
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,82 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingAccountRepositoryTest {
+
+    private AccountRepository delegate;
+    private CachingAccountRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(AccountRepository.class);
+        repository = new CachingAccountRepository(delegate,
+            new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5)));
+    }
+
+    private static Account account(double balance) {
+        return Account.builder().id(1L).ownerId(7L).balance(balance).build();
+    }
+
+    @Test
+    void readsAreServedFromCacheAfterFirstLoad() {
+        when(delegate.getAccountById(1L)).thenReturn(Mono.just(account(100.0)));
+
+        repository.getAccountById(1L).block();
+        repository.getAccountById(1L).block();
+
+        verify(delegate, times(1)).getAccountById(1L);
+    }
+
+    @Test
+    void updateReplacesCachedBalance() {
+        when(delegate.getAccountById(1L)).thenReturn(Mono.just(account(100.0)));
+        when(delegate.update(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        repository.getAccountById(1L).block();
+        repository.update(account(40.0)).block();
+
+        StepVerifier.create(repository.getAccountById(1L))
+            .expectNextMatches(found -> found.getBalance() == 40.0)
+            .verifyComplete();
+        verify(delegate, times(1)).getAccountById(1L);
+    }
+
+    @Test
+    void deleteInvalidatesEntry() {
+        when(delegate.getAccountById(1L)).thenReturn(Mono.just(account(0.0)), Mono.empty());
+        when(delegate.delete(1L)).thenReturn(Mono.empty());
+
+        repository.getAccountById(1L).block();
+        repository.delete(1L).block();
+
+        StepVerifier.create(repository.getAccountById(1L))
+            .verifyComplete();
+    }
+
+    @Test
+    void failedUpdateInvalidatesEntry() {
+        when(delegate.getAccountById(1L)).thenReturn(Mono.just(account(100.0)));
+        when(delegate.update(any())).thenReturn(Mono.error(new IllegalStateException("boom")));
+
+        repository.getAccountById(1L).block();
+        StepVerifier.create(repository.update(account(40.0)))
+            .verifyError(IllegalStateException.class);
+        repository.getAccountById(1L).block();
+
+        verify(delegate, times(2)).getAccountById(1L);
+    }
+}
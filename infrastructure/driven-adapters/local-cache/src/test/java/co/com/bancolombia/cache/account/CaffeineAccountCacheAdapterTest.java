@@ -0,0 +1,125 @@
+package co.com.bancolombia.cache.account;
+
+import co.com.bancolombia.model.account.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CaffeineAccountCacheAdapterTest {
+
+    private CaffeineAccountCacheAdapter adapter;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        adapter = new CaffeineAccountCacheAdapter(100, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+    }
+
+    private Mono<Account> loader(Long id) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return Account.builder().id(id).ownerId(1L).balance(100.0).build();
+        });
+    }
+
+    @Test
+    void secondGetIsServedFromCache() {
+        StepVerifier.create(adapter.get(1L, this::loader).then(adapter.get(1L, this::loader)))
+            .expectNextMatches(account -> account.getId().equals(1L))
+            .verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateForcesReload() {
+        StepVerifier.create(adapter.get(1L, this::loader)
+                .then(adapter.invalidate(1L))
+                .then(adapter.get(1L, this::loader)))
+            .expectNextCount(1)
+            .verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void emptyLoadIsNotCached() {
+        StepVerifier.create(adapter.get(1L, id -> Mono.empty()))
+            .verifyComplete();
+
+        StepVerifier.create(adapter.get(1L, this::loader))
+            .expectNextCount(1)
+            .verifyComplete();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() {
+        Sinks.One<Account> source = Sinks.one();
+        Function<Long, Mono<Account>> slowLoader = id -> {
+            loads.incrementAndGet();
+            return source.asMono();
+        };
+
+        StepVerifier.create(Flux.merge(
+                adapter.get(1L, slowLoader),
+                adapter.get(1L, slowLoader),
+                adapter.get(1L, slowLoader)))
+            .then(() -> source.tryEmitValue(Account.builder().id(1L).ownerId(1L).balance(5.0).build()))
+            .expectNextCount(3)
+            .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(2, adapter.getCoalescedLoadCount());
+    }
+
+    @Test
+    void loadThatRacesAWriteDoesNotOverwriteIt() {
+        Sinks.One<Account> source = Sinks.one();
+        Mono<Account> inFlight = adapter.get(1L, id -> source.asMono()).cache();
+        inFlight.subscribe();
+
+        adapter.put(Account.builder().id(1L).ownerId(1L).balance(40.0).build()).block();
+        source.tryEmitValue(Account.builder().id(1L).ownerId(1L).balance(100.0).build());
+
+        StepVerifier.create(inFlight)
+            .expectNextMatches(account -> account.getBalance() == 100.0)
+            .verifyComplete();
+        StepVerifier.create(adapter.get(1L, this::loader))
+            .expectNextMatches(account -> account.getBalance() == 40.0)
+            .verifyComplete();
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void writesThatFinishOutOfOrderKeepTheNewestVersion() {
+        adapter.put(Account.builder().id(1L).ownerId(1L).balance(40.0).version(6L).build()).block();
+        adapter.put(Account.builder().id(1L).ownerId(1L).balance(50.0).version(5L).build()).block();
+
+        StepVerifier.create(adapter.get(1L, this::loader))
+            .expectNextMatches(account -> account.getVersion() == 6L && account.getBalance() == 40.0)
+            .verifyComplete();
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void publishesCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        adapter.bindTo(registry);
+
+        adapter.get(1L, this::loader).then(adapter.get(1L, this::loader)).block();
+
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+}
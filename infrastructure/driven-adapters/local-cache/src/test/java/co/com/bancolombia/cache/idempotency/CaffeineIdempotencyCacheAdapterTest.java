@@ -0,0 +1,72 @@
+package co.com.bancolombia.cache.idempotency;
+
+import co.com.bancolombia.model.account.TransferResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CaffeineIdempotencyCacheAdapterTest {
+
+    private CaffeineIdempotencyCacheAdapter adapter;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        adapter = new CaffeineIdempotencyCacheAdapter(100, Duration.ofMinutes(5));
+        executions = new AtomicInteger();
+    }
+
+    private Mono<TransferResult> transfer() {
+        return Mono.fromSupplier(() -> TransferResult.success("transfer-" + executions.incrementAndGet(), 1L, 2L, 10.0));
+    }
+
+    @Test
+    void aRepeatedKeyIsAnsweredWithTheFirstResult() {
+        StepVerifier.create(adapter.get("key-1", this::transfer).then(adapter.get("key-1", this::transfer)))
+            .expectNextMatches(result -> result.getTransferId().equals("transfer-1"))
+            .verifyComplete();
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheInFlightOriginal() {
+        Sinks.One<TransferResult> original = Sinks.one();
+        Supplier<Mono<TransferResult>> slowTransfer = () -> {
+            executions.incrementAndGet();
+            return original.asMono();
+        };
+
+        StepVerifier.create(Flux.merge(
+                adapter.get("key-1", slowTransfer),
+                adapter.get("key-1", slowTransfer),
+                adapter.get("key-1", slowTransfer)))
+            .then(() -> original.tryEmitValue(TransferResult.success("transfer-1", 1L, 2L, 10.0)))
+            .expectNextCount(3)
+            .verifyComplete();
+
+        assertEquals(1, executions.get());
+        assertEquals(2, adapter.getCoalescedLoadCount());
+    }
+
+    @Test
+    void aFailedExecutionIsNotRemembered() {
+        StepVerifier.create(adapter.get("key-1", () -> Mono.error(new IllegalStateException("timeout"))))
+            .expectError(IllegalStateException.class)
+            .verify();
+
+        StepVerifier.create(adapter.get("key-1", this::transfer))
+            .expectNextCount(1)
+            .verifyComplete();
+        assertEquals(1, executions.get());
+    }
+}
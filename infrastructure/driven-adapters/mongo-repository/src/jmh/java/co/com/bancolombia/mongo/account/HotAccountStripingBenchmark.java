@@ -0,0 +1,202 @@
+package co.com.bancolombia.mongo.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Créditos concurrentes a UNA cuenta de comercio a través de StripedAccountRepository:
+ * stripes=0 es la cuenta sin franjas (el crédito va al delegate, un findAndModify sobre el
+ * documento de la cuenta); stripes=K la marca como caliente con K franjas.
+ *
+ * Modelo de la base de datos (un ReactiveMongoTemplate de Mockito sobre documentos en
+ * memoria): cada operación paga roundTripMicros de red; cada escritura retiene además el
+ * lock de SU documento writeMicros (MongoDB serializa las escrituras por documento). Las
+ * lecturas no toman locks. Las dos lecturas en paralelo de credit se simulan una tras
+ * otra: el costo por crédito de las franjas medido aquí es una cota superior.
+ *
+ * credit mide créditos por segundo; combinedRead, una lectura del saldo (con franjas, la
+ * cuenta más sus K franjas). Al terminar cada trial imprime el descuadre entre lo
+ * acreditado y el saldo leído por el repositorio (debe ser 0).
+ *
+ * ./gradlew :mongo-repository:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class HotAccountStripingBenchmark {
+
+    private static final long MERCHANT = 1L;
+    private static final double AMOUNT = 1.0;
+
+    @Param({"0", "4", "16", "64"})
+    private int stripes;
+
+    @Param({"20"})
+    private long writeMicros;
+
+    @Param({"100"})
+    private long roundTripMicros;
+
+    private StripedAccountRepository repository;
+    private StoredDocument account;
+    private Map<String, StoredDocument> stripeDocuments;
+    private final LongAdder credited = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        account = new StoredDocument();
+        stripeDocuments = new ConcurrentHashMap<>();
+        credited.reset();
+
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.findOne(any(Query.class), eq(HotAccountData.class)))
+            .thenAnswer(invocation -> read(this::hotAccount));
+        when(mongoTemplate.find(any(Query.class), eq(HotAccountData.class)))
+            .thenAnswer(invocation -> read(this::hotAccount).flux());
+        when(mongoTemplate.find(any(Query.class), eq(AccountStripeData.class)))
+            .thenAnswer(invocation -> read(this::stripes).flatMapIterable(list -> list));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AccountStripeData.class)))
+            .thenAnswer(invocation -> {
+                String id = invocation.<Query>getArgument(0).getQueryObject().getString("_id");
+                double amount = ((Number) invocation.<Update>getArgument(1).getUpdateObject()
+                    .get("$inc", Document.class).get("total")).doubleValue();
+                return write(() -> stripeDocuments.computeIfAbsent(id, created -> new StoredDocument()),
+                    amount, document -> stripe(id, document));
+            });
+
+        AccountRepository delegate = mock(AccountRepository.class);
+        when(delegate.credit(anyLong(), anyDouble()))
+            .thenAnswer(invocation -> write(() -> account, invocation.getArgument(1), document -> plainAccount()));
+        when(delegate.getAccountById(anyLong())).thenAnswer(invocation -> read(this::plainAccount));
+
+        Set<Long> hotAccounts = stripes == 0 ? Set.of() : Set.of(MERCHANT);
+        repository = new StripedAccountRepository(delegate, mongoTemplate, hotAccounts,
+            Math.max(1, stripes), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        double balance = repository.getAccountById(MERCHANT).map(Account::getBalance).block();
+        System.out.printf("%n[stripes=%d] créditos: %d, descuadre: %.2f%n",
+            stripes, credited.sum(), balance - credited.sum() * AMOUNT);
+    }
+
+    @Benchmark
+    public Account credit() {
+        Account result = repository.credit(MERCHANT, AMOUNT).block();
+        credited.increment();
+        return result;
+    }
+
+    @Benchmark
+    public Account combinedRead() {
+        return repository.getAccountById(MERCHANT).block();
+    }
+
+    /** Un viaje de lectura: solo la red, sin lock */
+    private <T> Mono<T> read(Supplier<T> snapshot) {
+        return Mono.fromCallable(() -> {
+            LockSupport.parkNanos(roundTripMicros * 1_000);
+            return snapshot.get();
+        });
+    }
+
+    /** Un viaje de escritura: la red y writeMicros con el lock del documento */
+    private <T> Mono<T> write(Supplier<StoredDocument> target, double amount,
+                              Function<StoredDocument, T> result) {
+        return Mono.fromCallable(() -> {
+            LockSupport.parkNanos(roundTripMicros * 1_000);
+            StoredDocument document = target.get();
+            document.inc(amount, writeMicros * 1_000);
+            return result.apply(document);
+        });
+    }
+
+    private HotAccountData hotAccount() {
+        HotAccountData data = new HotAccountData();
+        data.setId(MERCHANT);
+        data.setOwnerId(MERCHANT);
+        data.setBalance(account.value);
+        data.setVersion(account.writes);
+        data.setStripeBases(new HashMap<>());
+        return data;
+    }
+
+    private Account plainAccount() {
+        return Account.builder().id(MERCHANT).ownerId(MERCHANT).balance(account.value).version(account.writes).build();
+    }
+
+    private List<AccountStripeData> stripes() {
+        return stripeDocuments.entrySet().stream()
+            .map(entry -> stripe(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+
+    private static AccountStripeData stripe(String id, StoredDocument document) {
+        AccountStripeData stripe = new AccountStripeData();
+        stripe.setId(id);
+        stripe.setAccountId(MERCHANT);
+        stripe.setSlot(Integer.parseInt(id.substring(id.indexOf(':') + 1)));
+        stripe.setTotal(document.value);
+        stripe.setCredits(document.writes);
+        return stripe;
+    }
+
+    /** Un documento: las escrituras se hacen de a una y cada una tarda writeNanos */
+    private static final class StoredDocument {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile double value;
+        private volatile long writes;
+
+        void inc(double amount, long writeNanos) {
+            lock.lock();
+            try {
+                LockSupport.parkNanos(writeNanos);
+                value += amount;
+                writes++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
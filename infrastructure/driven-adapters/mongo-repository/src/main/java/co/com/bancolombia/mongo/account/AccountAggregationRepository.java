@@ -8,6 +8,7 @@ import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -58,17 +59,16 @@ public class AccountAggregationRepository {
     }
 
     /**
-     * Obtiene las top N cuentas con mayor saldo
-     * Usa índice en balance para optimizar
+     * Obtiene las top N cuentas con mayor saldo (las N, no solo la primera)
+     * $sort seguido de $limit al inicio del pipeline usa el índice { balance: -1 }
      */
-    public Mono<AccountData> getTopAccountsByBalance(int limit) {
+    public Flux<AccountData> getTopAccountsByBalance(int limit) {
         Aggregation aggregation = Aggregation.newAggregation(
             Aggregation.sort(Sort.by(Sort.Direction.DESC, "balance")),
             Aggregation.limit(limit)
         );
 
-        return mongoTemplate.aggregate(aggregation, AccountData.class, AccountData.class)
-            .next();
+        return mongoTemplate.aggregate(aggregation, AccountData.class, AccountData.class);
     }
 
     /**
@@ -3,6 +3,7 @@ package co.com.bancolombia.mongo.account;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -14,4 +15,8 @@ public class AccountData {
     private Long id;
     private Long ownerId;
     private Double balance;
+
+    // Control optimista: insert la deja en 0 y cada escritura la incrementa
+    @Version
+    private Long version;
 }
@@ -0,0 +1,28 @@
+package co.com.bancolombia.mongo.account;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Una franja de créditos de una cuenta caliente (ver StripedAccountRepository).
+ * total y credits solo crecen: la consolidación no los toca, mueve la base en la cuenta.
+ */
+@Data
+@Document
+@NoArgsConstructor
+public class AccountStripeData {
+
+    /** "accountId:slot" */
+    @Id
+    private String id;
+    private Long accountId;
+    private Integer slot;
+
+    /** Suma de todos los créditos que cayeron en esta franja */
+    private Double total;
+
+    /** Cantidad de créditos que cayeron en esta franja */
+    private Long credits;
+}
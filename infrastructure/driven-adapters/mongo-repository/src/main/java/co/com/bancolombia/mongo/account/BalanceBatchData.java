@@ -0,0 +1,52 @@
+package co.com.bancolombia.mongo.account;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Registro de un lote de cambios de saldo (ver MongoAccountRepositoryAdapter.applyBalanceChanges).
+ * Se escribe antes de tocar un saldo, con los cambios planeados, y dice hasta dónde llegó el lote.
+ */
+@Data
+@Document
+@NoArgsConstructor
+public class BalanceBatchData {
+
+    /** El batchId: un lote solo puede registrarse una vez */
+    @Id
+    private String batchId;
+    private List<Change> debits;
+    private List<Change> credits;
+    private State state;
+
+    // Índice { state, updatedAt } para la recuperación (ver BalanceBatchRecoveryConfig)
+    private Instant updatedAt;
+
+    /** Cambio neto planeado sobre una cuenta */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Change {
+        private Long accountId;
+        private Double delta;
+    }
+
+    public enum State {
+        /** Registrado; los débitos pueden o no haberse aplicado. Se recupera revirtiendo */
+        PREPARED,
+        /** Todos los débitos aplicados: el lote ya no se revierte, se recupera aplicando los créditos */
+        DEBITED,
+        /** Débitos y créditos aplicados; faltan limpiar las marcas */
+        COMPLETED,
+        /** Revertido; se vuelve a revertir (idempotente) antes de borrar el registro */
+        ABORTED,
+        /** Un crédito no se pudo aplicar (la cuenta ya no existe): conciliación manual */
+        RECONCILE
+    }
+}
@@ -0,0 +1,218 @@
+package co.com.bancolombia.mongo.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Micro-batching de getAccountById (estilo DataLoader)
+ *
+ * Las búsquedas por id que llegan casi al mismo tiempo se acumulan durante una
+ * ventana corta (o hasta completar un lote) y se resuelven con UNA sola consulta
+ * $in a través de getAccountsByIds. Cada llamador recibe su propio Mono, así que
+ * nadie tiene que cambiar su código.
+ *
+ * - La cola es un FluxSink serializado: varios hilos pueden encolar a la vez sin girar
+ *   ni bloquear (el que llega mientras otro emite deja su búsqueda en la cola interna)
+ * - fairBackpressure: un lote nuevo solo se arma cuando flatMap tiene lugar para él, y un
+ *   lote que falla solo falla a sus llamadores; el pipeline nunca termina por un error
+ * - Cada llamador espera como mucho timeout; si la cola ya está cerrada, la búsqueda
+ *   va directo al repositorio
+ *
+ * Es opcional: solo se crea con adapter.mongo.account-batching.enabled=true
+ * (ver AccountBatchingConfig). El resto de operaciones se delegan tal cual.
+ *
+ * Métricas:
+ * - account.batch.size: cantidad de IDs distintos por consulta
+ * - account.batch.queue.delay: tiempo que cada búsqueda esperó en la cola
+ */
+@Slf4j
+public class BatchingAccountRepository implements AccountRepository {
+
+    /** Espera máxima por defecto de cada búsqueda (cola + consulta) */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+
+    private final AccountRepository delegate;
+    private final Duration timeout;
+    private final FluxSink<PendingLookup> lookups;
+    private final Disposable pipeline;
+    private volatile boolean closed;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+
+    public BatchingAccountRepository(AccountRepository delegate, int maxBatchSize, Duration window,
+                                     MeterRegistry meterRegistry) {
+        this(delegate, maxBatchSize, window, DEFAULT_TIMEOUT, meterRegistry);
+    }
+
+    /**
+     * @param maxBatchSize IDs por consulta como máximo
+     * @param window Espera máxima para despachar un lote incompleto
+     * @param timeout Espera máxima de cada llamador (cola + consulta)
+     */
+    public BatchingAccountRepository(AccountRepository delegate, int maxBatchSize, Duration window,
+                                     Duration timeout, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.batchSize = DistributionSummary.builder("account.batch.size")
+            .description("Distinct account ids resolved per batched query")
+            .register(meterRegistry);
+        this.queueDelay = Timer.builder("account.batch.queue.delay")
+            .description("Time a getAccountById call waited for its batch to be dispatched")
+            .register(meterRegistry);
+
+        // create() entrega el sink al suscribirse, o sea dentro de subscribe()
+        AtomicReference<FluxSink<PendingLookup>> sink = new AtomicReference<>();
+        this.pipeline = Flux.<PendingLookup>create(sink::set, FluxSink.OverflowStrategy.BUFFER)
+            .bufferTimeout(maxBatchSize, window, true)
+            .flatMap(this::dispatch)
+            .subscribe();
+        this.lookups = sink.get();
+        log.info("Account id batching enabled: maxBatchSize={}, window={}, timeout={}",
+            maxBatchSize, window, timeout);
+    }
+
+    @Override
+    public Mono<Account> getAccountById(Long id) {
+        return Mono.defer(() -> {
+            if (closed || lookups.isCancelled()) {
+                return delegate.getAccountById(id);
+            }
+            Sinks.One<Account> result = Sinks.one();
+            lookups.next(new PendingLookup(id, result, System.nanoTime()));
+            return result.asMono();
+        }).timeout(timeout);
+    }
+
+    @Override
+    public Mono<Account> getAccountByOwner(Long ownerId) {
+        return delegate.getAccountByOwner(ownerId);
+    }
+
+    @Override
+    public Flux<Account> getAccountsByIds(Collection<Long> ids) {
+        return delegate.getAccountsByIds(ids);
+    }
+
+    @Override
+    public Flux<Account> findTopByBalance(int limit) {
+        return delegate.findTopByBalance(limit);
+    }
+
+    @Override
+    public Flux<Account> findByBalanceBetween(double minBalance, double maxBalance) {
+        return delegate.findByBalanceBetween(minBalance, maxBalance);
+    }
+
+    @Override
+    public Mono<Account> debitIfSufficient(Long id, double amount) {
+        return delegate.debitIfSufficient(id, amount);
+    }
+
+    @Override
+    public Mono<Account> credit(Long id, double amount) {
+        return delegate.credit(id, amount);
+    }
+
+    @Override
+    public Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas) {
+        return delegate.applyBalanceChanges(batchId, deltas);
+    }
+
+    @Override
+    public Mono<Account> save(Account account) {
+        return delegate.save(account);
+    }
+
+    @Override
+    public Mono<Account> update(Account account) {
+        return delegate.update(account);
+    }
+
+    @Override
+    public Mono<Void> delete(Long id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public Flux<Account> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Flux<Account> findByOwnerId(Long ownerId) {
+        return delegate.findByOwnerId(ownerId);
+    }
+
+    @Override
+    public Mono<Boolean> exists(Long id) {
+        return delegate.exists(id);
+    }
+
+    /**
+     * Deja de aceptar búsquedas (las siguientes van directo al repositorio) y despacha
+     * las que quedaron en la cola. Spring lo llama al cerrar el contexto.
+     */
+    public void close() {
+        closed = true;
+        lookups.complete();
+    }
+
+    /** true si el pipeline sigue vivo */
+    boolean isRunning() {
+        return !pipeline.isDisposed();
+    }
+
+    /**
+     * Resuelve un lote: agrupa por id (varios llamadores pueden pedir el mismo),
+     * hace una sola consulta y reparte cada resultado a quien lo pidió.
+     * Si la consulta falla, todos los llamadores del lote reciben el error.
+     */
+    private Mono<Void> dispatch(List<PendingLookup> batch) {
+        long now = System.nanoTime();
+        batch.forEach(lookup -> queueDelay.record(now - lookup.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        Map<Long, List<PendingLookup>> byId = batch.stream()
+            .collect(Collectors.groupingBy(PendingLookup::id));
+        batchSize.record(byId.size());
+
+        return delegate.getAccountsByIds(byId.keySet())
+            .collectMap(Account::getId)
+            .doOnNext(found -> byId.forEach((id, waiters) ->
+                waiters.forEach(waiter -> waiter.complete(found.get(id)))))
+            .doOnError(error -> batch.forEach(waiter -> waiter.fail(error)))
+            .onErrorResume(error -> Mono.empty())
+            .then();
+    }
+
+    private record PendingLookup(Long id, Sinks.One<Account> result, long enqueuedAt) {
+
+        void complete(Account account) {
+            if (account == null) {
+                result.tryEmitEmpty();
+            } else {
+                result.tryEmitValue(account);
+            }
+        }
+
+        void fail(Throwable error) {
+            result.tryEmitError(error);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package co.com.bancolombia.mongo.account;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * El mismo documento que AccountData, leído con las bases de sus franjas
+ * (solo lo usa StripedAccountRepository; AccountData y Account no las conocen).
+ */
+@Data
+@Document("accountData")
+@NoArgsConstructor
+public class HotAccountData {
+
+    @Id
+    private Long id;
+    private Long ownerId;
+    private Double balance;
+    private Long version;
+
+    /** Por franja ("0", "1", ...): hasta qué total ya se sumó a balance */
+    private Map<String, Double> stripeBases;
+}
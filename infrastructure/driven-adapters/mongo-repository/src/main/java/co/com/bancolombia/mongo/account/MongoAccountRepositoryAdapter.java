@@ -1,24 +1,48 @@
 package co.com.bancolombia.mongo.account;
 
 import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.AccountVersionConflictException;
+import co.com.bancolombia.model.account.BatchOutcomeUnknownException;
 import co.com.bancolombia.model.account.gateways.AccountRepository;
+import co.com.bancolombia.model.account.validation.MinimumBalanceValidation;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.reactivecommons.utils.ObjectMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Implementación completa del AccountRepository usando MongoDB Reactivo
  * Demuestra operaciones CRUD optimizadas con índices
  */
+@Slf4j
 @Repository
 @RequiredArgsConstructor
 public class MongoAccountRepositoryAdapter implements AccountRepository {
 
+    /** Marca temporal de los lotes cuyo débito o crédito se aplicó en la cuenta (ver applyBalanceChanges) */
+    private static final String PENDING_BATCHES = "pendingBatches";
+
     private final ReactiveMongoTemplate mongoTemplate;
     private final ObjectMapper objectMapper;
 
@@ -35,16 +59,411 @@ public class MongoAccountRepositoryAdapter implements AccountRepository {
             .map(this::toAccount);
     }
 
+    /**
+     * Lectura en lote con un solo round trip: { _id: { $in: [...] } }
+     * Usa el índice de _id, así que cuesta O(k log n) para k IDs
+     */
+    @Override
+    public Flux<Account> getAccountsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        return mongoTemplate.find(query, AccountData.class)
+            .map(this::toAccount);
+    }
+
+    /**
+     * Top N por saldo: sort + limit resuelto por MongoDB con el índice { balance: -1 }
+     * (ver MongoIndexConfig). Recorre solo N entradas del índice, sin ordenar en memoria.
+     */
+    @Override
+    public Flux<Account> findTopByBalance(int limit) {
+        Query query = new Query()
+            .with(Sort.by(Sort.Direction.DESC, "balance"))
+            .limit(limit);
+        return mongoTemplate.find(query, AccountData.class)
+            .map(this::toAccount);
+    }
+
+    /**
+     * Rango de saldo: { balance: { $gte: min, $lte: max } } ordenado por balance,
+     * usa el mismo índice { balance: -1 } (recorrido en sentido inverso)
+     */
+    @Override
+    public Flux<Account> findByBalanceBetween(double minBalance, double maxBalance) {
+        Query query = Query.query(Criteria.where("balance").gte(minBalance).lte(maxBalance))
+            .with(Sort.by(Sort.Direction.ASC, "balance"));
+        return mongoTemplate.find(query, AccountData.class)
+            .map(this::toAccount);
+    }
+
+    /**
+     * findAndModify({ _id: id, balance: { $gte: amount } }, { $inc: { balance: -amount } })
+     * El filtro y el $inc se aplican juntos sobre el documento: dos débitos concurrentes
+     * nunca leen el mismo saldo viejo, y si no alcanza no se modifica nada
+     */
+    @Override
+    public Mono<Account> debitIfSufficient(Long id, double amount) {
+        Query query = Query.query(Criteria.where("_id").is(id).and("balance").gte(amount));
+        return mongoTemplate.findAndModify(query, new Update().inc("balance", -amount).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), AccountData.class)
+            .map(this::toAccount);
+    }
+
+    /**
+     * findAndModify({ _id: id }, { $inc: { balance: amount } })
+     */
+    @Override
+    public Mono<Account> credit(Long id, double amount) {
+        Query query = Query.query(Criteria.where("_id").is(id));
+        return mongoTemplate.findAndModify(query, new Update().inc("balance", amount).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), AccountData.class)
+            .map(this::toAccount);
+    }
+
+    /**
+     * Lote en dos bulkWrite sin orden, sin importar cuántas cuentas toque, con un registro
+     * (BalanceBatchData) que dice hasta dónde llegó:
+     * 0. insert del registro PREPARED con los cambios planeados, antes de tocar un saldo
+     * 1. Débitos: updateOne({ _id, balance: { $gte: piso - delta } }, { $inc, $addToSet: { pendingBatches: batchId } })
+     *    - no coinciden todos: ABORTED, se revierten los marcados y se borra el registro
+     *    - el bulk falla: ABORTED y se revierten los marcados; el registro queda para que
+     *      recoverBatches revierta un débito atrasado
+     *    - coinciden todos: PREPARED -> DEBITED (punto de no retorno: desde aquí solo se avanza).
+     *      El updatedAt que escribe este cambio identifica a quien aplica los créditos
+     * 2. Créditos: updateOne({ _id, pendingBatches: { $ne: batchId } }, { $inc, $addToSet }): la
+     *    marca hace que aplicar el crédito dos veces (ej. la recuperación) no acredite dos veces
+     * 3. DEBITED -> COMPLETED, condicionado a ese updatedAt: si la recuperación tomó el lote
+     *    mientras tanto, el cambio no se aplica y lo termina ella. Quien gana es el único que
+     *    aplicó créditos en los últimos stale-after, así que $pull de TODAS las marcas (débitos
+     *    y créditos) y se borra el registro: las marcas viven solo mientras el lote está en curso
+     * stale-after debe superar el timeout de operación del driver: así, cuando la recuperación
+     * toma un lote, ningún bulk de créditos de quien lo tenía antes sigue en vuelo.
+     * Si no se sabe si los débitos quedaron aplicados falla con BatchOutcomeUnknownException
+     * y recoverBatches termina o revierte el lote.
+     */
+    @Override
+    public Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas) {
+        Map<Long, Double> debits = new HashMap<>();
+        Map<Long, Double> credits = new HashMap<>();
+        deltas.forEach((id, delta) -> {
+            if (delta < 0) {
+                debits.put(id, delta);
+            } else if (delta > 0) {
+                credits.put(id, delta);
+            }
+        });
+        if (debits.isEmpty() && credits.isEmpty()) {
+            return Mono.just(true);
+        }
+        // Si el insert falla no se tocó ningún saldo: el error es definitivo
+        return mongoTemplate.insert(prepared(batchId, debits, credits))
+            .then(Mono.defer(() -> applyDebits(batchId, debits)))
+            .flatMap(owner -> applyCredits(batchId, owner, debits.keySet(), credits).thenReturn(true))
+            .defaultIfEmpty(false);
+    }
+
+    /**
+     * Resuelve los lotes que llevan más de staleAfter sin avanzar (el proceso se cayó o una
+     * escritura nunca respondió). Cada lote se toma con un compare-and-set sobre su updatedAt,
+     * así dos instancias no recuperan el mismo lote a la vez:
+     * - PREPARED: los débitos pudieron aplicarse, los créditos no -> ABORTED y se revierten
+     * - DEBITED: los débitos están aplicados -> se aplican los créditos (idempotentes por la marca)
+     *   y se completa con el updatedAt del claim
+     * - ABORTED: se revierte otra vez (por si un débito atrasado llegó después) y se borra
+     * - COMPLETED: la limpieza del camino normal falló -> se quitan las marcas y se borra
+     * RECONCILE no se toca: requiere conciliación manual.
+     *
+     * @return Cantidad de lotes resueltos
+     */
+    public Mono<Long> recoverBatches(Duration staleAfter) {
+        Query stale = Query.query(Criteria.where("state")
+            .in(BalanceBatchData.State.PREPARED, BalanceBatchData.State.DEBITED,
+                BalanceBatchData.State.ABORTED, BalanceBatchData.State.COMPLETED)
+            .and("updatedAt").lt(Instant.now().minus(staleAfter)));
+        return mongoTemplate.find(stale, BalanceBatchData.class)
+            .concatMap(batch -> claim(batch)
+                .flatMap(claimedAt -> recover(batch, claimedAt))
+                .onErrorResume(error -> {
+                    log.error("Batch {}: recovery from {} failed, will retry: {}",
+                        batch.getBatchId(), batch.getState(), error.getMessage());
+                    return Mono.empty();
+                }))
+            .filter(Boolean::booleanValue)
+            .count();
+    }
+
+    /** { state: 1, updatedAt: 1 } para recoverBatches */
+    public Mono<String> ensureBatchIndex() {
+        return mongoTemplate.indexOps(BalanceBatchData.class)
+            .ensureIndex(new Index().on("state", Sort.Direction.ASC).on("updatedAt", Sort.Direction.ASC));
+    }
+
+    private Mono<Boolean> recover(BalanceBatchData batch, Instant claimedAt) {
+        String batchId = batch.getBatchId();
+        Map<Long, Double> debits = toMap(batch.getDebits());
+        Map<Long, Double> credits = toMap(batch.getCredits());
+        if (batch.getState() == BalanceBatchData.State.COMPLETED) {
+            log.debug("Batch {}: finishing the cleanup of a completed batch", batchId);
+        } else {
+            log.warn("Batch {}: recovering from {}", batchId, batch.getState());
+        }
+        return switch (batch.getState()) {
+            case PREPARED -> advance(batchId, BalanceBatchData.State.PREPARED, claimedAt,
+                    BalanceBatchData.State.ABORTED, now())
+                .filter(Boolean::booleanValue)
+                .flatMap(aborted -> revertDebits(batchId, debits).thenReturn(true));
+            // Si no se pudo confirmar, el lote sigue en DEBITED (o quedó en RECONCILE) y ya quedó en el log
+            case DEBITED -> applyCredits(batchId, claimedAt, debits.keySet(), credits).thenReturn(true)
+                .onErrorResume(BatchOutcomeUnknownException.class, unknown -> Mono.just(false));
+            case ABORTED -> revertDebits(batchId, debits)
+                .then(forget(batchId, BalanceBatchData.State.ABORTED))
+                .thenReturn(true);
+            case COMPLETED -> cleanup(batchId, touched(debits.keySet(), credits.keySet())).thenReturn(true);
+            case RECONCILE -> Mono.just(false);
+        };
+    }
+
+    /**
+     * PASO 1. Valor = todos aplicados y el lote pasó a DEBITED (el updatedAt que lo identifica);
+     * vacío = no alcanzó el saldo de alguna cuenta, los aplicados ya se revirtieron (nada
+     * cambió) y el registro se borró
+     */
+    private Mono<Instant> applyDebits(String batchId, Map<Long, Double> debits) {
+        Mono<Boolean> debited;
+        if (debits.isEmpty()) {
+            debited = Mono.just(true);
+        } else {
+            ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountData.class);
+            debits.forEach((id, delta) -> bulk.updateOne(
+                Query.query(Criteria.where("_id").is(id).and("balance").gte(MinimumBalanceValidation.MINIMUM_BALANCE - delta)),
+                new Update().inc("balance", delta).inc("version", 1).addToSet(PENDING_BATCHES, batchId)));
+            debited = bulk.execute().map(result -> result.getMatchedCount() == debits.size());
+        }
+        return debited
+            // El bulk falló: no se sabe cuáles se aplicaron, la marca lo dice. Revertidos,
+            // el error es definitivo
+            .onErrorResume(error -> abort(batchId, debits).then(Mono.error(error)))
+            .flatMap(all -> all
+                ? commit(batchId)
+                // El bulk respondió: ningún débito de este lote sigue en vuelo
+                : abort(batchId, debits)
+                    .then(forget(batchId, BalanceBatchData.State.ABORTED)
+                        .onErrorResume(error -> {
+                            log.warn("Batch {}: rejected, record left to recovery: {}", batchId, error.getMessage());
+                            return Mono.empty();
+                        }))
+                    .then(Mono.<Instant>empty()));
+    }
+
+    /** PREPARED -> DEBITED: desde aquí el lote solo se termina, nunca se revierte */
+    private Mono<Instant> commit(String batchId) {
+        Instant owner = now();
+        return advance(batchId, BalanceBatchData.State.PREPARED, null, BalanceBatchData.State.DEBITED, owner)
+            .onErrorMap(error -> unknown(batchId, error))
+            .flatMap(committed -> committed
+                ? Mono.just(owner)
+                // La recuperación lo tomó y lo está revirtiendo
+                : Mono.error(unknown(batchId, null)));
+    }
+
+    /** PREPARED -> ABORTED y reversión de los débitos marcados; si algo falla el lote queda a la recuperación */
+    private Mono<Void> abort(String batchId, Map<Long, Double> debits) {
+        return advance(batchId, BalanceBatchData.State.PREPARED, BalanceBatchData.State.ABORTED)
+            .flatMap(aborted -> aborted
+                ? revertDebits(batchId, debits)
+                : Mono.<Void>error(unknown(batchId, null)))
+            .onErrorMap(error -> !(error instanceof BatchOutcomeUnknownException), error -> unknown(batchId, error));
+    }
+
+    private Mono<Void> revertDebits(String batchId, Map<Long, Double> debits) {
+        if (debits.isEmpty()) {
+            return Mono.empty();
+        }
+        Query marked = Query.query(Criteria.where("_id").in(debits.keySet()).and(PENDING_BATCHES).is(batchId));
+        return mongoTemplate.find(marked, AccountData.class)
+            .map(AccountData::getId)
+            .collectList()
+            .flatMap(applied -> {
+                if (applied.isEmpty()) {
+                    return Mono.empty();
+                }
+                log.warn("Batch {}: reverting {} of {} debits", batchId, applied.size(), debits.size());
+                ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountData.class);
+                // El filtro por la marca hace que revertir dos veces no devuelva el dinero dos veces
+                applied.forEach(id -> bulk.updateOne(
+                    Query.query(Criteria.where("_id").is(id).and(PENDING_BATCHES).is(batchId)),
+                    new Update().inc("balance", -debits.get(id)).inc("version", 1).pull(PENDING_BATCHES, batchId)));
+                return bulk.execute().then();
+            });
+    }
+
+    /**
+     * PASOS 2 y 3. Si un crédito no coincide se cuentan las cuentas marcadas: pudo haberlo
+     * aplicado antes la recuperación. Si aun así falta alguno (la cuenta ya no existe) el
+     * lote queda en RECONCILE.
+     *
+     * @param owner updatedAt con el que quien aplica los créditos tomó el lote
+     */
+    private Mono<Void> applyCredits(String batchId, Instant owner, Set<Long> debited, Map<Long, Double> credits) {
+        Mono<Boolean> credited;
+        if (credits.isEmpty()) {
+            credited = Mono.just(true);
+        } else {
+            ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountData.class);
+            credits.forEach((id, delta) -> bulk.updateOne(
+                Query.query(Criteria.where("_id").is(id).and(PENDING_BATCHES).ne(batchId)),
+                new Update().inc("balance", delta).inc("version", 1).addToSet(PENDING_BATCHES, batchId)));
+            credited = bulk.execute()
+                .flatMap(result -> result.getMatchedCount() == credits.size()
+                    ? Mono.just(true)
+                    : mongoTemplate.count(Query.query(Criteria.where("_id").in(credits.keySet())
+                            .and(PENDING_BATCHES).is(batchId)), AccountData.class)
+                        .map(marked -> marked == credits.size()));
+        }
+        return credited
+            .flatMap(complete -> {
+                if (complete) {
+                    return finish(batchId, owner, touched(debited, credits.keySet()));
+                }
+                log.error("Batch {}: some of {} credits could not be applied, reconcile manually",
+                    batchId, credits.size());
+                return advance(batchId, BalanceBatchData.State.DEBITED, owner, BalanceBatchData.State.RECONCILE, now())
+                    .then(Mono.<Void>error(unknown(batchId, null)));
+            })
+            .onErrorMap(error -> !(error instanceof BatchOutcomeUnknownException), error -> unknown(batchId, error));
+    }
+
+    /**
+     * DEBITED -> COMPLETED solo si el lote sigue siendo de owner; si la recuperación lo tomó,
+     * ella lo completa. Si la limpieza falla, el lote queda COMPLETED y la termina recoverBatches.
+     */
+    private Mono<Void> finish(String batchId, Instant owner, Set<Long> touched) {
+        return advance(batchId, BalanceBatchData.State.DEBITED, owner, BalanceBatchData.State.COMPLETED, now())
+            .flatMap(completed -> completed ? cleanup(batchId, touched) : Mono.<Void>empty())
+            .onErrorResume(error -> {
+                log.warn("Batch {}: applied, cleanup left to recovery: {}", batchId, error.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    /** Lote COMPLETED: $pull de sus marcas en todas las cuentas que tocó y borrado del registro */
+    private Mono<Void> cleanup(String batchId, Set<Long> touched) {
+        Mono<Void> unmark = touched.isEmpty()
+            ? Mono.empty()
+            : mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(touched)),
+                new Update().pull(PENDING_BATCHES, batchId), AccountData.class).then();
+        return unmark.then(forget(batchId, BalanceBatchData.State.COMPLETED));
+    }
+
+    /** Borra el registro de un lote terminado (solo si sigue en ese estado) */
+    private Mono<Void> forget(String batchId, BalanceBatchData.State state) {
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(batchId).and("state").is(state)),
+                BalanceBatchData.class)
+            .then();
+    }
+
+    private Mono<Boolean> advance(String batchId, BalanceBatchData.State expected, BalanceBatchData.State next) {
+        return advance(batchId, expected, null, next, now());
+    }
+
+    /**
+     * Cambio de estado condicional del registro del lote
+     *
+     * @param expectedAt si no es null, además exige ese updatedAt (el de quien tomó el lote)
+     * @param at updatedAt nuevo
+     */
+    private Mono<Boolean> advance(String batchId, BalanceBatchData.State expected, Instant expectedAt,
+                                  BalanceBatchData.State next, Instant at) {
+        Criteria criteria = Criteria.where("_id").is(batchId).and("state").is(expected);
+        if (expectedAt != null) {
+            criteria = criteria.and("updatedAt").is(expectedAt);
+        }
+        return mongoTemplate.updateFirst(Query.query(criteria),
+                new Update().set("state", next).set("updatedAt", at),
+                BalanceBatchData.class)
+            .map(result -> result.getModifiedCount() == 1);
+    }
+
+    /** Toma un lote para recuperarlo: solo una instancia gana el cambio de updatedAt (vacío si perdió) */
+    private Mono<Instant> claim(BalanceBatchData batch) {
+        Instant claimedAt = now();
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(batch.getBatchId())
+                    .and("state").is(batch.getState())
+                    .and("updatedAt").is(batch.getUpdatedAt())),
+                new Update().set("updatedAt", claimedAt),
+                BalanceBatchData.class)
+            .filter(result -> result.getModifiedCount() == 1)
+            .map(result -> claimedAt);
+    }
+
+    private static Set<Long> touched(Set<Long> debited, Set<Long> credited) {
+        Set<Long> touched = new HashSet<>(debited);
+        touched.addAll(credited);
+        return touched;
+    }
+
+    /** MongoDB guarda las fechas en milisegundos: así un updatedAt escrito se puede comparar por igualdad */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static BatchOutcomeUnknownException unknown(String batchId, Throwable cause) {
+        log.error("Batch {}: outcome unknown, left to recovery{}", batchId,
+            cause == null ? "" : ": " + cause.getMessage());
+        return new BatchOutcomeUnknownException(batchId, cause);
+    }
+
+    private static BalanceBatchData prepared(String batchId, Map<Long, Double> debits, Map<Long, Double> credits) {
+        BalanceBatchData batch = new BalanceBatchData();
+        batch.setBatchId(batchId);
+        batch.setDebits(toChanges(debits));
+        batch.setCredits(toChanges(credits));
+        batch.setState(BalanceBatchData.State.PREPARED);
+        batch.setUpdatedAt(now());
+        return batch;
+    }
+
+    private static List<BalanceBatchData.Change> toChanges(Map<Long, Double> deltas) {
+        return deltas.entrySet().stream()
+            .map(delta -> new BalanceBatchData.Change(delta.getKey(), delta.getValue()))
+            .toList();
+    }
+
+    private static Map<Long, Double> toMap(List<BalanceBatchData.Change> changes) {
+        Map<Long, Double> deltas = new HashMap<>();
+        if (changes != null) {
+            changes.forEach(change -> deltas.put(change.getAccountId(), change.getDelta()));
+        }
+        return deltas;
+    }
+
     @Override
     public Mono<Account> save(Account account) {
         return mongoTemplate.save(toAccountData(account))
             .map(this::toAccount);
     }
 
+    /**
+     * findAndModify({ _id: id, version: v }, { $set: {...}, $inc: { version: 1 } })
+     * Si nada coincide, o la cuenta no existe (vacío) o alguien escribió antes (conflicto).
+     * version null también coincide con documentos anteriores al campo version.
+     */
     @Override
     public Mono<Account> update(Account account) {
-        return mongoTemplate.save(toAccountData(account))
-            .map(this::toAccount);
+        Query query = Query.query(Criteria.where("_id").is(account.getId()).and("version").is(account.getVersion()));
+        Update update = new Update()
+            .set("ownerId", account.getOwnerId())
+            .set("balance", account.getBalance())
+            .inc("version", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), AccountData.class)
+            .map(this::toAccount)
+            .switchIfEmpty(Mono.defer(() -> exists(account.getId())
+                .flatMap(found -> found
+                    ? Mono.error(new AccountVersionConflictException(account.getId(), account.getVersion()))
+                    : Mono.empty())));
     }
 
     @Override
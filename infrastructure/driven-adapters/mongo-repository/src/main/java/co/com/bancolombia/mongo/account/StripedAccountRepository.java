@@ -0,0 +1,450 @@
+package co.com.bancolombia.mongo.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.AccountVersionConflictException;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Saldos en franjas para cuentas calientes (ej. comercios con miles de créditos por segundo)
+ *
+ * MongoDB serializa las escrituras sobre un mismo documento: sin importar el control de
+ * concurrencia, todos los créditos a un comercio esperan en fila por SU documento.
+ * Aquí los créditos de las cuentas marcadas como calientes no tocan la cuenta: cada uno
+ * hace $inc en una de K franjas al azar (AccountStripeData, un documento por franja), así
+ * que K créditos pueden escribirse a la vez.
+ *
+ * Saldo de una cuenta caliente = balance + Σ (total de la franja - base de la franja)
+ * - total: suma de créditos de la franja; solo crece
+ * - base (stripeBases en la cuenta): hasta qué total ya se sumó a balance
+ *
+ * CONSOLIDACIÓN (consolidate, periódica o cuando un débito no alcanza):
+ * Un solo update sobre la cuenta, condicionado a su versión, suma lo pendiente a
+ * balance y mueve las bases a los totales leídos. Las franjas no se escriben: si el
+ * proceso cae en el medio no se pierde ni se duplica dinero, y los créditos que llegan
+ * mientras tanto quedan pendientes para la siguiente.
+ *
+ * TRANSPARENTE PARA QUIEN USA AccountRepository:
+ * - Lecturas: las cuentas calientes se devuelven con el saldo combinado
+ * - Débitos: solo cuentan con lo consolidado (balance >= monto en la base de datos). Si
+ *   no alcanza pero el saldo combinado sí, se consolida y se intenta de nuevo (hasta
+ *   FOLD_ATTEMPTS veces: la consolidación pierde contra cualquier otra escritura a la cuenta)
+ * - Lotes (applyBalanceChanges): se consolidan antes las cuentas calientes que el lote
+ *   debita, porque el lote se planea contra el saldo combinado
+ * - Débitos y créditos responden con lo que devolvió la escritura más las franjas; un error
+ *   al leerlas DESPUÉS de escribir nunca hace fallar la escritura (ver afterDebit)
+ * - update: la versión que ven los llamadores es version + créditos en franjas, así que
+ *   un crédito en una franja también produce conflicto; el balance guardado es el pedido
+ *   menos lo pendiente en franjas
+ * - findTopByBalance / findByBalanceBetween filtran y ordenan por el saldo consolidado
+ *   (lo pendiente se suma al devolverlas); las agregaciones tampoco ven las franjas
+ *
+ * Es opcional: solo se crea con adapter.mongo.hot-accounts.enabled=true
+ * (ver HotAccountStripingConfig).
+ *
+ * Métricas: account.stripe.credits, account.stripe.consolidations
+ */
+@Slf4j
+public class StripedAccountRepository implements AccountRepository {
+
+    private static final String STRIPE_BASES = "stripeBases";
+
+    /** Intentos de consolidar (y de debitar tras consolidar) antes de rendirse */
+    static final int FOLD_ATTEMPTS = 3;
+
+    private final AccountRepository delegate;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Set<Long> hotAccounts;
+    private final int stripes;
+    private final Counter stripedCredits;
+    private final Counter consolidations;
+
+    /**
+     * @param delegate Repositorio de las cuentas normales (y de los débitos consolidados)
+     * @param mongoTemplate Acceso a las franjas y a las bases de las cuentas calientes
+     * @param hotAccounts IDs de las cuentas con créditos en franjas
+     * @param stripes Franjas por cuenta (K)
+     */
+    public StripedAccountRepository(AccountRepository delegate, ReactiveMongoTemplate mongoTemplate,
+                                    Set<Long> hotAccounts, int stripes, MeterRegistry meterRegistry) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Debe haber al menos una franja por cuenta");
+        }
+        this.delegate = delegate;
+        this.mongoTemplate = mongoTemplate;
+        this.hotAccounts = Set.copyOf(hotAccounts);
+        this.stripes = stripes;
+        this.stripedCredits = Counter.builder("account.stripe.credits")
+            .description("Credits to hot accounts written to a stripe instead of the account document")
+            .register(meterRegistry);
+        this.consolidations = Counter.builder("account.stripe.consolidations")
+            .description("Hot account consolidations that folded pending stripe credits into the balance")
+            .register(meterRegistry);
+        log.info("Hot account striping enabled: {} accounts, {} stripes each", this.hotAccounts.size(), stripes);
+    }
+
+    @Override
+    public Mono<Account> getAccountById(Long id) {
+        return isHot(id) ? readHot(List.of(id)).next() : delegate.getAccountById(id);
+    }
+
+    @Override
+    public Mono<Account> getAccountByOwner(Long ownerId) {
+        return delegate.getAccountByOwner(ownerId).flatMap(this::withStripes);
+    }
+
+    @Override
+    public Flux<Account> getAccountsByIds(Collection<Long> ids) {
+        Map<Boolean, List<Long>> byHot = ids.stream().distinct().collect(Collectors.partitioningBy(this::isHot));
+        if (byHot.get(true).isEmpty()) {
+            return delegate.getAccountsByIds(ids);
+        }
+        return Flux.merge(
+            byHot.get(false).isEmpty() ? Flux.empty() : delegate.getAccountsByIds(byHot.get(false)),
+            readHot(byHot.get(true)));
+    }
+
+    @Override
+    public Flux<Account> findTopByBalance(int limit) {
+        return delegate.findTopByBalance(limit).concatMap(this::withStripes);
+    }
+
+    @Override
+    public Flux<Account> findByBalanceBetween(double minBalance, double maxBalance) {
+        return delegate.findByBalanceBetween(minBalance, maxBalance).concatMap(this::withStripes);
+    }
+
+    /**
+     * Cuenta caliente: findAndModify directo sobre el documento (el mismo filtro que el
+     * adapter) para recibir las bases junto con el saldo nuevo y armar el combinado sin
+     * releer la cuenta.
+     */
+    @Override
+    public Mono<Account> debitIfSufficient(Long id, double amount) {
+        if (!isHot(id)) {
+            return delegate.debitIfSufficient(id, amount);
+        }
+        return debitConsolidated(id, amount, FOLD_ATTEMPTS)
+            .flatMap(this::afterDebit);
+    }
+
+    /**
+     * Si lo consolidado no alcanza se lee el estado: si el combinado tampoco alcanza el
+     * rechazo es definitivo; si alcanza se consolida y se reintenta (también cuando la
+     * consolidación perdió su carrera: la otra escritura pudo haber sido otra consolidación).
+     * Un error al consolidar no movió dinero, así que se responde como rechazo.
+     */
+    private Mono<HotAccountData> debitConsolidated(Long id, double amount, int attemptsLeft) {
+        Query query = Query.query(Criteria.where("_id").is(id).and("balance").gte(amount));
+        return mongoTemplate.findAndModify(query, new Update().inc("balance", -amount).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), HotAccountData.class)
+            .switchIfEmpty(Mono.defer(() -> attemptsLeft <= 1
+                ? Mono.empty()
+                : fold(id)
+                    .onErrorResume(error -> {
+                        log.warn("Hot account {}: consolidation before a debit failed: {}", id, error.getMessage());
+                        return Mono.empty();
+                    })
+                    .filter(fold -> fold.state().combinedBalance() >= amount)
+                    .flatMap(fold -> debitConsolidated(id, amount, attemptsLeft - 1))));
+    }
+
+    /**
+     * El débito ya está aplicado: las franjas se leen solo para sumar lo pendiente. Si esa
+     * lectura falla se responde la cuenta tal como la devolvió la escritura (saldo y versión
+     * sin las franjas: un update con esa versión tendrá conflicto, nunca pisa nada).
+     */
+    private Mono<Account> afterDebit(HotAccountData debited) {
+        return stripesOf(debited.getId())
+            .map(stripes -> new HotAccountState(debited, stripes).toAccount())
+            .onErrorResume(error -> {
+                log.warn("Hot account {}: debit applied but its stripes could not be read: {}",
+                    debited.getId(), error.getMessage());
+                return Mono.just(new HotAccountState(debited, List.of()).toAccount());
+            });
+    }
+
+    /**
+     * Crédito a una cuenta caliente: $inc en una franja al azar (upsert), sin tocar la cuenta.
+     * La cuenta y sus franjas se leen ANTES, en paralelo (vacío si la cuenta no existe); la
+     * respuesta es ese estado con la franja que devolvió la escritura. Nada se lee después:
+     * dos round trips en serie y ningún error posterior a la escritura. Los créditos que
+     * otras franjas reciben mientras tanto no se ven en la respuesta (sí en la próxima lectura).
+     */
+    @Override
+    public Mono<Account> credit(Long id, double amount) {
+        if (!isHot(id)) {
+            return delegate.credit(id, amount);
+        }
+        int slot = ThreadLocalRandom.current().nextInt(stripes);
+        Query stripe = Query.query(Criteria.where("_id").is(id + ":" + slot));
+        Update increment = new Update()
+            .inc("total", amount)
+            .inc("credits", 1)
+            .setOnInsert("accountId", id)
+            .setOnInsert("slot", slot);
+        return readOne(id)
+            .flatMap(state -> mongoTemplate.findAndModify(stripe, increment,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), AccountStripeData.class)
+                .doOnNext(written -> stripedCredits.increment())
+                .map(written -> state.withStripe(written).toAccount()));
+    }
+
+    /**
+     * Los planificadores de lotes (BatchTransferUseCase, compensación) validan contra el
+     * saldo combinado, pero el lote debita sobre lo consolidado: antes de aplicarlo se
+     * consolidan las cuentas calientes con delta negativo. Los créditos del lote van directo
+     * al documento de la cuenta (una escritura por cuenta, no hace falta repartirlos).
+     */
+    @Override
+    public Mono<Boolean> applyBalanceChanges(String batchId, Map<Long, Double> deltas) {
+        return Flux.fromIterable(deltas.entrySet())
+            .filter(change -> change.getValue() < 0 && isHot(change.getKey()))
+            .concatMap(change -> consolidateRetrying(change.getKey(), FOLD_ATTEMPTS)
+                .onErrorResume(error -> {
+                    log.warn("Hot account {}: consolidation before batch {} failed: {}",
+                        change.getKey(), batchId, error.getMessage());
+                    return Mono.just(false);
+                }))
+            .then(Mono.defer(() -> delegate.applyBalanceChanges(batchId, deltas)));
+    }
+
+    @Override
+    public Mono<Account> save(Account account) {
+        return delegate.save(account);
+    }
+
+    /**
+     * Cuenta caliente: la versión del llamador debe ser la combinada (sin créditos nuevos
+     * en franjas desde que leyó). Se guarda balance = pedido - pendiente, para que el saldo
+     * combinado quede en el pedido; un crédito que cae después en una franja se suma encima.
+     */
+    @Override
+    public Mono<Account> update(Account account) {
+        if (!isHot(account.getId())) {
+            return delegate.update(account);
+        }
+        return readOne(account.getId())
+            .flatMap(state -> {
+                if (!Objects.equals(state.version(), account.getVersion())) {
+                    return Mono.error(new AccountVersionConflictException(account.getId(), account.getVersion()));
+                }
+                Query query = Query.query(Criteria.where("_id").is(account.getId())
+                    .and("version").is(state.account().getVersion()));
+                Update update = new Update()
+                    .set("ownerId", account.getOwnerId())
+                    .set("balance", account.getBalance() - state.pending())
+                    .inc("version", 1);
+                return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().returnNew(true), HotAccountData.class)
+                    .switchIfEmpty(Mono.error(
+                        new AccountVersionConflictException(account.getId(), account.getVersion())))
+                    .map(updated -> new HotAccountState(updated, state.stripes()).toAccount());
+            });
+    }
+
+    @Override
+    public Mono<Void> delete(Long id) {
+        if (!isHot(id)) {
+            return delegate.delete(id);
+        }
+        return delegate.delete(id)
+            .then(mongoTemplate.remove(Query.query(Criteria.where("accountId").is(id)), AccountStripeData.class))
+            .then();
+    }
+
+    @Override
+    public Flux<Account> findAll() {
+        return delegate.findAll().concatMap(this::withStripes);
+    }
+
+    @Override
+    public Flux<Account> findByOwnerId(Long ownerId) {
+        return delegate.findByOwnerId(ownerId).concatMap(this::withStripes);
+    }
+
+    @Override
+    public Mono<Boolean> exists(Long id) {
+        return delegate.exists(id);
+    }
+
+    /**
+     * SUMA LOS CRÉDITOS PENDIENTES DE LAS FRANJAS AL SALDO DE LA CUENTA
+     *
+     * @param id Cuenta caliente
+     * @return true si había algo pendiente y se sumó; false si no había nada o la cuenta
+     *         cambió entre la lectura y la escritura (se consolidará en la próxima)
+     */
+    public Mono<Boolean> consolidate(Long id) {
+        if (!isHot(id)) {
+            return Mono.just(false);
+        }
+        return fold(id)
+            .map(Fold::folded)
+            .defaultIfEmpty(false);
+    }
+
+    /** Consolida reintentando mientras pierda la carrera contra otra escritura a la cuenta */
+    private Mono<Boolean> consolidateRetrying(Long id, int attemptsLeft) {
+        return fold(id)
+            .flatMap(fold -> fold.raced() && attemptsLeft > 1
+                ? consolidateRetrying(id, attemptsLeft - 1)
+                : Mono.just(fold.folded()))
+            .defaultIfEmpty(false);
+    }
+
+    /** Un intento de consolidación; vacío si la cuenta no existe */
+    private Mono<Fold> fold(Long id) {
+        return readOne(id)
+            .flatMap(state -> {
+                if (state.pending() == 0) {
+                    return Mono.just(new Fold(state, false));
+                }
+                Update update = new Update()
+                    .inc("balance", state.pending())
+                    .inc("version", 1);
+                state.stripes().forEach(stripe ->
+                    update.set(STRIPE_BASES + "." + stripe.getSlot(), stripe.getTotal()));
+                Query query = Query.query(Criteria.where("_id").is(id)
+                    .and("version").is(state.account().getVersion()));
+                return mongoTemplate.updateFirst(query, update, HotAccountData.class)
+                    .map(result -> new Fold(state, result.getModifiedCount() == 1))
+                    .doOnNext(fold -> {
+                        if (fold.folded()) {
+                            consolidations.increment();
+                        }
+                    });
+            });
+    }
+
+    /** Consolida todas las cuentas calientes, una tras otra */
+    public Mono<Void> consolidateAll() {
+        return Flux.fromIterable(hotAccounts)
+            .concatMap(id -> consolidate(id)
+                .onErrorResume(error -> {
+                    log.warn("Hot account {}: consolidation failed: {}", id, error.getMessage());
+                    return Mono.just(false);
+                }))
+            .then();
+    }
+
+    /** { accountId: 1 } en las franjas (lecturas de saldo combinado y consolidación) */
+    public Mono<String> ensureStripeIndex() {
+        return mongoTemplate.indexOps(AccountStripeData.class)
+            .ensureIndex(new Index().on("accountId", Sort.Direction.ASC));
+    }
+
+    private boolean isHot(Long id) {
+        return id != null && hotAccounts.contains(id);
+    }
+
+    private Mono<Account> withStripes(Account account) {
+        return isHot(account.getId()) ? readHot(List.of(account.getId())).next() : Mono.just(account);
+    }
+
+    private Flux<Account> readHot(Collection<Long> ids) {
+        return readState(ids).map(HotAccountState::toAccount);
+    }
+
+    /** Una cuenta caliente: la cuenta y sus franjas en paralelo; vacío si la cuenta no existe */
+    private Mono<HotAccountState> readOne(Long id) {
+        return Mono.zip(
+                mongoTemplate.findOne(Query.query(Criteria.where("_id").is(id)), HotAccountData.class),
+                stripesOf(id))
+            .map(read -> new HotAccountState(read.getT1(), read.getT2()));
+    }
+
+    private Mono<List<AccountStripeData>> stripesOf(Long id) {
+        return mongoTemplate.find(Query.query(Criteria.where("accountId").is(id)), AccountStripeData.class)
+            .collectList();
+    }
+
+    /** Dos consultas para cualquier cantidad de cuentas calientes: las cuentas y sus franjas */
+    private Flux<HotAccountState> readState(Collection<Long> ids) {
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), HotAccountData.class)
+            .collectList()
+            .filter(accounts -> !accounts.isEmpty())
+            .flatMapMany(accounts -> mongoTemplate
+                .find(Query.query(Criteria.where("accountId").in(ids)), AccountStripeData.class)
+                .collectMultimap(AccountStripeData::getAccountId)
+                .flatMapIterable(stripesByAccount -> accounts.stream()
+                    .map(account -> new HotAccountState(account,
+                        List.copyOf(stripesByAccount.getOrDefault(account.getId(), List.of()))))
+                    .toList()));
+    }
+
+    /** Una cuenta caliente con sus franjas, tal como se leyeron */
+    private record HotAccountState(HotAccountData account, List<AccountStripeData> stripes) {
+
+        /** Créditos en franjas que todavía no están en balance */
+        double pending() {
+            Map<String, Double> bases = account.getStripeBases() == null ? Map.of() : account.getStripeBases();
+            return stripes.stream()
+                .mapToDouble(stripe -> stripe.getTotal() - bases.getOrDefault(String.valueOf(stripe.getSlot()), 0.0))
+                .sum();
+        }
+
+        /** Versión combinada: cambia con cada escritura a la cuenta y con cada crédito en franja */
+        Long version() {
+            long credits = stripes.stream().mapToLong(AccountStripeData::getCredits).sum();
+            return (account.getVersion() == null ? 0L : account.getVersion()) + credits;
+        }
+
+        double combinedBalance() {
+            return account.getBalance() + pending();
+        }
+
+        /** El mismo estado con una franja reemplazada por lo que devolvió su escritura */
+        HotAccountState withStripe(AccountStripeData written) {
+            List<AccountStripeData> replaced = new ArrayList<>(stripes.size() + 1);
+            stripes.stream()
+                .filter(stripe -> !Objects.equals(stripe.getSlot(), written.getSlot()))
+                .forEach(replaced::add);
+            replaced.add(written);
+            return new HotAccountState(account, replaced);
+        }
+
+        Account toAccount() {
+            return Account.builder()
+                .id(account.getId())
+                .ownerId(account.getOwnerId())
+                .balance(combinedBalance())
+                .version(version())
+                .build();
+        }
+    }
+
+    /**
+     * Resultado de un intento de consolidación
+     *
+     * @param state Estado leído (saldo combinado en ese momento)
+     * @param folded true si se sumó lo pendiente
+     */
+    private record Fold(HotAccountState state, boolean folded) {
+
+        /** Había algo pendiente pero otra escritura cambió la versión de la cuenta */
+        boolean raced() {
+            return !folded && state.pending() != 0;
+        }
+    }
+}
@@ -3,7 +3,11 @@ package co.com.bancolombia.mongo.account;
 import co.com.bancolombia.mongo.user.UserData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
@@ -35,8 +39,15 @@ public class TransactionalAccountRepository {
     }
 
     /**
-     * Transfiere saldo entre dos cuentas
-     * Nota: Sin transacciones, esto no es atómico. Para producción, usar transacciones reales.
+     * Transfiere saldo entre dos cuentas con dos actualizaciones atómicas condicionales
+     * 1. findAndModify({ _id: from, balance: { $gte: amount } }, { $inc: { balance: -amount } })
+     * 2. findAndModify({ _id: to }, { $inc: { balance: amount } })
+     * Solo si el crédito responde vacío (la cuenta destino no existe) se devuelve el débito,
+     * UNA vez y sin reintentos. Un error en el débito, el crédito o la devolución es ambiguo
+     * (el $inc pudo haberse aplicado): repetirlo o compensar a ciegas podría crear dinero, así
+     * que se responde pendiente de conciliación.
+     * Nota: sin transacción multi-documento hay un instante en que el dinero salió de
+     * origen y no llegó a destino, pero nunca se pierden actualizaciones concurrentes.
      */
     public Mono<TransferTransactionResult> transferBetweenAccountsTransactional(
             Long fromAccountId, Long toAccountId, Double amount) {
@@ -44,36 +55,63 @@ public class TransactionalAccountRepository {
         log.info("Starting transfer from {} to {} amount {}",
             fromAccountId, toAccountId, amount);
 
-        return mongoTemplate.findById(fromAccountId, AccountData.class)
-            .zipWith(mongoTemplate.findById(toAccountId, AccountData.class))
-            .flatMap(accounts -> {
-                AccountData from = accounts.getT1();
-                AccountData to = accounts.getT2();
-
-                if (from == null || to == null) {
-                    return Mono.error(new IllegalStateException("One or both accounts not found"));
+        return incrementBalance(Criteria.where("_id").is(fromAccountId).and("balance").gte(amount), -amount)
+            .materialize()
+            .flatMap(debit -> {
+                if (debit.isOnNext()) {
+                    return credit(fromAccountId, toAccountId, amount);
+                }
+                if (debit.isOnError()) {
+                    return Mono.just(unconfirmed(fromAccountId, toAccountId, amount, "debit", debit.getThrowable()));
                 }
+                log.warn("Transfer rejected: insufficient balance or account {} not found", fromAccountId);
+                return Mono.just(failed(fromAccountId, toAccountId, amount, "Insufficient balance or account not found"));
+            });
+    }
 
-                if (from.getBalance() < amount) {
-                    return Mono.error(new IllegalStateException("Insufficient balance"));
+    private Mono<TransferTransactionResult> credit(Long fromAccountId, Long toAccountId, Double amount) {
+        return incrementBalance(Criteria.where("_id").is(toAccountId), amount)
+            .materialize()
+            .flatMap(credit -> {
+                if (credit.isOnNext()) {
+                    log.info("Transfer completed from {} to {} amount {}", fromAccountId, toAccountId, amount);
+                    return Mono.just(new TransferTransactionResult(
+                        fromAccountId, toAccountId, amount, true, false, "Success"));
                 }
+                if (credit.isOnError()) {
+                    return Mono.just(unconfirmed(fromAccountId, toAccountId, amount, "credit", credit.getThrowable()));
+                }
+                return refund(fromAccountId, toAccountId, amount);
+            });
+    }
 
-                from.setBalance(from.getBalance() - amount);
-                to.setBalance(to.getBalance() + amount);
+    /** La cuenta destino no existe (resultado definitivo): se devuelve el débito una sola vez */
+    private Mono<TransferTransactionResult> refund(Long fromAccountId, Long toAccountId, Double amount) {
+        log.warn("Destination account {} not found, refunding {} to account {}", toAccountId, amount, fromAccountId);
+        return incrementBalance(Criteria.where("_id").is(fromAccountId), amount)
+            .map(refunded -> failed(fromAccountId, toAccountId, amount, "Destination account not found"))
+            .switchIfEmpty(Mono.fromSupplier(() -> unconfirmed(fromAccountId, toAccountId, amount,
+                "refund (source account not found)", null)))
+            .onErrorResume(error -> Mono.just(unconfirmed(fromAccountId, toAccountId, amount, "refund", error)));
+    }
 
-                return mongoTemplate.save(from)
-                    .then(mongoTemplate.save(to))
-                    .thenReturn(new TransferTransactionResult(
-                        fromAccountId, toAccountId, amount, true, "Success"
-                    ));
-            })
-            .doOnSuccess(result -> log.info("Transfer completed: {}", result))
-            .onErrorResume(error -> {
-                log.error("Transfer failed: {}", error.getMessage());
-                return Mono.just(new TransferTransactionResult(
-                    fromAccountId, toAccountId, amount, false, error.getMessage()
-                ));
-            });
+    private static TransferTransactionResult failed(Long fromAccountId, Long toAccountId, Double amount,
+                                                    String message) {
+        return new TransferTransactionResult(fromAccountId, toAccountId, amount, false, false, message);
+    }
+
+    /** El último paso pudo haberse aplicado: no se reintenta ni se compensa, queda para conciliar */
+    private static TransferTransactionResult unconfirmed(Long fromAccountId, Long toAccountId, Double amount,
+                                                         String step, Throwable error) {
+        log.error("Transfer from {} to {} amount {} left for reconciliation: {} unconfirmed ({})",
+            fromAccountId, toAccountId, amount, step, error == null ? "no error" : error.getMessage());
+        return new TransferTransactionResult(fromAccountId, toAccountId, amount, false, true,
+            "Pending reconciliation: the " + step + " outcome could not be confirmed, do not retry");
+    }
+
+    private Mono<AccountData> incrementBalance(Criteria criteria, double delta) {
+        return mongoTemplate.findAndModify(Query.query(criteria), new Update().inc("balance", delta).inc("version", 1),
+            FindAndModifyOptions.options().returnNew(true), AccountData.class);
     }
 
     /**
@@ -96,6 +134,8 @@ public class TransactionalAccountRepository {
         private Long toAccountId;
         private Double amount;
         private boolean success;
+        /** true si no se pudo confirmar si el dinero se movió: no reintentar, conciliar */
+        private boolean pendingReconciliation;
         private String message;
     }
 }
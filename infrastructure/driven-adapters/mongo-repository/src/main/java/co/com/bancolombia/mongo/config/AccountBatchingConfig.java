@@ -0,0 +1,37 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.account.BatchingAccountRepository;
+import co.com.bancolombia.mongo.account.MongoAccountRepositoryAdapter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Activa el micro-batching de getAccountById sobre el adapter de MongoDB
+ *
+ * adapter:
+ *   mongo:
+ *     account-batching:
+ *       enabled: true
+ *       max-batch-size: 100   # se despacha al completar el lote...
+ *       window: "2ms"         # ...o al vencer la ventana, lo que pase primero
+ *       timeout: "2s"         # espera máxima de cada búsqueda (cola + consulta)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "adapter.mongo.account-batching", name = "enabled", havingValue = "true")
+public class AccountBatchingConfig {
+
+    @Bean
+    public BatchingAccountRepository batchingAccountRepository(
+            MongoAccountRepositoryAdapter mongoAccountRepository,
+            MeterRegistry meterRegistry,
+            @Value("${adapter.mongo.account-batching.max-batch-size:100}") int maxBatchSize,
+            @Value("${adapter.mongo.account-batching.window:2ms}") Duration window,
+            @Value("${adapter.mongo.account-batching.timeout:2s}") Duration timeout) {
+        return new BatchingAccountRepository(mongoAccountRepository, maxBatchSize, window, timeout, meterRegistry);
+    }
+}
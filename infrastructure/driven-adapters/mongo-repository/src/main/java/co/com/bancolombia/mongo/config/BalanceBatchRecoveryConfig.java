@@ -0,0 +1,73 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.account.MongoAccountRepositoryAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Recuperación de los lotes de cambios de saldo (applyBalanceChanges) que quedaron a mitad
+ * de camino: termina los que ya tenían todos sus débitos y revierte los demás
+ *
+ * adapter:
+ *   mongo:
+ *     balance-batches:
+ *       recovery-interval: "1m"  # cada cuánto se buscan lotes abandonados
+ *       stale-after: "5m"        # tiempo sin avanzar a partir del cual un lote se recupera
+ *
+ * stale-after debe ser mayor que el timeout de operación del driver de MongoDB: un lote
+ * solo se toma cuando ninguna escritura de quien lo tenía puede seguir en vuelo.
+ * Los lotes terminados normalmente se limpian en el momento; aquí solo llegan los abandonados.
+ */
+@Slf4j
+@Configuration
+public class BalanceBatchRecoveryConfig {
+
+    private final MongoAccountRepositoryAdapter repository;
+    private final Duration recoveryInterval;
+    private final Duration staleAfter;
+    private Disposable recoveries;
+
+    public BalanceBatchRecoveryConfig(
+            MongoAccountRepositoryAdapter repository,
+            @Value("${adapter.mongo.balance-batches.recovery-interval:1m}") Duration recoveryInterval,
+            @Value("${adapter.mongo.balance-batches.stale-after:5m}") Duration staleAfter) {
+        this.repository = repository;
+        this.recoveryInterval = recoveryInterval;
+        this.staleAfter = staleAfter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRecovery() {
+        repository.ensureBatchIndex()
+            .subscribe(index -> log.info("   ✓ Índice creado: BalanceBatchData (state, updatedAt)"));
+        // concatMap: una recuperación no empieza hasta que termina la anterior
+        recoveries = Flux.interval(recoveryInterval, recoveryInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> repository.recoverBatches(staleAfter)
+                .onErrorResume(error -> {
+                    log.error("❌ Falló la recuperación de lotes: {}", error.getMessage());
+                    return Mono.empty();
+                }), 1)
+            .subscribe(recovered -> {
+                if (recovered > 0) {
+                    log.warn("Lotes de saldo recuperados: {}", recovered);
+                }
+            });
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopRecovery() {
+        if (recoveries != null) {
+            recoveries.dispose();
+        }
+    }
+}
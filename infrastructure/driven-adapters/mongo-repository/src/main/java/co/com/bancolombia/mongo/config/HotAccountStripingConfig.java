@@ -0,0 +1,80 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.account.BatchingAccountRepository;
+import co.com.bancolombia.mongo.account.MongoAccountRepositoryAdapter;
+import co.com.bancolombia.mongo.account.StripedAccountRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Activa los saldos en franjas para cuentas calientes
+ *
+ * adapter:
+ *   mongo:
+ *     hot-accounts:
+ *       enabled: true
+ *       ids: "1001,1002"              # cuentas cuyos créditos van a franjas
+ *       stripes: 16                   # franjas por cuenta
+ *       consolidation-interval: "1s"  # cada cuánto se suman las franjas al saldo
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "adapter.mongo.hot-accounts", name = "enabled", havingValue = "true")
+public class HotAccountStripingConfig {
+
+    private final StripedAccountRepository repository;
+    private final Duration consolidationInterval;
+    private Disposable consolidations;
+
+    public HotAccountStripingConfig(
+            MongoAccountRepositoryAdapter mongoAccountRepository,
+            ObjectProvider<BatchingAccountRepository> batchingAccountRepository,
+            ReactiveMongoTemplate mongoTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${adapter.mongo.hot-accounts.ids:}") Set<Long> ids,
+            @Value("${adapter.mongo.hot-accounts.stripes:16}") int stripes,
+            @Value("${adapter.mongo.hot-accounts.consolidation-interval:1s}") Duration consolidationInterval) {
+        // Las lecturas por id de las cuentas normales siguen pasando por el micro-batching si está activo
+        this.repository = new StripedAccountRepository(
+            batchingAccountRepository.getIfAvailable(() -> mongoAccountRepository),
+            mongoTemplate, ids, stripes, meterRegistry);
+        this.consolidationInterval = consolidationInterval;
+    }
+
+    @Bean
+    public StripedAccountRepository stripedAccountRepository() {
+        return repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startConsolidation() {
+        repository.ensureStripeIndex()
+            .subscribe(index -> log.info("   ✓ Índice creado: AccountStripeData.accountId"));
+        // concatMap: una consolidación no empieza hasta que termina la anterior
+        consolidations = Flux.interval(consolidationInterval, consolidationInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> repository.consolidateAll(), 1)
+            .subscribe();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopConsolidation() {
+        if (consolidations != null) {
+            consolidations.dispose();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.idempotency.MongoIdempotencyRepositoryAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+
+/**
+ * Activa el almacén persistente de Idempotency-Key en MongoDB
+ *
+ * adapter:
+ *   mongo:
+ *     idempotency:
+ *       enabled: true
+ *       ttl: "24h"   # cuánto tiempo se recuerda una clave (índice TTL)
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "adapter.mongo.idempotency", name = "enabled", havingValue = "true")
+public class IdempotencyPersistenceConfig {
+
+    private final MongoIdempotencyRepositoryAdapter adapter;
+
+    public IdempotencyPersistenceConfig(ReactiveMongoTemplate mongoTemplate,
+                                        @Value("${adapter.mongo.idempotency.ttl:24h}") Duration ttl) {
+        this.adapter = new MongoIdempotencyRepositoryAdapter(mongoTemplate, ttl);
+    }
+
+    @Bean
+    public MongoIdempotencyRepositoryAdapter mongoIdempotencyRepository() {
+        return adapter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createTtlIndex() {
+        adapter.ensureTtlIndex()
+            .subscribe(index -> log.info("   ✓ Índice TTL creado: IdempotencyKeyData.createdAt ({})", index));
+    }
+}
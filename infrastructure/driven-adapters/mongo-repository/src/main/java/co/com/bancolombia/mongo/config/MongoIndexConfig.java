@@ -1,9 +1,12 @@
 package co.com.bancolombia.mongo.config;
 
 import co.com.bancolombia.mongo.account.AccountData;
+import co.com.bancolombia.mongo.transaction.MongoTransactionRepositoryAdapter;
+import co.com.bancolombia.mongo.transaction.TransactionData;
 import co.com.bancolombia.mongo.user.UserData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
@@ -39,6 +42,8 @@ import org.springframework.stereotype.Component;
 public class MongoIndexConfig {
 
     private final ReactiveMongoTemplate mongoTemplate;
+    // Solo existe con adapter.mongo.transaction-persistence.enabled=true
+    private final ObjectProvider<MongoTransactionRepositoryAdapter> transactionRepository;
 
     /**
      * CREA LOS ÍNDICES AL INICIAR LA APLICACIÓN
@@ -52,6 +57,9 @@ public class MongoIndexConfig {
 
         createAccountIndexes();
         createUserIndexes();
+        if (transactionRepository.getIfAvailable() != null) {
+            createTransactionIndexes();
+        }
 
         log.info("✅ Índices creados exitosamente");
     }
@@ -80,6 +88,16 @@ public class MongoIndexConfig {
                 log.info("   ✓ Índice compuesto creado: AccountData.ownerId+balance")
             )
             .subscribe();
+
+        // ÍNDICE 3: Por balance (descendente)
+        // ¿Por qué? Para "top N cuentas con mayor saldo": MongoDB recorre solo
+        // las primeras N entradas del índice en vez de ordenar toda la colección
+        mongoTemplate.indexOps(AccountData.class)
+            .ensureIndex(new Index().on("balance", Sort.Direction.DESC))
+            .doOnSuccess(index ->
+                log.info("   ✓ Índice creado: AccountData.balance")
+            )
+            .subscribe();
     }
 
     /**
@@ -97,4 +115,23 @@ public class MongoIndexConfig {
 
         // Nota: El índice de email único se creará cuando agregues el campo email a UserData
     }
+
+    /**
+     * ÍNDICES PARA LA COLECCIÓN DE TRANSACCIONES
+     * Solo si el historial se guarda en MongoDB: si no, la colección no se usa
+     */
+    private void createTransactionIndexes() {
+        // ÍNDICE 1: Compuesto por accountId + timestamp (descendente)
+        // ¿Por qué? Todas las consultas del historial son "transacciones de UNA cuenta
+        // ordenadas por fecha": las últimas N recorren el índice desde el principio y
+        // un rango de fechas lo recorre en sentido inverso. Ninguna ordena en memoria
+        mongoTemplate.indexOps(TransactionData.class)
+            .ensureIndex(new Index()
+                .on("accountId", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.DESC))
+            .doOnSuccess(index ->
+                log.info("   ✓ Índice compuesto creado: TransactionData.accountId+timestamp")
+            )
+            .subscribe();
+    }
 }
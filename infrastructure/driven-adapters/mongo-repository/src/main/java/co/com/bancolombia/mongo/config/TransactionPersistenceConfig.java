@@ -0,0 +1,46 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.transaction.MongoTransactionRepositoryAdapter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivecommons.utils.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+
+/**
+ * Activa el historial de transacciones en MongoDB (escrituras agrupadas en lotes)
+ *
+ * adapter:
+ *   mongo:
+ *     transaction-persistence:
+ *       enabled: true
+ *       max-batch-size: 500     # se escribe al completar el lote...
+ *       window: "20ms"          # ...o al vencer la ventana, lo que pase primero
+ *       max-pending: 10000      # tamaño del buffer; lleno = save() espera
+ *       max-in-flight: 4        # bulk inserts en paralelo
+ *       enqueue-timeout: "5s"   # espera máxima por espacio en el buffer
+ *       max-range-results: 1000 # tope de una consulta por rango de fechas
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "adapter.mongo.transaction-persistence", name = "enabled", havingValue = "true")
+public class TransactionPersistenceConfig {
+
+    @Bean
+    public MongoTransactionRepositoryAdapter mongoTransactionRepository(
+            ReactiveMongoTemplate mongoTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${adapter.mongo.transaction-persistence.max-batch-size:500}") int maxBatchSize,
+            @Value("${adapter.mongo.transaction-persistence.window:20ms}") Duration window,
+            @Value("${adapter.mongo.transaction-persistence.max-pending:10000}") int maxPending,
+            @Value("${adapter.mongo.transaction-persistence.max-in-flight:4}") int maxInFlight,
+            @Value("${adapter.mongo.transaction-persistence.enqueue-timeout:5s}") Duration enqueueTimeout,
+            @Value("${adapter.mongo.transaction-persistence.max-range-results:1000}") int maxRangeResults) {
+        return new MongoTransactionRepositoryAdapter(mongoTemplate, objectMapper, maxBatchSize, window,
+            maxPending, maxInFlight, enqueueTimeout, maxRangeResults, meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package co.com.bancolombia.mongo.config;
+
+import co.com.bancolombia.mongo.transfer.MongoTransferLedgerAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+
+/**
+ * Activa el libro de transferencias en MongoDB
+ *
+ * adapter:
+ *   mongo:
+ *     transfer-ledger:
+ *       enabled: false    # desactivado por defecto, como los demás adapters opcionales
+ *       retention: "7d"   # cuánto se conservan las transferencias terminadas sin conflicto
+ *
+ * Costo: con el libro cada transferencia hace 5 viajes a MongoDB (insert PENDING,
+ * PENDING -> CREDITING, débito, crédito, estado final) en vez de 2 (débito y crédito).
+ * A cambio, una transferencia con resultado ambiguo queda registrada y la conciliación
+ * periódica la encuentra; sin libro solo queda en el log como pendiente de conciliación.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "adapter.mongo.transfer-ledger", name = "enabled", havingValue = "true")
+public class TransferLedgerConfig {
+
+    private final MongoTransferLedgerAdapter adapter;
+
+    public TransferLedgerConfig(ReactiveMongoTemplate mongoTemplate,
+                                @Value("${adapter.mongo.transfer-ledger.retention:7d}") Duration retention) {
+        this.adapter = new MongoTransferLedgerAdapter(mongoTemplate, retention);
+    }
+
+    @Bean
+    public MongoTransferLedgerAdapter mongoTransferLedger() {
+        return adapter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        adapter.ensureIndexes()
+            .subscribe(null,
+                error -> log.error("❌ No se pudieron crear los índices del libro de transferencias: {}",
+                    error.getMessage()),
+                () -> log.info("   ✓ Índices creados: TransferLedgerData (state, updatedAt)"));
+    }
+}
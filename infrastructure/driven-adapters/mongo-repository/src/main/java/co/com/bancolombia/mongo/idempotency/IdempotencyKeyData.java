@@ -0,0 +1,32 @@
+package co.com.bancolombia.mongo.idempotency;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+@Data
+@Document
+@NoArgsConstructor
+public class IdempotencyKeyData {
+
+    /** La Idempotency-Key: el _id hace que una clave solo pueda guardarse una vez */
+    @Id
+    private String key;
+    private String transferId;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private Double amount;
+    private boolean success;
+    private String message;
+    private LocalDateTime timestamp;
+
+    /** true mientras la transferencia está en curso (reservada, sin resultado todavía) */
+    private boolean pending;
+
+    // Índice TTL: MongoDB borra el documento cuando vence (ver IdempotencyPersistenceConfig)
+    private Instant createdAt;
+}
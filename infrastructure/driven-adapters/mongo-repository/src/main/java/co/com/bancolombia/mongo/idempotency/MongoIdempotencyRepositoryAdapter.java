@@ -0,0 +1,106 @@
+package co.com.bancolombia.mongo.idempotency;
+
+import co.com.bancolombia.model.account.TransferResult;
+import co.com.bancolombia.model.account.gateways.IdempotencyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Resultados por Idempotency-Key en MongoDB
+ *
+ * - Un documento por clave con _id = clave: reserve inserta el documento con pending=true
+ *   ANTES de ejecutar; en otra instancia el mismo insert falla con clave duplicada, así que
+ *   solo una ejecuta la transferencia (la primera gana)
+ * - save completa la reserva con el resultado (pending=false); release la borra si no hubo resultado
+ * - Índice TTL sobre createdAt: MongoDB borra las claves vencidas solo, sin jobs de limpieza
+ *   (el monitor TTL corre cada ~60 s, así que una clave puede durar un poco más que ttl)
+ *
+ * Es opcional: solo se crea con adapter.mongo.idempotency.enabled=true
+ * (ver IdempotencyPersistenceConfig).
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIdempotencyRepositoryAdapter implements IdempotencyRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Duration ttl;
+
+    @Override
+    public Mono<Boolean> reserve(String key, Long fromAccountId, Long toAccountId, Double amount) {
+        IdempotencyKeyData data = new IdempotencyKeyData();
+        data.setKey(key);
+        data.setFromAccountId(fromAccountId);
+        data.setToAccountId(toAccountId);
+        data.setAmount(amount);
+        data.setPending(true);
+        data.setCreatedAt(Instant.now());
+        return mongoTemplate.insert(data)
+            .thenReturn(true)
+            .onErrorResume(DuplicateKeyException.class, duplicate -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<TransferResult> find(String key) {
+        // pending ne true: también encuentra documentos guardados antes de existir la reserva
+        return mongoTemplate.findOne(query(where("_id").is(key).and("pending").ne(true)), IdempotencyKeyData.class)
+            .map(this::toResult);
+    }
+
+    @Override
+    public Mono<Void> save(String key, TransferResult result) {
+        Update update = new Update()
+            .set("transferId", result.getTransferId())
+            .set("fromAccountId", result.getFromAccountId())
+            .set("toAccountId", result.getToAccountId())
+            .set("amount", result.getAmount())
+            .set("success", result.isSuccess())
+            .set("message", result.getMessage())
+            .set("timestamp", result.getTimestamp())
+            .set("pending", false)
+            .set("createdAt", Instant.now());
+        // Solo sobre la reserva: si la clave ya tiene resultado el upsert choca con el _id
+        // y se conserva el que estaba; si la reserva expiró se inserta de nuevo
+        return mongoTemplate.upsert(query(where("_id").is(key).and("pending").is(true)), update, IdempotencyKeyData.class)
+            .onErrorResume(DuplicateKeyException.class, duplicate -> {
+                log.debug("Idempotency key {} already stored", key);
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    @Override
+    public Mono<Void> release(String key) {
+        return mongoTemplate.remove(query(where("_id").is(key).and("pending").is(true)), IdempotencyKeyData.class)
+            .then();
+    }
+
+    /** { createdAt: 1 } con expireAfterSeconds = ttl */
+    public Mono<String> ensureTtlIndex() {
+        return mongoTemplate.indexOps(IdempotencyKeyData.class)
+            .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl));
+    }
+
+    private TransferResult toResult(IdempotencyKeyData data) {
+        return TransferResult.builder()
+            .transferId(data.getTransferId())
+            .fromAccountId(data.getFromAccountId())
+            .toAccountId(data.getToAccountId())
+            .amount(data.getAmount())
+            .success(data.isSuccess())
+            .message(data.getMessage())
+            .timestamp(data.getTimestamp())
+            .build();
+    }
+}
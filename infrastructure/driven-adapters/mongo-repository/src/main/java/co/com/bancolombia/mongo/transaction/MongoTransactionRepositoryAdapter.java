@@ -0,0 +1,382 @@
+package co.com.bancolombia.mongo.transaction;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.gateways.TransactionRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivecommons.utils.ObjectMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Historial de transacciones en MongoDB con escrituras agrupadas (write-behind por lotes)
+ *
+ * - Sin carga (ningún insert en vuelo y el buffer vacío) save() escribe enseguida: no
+ *   espera la ventana
+ * - Si no, save() deja la transacción en un buffer acotado y su Mono completa cuando
+ *   el lote donde viajó quedó guardado
+ * - El buffer se vacía con UN bulk insert sin orden (unordered) al juntar max-batch-size
+ *   transacciones o al vencer la ventana, lo que pase primero. Sin orden, un documento
+ *   que falla no frena al resto del lote
+ * - Backpressure: como mucho max-in-flight lotes viajan a la vez; mientras tanto el
+ *   buffer se llena y save() espera (sin bloquear hilos) a que haya espacio. Si sigue
+ *   lleno después de enqueue-timeout, save() falla
+ * - Un id repetido (la misma transacción reintentada) se toma como ya guardado
+ *
+ * Las lecturas usan el índice { accountId: 1, timestamp: -1 } (ver MongoIndexConfig) y
+ * un rango de fechas devuelve como mucho max-range-results transacciones: sin fecha de
+ * inicio, las más recientes del rango.
+ *
+ * Es opcional: solo se crea con adapter.mongo.transaction-persistence.enabled=true
+ * (ver TransactionPersistenceConfig).
+ *
+ * Métricas:
+ * - transaction.persist.batch.size: transacciones por bulk insert
+ * - transaction.persist.flush: duración de cada bulk insert
+ * - transaction.persist.pending: transacciones esperando en el buffer
+ * - transaction.persist.backpressure: save() que tuvieron que esperar espacio
+ * - transaction.persist.rejected / failed: save() rechazados por buffer lleno / que no se guardaron
+ */
+@Slf4j
+public class MongoTransactionRepositoryAdapter implements TransactionRepository {
+
+    /** Código de MongoDB para clave duplicada */
+    private static final int DUPLICATE_KEY = 11000;
+    private static final Duration FIRST_BACKOFF = Duration.ofMillis(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMillis(50);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+    static final int DEFAULT_MAX_RANGE_RESULTS = 1000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration enqueueTimeout;
+    private final int maxRangeResults;
+    private final Sinks.Many<PendingWrite> writes;
+    private final AtomicInteger pending = new AtomicInteger();
+    /** Bulk inserts en vuelo (del buffer o directos) */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean closed;
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final DistributionSummary batchSize;
+    private final Timer flushTime;
+    private final Counter backpressured;
+    private final Counter rejected;
+    private final Counter failed;
+
+    public MongoTransactionRepositoryAdapter(ReactiveMongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                                             int maxBatchSize, Duration window, int maxPending, int maxInFlight,
+                                             Duration enqueueTimeout, MeterRegistry meterRegistry) {
+        this(mongoTemplate, objectMapper, maxBatchSize, window, maxPending, maxInFlight, enqueueTimeout,
+            DEFAULT_MAX_RANGE_RESULTS, meterRegistry);
+    }
+
+    public MongoTransactionRepositoryAdapter(ReactiveMongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                                             int maxBatchSize, Duration window, int maxPending, int maxInFlight,
+                                             Duration enqueueTimeout, int maxRangeResults,
+                                             MeterRegistry meterRegistry) {
+        if (maxBatchSize < 1 || maxPending < maxBatchSize || maxInFlight < 1 || maxRangeResults < 1) {
+            throw new IllegalArgumentException("max-batch-size, max-in-flight y max-range-results deben ser al menos 1, "
+                + "y max-pending al menos max-batch-size");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.enqueueTimeout = enqueueTimeout;
+        this.maxRangeResults = maxRangeResults;
+        this.writes = Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingWrite>get(maxPending).get());
+
+        this.batchSize = DistributionSummary.builder("transaction.persist.batch.size")
+            .description("Transactions written per unordered bulk insert")
+            .register(meterRegistry);
+        this.flushTime = Timer.builder("transaction.persist.flush")
+            .description("Duration of each transaction bulk insert")
+            .register(meterRegistry);
+        Gauge.builder("transaction.persist.pending", pending, AtomicInteger::get)
+            .description("Transactions waiting in the write buffer")
+            .register(meterRegistry);
+        this.backpressured = Counter.builder("transaction.persist.backpressure")
+            .description("Saves that had to wait for room in the write buffer")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("transaction.persist.rejected")
+            .description("Saves rejected because the write buffer stayed full")
+            .register(meterRegistry);
+        this.failed = Counter.builder("transaction.persist.failed")
+            .description("Transactions whose bulk insert failed")
+            .register(meterRegistry);
+
+        // fairBackpressure: solo se arma un lote nuevo cuando flatMap tiene lugar para él,
+        // así el exceso se queda en el buffer acotado en vez de acumularse en lotes
+        writes.asFlux()
+            .bufferTimeout(maxBatchSize, window, true)
+            .flatMap(batch -> {
+                pending.addAndGet(-batch.size());
+                inFlight.incrementAndGet();
+                return flush(batch);
+            }, maxInFlight)
+            .doFinally(signal -> drained.countDown())
+            .subscribe();
+        log.info("Transaction persistence enabled: maxBatchSize={}, window={}, maxPending={}, maxInFlight={}",
+            maxBatchSize, window, maxPending, maxInFlight);
+    }
+
+    @Override
+    public Mono<Void> save(Transaction transaction) {
+        return Mono.fromSupplier(() -> new PendingWrite(toTransactionData(transaction)))
+            .flatMap(write -> {
+                // Sin carga no hay con quién juntarla: se escribe ya en vez de esperar la ventana
+                if (!closed && pending.get() == 0 && inFlight.compareAndSet(0, 1)) {
+                    return flush(List.of(write)).then(write.done().asMono());
+                }
+                return enqueue(write).then(write.done().asMono());
+            });
+    }
+
+    @Override
+    public Flux<Transaction> findLatestByAccountId(Long accountId, int limit) {
+        Query query = Query.query(Criteria.where("accountId").is(accountId))
+            .with(Sort.by(Sort.Direction.DESC, "timestamp"))
+            .limit(limit);
+        return mongoTemplate.find(query, TransactionData.class)
+            .map(this::toTransaction);
+    }
+
+    @Override
+    public Flux<Transaction> findByAccountIdBetween(Long accountId, LocalDateTime from, LocalDateTime to) {
+        Criteria criteria = Criteria.where("accountId").is(accountId);
+        if (from != null || to != null) {
+            Criteria timestamp = criteria.and("timestamp");
+            if (from != null) {
+                timestamp.gte(from);
+            }
+            if (to != null) {
+                timestamp.lt(to);
+            }
+        }
+        if (from != null) {
+            Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .limit(maxRangeResults);
+            return mongoTemplate.find(query, TransactionData.class)
+                .map(this::toTransaction);
+        }
+        // Sin inicio no se recorre toda la historia de la cuenta: se toman las más recientes
+        // del rango (el índice se recorre desde ese lado) y se devuelven de la más antigua
+        Query query = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "timestamp"))
+            .limit(maxRangeResults);
+        return mongoTemplate.find(query, TransactionData.class)
+            .collectList()
+            .flatMapIterable(latestFirst -> {
+                List<TransactionData> oldestFirst = new ArrayList<>(latestFirst);
+                Collections.reverse(oldestFirst);
+                return oldestFirst;
+            })
+            .map(this::toTransaction);
+    }
+
+    /**
+     * Un solo deleteMany sobre el índice de accountId. Lo que todavía espera en el buffer
+     * se escribe después: no lo alcanza el borrado.
+     */
+    @Override
+    public Mono<Void> deleteByAccountId(Long accountId) {
+        return mongoTemplate.remove(Query.query(Criteria.where("accountId").is(accountId)), TransactionData.class)
+            .then();
+    }
+
+    /**
+     * Deja de aceptar transacciones y espera a que se guarde lo que quedó en el buffer.
+     * Spring lo llama al cerrar el contexto (es el destroy method inferido del bean).
+     */
+    public void close() {
+        closed = true;
+        // Hilo de apagado: si otro hilo está emitiendo, se cede el procesador y se reintenta
+        while (writes.tryEmitComplete() == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            LockSupport.parkNanos(FIRST_BACKOFF.toNanos());
+        }
+        try {
+            if (!drained.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("⚠️ Quedaron {} transacciones sin guardar al apagar", pending.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Transacciones esperando en el buffer */
+    int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Mete la transacción en el buffer. Si está lleno, o si otro hilo está emitiendo en
+     * ese momento, reintenta con espera creciente (1ms, 2ms... hasta 50ms) sin ocupar el
+     * hilo mientras tanto.
+     */
+    private Mono<Void> enqueue(PendingWrite write) {
+        return Mono.<Void>defer(() -> {
+                pending.incrementAndGet();
+                Sinks.EmitResult result = writes.tryEmitNext(write);
+                if (result.isSuccess()) {
+                    return Mono.empty();
+                }
+                pending.decrementAndGet();
+                if (result == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                    return Mono.error(new RetryEmitException(false));
+                }
+                return result == Sinks.EmitResult.FAIL_OVERFLOW
+                    ? Mono.error(new RetryEmitException(true))
+                    : Mono.error(new IllegalStateException("El buffer de transacciones está cerrado: " + result));
+            })
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, FIRST_BACKOFF)
+                .maxBackoff(MAX_BACKOFF)
+                .filter(RetryEmitException.class::isInstance)
+                .doBeforeRetry(signal -> {
+                    if (((RetryEmitException) signal.failure()).bufferFull && !write.backpressured) {
+                        write.backpressured = true;
+                        backpressured.increment();
+                    }
+                }))
+            .timeout(enqueueTimeout, Mono.error(() -> {
+                rejected.increment();
+                return new IllegalStateException(
+                    "El buffer de transacciones sigue lleno después de " + enqueueTimeout);
+            }));
+    }
+
+    /**
+     * Escribe un lote con un bulk insert sin orden y avisa a cada llamador.
+     * Si fallan algunos documentos, solo esos llamadores reciben el error.
+     */
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        batchSize.record(batch.size());
+        List<TransactionData> documents = batch.stream().map(PendingWrite::data).toList();
+        long start = System.nanoTime();
+
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TransactionData.class)
+            .insert(documents)
+            .execute()
+            .doOnSuccess(result -> batch.forEach(PendingWrite::complete))
+            .doOnError(error -> fail(batch, error))
+            .doFinally(signal -> {
+                inFlight.decrementAndGet();
+                flushTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            })
+            .onErrorResume(error -> Mono.empty())
+            .then();
+    }
+
+    private void fail(List<PendingWrite> batch, Throwable error) {
+        List<BulkWriteError> writeErrors = writeErrors(error);
+        if (writeErrors == null) {
+            log.warn("⚠️ Falló el bulk insert de {} transacciones: {}", batch.size(), error.getMessage());
+            failed.increment(batch.size());
+            batch.forEach(write -> write.fail(error));
+            return;
+        }
+        Map<Integer, BulkWriteError> byIndex = writeErrors.stream()
+            .collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity(), (a, b) -> a));
+        for (int i = 0; i < batch.size(); i++) {
+            BulkWriteError writeError = byIndex.get(i);
+            if (writeError == null || writeError.getCode() == DUPLICATE_KEY) {
+                batch.get(i).complete();
+            } else {
+                failed.increment();
+                batch.get(i).fail(error);
+            }
+        }
+    }
+
+    /**
+     * Errores por documento de un bulk sin orden; null si el error no es de ese tipo
+     * (o hubo un error de write concern: no se sabe qué quedó guardado)
+     */
+    private static List<BulkWriteError> writeErrors(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulk) {
+                return bulk.getWriteConcernError() == null ? bulk.getWriteErrors() : null;
+            }
+            if (cause instanceof BulkOperationException bulk) {
+                return bulk.getErrors();
+            }
+        }
+        return null;
+    }
+
+    // Mappers
+    private TransactionData toTransactionData(Transaction transaction) {
+        if (transaction.getAccountId() == null) {
+            throw new IllegalArgumentException("La transacción no tiene accountId");
+        }
+        return objectMapper.map(transaction, TransactionData.class);
+    }
+
+    private Transaction toTransaction(TransactionData data) {
+        return objectMapper.mapBuilder(data, Transaction.TransactionBuilder.class).build();
+    }
+
+    private static final class PendingWrite {
+        final TransactionData data;
+        final Sinks.Empty<Void> done = Sinks.empty();
+        /** Ya se contó en transaction.persist.backpressure */
+        boolean backpressured;
+
+        PendingWrite(TransactionData data) {
+            this.data = data;
+        }
+
+        TransactionData data() {
+            return data;
+        }
+
+        Sinks.Empty<Void> done() {
+            return done;
+        }
+
+        void complete() {
+            done.tryEmitEmpty();
+        }
+
+        void fail(Throwable error) {
+            done.tryEmitError(error);
+        }
+    }
+
+    /** Señal interna para reintentar el emit (buffer lleno u otro hilo emitiendo): no necesita stack trace */
+    private static final class RetryEmitException extends RuntimeException {
+        final boolean bufferFull;
+
+        RetryEmitException(boolean bufferFull) {
+            super(bufferFull ? "El buffer de transacciones está lleno" : "Otro hilo está emitiendo", null, false, false);
+            this.bufferFull = bufferFull;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package co.com.bancolombia.mongo.transaction;
+
+import co.com.bancolombia.model.account.TransactionType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document
+@NoArgsConstructor
+public class TransactionData {
+
+    @Id
+    private String id;
+    private Long accountId;
+    private Double amount;
+    private TransactionType type;
+    private LocalDateTime timestamp;
+    private String description;
+}
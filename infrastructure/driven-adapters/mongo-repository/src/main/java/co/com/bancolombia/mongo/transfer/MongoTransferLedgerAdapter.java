@@ -0,0 +1,99 @@
+package co.com.bancolombia.mongo.transfer;
+
+import co.com.bancolombia.model.account.TransferRecord;
+import co.com.bancolombia.model.account.TransferState;
+import co.com.bancolombia.model.account.gateways.TransferLedger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Libro de transferencias en MongoDB
+ *
+ * - Un documento por transferencia con _id = transferId
+ * - advance es un updateFirst filtrado por { _id, state }: MongoDB aplica el cambio de
+ *   estado a lo sumo una vez, así solo un actor ejecuta cada paso que mueve dinero
+ * - Los estados finales sin conflicto (COMPLETED, REFUNDED, REJECTED) expiran con un índice
+ *   TTL parcial; RECONCILE y los que siguen abiertos se conservan hasta resolverlos
+ *
+ * Es opcional: solo se crea con adapter.mongo.transfer-ledger.enabled=true
+ * (ver TransferLedgerConfig).
+ */
+@RequiredArgsConstructor
+public class MongoTransferLedgerAdapter implements TransferLedger {
+
+    private static final List<TransferState> UNFINISHED =
+        List.of(TransferState.PENDING, TransferState.CREDITING, TransferState.REFUNDING);
+    private static final List<TransferState> EXPIRABLE =
+        List.of(TransferState.COMPLETED, TransferState.REFUNDED, TransferState.REJECTED);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Duration retention;
+
+    @Override
+    public Mono<Void> open(TransferRecord record) {
+        return mongoTemplate.insert(toData(record)).then();
+    }
+
+    @Override
+    public Mono<Boolean> advance(String transferId, TransferState expected, TransferState next) {
+        return mongoTemplate.updateFirst(
+                query(where("_id").is(transferId).and("state").is(expected)),
+                new Update().set("state", next).set("updatedAt", Instant.now()),
+                TransferLedgerData.class)
+            .map(result -> result.getModifiedCount() == 1);
+    }
+
+    @Override
+    public Flux<TransferRecord> findUnfinished(Instant olderThan) {
+        return mongoTemplate.find(
+                query(where("state").in(UNFINISHED).and("updatedAt").lt(olderThan)),
+                TransferLedgerData.class)
+            .map(this::toRecord);
+    }
+
+    /** { state: 1, updatedAt: 1 } para findUnfinished y TTL parcial sobre los estados finales */
+    public Mono<Void> ensureIndexes() {
+        return mongoTemplate.indexOps(TransferLedgerData.class)
+            .ensureIndex(new Index().on("state", Sort.Direction.ASC).on("updatedAt", Sort.Direction.ASC))
+            .then(mongoTemplate.indexOps(TransferLedgerData.class)
+                .ensureIndex(new Index().on("updatedAt", Sort.Direction.ASC)
+                    .expire(retention)
+                    .partial(PartialIndexFilter.of(where("state").in(EXPIRABLE)))))
+            .then();
+    }
+
+    private TransferLedgerData toData(TransferRecord record) {
+        TransferLedgerData data = new TransferLedgerData();
+        data.setTransferId(record.getTransferId());
+        data.setFromAccountId(record.getFromAccountId());
+        data.setToAccountId(record.getToAccountId());
+        data.setAmount(record.getAmount());
+        data.setState(record.getState());
+        data.setUpdatedAt(record.getUpdatedAt());
+        return data;
+    }
+
+    private TransferRecord toRecord(TransferLedgerData data) {
+        return TransferRecord.builder()
+            .transferId(data.getTransferId())
+            .fromAccountId(data.getFromAccountId())
+            .toAccountId(data.getToAccountId())
+            .amount(data.getAmount())
+            .state(data.getState())
+            .updatedAt(data.getUpdatedAt())
+            .build();
+    }
+}
@@ -0,0 +1,27 @@
+package co.com.bancolombia.mongo.transfer;
+
+import co.com.bancolombia.model.account.TransferState;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Document
+@NoArgsConstructor
+public class TransferLedgerData {
+
+    /** El transferId: una transferencia solo puede registrarse una vez */
+    @Id
+    private String transferId;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private Double amount;
+    private TransferState state;
+
+    // Índice { state, updatedAt } para la conciliación e índice TTL parcial sobre los
+    // estados finales (ver TransferLedgerConfig)
+    private Instant updatedAt;
+}
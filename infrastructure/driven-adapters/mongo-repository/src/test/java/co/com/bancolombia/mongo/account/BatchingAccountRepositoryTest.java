@@ -0,0 +1,102 @@
+package co.com.bancolombia.mongo.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchingAccountRepositoryTest {
+
+    private AccountRepository delegate;
+    private SimpleMeterRegistry registry;
+    private BatchingAccountRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(AccountRepository.class);
+        registry = new SimpleMeterRegistry();
+        repository = new BatchingAccountRepository(delegate, 10, Duration.ofMillis(20), registry);
+        when(delegate.getAccountsByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return Flux.fromIterable(ids)
+                .filter(id -> id != 99L)
+                .map(id -> Account.builder().id(id).ownerId(1L).balance(10.0 * id).build());
+        });
+    }
+
+    @Test
+    void concurrentLookupsAreResolvedWithOneQuery() {
+        StepVerifier.create(Flux.merge(
+                repository.getAccountById(1L),
+                repository.getAccountById(2L),
+                repository.getAccountById(2L),
+                repository.getAccountById(99L)))
+            .expectNextCount(3)
+            .verifyComplete();
+
+        verify(delegate, times(1)).getAccountsByIds(Set.of(1L, 2L, 99L));
+        assertEquals(1, registry.get("account.batch.size").summary().count());
+        assertEquals(4, registry.get("account.batch.queue.delay").timer().count());
+    }
+
+    @Test
+    void failedBatchOnlyFailsItsCallers() {
+        when(delegate.getAccountsByIds(anyCollection()))
+            .thenReturn(Flux.error(new IllegalStateException("boom")))
+            .thenReturn(Flux.just(Account.builder().id(1L).ownerId(1L).balance(10.0).build()));
+
+        StepVerifier.create(repository.getAccountById(1L))
+            .verifyError(IllegalStateException.class);
+        StepVerifier.create(repository.getAccountById(1L))
+            .expectNextCount(1)
+            .verifyComplete();
+        assertTrue(repository.isRunning());
+    }
+
+    @Test
+    void callerGivesUpAfterTimeout() {
+        repository = new BatchingAccountRepository(delegate, 10, Duration.ofMillis(1), Duration.ofMillis(50), registry);
+        when(delegate.getAccountsByIds(anyCollection())).thenReturn(Flux.never());
+
+        StepVerifier.create(repository.getAccountById(1L))
+            .expectError(TimeoutException.class)
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lookupsAfterCloseGoStraightToTheDelegate() {
+        when(delegate.getAccountById(1L)).thenReturn(Mono.just(Account.builder().id(1L).ownerId(1L).build()));
+        repository.close();
+
+        StepVerifier.create(repository.getAccountById(1L))
+            .expectNextCount(1)
+            .verifyComplete();
+    }
+
+    @Test
+    void fullBatchIsDispatchedBeforeTheWindow() {
+        repository = new BatchingAccountRepository(delegate, 2, Duration.ofMinutes(1), registry);
+
+        StepVerifier.create(Flux.merge(repository.getAccountById(1L), repository.getAccountById(2L)))
+            .expectNextCount(2)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+}
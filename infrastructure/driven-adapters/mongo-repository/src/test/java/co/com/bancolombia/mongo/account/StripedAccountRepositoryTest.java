@@ -0,0 +1,161 @@
+package co.com.bancolombia.mongo.account;
+
+import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.AccountVersionConflictException;
+import co.com.bancolombia.model.account.gateways.AccountRepository;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StripedAccountRepositoryTest {
+
+    private static final long HOT = 1L;
+
+    private AccountRepository delegate;
+    private ReactiveMongoTemplate mongoTemplate;
+    private StripedAccountRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(AccountRepository.class);
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        repository = new StripedAccountRepository(delegate, mongoTemplate, Set.of(HOT), 4, new SimpleMeterRegistry());
+
+        // Cuenta caliente: $100 consolidados (versión 3); la franja 0 ya sumó $5 de sus $15
+        HotAccountData account = new HotAccountData();
+        account.setId(HOT);
+        account.setOwnerId(7L);
+        account.setBalance(100.0);
+        account.setVersion(3L);
+        account.setStripeBases(Map.of("0", 5.0));
+        when(mongoTemplate.find(any(Query.class), eq(HotAccountData.class))).thenReturn(Flux.just(account));
+        when(mongoTemplate.findOne(any(Query.class), eq(HotAccountData.class))).thenReturn(Mono.just(account));
+        when(mongoTemplate.find(any(Query.class), eq(AccountStripeData.class)))
+            .thenReturn(Flux.just(stripe(0, 15.0, 2), stripe(1, 7.0, 1)));
+    }
+
+    private static AccountStripeData stripe(int slot, double total, long credits) {
+        AccountStripeData stripe = new AccountStripeData();
+        stripe.setId(HOT + ":" + slot);
+        stripe.setAccountId(HOT);
+        stripe.setSlot(slot);
+        stripe.setTotal(total);
+        stripe.setCredits(credits);
+        return stripe;
+    }
+
+    @Test
+    void creditsToAHotAccountGoToAStripeAndReadsCombineThem() {
+        // La franja elegida al azar responde con el crédito ya sumado
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AccountStripeData.class)))
+            .thenAnswer(invocation -> {
+                String id = invocation.<Query>getArgument(0).getQueryObject().getString("_id");
+                int slot = Integer.parseInt(id.substring(id.indexOf(':') + 1));
+                return Mono.just(slot == 0 ? stripe(0, 22.0, 3) : slot == 1 ? stripe(1, 14.0, 2) : stripe(slot, 7.0, 1));
+            });
+
+        // 100 + (15 - 5) + 7 + 7; versión 3 + 4 créditos en franjas, sin releer nada después
+        StepVerifier.create(repository.credit(HOT, 7.0))
+            .expectNextMatches(account -> account.getBalance() == 124.0 && account.getVersion() == 7L)
+            .verifyComplete();
+        verify(delegate, never()).credit(anyLong(), anyDouble());
+        verify(delegate, never()).exists(anyLong());
+
+        when(delegate.credit(2L, 5.0)).thenReturn(Mono.just(Account.builder().id(2L).balance(5.0).build()));
+        StepVerifier.create(repository.credit(2L, 5.0)).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void updateWithAVersionReadBeforeAStripeCreditConflicts() {
+        Account stale = Account.builder().id(HOT).ownerId(7L).balance(50.0).version(5L).build();
+
+        StepVerifier.create(repository.update(stale))
+            .expectError(AccountVersionConflictException.class)
+            .verify();
+        verify(mongoTemplate, never())
+            .findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(HotAccountData.class));
+    }
+
+    @Test
+    void consolidationFoldsPendingCreditsAndMovesTheBases() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(HotAccountData.class)))
+            .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(repository.consolidate(HOT))
+            .expectNext(true)
+            .verifyComplete();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(HotAccountData.class));
+        Document applied = update.getValue().getUpdateObject();
+        assertEquals(17.0, applied.get("$inc", Document.class).get("balance"));
+        assertEquals(15.0, applied.get("$set", Document.class).get("stripeBases.0"));
+        assertEquals(7.0, applied.get("$set", Document.class).get("stripeBases.1"));
+    }
+
+    @Test
+    void aDebitRetriesWhenItsConsolidationLosesTheRaceAndSurvivesAFailedStripeRead() {
+        HotAccountData debited = new HotAccountData();
+        debited.setId(HOT);
+        debited.setOwnerId(7L);
+        debited.setBalance(7.0);
+        debited.setVersion(5L);
+        debited.setStripeBases(Map.of("0", 15.0, "1", 7.0));
+        // 110 no alcanza con lo consolidado ($100) pero sí con el combinado ($117)
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(HotAccountData.class)))
+            .thenReturn(Mono.empty(), Mono.just(debited));
+        // Otra escritura cambió la versión: la consolidación no se aplica
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(HotAccountData.class)))
+            .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        // La lectura de franjas falla DESPUÉS del débito: el débito se responde igual
+        when(mongoTemplate.find(any(Query.class), eq(AccountStripeData.class)))
+            .thenReturn(Flux.just(stripe(0, 15.0, 2), stripe(1, 7.0, 1)))
+            .thenReturn(Flux.error(new IllegalStateException("mongo caído")));
+
+        StepVerifier.create(repository.debitIfSufficient(HOT, 110.0))
+            .expectNextMatches(account -> account.getBalance() == 7.0)
+            .verifyComplete();
+        verify(delegate, never()).debitIfSufficient(anyLong(), anyDouble());
+    }
+
+    @Test
+    void aBatchDebitingAHotAccountConsolidatesItFirst() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(HotAccountData.class)))
+            .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(delegate.applyBalanceChanges("batch-1", Map.of(HOT, -110.0, 2L, 110.0))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(repository.applyBalanceChanges("batch-1", Map.of(HOT, -110.0, 2L, 110.0)))
+            .expectNext(true)
+            .verifyComplete();
+        InOrder order = inOrder(mongoTemplate, delegate);
+        order.verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(HotAccountData.class));
+        order.verify(delegate).applyBalanceChanges(eq("batch-1"), any());
+    }
+}
@@ -0,0 +1,51 @@
+package co.com.bancolombia.mongo.account;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionalAccountRepositoryTest {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final TransactionalAccountRepository repository = new TransactionalAccountRepository(mongoTemplate);
+
+    @Test
+    void anAmbiguousCreditErrorIsLeftForReconciliationWithoutARefund() {
+        // Débito aplicado; el crédito falla sin saber si el $inc llegó
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AccountData.class)))
+            .thenReturn(Mono.just(new AccountData()), Mono.error(new IllegalStateException("timeout")));
+
+        StepVerifier.create(repository.transferBetweenAccountsTransactional(1L, 2L, 10.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.isPendingReconciliation())
+            .verifyComplete();
+        // Débito + crédito: ninguna devolución
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class),
+            any(FindAndModifyOptions.class), eq(AccountData.class));
+    }
+
+    @Test
+    void aMissingDestinationRefundsTheDebitExactlyOnce() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AccountData.class)))
+            .thenReturn(Mono.just(new AccountData()), Mono.empty(), Mono.error(new IllegalStateException("timeout")));
+
+        // La devolución falla: no se reintenta y el débito no se esconde tras un "failed"
+        StepVerifier.create(repository.transferBetweenAccountsTransactional(1L, 2L, 10.0))
+            .expectNextMatches(result -> !result.isSuccess() && result.isPendingReconciliation())
+            .verifyComplete();
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(Update.class),
+            any(FindAndModifyOptions.class), eq(AccountData.class));
+    }
+}
@@ -0,0 +1,174 @@
+package co.com.bancolombia.mongo.transaction;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivecommons.utils.ObjectMapperImp;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MongoTransactionRepositoryAdapterTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private ReactiveBulkOperations bulkOperations;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        bulkOperations = mock(ReactiveBulkOperations.class);
+        registry = new SimpleMeterRegistry();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TransactionData.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    private MongoTransactionRepositoryAdapter repository(int maxBatchSize, int maxPending, Duration enqueueTimeout) {
+        return repository(maxBatchSize, Duration.ofMillis(20), maxPending, enqueueTimeout);
+    }
+
+    private MongoTransactionRepositoryAdapter repository(int maxBatchSize, Duration window, int maxPending,
+                                                         Duration enqueueTimeout) {
+        return new MongoTransactionRepositoryAdapter(mongoTemplate, new ObjectMapperImp(), maxBatchSize,
+            window, maxPending, 1, enqueueTimeout, 2, registry);
+    }
+
+    /** Un insert que tarda: mientras está en vuelo, los save() siguientes van al buffer */
+    private static Mono<BulkWriteResult> slowInsert() {
+        return Mono.delay(Duration.ofMillis(200)).thenReturn(mock(BulkWriteResult.class));
+    }
+
+    private static Transaction tx(int n) {
+        return Transaction.builder()
+            .id("t" + n)
+            .accountId(1L)
+            .amount(10.0)
+            .type(TransactionType.DEPOSIT)
+            .timestamp(LocalDateTime.of(2025, 11, 10, 14, 30).plusMinutes(n))
+            .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void savesArrivingWhileAnInsertIsInFlightShareOneBulkInsert() {
+        when(bulkOperations.execute()).thenReturn(slowInsert(), Mono.just(mock(BulkWriteResult.class)));
+        MongoTransactionRepositoryAdapter repository = repository(10, 100, Duration.ofSeconds(1));
+
+        StepVerifier.create(Flux.merge(repository.save(tx(0)), repository.save(tx(1)), repository.save(tx(2)),
+                repository.save(tx(3))))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+
+        ArgumentCaptor<List<TransactionData>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations, times(2)).insert(inserted.capture());
+        assertEquals(List.of("t0"), inserted.getAllValues().get(0).stream().map(TransactionData::getId).toList());
+        assertEquals(List.of("t1", "t2", "t3"),
+            inserted.getAllValues().get(1).stream().map(TransactionData::getId).toList());
+        assertEquals(2, registry.get("transaction.persist.batch.size").summary().count());
+        assertEquals(0, repository.pending());
+    }
+
+    @Test
+    void idleSaveDoesNotWaitForTheWindow() {
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+        MongoTransactionRepositoryAdapter repository = repository(10, Duration.ofMinutes(1), 100, Duration.ofSeconds(1));
+
+        StepVerifier.create(repository.save(tx(1)))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rangeWithoutStartReadsTheLatestBoundedAndReturnsThemOldestFirst() {
+        TransactionData older = new TransactionData();
+        older.setId("t1");
+        older.setAccountId(1L);
+        TransactionData newer = new TransactionData();
+        newer.setId("t2");
+        newer.setAccountId(1L);
+        when(mongoTemplate.find(any(Query.class), eq(TransactionData.class))).thenReturn(Flux.just(newer, older));
+        MongoTransactionRepositoryAdapter repository = repository(10, 100, Duration.ofSeconds(1));
+
+        StepVerifier.create(repository.findByAccountIdBetween(1L, null, LocalDateTime.of(2025, 12, 1, 0, 0))
+                .map(Transaction::getId))
+            .expectNext("t1", "t2")
+            .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(TransactionData.class));
+        assertEquals(2, query.getValue().getLimit());
+        assertEquals(-1, query.getValue().getSortObject().getInteger("timestamp"));
+    }
+
+    @Test
+    void onlyTheFailedDocumentsFailTheirCallers() {
+        List<BulkWriteError> errors = List.of(
+            new BulkWriteError(121, "Document failed validation", new BsonDocument(), 1),
+            new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 2));
+        when(bulkOperations.execute()).thenReturn(slowInsert(), Mono.error(new MongoBulkWriteException(
+            BulkWriteResult.unacknowledged(), errors, null, new ServerAddress(), Set.of())));
+        MongoTransactionRepositoryAdapter repository = repository(3, 100, Duration.ofSeconds(1));
+
+        // Ocupa el insert directo: las tres siguientes viajan juntas en el mismo lote
+        Mono<Void> inFlight = repository.save(tx(0));
+        Mono<Void> first = repository.save(tx(1));
+        Mono<Void> second = repository.save(tx(2));
+        Mono<Void> retried = repository.save(tx(3));
+
+        StepVerifier.create(Flux.merge(
+                inFlight.thenReturn("ok"),
+                first.thenReturn("ok"),
+                second.thenReturn("ok").onErrorReturn(MongoBulkWriteException.class, "failed"),
+                retried.thenReturn("ok")).collectList())
+            .expectNextMatches(results -> results.stream().sorted().toList().equals(List.of("failed", "ok", "ok", "ok")))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        assertEquals(1.0, registry.get("transaction.persist.failed").counter().count());
+    }
+
+    @Test
+    void fullBufferMakesSavesWaitAndFinallyRejectsThem() {
+        // El bulk insert nunca termina: el buffer se llena y no se vacía
+        when(bulkOperations.execute()).thenReturn(Mono.never());
+        MongoTransactionRepositoryAdapter repository = repository(1, 8, Duration.ofMillis(50));
+
+        StepVerifier.create(Flux.range(0, 64)
+                .flatMap(n -> repository.save(tx(n))
+                    .thenReturn("saved")
+                    .onErrorReturn(IllegalStateException.class, "rejected"))
+                .take(1))
+            .expectNext("rejected")
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        assertTrue(registry.get("transaction.persist.backpressure").counter().count() >= 1);
+        assertTrue(registry.get("transaction.persist.rejected").counter().count() >= 1);
+    }
+}
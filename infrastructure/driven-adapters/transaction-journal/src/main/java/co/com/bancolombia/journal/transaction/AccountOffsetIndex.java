@@ -0,0 +1,192 @@
+package co.com.bancolombia.journal.transaction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice por cuenta de las posiciones de sus últimos registros en la bitácora
+ *
+ * Cada posición es un long: número de segmento en los 32 bits altos y offset
+ * dentro del segmento en los bajos. Por cuenta se guarda un anillo de long que
+ * crece hasta el máximo configurado: una cuenta con 2 transacciones ocupa 2 posiciones.
+ *
+ * Se persiste en un archivo propio junto con la "marca de agua": la posición de la
+ * bitácora hasta la cual el índice está completo. Al arrancar basta leerlo y recorrer
+ * lo escrito después de esa marca, no la bitácora entera.
+ *
+ * Formato (big-endian):
+ *   header: int magic, int versión, long marca de agua, int cantidad de cuentas
+ *   por cuenta: long accountId, int cantidad, long[cantidad] posiciones (antigua → reciente)
+ *
+ * No es thread-safe: lo protege MappedTransactionJournal.
+ */
+final class AccountOffsetIndex {
+
+    static final int MAGIC = 0x544a4958; // "TJIX"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+    private static final int INITIAL_RING = 4;
+
+    private final int perAccount;
+    private final Map<Long, Ring> rings = new HashMap<>();
+
+    AccountOffsetIndex(int perAccount) {
+        this.perAccount = perAccount;
+    }
+
+    static long position(int segment, int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    void add(long accountId, long position) {
+        rings.computeIfAbsent(accountId, id -> new Ring(Math.min(INITIAL_RING, perAccount))).add(position, perAccount);
+    }
+
+    void remove(long accountId) {
+        rings.remove(accountId);
+    }
+
+    void clear() {
+        rings.clear();
+    }
+
+    int accounts() {
+        return rings.size();
+    }
+
+    List<Long> accountIds() {
+        return List.copyOf(rings.keySet());
+    }
+
+    /** Posiciones de la cuenta, de la más antigua a la más reciente (como máximo las últimas limit) */
+    long[] positions(long accountId, int limit) {
+        Ring ring = rings.get(accountId);
+        return ring == null ? new long[0] : ring.latest(limit);
+    }
+
+    /** Escribe el índice en un archivo temporal y lo mueve sobre el anterior */
+    void write(Path file, long watermark) throws IOException {
+        save(file, snapshot(watermark));
+    }
+
+    /**
+     * Copia el índice a un buffer en memoria (solo CPU): se toma bajo el lock de la
+     * bitácora y el archivo se escribe después con save(), sin el lock.
+     */
+    ByteBuffer snapshot(long watermark) {
+        long size = HEADER_BYTES;
+        for (Ring ring : rings.values()) {
+            size += Long.BYTES + Integer.BYTES + (long) Long.BYTES * ring.count;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        buffer.putInt(MAGIC)
+            .putInt(VERSION)
+            .putLong(watermark)
+            .putInt(rings.size());
+        for (Map.Entry<Long, Ring> entry : rings.entrySet()) {
+            long[] positions = entry.getValue().latest(perAccount);
+            buffer.putLong(entry.getKey()).putInt(positions.length);
+            for (long position : positions) {
+                buffer.putLong(position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /** Escribe un snapshot en un archivo temporal y lo mueve sobre el anterior */
+    static void save(Path file, ByteBuffer snapshot) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Carga el índice guardado (reemplazando el contenido actual).
+     *
+     * @return la marca de agua, o -1 si no hay índice o no se puede leer
+     */
+    long read(Path file) throws IOException {
+        clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return -1;
+            }
+            long watermark = buffer.getLong();
+            int accounts = buffer.getInt();
+            for (int i = 0; i < accounts; i++) {
+                if (buffer.remaining() < Long.BYTES + Integer.BYTES) {
+                    clear();
+                    return -1;
+                }
+                long accountId = buffer.getLong();
+                int count = buffer.getInt();
+                if (count < 0 || buffer.remaining() < (long) Long.BYTES * count) {
+                    clear();
+                    return -1;
+                }
+                for (int j = 0; j < count; j++) {
+                    add(accountId, buffer.getLong());
+                }
+            }
+            return watermark;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    /** Anillo de posiciones que crece al doble hasta el máximo por cuenta */
+    private static final class Ring {
+        long[] positions;
+        int count;
+        int next;
+
+        Ring(int length) {
+            positions = new long[length];
+        }
+
+        void add(long position, int max) {
+            if (count == positions.length && positions.length < max) {
+                // Todavía no dio la vuelta: las posiciones están en orden desde 0
+                positions = Arrays.copyOf(positions, Math.min(positions.length * 2, max));
+                next = count;
+            }
+            positions[next] = position;
+            next = (next + 1) % positions.length;
+            count = Math.min(count + 1, positions.length);
+        }
+
+        long[] latest(int limit) {
+            int n = Math.min(count, limit);
+            long[] result = new long[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = positions[Math.floorMod(next - n + i, positions.length)];
+            }
+            return result;
+        }
+    }
+}
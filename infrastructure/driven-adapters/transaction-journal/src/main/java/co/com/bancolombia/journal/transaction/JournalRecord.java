@@ -0,0 +1,149 @@
+package co.com.bancolombia.journal.transaction;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Formato binario de una transacción dentro de un segmento (big-endian)
+ *
+ *   int largo del cuerpo, int CRC32C del cuerpo
+ *   cuerpo: long accountId, long epoch-segundo, int nanos, long bits del monto,
+ *           byte tipo, byte flags, int largo + bytes UTF-8 del id,
+ *           int largo + bytes UTF-8 de la descripción
+ *
+ * Un largo 0 marca el fin de los datos del segmento. El CRC descarta un registro
+ * escrito a medias (la app se cayó en medio de un append).
+ *
+ * Una lápida (flag FORGET) marca que la cuenta se olvidó: al recorrer la bitácora, lo
+ * anterior de esa cuenta deja de contar.
+ */
+final class JournalRecord {
+
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private static final int FIXED_BODY_BYTES = Long.BYTES * 3 + Integer.BYTES + 2 + Integer.BYTES * 2;
+    private static final byte HAS_AMOUNT = 1;
+    private static final byte HAS_TIMESTAMP = 2;
+    private static final byte FORGET = 4;
+    private static final byte NO_TYPE = -1;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private JournalRecord() {
+    }
+
+    static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Bytes que ocupa el registro completo (encabezado incluido) */
+    static int size(byte[] id, byte[] description) {
+        return HEADER_BYTES + FIXED_BODY_BYTES + length(id) + length(description);
+    }
+
+    static void write(ByteBuffer buffer, int offset, Transaction transaction, byte[] id, byte[] description) {
+        write(buffer, offset, transaction, id, description, (byte) 0);
+    }
+
+    /** Lápida de la cuenta: ocupa size(null, null) bytes */
+    static void writeTombstone(ByteBuffer buffer, int offset, long accountId) {
+        write(buffer, offset, Transaction.builder().accountId(accountId).build(), null, null, FORGET);
+    }
+
+    /** true si el registro (ya validado) es una lápida */
+    static boolean isTombstone(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset + HEADER_BYTES + Long.BYTES * 3 + Integer.BYTES + 1) & FORGET) != 0;
+    }
+
+    private static void write(ByteBuffer buffer, int offset, Transaction transaction, byte[] id, byte[] description,
+                              byte extraFlags) {
+        int bodyLength = size(id, description) - HEADER_BYTES;
+        ByteBuffer body = buffer.slice(offset + HEADER_BYTES, bodyLength);
+        LocalDateTime timestamp = transaction.getTimestamp();
+        byte flags = (byte) ((transaction.getAmount() == null ? 0 : HAS_AMOUNT) | (timestamp == null ? 0 : HAS_TIMESTAMP)
+            | extraFlags);
+        body.putLong(transaction.getAccountId())
+            .putLong(timestamp == null ? 0 : timestamp.toEpochSecond(ZoneOffset.UTC))
+            .putInt(timestamp == null ? 0 : timestamp.getNano())
+            .putLong(transaction.getAmount() == null ? 0 : Double.doubleToRawLongBits(transaction.getAmount()))
+            .put(transaction.getType() == null ? NO_TYPE : (byte) transaction.getType().ordinal())
+            .put(flags);
+        putBytes(body, id);
+        putBytes(body, description);
+
+        CRC32C crc = new CRC32C();
+        crc.update(body.flip());
+        buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        // El largo va al final: mientras no esté escrito, el registro no existe
+        buffer.putInt(offset, bodyLength);
+    }
+
+    /**
+     * Largo del cuerpo del registro en offset, o -1 si ahí no hay un registro
+     * completo y válido (fin de datos, registro truncado o CRC distinto).
+     */
+    static int validBodyLength(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int bodyLength = buffer.getInt(offset);
+        if (bodyLength < FIXED_BODY_BYTES || bodyLength > buffer.capacity() - offset - HEADER_BYTES) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + HEADER_BYTES, bodyLength));
+        return (int) crc.getValue() == buffer.getInt(offset + Integer.BYTES) ? bodyLength : -1;
+    }
+
+    static long accountId(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + HEADER_BYTES);
+    }
+
+    /** Reconstruye la transacción; el registro ya debe estar validado */
+    static Transaction read(ByteBuffer buffer, int offset) {
+        ByteBuffer body = buffer.slice(offset + HEADER_BYTES, buffer.getInt(offset));
+        long accountId = body.getLong();
+        long epochSecond = body.getLong();
+        int nano = body.getInt();
+        long amount = body.getLong();
+        byte type = body.get();
+        byte flags = body.get();
+        String id = getString(body);
+        String description = getString(body);
+        return Transaction.builder()
+            .id(id)
+            .accountId(accountId)
+            .amount((flags & HAS_AMOUNT) != 0 ? Double.longBitsToDouble(amount) : null)
+            .type(type == NO_TYPE ? null : TYPES[type])
+            .timestamp((flags & HAS_TIMESTAMP) != 0 ? LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC) : null)
+            .description(description)
+            .build();
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer body, byte[] bytes) {
+        if (bytes == null) {
+            body.putInt(-1);
+        } else {
+            body.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
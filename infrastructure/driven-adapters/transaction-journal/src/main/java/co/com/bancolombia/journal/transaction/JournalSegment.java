@@ -0,0 +1,65 @@
+package co.com.bancolombia.journal.transaction;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.OptionalInt;
+
+/**
+ * Un archivo de la bitácora, mapeado completo en memoria.
+ *
+ * Los segmentos se numeran en orden (0000000001.journal, 0000000002.journal, ...):
+ * el de número mayor es el activo y los demás ya no cambian.
+ */
+final class JournalSegment {
+
+    private static final String SUFFIX = ".journal";
+
+    final int number;
+    final Path path;
+    final MappedByteBuffer buffer;
+
+    private JournalSegment(int number, Path path, MappedByteBuffer buffer) {
+        this.number = number;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Abre el segmento (o lo crea con el tamaño indicado). Un segmento que ya
+     * existe se mapea con su propio tamaño, aunque la configuración haya cambiado.
+     */
+    static JournalSegment open(Path directory, int number, int size) throws IOException {
+        Path path = directory.resolve(String.format("%010d%s", number, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size() > 0 ? channel.size() : size;
+            // El mapeo sigue válido después de cerrar el canal
+            return new JournalSegment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+        }
+    }
+
+    /** Número del segmento si el archivo es uno */
+    static OptionalInt numberOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return OptionalInt.empty();
+        }
+        try {
+            return OptionalInt.of(Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
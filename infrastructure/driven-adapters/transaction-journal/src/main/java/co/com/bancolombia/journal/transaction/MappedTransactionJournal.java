@@ -0,0 +1,386 @@
+package co.com.bancolombia.journal.transaction;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.gateways.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Bitácora de transacciones en archivos mapeados en memoria (solo se agrega al final)
+ *
+ * - Cada append copia la transacción al final del segmento activo: es una escritura
+ *   secuencial en memoria, sin ida y vuelta a una base de datos. El sistema operativo
+ *   la baja a disco; además se fuerza (force) cada flush-interval y al apagar
+ * - El segmento siguiente se prepara por adelantado en un hilo de mantenimiento: al
+ *   llenarse el activo, append solo cambia de segmento. El force del segmento cerrado,
+ *   la retención y el guardado del índice corren en ese hilo, nunca en el del llamador
+ *   (que puede ser el event loop). Si el siguiente todavía no está listo, ese append
+ *   termina en el hilo de mantenimiento
+ * - Retención: se borran los segmentos cerrados hace más de retention o los que sobren
+ *   de max-segments. La fecha de cierre se fija explícitamente en el archivo al cerrarlo
+ *   (las escrituras por mmap no actualizan su fecha de modificación de forma confiable)
+ * - AccountOffsetIndex guarda por cuenta dónde están sus últimos registros. Se persiste
+ *   en cada rotación y al apagar, así al arrancar solo se recorre lo escrito después
+ *   (como mucho un segmento) en vez de toda la bitácora
+ * - forget() escribe una lápida: al recorrer la bitácora después de un reinicio, la
+ *   cuenta olvidada no reaparece
+ *
+ * Opcional: solo se crea con adapter.transaction-journal.enabled=true
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "adapter.transaction-journal", name = "enabled", havingValue = "true")
+public class MappedTransactionJournal implements TransactionJournal {
+
+    static final String INDEX_FILE = "accounts.index";
+
+    /** Espacio que siempre queda libre al final del segmento para la marca de fin de datos */
+    private static final int END_MARKER_BYTES = Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration retention;
+    private final int maxSegments;
+    private final Duration flushInterval;
+    private final AccountOffsetIndex index;
+
+    /** Un solo hilo: las tareas de mantenimiento corren en orden, una a la vez */
+    private final Scheduler maintenance = Schedulers.newSingle("journal-maintenance");
+
+    // Protegidos por this
+    private final TreeMap<Integer, JournalSegment> segments = new TreeMap<>();
+    private JournalSegment active;
+    private int writeOffset;
+    // Segmento siguiente ya creado y mapeado (todavía no está en segments)
+    private JournalSegment spare;
+
+    private Disposable periodicFlush;
+
+    public MappedTransactionJournal(
+            @Value("${adapter.transaction-journal.directory:data/journal}") Path directory,
+            @Value("${adapter.transaction-journal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${adapter.transaction-journal.retention:7d}") Duration retention,
+            @Value("${adapter.transaction-journal.max-segments:32}") int maxSegments,
+            @Value("${adapter.transaction-journal.flush-interval:1s}") Duration flushInterval,
+            @Value("${usecase.transaction-history.max-size:100}") int perAccount) throws IOException {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE || maxSegments < 1) {
+            throw new IllegalArgumentException("segment-size debe ser menor a 2GB y max-segments al menos 1");
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.retention = retention;
+        this.maxSegments = maxSegments;
+        this.flushInterval = flushInterval;
+        this.index = new AccountOffsetIndex(perAccount);
+        Files.createDirectories(directory);
+        recover();
+        maintenance.schedule(this::prepareSpare);
+    }
+
+    @Override
+    public Mono<Void> append(Transaction transaction) {
+        return Mono.defer(() -> {
+            if (transaction.getAccountId() == null) {
+                return Mono.error(new IllegalArgumentException("La transacción no tiene accountId"));
+            }
+            byte[] id = JournalRecord.utf8(transaction.getId());
+            byte[] description = JournalRecord.utf8(transaction.getDescription());
+            int size = JournalRecord.size(id, description);
+            if (size > segmentSize - END_MARKER_BYTES) {
+                return Mono.error(new IllegalArgumentException(
+                    "La transacción no cabe en un segmento: " + size + " bytes"));
+            }
+            return write(size, false, (buffer, offset) -> {
+                JournalRecord.write(buffer, offset, transaction, id, description);
+                index.add(transaction.getAccountId(), AccountOffsetIndex.position(active.number, offset));
+            });
+        });
+    }
+
+    @Override
+    public Flux<Transaction> recent(int perAccount) {
+        return Flux.defer(() -> {
+            List<Long> accountIds;
+            synchronized (this) {
+                accountIds = index.accountIds();
+            }
+            return Flux.fromIterable(accountIds)
+                .concatMapIterable(accountId -> read(accountId, perAccount));
+        });
+    }
+
+    @Override
+    public Flux<Transaction> recent(Long accountId, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(read(accountId, limit)));
+    }
+
+    @Override
+    public Mono<Void> forget(Long accountId) {
+        int size = JournalRecord.size(null, null);
+        return write(size, false, (buffer, offset) -> {
+            JournalRecord.writeTombstone(buffer, offset, accountId);
+            index.remove(accountId);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        periodicFlush = Flux.interval(flushInterval, Schedulers.boundedElastic())
+            .subscribe(tick -> flush());
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onShutdown() {
+        if (periodicFlush != null) {
+            periodicFlush.dispose();
+        }
+        // Lo que ya estaba pedido al hilo de mantenimiento termina antes del guardado final
+        awaitMaintenance();
+        maintenance.dispose();
+        synchronized (this) {
+            try {
+                active.buffer.force();
+                touch(active);
+                index.write(directory.resolve(INDEX_FILE), AccountOffsetIndex.position(active.number, writeOffset));
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo guardar el índice de la bitácora al apagar: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** Baja a disco lo escrito en el segmento activo */
+    void flush() {
+        JournalSegment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        // force() puede tardar: se hace fuera del lock para no frenar los append
+        segment.buffer.force();
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /** Espera a que terminen las tareas de mantenimiento pedidas hasta ahora */
+    void awaitMaintenance() {
+        if (!maintenance.isDisposed()) {
+            Mono.fromRunnable(() -> { }).subscribeOn(maintenance).block();
+        }
+    }
+
+    /**
+     * Escribe un registro de size bytes. Camino normal: en el hilo del llamador, sin I/O.
+     * Si el segmento activo se llenó y el siguiente todavía no está preparado, el registro
+     * se escribe en el hilo de mantenimiento, que lo abre.
+     */
+    private Mono<Void> write(int size, boolean mayOpen, RecordWriter writer) {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (writeOffset + size > active.capacity() - END_MARKER_BYTES && !roll(mayOpen)) {
+                    return write(size, true, writer).subscribeOn(maintenance);
+                }
+                int offset = writeOffset;
+                writer.write(active.buffer, offset);
+                writeOffset += size;
+                active.buffer.putInt(writeOffset, 0);
+                return Mono.<Void>empty();
+            }
+        });
+    }
+
+    private synchronized List<Transaction> read(long accountId, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (long position : index.positions(accountId, limit)) {
+            JournalSegment segment = segments.get(AccountOffsetIndex.segmentOf(position));
+            int offset = AccountOffsetIndex.offsetOf(position);
+            // Si la retención ya borró el segmento, esa transacción ya no existe
+            if (segment != null && JournalRecord.validBodyLength(segment.buffer, offset) >= 0) {
+                transactions.add(JournalRecord.read(segment.buffer, offset));
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Abre los segmentos existentes, carga el índice guardado y lo completa recorriendo
+     * solo lo escrito después de su marca de agua. Un registro incompleto al final (la app
+     * se cayó a mitad de un append) se descarta y ahí continúa la escritura.
+     */
+    private synchronized void recover() throws IOException {
+        long start = System.nanoTime();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                OptionalInt number = JournalSegment.numberOf(file);
+                if (number.isPresent()) {
+                    segments.put(number.getAsInt(), JournalSegment.open(directory, number.getAsInt(), segmentSize));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1, JournalSegment.open(directory, 1, segmentSize));
+        }
+
+        long watermark = index.read(directory.resolve(INDEX_FILE));
+        if (watermark < 0 || !segments.containsKey(AccountOffsetIndex.segmentOf(watermark))) {
+            index.clear();
+            watermark = AccountOffsetIndex.position(segments.firstKey(), 0);
+        }
+
+        long replayed = 0;
+        int offset = AccountOffsetIndex.offsetOf(watermark);
+        for (JournalSegment segment : segments.tailMap(AccountOffsetIndex.segmentOf(watermark)).values()) {
+            int bodyLength;
+            while ((bodyLength = JournalRecord.validBodyLength(segment.buffer, offset)) >= 0) {
+                long accountId = JournalRecord.accountId(segment.buffer, offset);
+                if (JournalRecord.isTombstone(segment.buffer, offset)) {
+                    index.remove(accountId);
+                } else {
+                    index.add(accountId, AccountOffsetIndex.position(segment.number, offset));
+                }
+                offset += JournalRecord.HEADER_BYTES + bodyLength;
+                replayed++;
+            }
+            if (active != null) {
+                // Se escribía hasta la caída: su fecha de cierre es ahora
+                touch(active);
+            }
+            active = segment;
+            writeOffset = offset;
+            offset = 0;
+        }
+
+        log.info("📒 Bitácora de transacciones abierta en {}: {} segmentos, {} cuentas indexadas, "
+                + "{} registros recorridos en {} ms",
+            directory, segments.size(), index.accounts(), replayed,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Pasa al segmento siguiente (preparado de antemano) y deja el cierre del anterior al
+     * hilo de mantenimiento. Se llama con el lock tomado.
+     *
+     * @param mayOpen true si se puede abrir el siguiente aquí (solo en el hilo de mantenimiento)
+     * @return false si el siguiente no está listo y no se puede abrir aquí
+     */
+    private boolean roll(boolean mayOpen) {
+        if (spare == null) {
+            if (!mayOpen) {
+                return false;
+            }
+            prepareSpare();
+            if (spare == null) {
+                throw new IllegalStateException("No se pudo abrir el segmento siguiente de la bitácora");
+            }
+        }
+        JournalSegment closed = active;
+        active = spare;
+        spare = null;
+        segments.put(active.number, active);
+        writeOffset = 0;
+        ByteBuffer indexSnapshot = index.snapshot(AccountOffsetIndex.position(active.number, 0));
+        maintenance.schedule(() -> close(closed, indexSnapshot));
+        return true;
+    }
+
+    /** Hilo de mantenimiento: baja a disco el segmento cerrado, aplica la retención y guarda el índice */
+    private void close(JournalSegment closed, ByteBuffer indexSnapshot) {
+        try {
+            closed.buffer.force();
+            touch(closed);
+            List<JournalSegment> expired;
+            synchronized (this) {
+                expired = expiredSegments();
+            }
+            for (JournalSegment segment : expired) {
+                segment.delete();
+                log.info("🗑️ Segmento de bitácora eliminado por retención: {}", segment.path.getFileName());
+            }
+            AccountOffsetIndex.save(directory.resolve(INDEX_FILE), indexSnapshot);
+        } catch (IOException e) {
+            log.warn("⚠️ Falló el cierre del segmento {} de la bitácora: {}", closed.path.getFileName(), e.getMessage());
+        }
+        prepareSpare();
+    }
+
+    /** Crea y mapea el segmento que seguirá al activo (si todavía no existe) */
+    private void prepareSpare() {
+        int number;
+        synchronized (this) {
+            if (spare != null) {
+                return;
+            }
+            number = active.number + 1;
+        }
+        try {
+            JournalSegment next = JournalSegment.open(directory, number, segmentSize);
+            synchronized (this) {
+                if (spare == null && active.number + 1 == number) {
+                    spare = next;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo preparar el segmento {} de la bitácora: {}", number, e.getMessage());
+        }
+    }
+
+    /** Fija la fecha de modificación del segmento en este momento */
+    private static void touch(JournalSegment segment) throws IOException {
+        Files.setLastModifiedTime(segment.path, FileTime.from(Instant.now()));
+    }
+
+    /**
+     * Quita de segments los que vencieron (se cierran en orden: el primero que no venció
+     * detiene la búsqueda). Se llama con el lock tomado; borrar los archivos queda para
+     * quien llama, fuera del lock.
+     */
+    private List<JournalSegment> expiredSegments() throws IOException {
+        Instant cutoff = Instant.now().minus(retention);
+        List<JournalSegment> expired = new ArrayList<>();
+        Iterator<Map.Entry<Integer, JournalSegment>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            JournalSegment segment = it.next().getValue();
+            boolean tooMany = segments.size() > maxSegments;
+            if (segment == active
+                    || !tooMany && Files.getLastModifiedTime(segment.path).toInstant().isAfter(cutoff)) {
+                // Los siguientes son más nuevos: tampoco vencieron
+                break;
+            }
+            it.remove();
+            expired.add(segment);
+        }
+        return expired;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(ByteBuffer buffer, int offset);
+    }
+}
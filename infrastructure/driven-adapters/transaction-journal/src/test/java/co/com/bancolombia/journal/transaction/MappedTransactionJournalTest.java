@@ -0,0 +1,134 @@
+package co.com.bancolombia.journal.transaction;
+
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedTransactionJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedTransactionJournal journal(int segmentBytes, int maxSegments) throws IOException {
+        return new MappedTransactionJournal(dir, DataSize.ofBytes(segmentBytes), Duration.ofDays(7),
+            maxSegments, Duration.ofSeconds(1), 3);
+    }
+
+    private static Transaction tx(long accountId, int n) {
+        return Transaction.builder()
+            .id("t" + n)
+            .accountId(accountId)
+            .amount(n * 1.5)
+            .type(TransactionType.DEPOSIT)
+            .timestamp(LocalDateTime.of(2025, 11, 10, 14, 30).plusNanos(n))
+            .description("Depósito " + n)
+            .build();
+    }
+
+    private static List<String> ids(MappedTransactionJournal journal, int perAccount) {
+        return journal.recent(perAccount).map(t -> t.getAccountId() + ":" + t.getId()).collectList().block();
+    }
+
+    @Test
+    void lastEntriesPerAccountSurviveARestart() throws IOException {
+        MappedTransactionJournal before = journal(4096, 32);
+        for (int n = 1; n <= 5; n++) {
+            before.append(tx(1, n)).then(before.append(tx(2, n + 100))).block();
+        }
+        before.onShutdown();
+
+        MappedTransactionJournal after = journal(4096, 32);
+        List<String> restored = ids(after, 3);
+
+        assertEquals(6, restored.size());
+        assertTrue(restored.containsAll(List.of("1:t3", "1:t4", "1:t5", "2:t103", "2:t104", "2:t105")));
+        assertTrue(restored.indexOf("1:t3") < restored.indexOf("1:t5"));
+        StepVerifier.create(after.recent(1).filter(t -> t.getAccountId() == 1L))
+            .expectNextMatches(t -> t.getAmount() == 7.5 && t.getTimestamp().getNano() == 5
+                && "Depósito 5".equals(t.getDescription()))
+            .verifyComplete();
+    }
+
+    @Test
+    void entriesWrittenAfterTheLastIndexSaveAreReplayed() throws IOException {
+        MappedTransactionJournal before = journal(4096, 32);
+        before.append(tx(1, 1)).block();
+        before.onShutdown();
+        // Sin apagar de nuevo: el índice en disco no conoce estas dos (simula una caída)
+        before.append(tx(1, 2)).then(before.append(tx(3, 3))).block();
+        before.flush();
+
+        assertEquals(List.of("1:t1", "1:t2", "3:t3"), ids(journal(4096, 32), 3).stream().sorted().toList());
+    }
+
+    @Test
+    void segmentsRollOverAndOldOnesAreDeletedByRetention() throws IOException {
+        MappedTransactionJournal journal = journal(256, 2);
+        for (int n = 1; n <= 20; n++) {
+            journal.append(tx(1, n)).block();
+        }
+        // El cierre de los segmentos llenos corre en el hilo de mantenimiento
+        journal.awaitMaintenance();
+
+        assertEquals(2, journal.segmentCount());
+        StepVerifier.create(journal.recent(3).map(Transaction::getId))
+            .expectNext("t18", "t19", "t20")
+            .verifyComplete();
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDiscarded() throws IOException {
+        MappedTransactionJournal before = journal(4096, 32);
+        before.append(tx(1, 1)).then(before.append(tx(1, 2))).block();
+        before.flush();
+        int recordSize = JournalRecord.size(JournalRecord.utf8("t2"), JournalRecord.utf8("Depósito 2"));
+        try (FileChannel channel = FileChannel.open(dir.resolve("0000000001.journal"), StandardOpenOption.WRITE)) {
+            // Se daña un byte del cuerpo del segundo registro: el CRC ya no coincide
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), recordSize + JournalRecord.HEADER_BYTES + 30);
+        }
+        Files.deleteIfExists(dir.resolve(MappedTransactionJournal.INDEX_FILE));
+
+        MappedTransactionJournal after = journal(4096, 32);
+        after.append(tx(1, 3)).block();
+
+        StepVerifier.create(after.recent(3).map(Transaction::getId))
+            .expectNext("t1", "t3")
+            .verifyComplete();
+    }
+
+    @Test
+    void forgottenAccountsAreNotRestored() throws IOException {
+        MappedTransactionJournal journal = journal(4096, 32);
+        journal.append(tx(1, 1)).then(journal.append(tx(2, 2))).then(journal.forget(1L)).block();
+
+        assertEquals(List.of("2:t2"), ids(journal, 3));
+    }
+
+    @Test
+    void forgottenAccountsStayForgottenAfterARestart() throws IOException {
+        MappedTransactionJournal before = journal(4096, 32);
+        before.append(tx(1, 1)).then(before.append(tx(2, 2))).block();
+        before.onShutdown();
+        // La lápida queda después de la marca de agua del índice: se aplica al recorrer
+        before.forget(1L).block();
+        before.flush();
+
+        assertEquals(List.of("2:t2"), ids(journal(4096, 32), 3));
+    }
+}
@@ -1,19 +1,34 @@
 package co.com.bancolombia.api;
 
 import co.com.bancolombia.api.dto.AccountDTO;
+import co.com.bancolombia.api.dto.AccountStatsDTO;
+import co.com.bancolombia.api.dto.HotAccountDTO;
+import co.com.bancolombia.api.dto.TransactionDTO;
 import co.com.bancolombia.api.dto.TransferRequestDTO;
 import co.com.bancolombia.api.dto.TransferResponseDTO;
+import co.com.bancolombia.api.dto.WindowStatsDTO;
 import co.com.bancolombia.model.account.Account;
+import co.com.bancolombia.model.account.Transaction;
+import co.com.bancolombia.model.account.TransferRequest;
 import co.com.bancolombia.model.account.TransferResult;
 import co.com.bancolombia.usecase.account.*;
+import co.com.bancolombia.usecase.account.history.AccountStats;
+import co.com.bancolombia.usecase.account.history.WindowStats;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * REST Controller para operaciones de cuentas
  * Demuestra Clean Architecture: Entry Point que usa Use Cases
@@ -24,10 +39,21 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class AccountController {
 
+    /** Header con el cursor de la página siguiente del historial (ausente en la última) */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /** Header con el que el cliente marca una transferencia y todos sus reintentos */
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final AccountManagementUseCase accountManagementUseCase;
     private final TransferUseCase transferUseCase;
+    private final BatchTransferUseCase batchTransferUseCase;
     private final AccountSearchUseCase accountSearchUseCase;
     private final TransactionHistoryUseCase transactionHistoryUseCase;
+    private final VersionConflictRetry versionConflictRetry;
+    private final TransferIdempotency transferIdempotency;
+    // Solo existe con usecase.transfer.netting.enabled=true
+    private final ObjectProvider<TransferNettingEngine> transferNettingEngine;
 
     /**
      * Crear una nueva cuenta
@@ -86,6 +112,111 @@ public class AccountController {
             .map(this::toDTO);
     }
 
+    /**
+     * Obtener varias cuentas en una sola consulta
+     * GET /api/accounts?ids=1,2,3
+     */
+    @GetMapping(params = "ids")
+    public Flux<AccountDTO> getAccountsByIds(@RequestParam("ids") List<Long> ids) {
+        log.info("Getting accounts by ids: {}", ids);
+        return accountManagementUseCase.getAccountsByIds(ids)
+            .map(this::toDTO)
+            .onErrorMap(IllegalArgumentException.class,
+                e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    /**
+     * Top N cuentas con mayor saldo
+     * GET /api/accounts/top?n=10
+     */
+    @GetMapping("/top")
+    public Flux<AccountDTO> getTopAccountsByBalance(@RequestParam(name = "n", defaultValue = "10") int n) {
+        log.info("Getting top {} accounts by balance", n);
+        return accountSearchUseCase.findTopNAccountsByBalance(n)
+            .map(this::toDTO)
+            .onErrorMap(IllegalArgumentException.class,
+                e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    /**
+     * Cuentas con más conflictos de versión (escrituras concurrentes), de más a menos
+     * GET /api/accounts/contention?n=10
+     */
+    @GetMapping("/contention")
+    public Flux<HotAccountDTO> getHotAccounts(@RequestParam(name = "n", defaultValue = "10") int n) {
+        log.info("Getting top {} accounts by version conflicts", n);
+        return Flux.fromIterable(versionConflictRetry.hottest(n))
+            .map(hot -> HotAccountDTO.builder()
+                .accountId(hot.accountId())
+                .conflicts(hot.conflicts())
+                .retries(hot.retries())
+                .build());
+    }
+
+    /**
+     * Buscar cuentas por banda de saldo (ordenadas de menor a mayor saldo)
+     * GET /api/accounts/search?minBalance=100&maxBalance=500
+     * Con Accept: application/x-ndjson las cuentas se envían una por línea a medida que se encuentran
+     */
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<AccountDTO> searchByBalance(
+            @RequestParam(name = "minBalance", defaultValue = "0") double minBalance,
+            @RequestParam(name = "maxBalance", defaultValue = "Infinity") double maxBalance) {
+        log.info("Searching accounts with balance between {} and {}", minBalance, maxBalance);
+        return accountSearchUseCase.findByBalanceRange(minBalance, maxBalance)
+            .map(this::toDTO);
+    }
+
+    /**
+     * Contar cuentas por banda de saldo
+     * GET /api/accounts/search/count?minBalance=100&maxBalance=500
+     */
+    @GetMapping("/search/count")
+    public Mono<Long> countByBalance(
+            @RequestParam(name = "minBalance", defaultValue = "0") double minBalance,
+            @RequestParam(name = "maxBalance", defaultValue = "Infinity") double maxBalance) {
+        log.info("Counting accounts with balance between {} and {}", minBalance, maxBalance);
+        return accountSearchUseCase.countByBalanceRange(minBalance, maxBalance);
+    }
+
+    /**
+     * Historial de transacciones de una cuenta por rango de fechas, paginado con cursor
+     * GET /api/accounts/{id}/transactions?from=2025-11-01T00:00:00&to=2025-12-01T00:00:00&limit=50
+     * La página siguiente se pide con cursor=<valor del header X-Next-Cursor>.
+     * Con Accept: application/x-ndjson las transacciones se envían una por línea.
+     * Un limit fuera de rango o un cursor vencido responden 400
+     */
+    @GetMapping(value = "/{id}/transactions", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<Flux<TransactionDTO>>> getTransactions(
+            @PathVariable("id") Long id,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "cursor", required = false) Long cursor,
+            @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        log.info("Getting transactions for account {} between {} and {} (cursor={}, limit={})", id, from, to, cursor, limit);
+        return transactionHistoryUseCase.getTransactionsPage(id, from, to, cursor, limit)
+            .map(page -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (page.nextCursor() != null) {
+                    response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+                }
+                return response.body(page.transactions().map(this::toTransactionDTO));
+            })
+            .onErrorMap(IllegalArgumentException.class,
+                e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    /**
+     * Estadísticas de la cuenta en la última hora y el último día (cantidad, suma, mínimo, máximo)
+     * GET /api/accounts/{id}/stats
+     */
+    @GetMapping("/{id}/stats")
+    public Mono<AccountStatsDTO> getStats(@PathVariable("id") Long id) {
+        log.info("Getting transaction stats for account {}", id);
+        return transactionHistoryUseCase.getStats(id)
+            .map(this::toStatsDTO);
+    }
+
     /**
      * Actualizar saldo de cuenta
      * PUT /api/accounts/{id}/balance
@@ -102,14 +233,44 @@ public class AccountController {
     /**
      * Realizar transferencia entre cuentas
      * POST /api/accounts/transfer
+     * Con la compensación activa la transferencia espera su ventana y se aplica junto a las demás.
+     * Con el header Idempotency-Key, los reintentos con la misma clave reciben el resultado
+     * de la primera ejecución en vez de mover el dinero otra vez
      */
     @PostMapping("/transfer")
-    public Mono<TransferResponseDTO> transfer(@RequestBody TransferRequestDTO request) {
+    public Mono<TransferResponseDTO> transfer(
+            @RequestBody TransferRequestDTO request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Processing transfer: {}", request);
-        return transferUseCase.transfer(
-                request.getFromAccountId(),
-                request.getToAccountId(),
-                request.getAmount())
+        Mono<TransferResult> transfer = Mono.defer(() -> {
+            TransferNettingEngine netting = transferNettingEngine.getIfAvailable();
+            return netting != null
+                ? netting.submit(request.getFromAccountId(), request.getToAccountId(), request.getAmount())
+                : transferUseCase.transfer(request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+        });
+        Mono<TransferResult> result = idempotencyKey == null
+            ? transfer
+            : transferIdempotency.execute(idempotencyKey,
+                request.getFromAccountId(), request.getToAccountId(), request.getAmount(), transfer);
+        return result.map(this::toTransferDTO);
+    }
+
+    /**
+     * Lote de transferencias (máximo BatchTransferUseCase.MAX_BATCH_SIZE)
+     * POST /api/accounts/transfers/batch
+     * Acepta un arreglo JSON o NDJSON (una transferencia por línea). Responde un resultado
+     * por transferencia, en el mismo orden; las que fallan no afectan a las demás
+     */
+    @PostMapping(value = "/transfers/batch",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+        produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<TransferResponseDTO> transferBatch(@RequestBody Flux<TransferRequestDTO> requests) {
+        log.info("Processing transfer batch");
+        return batchTransferUseCase.transferBatch(requests.map(request -> TransferRequest.builder()
+                .fromAccountId(request.getFromAccountId())
+                .toAccountId(request.getToAccountId())
+                .amount(request.getAmount())
+                .build()))
             .map(this::toTransferDTO);
     }
 
@@ -151,6 +312,35 @@ public class AccountController {
             .build();
     }
 
+    private TransactionDTO toTransactionDTO(Transaction transaction) {
+        return TransactionDTO.builder()
+            .id(transaction.getId())
+            .accountId(transaction.getAccountId())
+            .amount(transaction.getAmount())
+            .type(transaction.getType())
+            .timestamp(transaction.getTimestamp())
+            .description(transaction.getDescription())
+            .build();
+    }
+
+    private AccountStatsDTO toStatsDTO(AccountStats stats) {
+        return AccountStatsDTO.builder()
+            .accountId(stats.accountId())
+            .lastHour(toWindowStatsDTO(stats.lastHour()))
+            .lastDay(toWindowStatsDTO(stats.lastDay()))
+            .build();
+    }
+
+    private WindowStatsDTO toWindowStatsDTO(WindowStats stats) {
+        return WindowStatsDTO.builder()
+            .window(stats.window().toString())
+            .count(stats.count())
+            .sum(stats.sum())
+            .min(stats.min())
+            .max(stats.max())
+            .build();
+    }
+
     private TransferResponseDTO toTransferDTO(TransferResult result) {
         return TransferResponseDTO.builder()
             .transferId(result.getTransferId())
@@ -0,0 +1,16 @@
+package co.com.bancolombia.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountStatsDTO {
+    private Long accountId;
+    private WindowStatsDTO lastHour;
+    private WindowStatsDTO lastDay;
+}
@@ -0,0 +1,16 @@
+package co.com.bancolombia.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotAccountDTO {
+    private Long accountId;
+    private Long conflicts;
+    private Long retries;
+}
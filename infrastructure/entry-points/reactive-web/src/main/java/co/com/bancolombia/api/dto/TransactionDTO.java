@@ -0,0 +1,22 @@
+package co.com.bancolombia.api.dto;
+
+import co.com.bancolombia.model.account.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionDTO {
+    private String id;
+    private Long accountId;
+    private Double amount;
+    private TransactionType type;
+    private LocalDateTime timestamp;
+    private String description;
+}
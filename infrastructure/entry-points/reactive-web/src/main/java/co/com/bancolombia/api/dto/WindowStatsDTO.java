@@ -0,0 +1,19 @@
+package co.com.bancolombia.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WindowStatsDTO {
+    /** Duración de la ventana en ISO-8601 (PT1H, PT24H) */
+    private String window;
+    private Long count;
+    private Double sum;
+    private Double min;
+    private Double max;
+}